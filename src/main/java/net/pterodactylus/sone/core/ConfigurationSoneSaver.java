@@ -0,0 +1,289 @@
+package net.pterodactylus.sone.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import net.pterodactylus.sone.data.Album;
+import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Profile.Field;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.Sone.SonePart;
+import net.pterodactylus.sone.data.SoneKt;
+import net.pterodactylus.sone.data.SoneOptions;
+import net.pterodactylus.util.config.Configuration;
+import net.pterodactylus.util.config.ConfigurationException;
+
+/**
+ * Saves a local {@link Sone}’s data to a {@link Configuration}.
+ * <p>
+ * The saver remembers every value it has written, and only writes values
+ * that have changed since the last save. Posts, replies, and likes are kept
+ * in fixed slots: a new element is written to a new slot at the end of its
+ * list, and a removed element is replaced by the last element of its list,
+ * so that saving a Sone only writes the elements that have been added or
+ * removed, and the terminators of their lists. The profile, the posts, the
+ * replies, both lists of likes, and the albums are each only looked at if
+ * their {@link Sone#getModifications(SonePart) modifications} have changed
+ * since the last save.
+ * <p>
+ * The first save of a Sone writes all of its data. Only the values in the
+ * {@link Configuration} are updated incrementally; writing the configuration
+ * to disk still writes the whole file.
+ */
+class ConfigurationSoneSaver {
+
+	private final Configuration configuration;
+	private final String sonePrefix;
+	private final Map<String, Object> savedValues = new HashMap<>();
+	private final SavedList<Post> posts = new SavedList<>("/Posts/", Post::getId, this::savePost);
+	private final SavedList<PostReply> replies = new SavedList<>("/Replies/", PostReply::getId, this::saveReply);
+	private final SavedList<String> likedPostIds = new SavedList<>("/Likes/Post/", Function.identity(), this::saveLike);
+	private final SavedList<String> likedReplyIds = new SavedList<>("/Likes/Reply/", Function.identity(), this::saveLike);
+	private final Map<SonePart, Long> savedModifications = new EnumMap<>(SonePart.class);
+
+	ConfigurationSoneSaver(Configuration configuration, String soneId) {
+		this.configuration = configuration;
+		sonePrefix = "Sone/" + soneId;
+	}
+
+	/**
+	 * Saves the given Sone.
+	 *
+	 * @param sone
+	 *            The Sone to save
+	 * @param lastInsertFingerprint
+	 *            The fingerprint of the Sone’s last insert
+	 * @throws ConfigurationException
+	 *             if the configuration can not be written
+	 */
+	void save(Sone sone, @Nullable String lastInsertFingerprint) throws ConfigurationException {
+		setLong("/Time", sone.getTime());
+		setString("/LastInsertFingerprint", lastInsertFingerprint);
+		savePart(sone, SonePart.profile, () -> saveProfile(sone.getProfile()));
+		savePart(sone, SonePart.posts, () -> posts.save(sone.getPosts()));
+		savePart(sone, SonePart.replies, () -> replies.save(sone.getReplies()));
+		savePart(sone, SonePart.likedPosts, () -> likedPostIds.save(sone.getLikedPostIds()));
+		savePart(sone, SonePart.likedReplies, () -> likedReplyIds.save(sone.getLikedReplyIds()));
+		savePart(sone, SonePart.albums, () -> saveAlbumsAndImages(sone));
+		saveOptions(sone.getOptions());
+	}
+
+	/**
+	 * Saves a part of the given Sone, unless the part has not been modified
+	 * since it was last saved.
+	 */
+	private void savePart(Sone sone, SonePart part, PartSaver partSaver) throws ConfigurationException {
+		/* get the modifications first, modifications from now on are saved next time. */
+		long modifications = sone.getModifications(part);
+		Long savedModification = savedModifications.get(part);
+		if ((savedModification != null) && (savedModification == modifications)) {
+			return;
+		}
+		partSaver.save();
+		savedModifications.put(part, modifications);
+	}
+
+	private void saveProfile(Profile profile) throws ConfigurationException {
+		setString("/Profile/FirstName", profile.getFirstName());
+		setString("/Profile/MiddleName", profile.getMiddleName());
+		setString("/Profile/LastName", profile.getLastName());
+		setInt("/Profile/BirthDay", profile.getBirthDay());
+		setInt("/Profile/BirthMonth", profile.getBirthMonth());
+		setInt("/Profile/BirthYear", profile.getBirthYear());
+		setString("/Profile/Avatar", profile.getAvatar());
+
+		int fieldCounter = 0;
+		for (Field profileField : profile.getFields()) {
+			String fieldPrefix = "/Profile/Fields/" + fieldCounter++;
+			setString(fieldPrefix + "/Name", profileField.getName());
+			setString(fieldPrefix + "/Value", profileField.getValue());
+		}
+		setString("/Profile/Fields/" + fieldCounter + "/Name", null);
+	}
+
+	private void savePost(String postPrefix, Post post) throws ConfigurationException {
+		setString(postPrefix + "/ID", post.getId());
+		setString(postPrefix + "/Recipient", post.getRecipientId().orNull());
+		setLong(postPrefix + "/Time", post.getTime());
+		setString(postPrefix + "/Text", post.getText());
+	}
+
+	private void saveReply(String replyPrefix, PostReply reply) throws ConfigurationException {
+		setString(replyPrefix + "/ID", reply.getId());
+		setString(replyPrefix + "/Post/ID", reply.getPostId());
+		setLong(replyPrefix + "/Time", reply.getTime());
+		setString(replyPrefix + "/Text", reply.getText());
+	}
+
+	private void saveLike(String likePrefix, String id) throws ConfigurationException {
+		setString(likePrefix + "/ID", id);
+	}
+
+	private void saveAlbumsAndImages(Sone sone) throws ConfigurationException {
+		/* albums have to be saved top-level first, so they are loaded in the right order. */
+		List<Album> albums = SoneKt.getAllAlbums(sone);
+
+		int albumCounter = 0;
+		for (Album album : albums) {
+			String albumPrefix = "/Albums/" + albumCounter++;
+			setString(albumPrefix + "/ID", album.getId());
+			setString(albumPrefix + "/Title", album.getTitle());
+			setString(albumPrefix + "/Description", album.getDescription());
+			setString(albumPrefix + "/Parent", album.getParent().equals(sone.getRootAlbum()) ? null : album.getParent().getId());
+		}
+		setString("/Albums/" + albumCounter + "/ID", null);
+
+		int imageCounter = 0;
+		for (Album album : albums) {
+			for (Image image : album.getImages()) {
+				if (!image.isInserted()) {
+					continue;
+				}
+				String imagePrefix = "/Images/" + imageCounter++;
+				setString(imagePrefix + "/ID", image.getId());
+				setString(imagePrefix + "/Album", album.getId());
+				setString(imagePrefix + "/Key", image.getKey());
+				setString(imagePrefix + "/Title", image.getTitle());
+				setString(imagePrefix + "/Description", image.getDescription());
+				setLong(imagePrefix + "/CreationTime", image.getCreationTime());
+				setInt(imagePrefix + "/Width", image.getWidth());
+				setInt(imagePrefix + "/Height", image.getHeight());
+			}
+		}
+		setString("/Images/" + imageCounter + "/ID", null);
+	}
+
+	private void saveOptions(SoneOptions options) throws ConfigurationException {
+		setBoolean("/Options/AutoFollow", options.isAutoFollow());
+		setBoolean("/Options/EnableSoneInsertNotifications", options.isSoneInsertNotificationEnabled());
+		setBoolean("/Options/ShowNotification/NewSones", options.isShowNewSoneNotifications());
+		setBoolean("/Options/ShowNotification/NewPosts", options.isShowNewPostNotifications());
+		setBoolean("/Options/ShowNotification/NewReplies", options.isShowNewReplyNotifications());
+		setString("/Options/ShowCustomAvatars", options.getShowCustomAvatars().name());
+		setString("/Options/LoadLinkedImages", options.getLoadLinkedImages().name());
+	}
+
+	private void setString(String nodeName, @Nullable String value) throws ConfigurationException {
+		if (hasChanged(nodeName, value)) {
+			configuration.getStringValue(sonePrefix + nodeName).setValue(value);
+		}
+	}
+
+	private void setInt(String nodeName, @Nullable Integer value) throws ConfigurationException {
+		if (hasChanged(nodeName, value)) {
+			configuration.getIntValue(sonePrefix + nodeName).setValue(value);
+		}
+	}
+
+	private void setLong(String nodeName, @Nullable Long value) throws ConfigurationException {
+		if (hasChanged(nodeName, value)) {
+			configuration.getLongValue(sonePrefix + nodeName).setValue(value);
+		}
+	}
+
+	private void setBoolean(String nodeName, @Nullable Boolean value) throws ConfigurationException {
+		if (hasChanged(nodeName, value)) {
+			configuration.getBooleanValue(sonePrefix + nodeName).setValue(value);
+		}
+	}
+
+	/**
+	 * Returns whether the given value differs from the value that was last
+	 * saved for the given node, and remembers the given value as saved.
+	 * Values that have never been saved are always considered changed.
+	 */
+	private boolean hasChanged(String nodeName, @Nullable Object value) {
+		if (savedValues.containsKey(nodeName) && Objects.equals(savedValues.get(nodeName), value)) {
+			return false;
+		}
+		savedValues.put(nodeName, value);
+		return true;
+	}
+
+	/**
+	 * Writes a part of a Sone to the configuration.
+	 */
+	private interface PartSaver {
+
+		void save() throws ConfigurationException;
+
+	}
+
+	/**
+	 * Writes an element of a list to the configuration.
+	 */
+	private interface ElementSaver<T> {
+
+		void save(String elementPrefix, T element) throws ConfigurationException;
+
+	}
+
+	/**
+	 * A list of elements that is saved in fixed slots. The order of the
+	 * elements in the configuration does not matter, so an element stays in
+	 * its slot until it is removed.
+	 */
+	private class SavedList<T> {
+
+		private final String listPrefix;
+		private final Function<T, String> idFunction;
+		private final ElementSaver<T> elementSaver;
+		private final List<String> savedIds = new ArrayList<>();
+		private final Map<String, Integer> slots = new HashMap<>();
+
+		private SavedList(String listPrefix, Function<T, String> idFunction, ElementSaver<T> elementSaver) {
+			this.listPrefix = listPrefix;
+			this.idFunction = idFunction;
+			this.elementSaver = elementSaver;
+		}
+
+		void save(Collection<T> elements) throws ConfigurationException {
+			Map<String, T> currentElements = new HashMap<>();
+			for (T element : elements) {
+				currentElements.put(idFunction.apply(element), element);
+			}
+
+			/* move the last elements into the slots of removed elements. */
+			Set<String> removedIds = new HashSet<>(slots.keySet());
+			removedIds.removeAll(currentElements.keySet());
+			for (String removedId : removedIds) {
+				int slot = slots.remove(removedId);
+				String lastId = savedIds.remove(savedIds.size() - 1);
+				if (slot < savedIds.size()) {
+					savedIds.set(slot, lastId);
+					slots.put(lastId, slot);
+					/* the last element might have been removed as well; its slot is filled again later. */
+					if (currentElements.containsKey(lastId)) {
+						elementSaver.save(listPrefix + slot, currentElements.get(lastId));
+					}
+				}
+			}
+
+			/* append new elements. */
+			for (Map.Entry<String, T> currentElement : currentElements.entrySet()) {
+				if (!slots.containsKey(currentElement.getKey())) {
+					slots.put(currentElement.getKey(), savedIds.size());
+					elementSaver.save(listPrefix + savedIds.size(), currentElement.getValue());
+					savedIds.add(currentElement.getKey());
+				}
+			}
+
+			setString(listPrefix + savedIds.size() + "/ID", null);
+		}
+
+	}
+
+}
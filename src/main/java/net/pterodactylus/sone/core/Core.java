@@ -34,7 +34,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -58,11 +57,9 @@ import net.pterodactylus.sone.data.Image;
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.PostReply;
 import net.pterodactylus.sone.data.Profile;
-import net.pterodactylus.sone.data.Profile.Field;
 import net.pterodactylus.sone.data.Reply;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.data.Sone.SoneStatus;
-import net.pterodactylus.sone.data.SoneKt;
 import net.pterodactylus.sone.data.SoneOptions.LoadExternalContent;
 import net.pterodactylus.sone.data.TemporaryImage;
 import net.pterodactylus.sone.database.AlbumBuilder;
@@ -78,8 +75,10 @@ import net.pterodactylus.sone.database.SoneProvider;
 import net.pterodactylus.sone.freenet.wot.Identity;
 import net.pterodactylus.sone.freenet.wot.IdentityManager;
 import net.pterodactylus.sone.freenet.wot.OwnIdentity;
+import net.pterodactylus.sone.freenet.wot.Trust;
 import net.pterodactylus.sone.freenet.wot.event.IdentityAddedEvent;
 import net.pterodactylus.sone.freenet.wot.event.IdentityRemovedEvent;
+import net.pterodactylus.sone.freenet.wot.event.IdentityTrustChangedEvent;
 import net.pterodactylus.sone.freenet.wot.event.IdentityUpdatedEvent;
 import net.pterodactylus.sone.freenet.wot.event.OwnIdentityAddedEvent;
 import net.pterodactylus.sone.freenet.wot.event.OwnIdentityRemovedEvent;
@@ -87,7 +86,6 @@ import net.pterodactylus.sone.main.SonePlugin;
 import net.pterodactylus.util.config.Configuration;
 import net.pterodactylus.util.config.ConfigurationException;
 import net.pterodactylus.util.service.AbstractService;
-import net.pterodactylus.util.thread.NamedThreadFactory;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
@@ -138,9 +136,6 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	/** The image inserter. */
 	private final ImageInserter imageInserter;
 
-	/** Sone downloader thread-pool. */
-	private final ExecutorService soneDownloaders = Executors.newFixedThreadPool(10, new NamedThreadFactory("Sone Downloader %2$d"));
-
 	/** The update checker. */
 	private final UpdateChecker updateChecker;
 
@@ -155,6 +150,13 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	/* synchronize access on this on sones. */
 	private final Map<Sone, SoneInserter> soneInserters = new HashMap<>();
 
+	/** The scheduler for the inserts of all local Sones. */
+	private final SoneInsertScheduler soneInsertScheduler;
+
+	/** Savers of the local Sones, by Sone ID. */
+	/* synchronize access on this. */
+	private final Map<String, ConfigurationSoneSaver> configurationSoneSavers = new HashMap<>();
+
 	/** Sone rescuers. */
 	/* synchronize access on this on sones. */
 	private final Map<Sone, SoneRescuer> soneRescuers = new HashMap<>();
@@ -165,6 +167,9 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	/** The post database. */
 	private final Database database;
 
+	/** The post feeds of the local Sones. */
+	private final PostFeeds postFeeds = new PostFeeds(this, this);
+
 	/** Trusted identities, sorted by own identities. */
 	private final Multimap<OwnIdentity, Identity> trustedIdentities = Multimaps.synchronizedSetMultimap(HashMultimap.<OwnIdentity, Identity>create());
 
@@ -183,7 +188,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	private final SoneUriCreator soneUriCreator;
 
 	@Inject
-	public Core(Configuration configuration, FreenetInterface freenetInterface, IdentityManager identityManager, SoneDownloader soneDownloader, ImageInserter imageInserter, UpdateChecker updateChecker, WebOfTrustUpdater webOfTrustUpdater, EventBus eventBus, Database database, MetricRegistry metricRegistry, SoneUriCreator soneUriCreator) {
+	public Core(Configuration configuration, FreenetInterface freenetInterface, IdentityManager identityManager, SoneDownloader soneDownloader, ImageInserter imageInserter, UpdateChecker updateChecker, WebOfTrustUpdater webOfTrustUpdater, EventBus eventBus, Database database, MetricRegistry metricRegistry, SoneUriCreator soneUriCreator, SoneInsertScheduler soneInsertScheduler) {
 		super("Sone Core");
 		this.configuration = configuration;
 		this.freenetInterface = freenetInterface;
@@ -196,6 +201,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		this.database = database;
 		this.metricRegistry = metricRegistry;
 		this.soneUriCreator = soneUriCreator;
+		this.soneInsertScheduler = soneInsertScheduler;
 		preferences = new Preferences(eventBus);
 		this.configurationSaveTimeHistogram = metricRegistry.histogram("configuration.save.duration", () -> new Histogram(new ExponentiallyDecayingReservoir(3000, 0)));
 	}
@@ -405,6 +411,19 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		return database.getDirectedPosts(recipientId);
 	}
 
+	/**
+	 * Returns the post feed of the given local Sone, i.e. its own posts, the
+	 * posts of the Sones it follows, and the posts directed at it, newest
+	 * posts first. Posts are not filtered for visibility.
+	 *
+	 * @param localSone
+	 *            The local Sone to get the post feed for
+	 * @return The post feed of the local Sone
+	 */
+	public List<Post> getPostFeed(Sone localSone) {
+		return postFeeds.getPostFeed(localSone);
+	}
+
 	/**
 	 * Returns a post reply builder.
 	 *
@@ -439,13 +458,18 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	 * @return The Sones that like the given post
 	 */
 	public Set<Sone> getLikes(Post post) {
-		Set<Sone> sones = new HashSet<>();
-		for (Sone sone : getSones()) {
-			if (sone.getLikedPostIds().contains(post.getId())) {
-				sones.add(sone);
-			}
-		}
-		return sones;
+		return getExistingSones(database.getPostLikes(post.getId()));
+	}
+
+	/**
+	 * Returns the number of Sones that have liked the given post.
+	 *
+	 * @param post
+	 *            The post to get the number of likes for
+	 * @return The number of Sones that like the given post
+	 */
+	public int getLikeCount(Post post) {
+		return database.getPostLikeCount(post.getId());
 	}
 
 	/**
@@ -456,9 +480,25 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	 * @return The Sones that like the given reply
 	 */
 	public Set<Sone> getLikes(PostReply reply) {
+		return getExistingSones(database.getPostReplyLikes(reply.getId()));
+	}
+
+	/**
+	 * Returns the number of Sones that have liked the given reply.
+	 *
+	 * @param reply
+	 *            The reply to get the number of likes for
+	 * @return The number of Sones that like the given reply
+	 */
+	public int getLikeCount(PostReply reply) {
+		return database.getPostReplyLikeCount(reply.getId());
+	}
+
+	private Set<Sone> getExistingSones(Collection<String> soneIds) {
 		Set<Sone> sones = new HashSet<>();
-		for (Sone sone : getSones()) {
-			if (sone.getLikedReplyIds().contains(reply.getId())) {
+		for (String soneId : soneIds) {
+			Sone sone = database.getSone(soneId);
+			if (sone != null) {
 				sones.add(sone);
 			}
 		}
@@ -593,6 +633,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				eventBus.post(new SoneUnlockedEvent(sone));
 			}
 		}
+		soneInsertScheduler.soneModified();
 	}
 
 	/**
@@ -627,7 +668,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			lockSone(sone);
 			eventBus.post(new SoneLockedOnStartup(sone));
 		}
-		soneInserter.start();
+		soneInsertScheduler.register(soneInserter);
 		return sone;
 	}
 
@@ -686,11 +727,33 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			}
 		}
 		database.storeSone(sone);
+		if (existingSone == null) {
+			sone = restoreCachedSone(sone);
+		}
 		soneDownloader.addSone(sone);
-		soneDownloaders.execute(soneDownloader.fetchSoneAsUskAction(sone));
+		soneDownloader.scheduleUskFetch(sone);
 		return sone;
 	}
 
+	/**
+	 * Restores the last downloaded state of the given, freshly added remote
+	 * Sone, so that its posts are available before it is fetched again.
+	 *
+	 * @param sone
+	 *            The empty Sone
+	 * @return The restored Sone, or the given Sone if it could not be restored
+	 */
+	private Sone restoreCachedSone(Sone sone) {
+		Sone cachedSone = soneDownloader.loadCachedSone(sone);
+		if (cachedSone == null) {
+			return sone;
+		}
+		cachedSone.setLatestEdition(sone.getLatestEdition());
+		updateSone(cachedSone);
+		Sone restoredSone = getSone(sone.getId());
+		return (restoredSone != null) ? restoredSone : sone;
+	}
+
 	/**
 	 * Lets the given local Sone follow the Sone with the given ID.
 	 *
@@ -703,6 +766,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		checkNotNull(sone, "sone must not be null");
 		checkNotNull(soneId, "soneId must not be null");
 		database.addFriend(sone, soneId);
+		postFeeds.soneFollowed(sone, soneId);
 		@SuppressWarnings("ConstantConditions") // we just followed, this can’t be null.
 		long now = database.getFollowingTime(soneId);
 		Sone followedSone = getSone(soneId);
@@ -734,6 +798,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		checkNotNull(sone, "sone must not be null");
 		checkNotNull(soneId, "soneId must not be null");
 		database.removeFriend(sone, soneId);
+		postFeeds.soneUnfollowed(sone, soneId);
 		touchConfiguration();
 	}
 
@@ -765,9 +830,11 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				logger.log(Level.FINE, String.format("Downloaded Sone %s is not newer than stored Sone %s.", sone, storedSone));
 				return;
 			}
+			SoneComparison soneComparison = new SoneComparison(storedSone, sone);
 			List<Object> events =
-					collectEventsForChangesInSone(storedSone, sone);
-			database.storeSone(sone);
+					collectEventsForChangesInSone(soneComparison);
+			database.storeSoneChanges(soneComparison);
+			events.add(new SoneChangesStoredEvent(soneComparison));
 			for (Object event : events) {
 				eventBus.post(event);
 			}
@@ -780,9 +847,9 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		}
 	}
 
-	private List<Object> collectEventsForChangesInSone(Sone oldSone, Sone newSone) {
+	private List<Object> collectEventsForChangesInSone(SoneComparison soneComparison) {
 		List<Object> events = new ArrayList<>();
-		SoneComparison soneComparison = new SoneComparison(oldSone, newSone);
+		Sone newSone = soneComparison.getNewSone();
 		for (Post newPost : soneComparison.getNewPosts()) {
 			if (newPost.getSone().equals(newSone)) {
 				newPost.setKnown(true);
@@ -828,7 +895,10 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			return;
 		}
 		SoneInserter soneInserter = soneInserters.remove(sone);
-		soneInserter.stop();
+		soneInsertScheduler.unregister(soneInserter);
+		synchronized (this) {
+			configurationSoneSavers.remove(sone.getId());
+		}
 		database.removeSone(sone);
 		webOfTrustUpdater.removeContext((OwnIdentity) sone.getIdentity(), "Sone");
 		webOfTrustUpdater.removeProperty((OwnIdentity) sone.getIdentity(), "Sone.LatestEdition");
@@ -1239,10 +1309,12 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	/**
 	 * Notifies the core that the configuration, either of the core or of a
 	 * single local Sone, has changed, and that the configuration should be
-	 * saved.
+	 * saved. This also lets the {@link SoneInsertScheduler} check whether a
+	 * local Sone needs to be inserted.
 	 */
 	public void touchConfiguration() {
 		lastConfigurationUpdate = System.currentTimeMillis();
+		soneInsertScheduler.soneModified();
 	}
 
 	//
@@ -1259,6 +1331,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		identityManager.start();
 		webOfTrustUpdater.init();
 		webOfTrustUpdater.start();
+		soneDownloader.start();
 		database.startAsync();
 	}
 
@@ -1287,6 +1360,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	@Override
 	public void serviceStop() {
 		localElementTicker.shutdownNow();
+		soneInsertScheduler.stop();
 		synchronized (soneInserters) {
 			for (Entry<Sone, SoneInserter> soneInserter : soneInserters.entrySet()) {
 				soneInserter.getValue().stop();
@@ -1304,7 +1378,6 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		webOfTrustUpdater.stop();
 		updateChecker.stop();
 		soneDownloader.stop();
-		soneDownloaders.shutdown();
 		identityManager.stop();
 	}
 
@@ -1314,7 +1387,9 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 
 	/**
 	 * Saves the given Sone. This will persist all local settings for the given
-	 * Sone, such as the friends list and similar, private options.
+	 * Sone, such as the friends list and similar, private options. Only the
+	 * data that has changed since the Sone was last saved is written, see
+	 * {@link ConfigurationSoneSaver}.
 	 *
 	 * @param sone
 	 *            The Sone to save
@@ -1331,112 +1406,19 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 
 		logger.log(Level.INFO, String.format("Saving Sone: %s", sone));
 		try {
-			/* save Sone into configuration. */
-			String sonePrefix = "Sone/" + sone.getId();
-			configuration.getLongValue(sonePrefix + "/Time").setValue(sone.getTime());
-			configuration.getStringValue(sonePrefix + "/LastInsertFingerprint").setValue(soneInserters.get(sone).getLastInsertFingerprint());
-
-			/* save profile. */
-			Profile profile = sone.getProfile();
-			configuration.getStringValue(sonePrefix + "/Profile/FirstName").setValue(profile.getFirstName());
-			configuration.getStringValue(sonePrefix + "/Profile/MiddleName").setValue(profile.getMiddleName());
-			configuration.getStringValue(sonePrefix + "/Profile/LastName").setValue(profile.getLastName());
-			configuration.getIntValue(sonePrefix + "/Profile/BirthDay").setValue(profile.getBirthDay());
-			configuration.getIntValue(sonePrefix + "/Profile/BirthMonth").setValue(profile.getBirthMonth());
-			configuration.getIntValue(sonePrefix + "/Profile/BirthYear").setValue(profile.getBirthYear());
-			configuration.getStringValue(sonePrefix + "/Profile/Avatar").setValue(profile.getAvatar());
-
-			/* save profile fields. */
-			int fieldCounter = 0;
-			for (Field profileField : profile.getFields()) {
-				String fieldPrefix = sonePrefix + "/Profile/Fields/" + fieldCounter++;
-				configuration.getStringValue(fieldPrefix + "/Name").setValue(profileField.getName());
-				configuration.getStringValue(fieldPrefix + "/Value").setValue(profileField.getValue());
-			}
-			configuration.getStringValue(sonePrefix + "/Profile/Fields/" + fieldCounter + "/Name").setValue(null);
-
-			/* save posts. */
-			int postCounter = 0;
-			for (Post post : sone.getPosts()) {
-				String postPrefix = sonePrefix + "/Posts/" + postCounter++;
-				configuration.getStringValue(postPrefix + "/ID").setValue(post.getId());
-				configuration.getStringValue(postPrefix + "/Recipient").setValue(post.getRecipientId().orNull());
-				configuration.getLongValue(postPrefix + "/Time").setValue(post.getTime());
-				configuration.getStringValue(postPrefix + "/Text").setValue(post.getText());
-			}
-			configuration.getStringValue(sonePrefix + "/Posts/" + postCounter + "/ID").setValue(null);
-
-			/* save replies. */
-			int replyCounter = 0;
-			for (PostReply reply : sone.getReplies()) {
-				String replyPrefix = sonePrefix + "/Replies/" + replyCounter++;
-				configuration.getStringValue(replyPrefix + "/ID").setValue(reply.getId());
-				configuration.getStringValue(replyPrefix + "/Post/ID").setValue(reply.getPostId());
-				configuration.getLongValue(replyPrefix + "/Time").setValue(reply.getTime());
-				configuration.getStringValue(replyPrefix + "/Text").setValue(reply.getText());
-			}
-			configuration.getStringValue(sonePrefix + "/Replies/" + replyCounter + "/ID").setValue(null);
-
-			/* save post likes. */
-			int postLikeCounter = 0;
-			for (String postId : sone.getLikedPostIds()) {
-				configuration.getStringValue(sonePrefix + "/Likes/Post/" + postLikeCounter++ + "/ID").setValue(postId);
+			ConfigurationSoneSaver configurationSoneSaver = configurationSoneSavers.get(sone.getId());
+			if (configurationSoneSaver == null) {
+				configurationSoneSaver = new ConfigurationSoneSaver(configuration, sone.getId());
+				configurationSoneSavers.put(sone.getId(), configurationSoneSaver);
 			}
-			configuration.getStringValue(sonePrefix + "/Likes/Post/" + postLikeCounter + "/ID").setValue(null);
-
-			/* save reply likes. */
-			int replyLikeCounter = 0;
-			for (String replyId : sone.getLikedReplyIds()) {
-				configuration.getStringValue(sonePrefix + "/Likes/Reply/" + replyLikeCounter++ + "/ID").setValue(replyId);
-			}
-			configuration.getStringValue(sonePrefix + "/Likes/Reply/" + replyLikeCounter + "/ID").setValue(null);
-
-			/* save albums. first, collect in a flat structure, top-level first. */
-			List<Album> albums = SoneKt.getAllAlbums(sone);
-
-			int albumCounter = 0;
-			for (Album album : albums) {
-				String albumPrefix = sonePrefix + "/Albums/" + albumCounter++;
-				configuration.getStringValue(albumPrefix + "/ID").setValue(album.getId());
-				configuration.getStringValue(albumPrefix + "/Title").setValue(album.getTitle());
-				configuration.getStringValue(albumPrefix + "/Description").setValue(album.getDescription());
-				configuration.getStringValue(albumPrefix + "/Parent").setValue(album.getParent().equals(sone.getRootAlbum()) ? null : album.getParent().getId());
-			}
-			configuration.getStringValue(sonePrefix + "/Albums/" + albumCounter + "/ID").setValue(null);
-
-			/* save images. */
-			int imageCounter = 0;
-			for (Album album : albums) {
-				for (Image image : album.getImages()) {
-					if (!image.isInserted()) {
-						continue;
-					}
-					String imagePrefix = sonePrefix + "/Images/" + imageCounter++;
-					configuration.getStringValue(imagePrefix + "/ID").setValue(image.getId());
-					configuration.getStringValue(imagePrefix + "/Album").setValue(album.getId());
-					configuration.getStringValue(imagePrefix + "/Key").setValue(image.getKey());
-					configuration.getStringValue(imagePrefix + "/Title").setValue(image.getTitle());
-					configuration.getStringValue(imagePrefix + "/Description").setValue(image.getDescription());
-					configuration.getLongValue(imagePrefix + "/CreationTime").setValue(image.getCreationTime());
-					configuration.getIntValue(imagePrefix + "/Width").setValue(image.getWidth());
-					configuration.getIntValue(imagePrefix + "/Height").setValue(image.getHeight());
-				}
-			}
-			configuration.getStringValue(sonePrefix + "/Images/" + imageCounter + "/ID").setValue(null);
-
-			/* save options. */
-			configuration.getBooleanValue(sonePrefix + "/Options/AutoFollow").setValue(sone.getOptions().isAutoFollow());
-			configuration.getBooleanValue(sonePrefix + "/Options/EnableSoneInsertNotifications").setValue(sone.getOptions().isSoneInsertNotificationEnabled());
-			configuration.getBooleanValue(sonePrefix + "/Options/ShowNotification/NewSones").setValue(sone.getOptions().isShowNewSoneNotifications());
-			configuration.getBooleanValue(sonePrefix + "/Options/ShowNotification/NewPosts").setValue(sone.getOptions().isShowNewPostNotifications());
-			configuration.getBooleanValue(sonePrefix + "/Options/ShowNotification/NewReplies").setValue(sone.getOptions().isShowNewReplyNotifications());
-			configuration.getStringValue(sonePrefix + "/Options/ShowCustomAvatars").setValue(sone.getOptions().getShowCustomAvatars().name());
-			configuration.getStringValue(sonePrefix + "/Options/LoadLinkedImages").setValue(sone.getOptions().getLoadLinkedImages().name());
+			configurationSoneSaver.save(sone, soneInserters.get(sone).getLastInsertFingerprint());
 
 			webOfTrustUpdater.setProperty((OwnIdentity) sone.getIdentity(), "Sone.LatestEdition", String.valueOf(sone.getLatestEdition()));
 
 			logger.log(Level.INFO, String.format("Sone %s saved.", sone));
 		} catch (ConfigurationException ce1) {
+			/* we don’t know what has been written, so write everything next time. */
+			configurationSoneSavers.remove(sone.getId());
 			logger.log(Level.WARNING, String.format("Could not save Sone: %s", sone), ce1);
 		}
 	}
@@ -1469,7 +1451,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			/* save known posts. */
 			database.save();
 
-			/* now save it. */
+			/* now save it; this still writes the whole configuration file. */
 			Stopwatch stopwatch = Stopwatch.createStarted();
 			configuration.save();
 			configurationSaveTimeHistogram.update(stopwatch.elapsed(TimeUnit.MICROSECONDS));
@@ -1567,7 +1549,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			}
 		}
 		soneDownloader.addSone(sone);
-		soneDownloaders.execute(soneDownloader.fetchSoneAsSskAction(sone));
+		soneDownloader.scheduleSskFetch(sone);
 	}
 
 	/**
@@ -1602,6 +1584,67 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		}
 		eventBus.post(new SoneRemovedEvent(sone));
 		database.removeSone(sone);
+		soneDownloader.removeSone(sone);
+	}
+
+	/**
+	 * Adds a new post to the post feeds.
+	 *
+	 * @param newPostFoundEvent
+	 *            The event
+	 */
+	@Subscribe
+	public void newPostFound(NewPostFoundEvent newPostFoundEvent) {
+		postFeeds.postAdded(newPostFoundEvent.getPost());
+	}
+
+	/**
+	 * Removes a post from the post feeds.
+	 *
+	 * @param postRemovedEvent
+	 *            The event
+	 */
+	@Subscribe
+	public void postRemoved(PostRemovedEvent postRemovedEvent) {
+		postFeeds.postRemoved(postRemovedEvent.getPost());
+	}
+
+	/**
+	 * Applies the stored changes of a Sone to the post feeds.
+	 *
+	 * @param soneChangesStoredEvent
+	 *            The event
+	 */
+	@Subscribe
+	public void soneChangesStored(SoneChangesStoredEvent soneChangesStoredEvent) {
+		postFeeds.soneChanged(soneChangesStoredEvent.getSoneComparison());
+	}
+
+	/**
+	 * Stores the changed trust in the Sone of the identity and updates the
+	 * post feed of the local Sone whose trust has changed.
+	 *
+	 * @param identityTrustChangedEvent
+	 *            The event
+	 */
+	@Subscribe
+	public void identityTrustChanged(IdentityTrustChangedEvent identityTrustChangedEvent) {
+		OwnIdentity ownIdentity = identityTrustChangedEvent.getOwnIdentity();
+		Identity identity = identityTrustChangedEvent.getIdentity();
+		Sone sone = getSone(identity.getId());
+		if (sone == null) {
+			return;
+		}
+		Trust trust = identity.getTrust(ownIdentity);
+		if (trust == null) {
+			sone.getIdentity().removeTrust(ownIdentity);
+		} else {
+			sone.getIdentity().setTrust(ownIdentity, trust);
+		}
+		Sone localSone = getLocalSone(ownIdentity.getId());
+		if (localSone != null) {
+			postFeeds.trustChanged(localSone, sone.getId());
+		}
 	}
 
 	/**
@@ -0,0 +1,38 @@
+/*
+ * Sone - DocumentTooLargeException.java - Copyright © 2020 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+/**
+ * Exception that signals that a fetched document is larger than the
+ * maximum size it was fetched with.
+ */
+public class DocumentTooLargeException extends SoneException {
+
+	/**
+	 * Creates a new document-too-large exception.
+	 *
+	 * @param message
+	 *            The message of the exception
+	 * @param cause
+	 *            The cause of the exception
+	 */
+	public DocumentTooLargeException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
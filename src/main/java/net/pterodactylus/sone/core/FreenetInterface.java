@@ -126,18 +126,50 @@ public class FreenetInterface {
 	 * @return The result of the fetch, or {@code null} if an error occured
 	 */
 	public Fetched fetchUri(FreenetURI uri) {
+		try {
+			return fetchUri(uri, client::fetch);
+		} catch (FetchException fe1) {
+			logger.log(Level.WARNING, String.format("Could not fetch “%s”!", uri), fe1);
+			return null;
+		}
+	}
+
+	/**
+	 * Fetches the given URI, letting the node abort the fetch as soon as the
+	 * decoded data exceeds the given size.
+	 *
+	 * @param uri
+	 *            The URI to fetch
+	 * @param maximumSize
+	 *            The maximum size of the decoded data (in bytes)
+	 * @return The result of the fetch, or {@code null} if an error occured
+	 * @throws DocumentTooLargeException
+	 *             if the decoded data is larger than the maximum size
+	 */
+	public Fetched fetchUri(FreenetURI uri, long maximumSize) throws DocumentTooLargeException {
+		try {
+			return fetchUri(uri, currentUri -> client.fetch(currentUri, maximumSize));
+		} catch (FetchException fe1) {
+			if (fe1.getMode() == FetchExceptionMode.TOO_BIG) {
+				throw new DocumentTooLargeException(String.format("“%s” is larger than %d bytes!", uri, maximumSize), fe1);
+			}
+			logger.log(Level.WARNING, String.format("Could not fetch “%s”!", uri), fe1);
+			return null;
+		}
+	}
+
+	private Fetched fetchUri(FreenetURI uri, Fetcher fetcher) throws FetchException {
 		FreenetURI currentUri = new FreenetURI(uri);
 		while (true) {
 			try {
-				FetchResult fetchResult = client.fetch(currentUri);
+				FetchResult fetchResult = fetcher.fetch(currentUri);
 				return new Fetched(currentUri, fetchResult);
 			} catch (FetchException fe1) {
 				if (fe1.getMode() == FetchExceptionMode.PERMANENT_REDIRECT) {
 					currentUri = fe1.newURI;
 					continue;
 				}
-				logger.log(Level.WARNING, String.format("Could not fetch “%s”!", uri), fe1);
-				return null;
+				throw fe1;
 			}
 		}
 	}
@@ -514,4 +546,13 @@ public class FreenetInterface {
 
 	}
 
+	/**
+	 * Performs a single, synchronous fetch.
+	 */
+	private interface Fetcher {
+
+		FetchResult fetch(FreenetURI uri) throws FetchException;
+
+	}
+
 }
@@ -1,5 +1,7 @@
 package net.pterodactylus.sone.core;
 
+import javax.annotation.Nullable;
+
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.util.service.Service;
 
@@ -15,8 +17,46 @@ import com.google.inject.ImplementedBy;
 public interface SoneDownloader extends Service {
 
 	void addSone(Sone sone);
+
+	/**
+	 * Stops watching the given Sone for updates and removes its cached
+	 * state.
+	 *
+	 * @param sone
+	 * 		The Sone to remove
+	 */
+	void removeSone(Sone sone);
+
 	Sone fetchSone(Sone sone, FreenetURI soneUri, boolean fetchOnly);
 
+	/**
+	 * Parses the last stored state of the given Sone.
+	 *
+	 * @param sone
+	 * 		The Sone to load
+	 * @return The stored Sone, or {@code null} if no Sone is stored or the
+	 *         stored Sone can not be parsed
+	 */
+	@Nullable
+	Sone loadCachedSone(Sone sone);
+
+	/**
+	 * Schedules a download of the given Sone that follows the USK of the
+	 * Sone to the latest edition.
+	 *
+	 * @param sone
+	 * 		The Sone to download
+	 */
+	void scheduleUskFetch(Sone sone);
+
+	/**
+	 * Schedules a download of the latest known edition of the given Sone.
+	 *
+	 * @param sone
+	 * 		The Sone to download
+	 */
+	void scheduleSskFetch(Sone sone);
+
 	Runnable fetchSoneAsUskAction(Sone sone);
 	Runnable fetchSoneAsSskAction(Sone sone);
 
@@ -19,27 +19,41 @@ package net.pterodactylus.sone.core;
 
 import static java.lang.String.format;
 import static java.lang.System.currentTimeMillis;
-import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.logging.Logger.getLogger;
+import static java.util.stream.Collectors.toList;
+import static net.pterodactylus.sone.core.SoneArchivesKt.archiveName;
+import static net.pterodactylus.sone.core.SoneArchivesKt.maximumArchives;
+import static net.pterodactylus.sone.core.SoneArchivesKt.readArchiveNames;
+import static net.pterodactylus.sone.core.SoneContentHashKt.calculateSoneContentHash;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.data.Sone.SoneStatus;
+import net.pterodactylus.sone.freenet.AsyncFreenetInterface;
 import net.pterodactylus.util.service.AbstractService;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.ByteStreams;
+
 import freenet.client.FetchResult;
 import freenet.client.async.ClientContext;
 import freenet.client.async.USKCallback;
 import freenet.keys.FreenetURI;
 import freenet.keys.USK;
-import freenet.node.RequestStarter;
 import freenet.support.api.Bucket;
 
 /**
@@ -56,19 +70,42 @@ public class SoneDownloaderImpl extends AbstractService implements SoneDownloade
 	/** The core. */
 	private final UpdatedSoneProcessor updatedSoneProcessor;
 	private final SoneParser soneParser;
+	private final RemoteSoneCache remoteSoneCache;
+	private final SoneDownloadScheduler soneDownloadScheduler;
+	private final UskPollingTiers uskPollingTiers;
+	private final DownloadFailures downloadFailures;
+	private final SoneParserLimits soneParserLimits;
 
 	/** The Freenet interface. */
 	private final FreenetInterface freenetInterface;
 
-	/** The sones to update. */
-	private final Set<Sone> sones = new HashSet<>();
+	/** The pipeline for the scheduled downloads. */
+	private final SoneDownloadPipeline<DownloadedEdition> soneDownloadPipeline;
+
+	/** The sones to update, by Sone ID. */
+	private final Map<String, Sone> sones = new ConcurrentHashMap<>();
+
+	/** The polling tiers the Sones’ USKs are registered with, by Sone ID. */
+	private final Map<String, PollingTier> pollingTiers = new ConcurrentHashMap<>();
+
+	/** The IDs of Sones whose last edition referred to an unavailable archive. */
+	private final Set<String> incompleteSones = ConcurrentHashMap.newKeySet();
+
+	/** The content hashes of the last stored editions, by Sone ID. */
+	private final Map<String, StoredContent> storedContents = new ConcurrentHashMap<>();
 
 	@Inject
-	SoneDownloaderImpl(UpdatedSoneProcessor updatedSoneProcessor, FreenetInterface freenetInterface, SoneParser soneParser) {
+	SoneDownloaderImpl(UpdatedSoneProcessor updatedSoneProcessor, FreenetInterface freenetInterface, SoneParser soneParser, RemoteSoneCache remoteSoneCache, SoneDownloadScheduler soneDownloadScheduler, UskPollingTiers uskPollingTiers, DownloadFailures downloadFailures, SoneParserLimits soneParserLimits, AsyncFreenetInterface asyncFreenetInterface, MetricRegistry metricRegistry) {
 		super("Sone Downloader", false);
 		this.updatedSoneProcessor = updatedSoneProcessor;
 		this.freenetInterface = freenetInterface;
 		this.soneParser = soneParser;
+		this.remoteSoneCache = remoteSoneCache;
+		this.soneDownloadScheduler = soneDownloadScheduler;
+		this.uskPollingTiers = uskPollingTiers;
+		this.downloadFailures = downloadFailures;
+		this.soneParserLimits = soneParserLimits;
+		this.soneDownloadPipeline = new SoneDownloadPipeline<>(asyncFreenetInterface, new DownloadStages(), metricRegistry, soneParserLimits.getMaximumDocumentSize());
 	}
 
 	//
@@ -83,9 +120,11 @@ public class SoneDownloaderImpl extends AbstractService implements SoneDownloade
 	 */
 	@Override
 	public void addSone(final Sone sone) {
-		if (!sones.add(sone)) {
+		if (sones.put(sone.getId(), sone) != null) {
 			freenetInterface.unregisterUsk(sone);
 		}
+		final PollingTier pollingTier = uskPollingTiers.getTier(sone);
+		pollingTiers.put(sone.getId(), pollingTier);
 		final USKCallback uskCallback = new USKCallback() {
 
 			@Override
@@ -99,22 +138,22 @@ public class SoneDownloaderImpl extends AbstractService implements SoneDownloade
 						sone, key, newKnownGood, newSlotToo));
 				if (edition > sone.getLatestEdition()) {
 					sone.setLatestEdition(edition);
-					new Thread(fetchSoneAsSskAction(sone),
-							"Sone Downloader").start();
+					scheduleSskFetch(sone);
 				}
 			}
 
 			@Override
 			public short getPollingPriorityProgress() {
-				return RequestStarter.INTERACTIVE_PRIORITY_CLASS;
+				return pollingTier.getProgressPriority();
 			}
 
 			@Override
 			public short getPollingPriorityNormal() {
-				return RequestStarter.INTERACTIVE_PRIORITY_CLASS;
+				return pollingTier.getNormalPriority();
 			}
 		};
-		if (soneHasBeenActiveRecently(sone)) {
+		logger.log(Level.FINEST, () -> format("Registering USK for Sone %s with polling tier %s.", sone, pollingTier));
+		if (pollingTier.getActive()) {
 			freenetInterface.registerActiveUsk(sone.getRequestUri(),
 					uskCallback);
 		} else {
@@ -123,8 +162,53 @@ public class SoneDownloaderImpl extends AbstractService implements SoneDownloade
 		}
 	}
 
-	private boolean soneHasBeenActiveRecently(Sone sone) {
-		return (currentTimeMillis() - sone.getTime()) < DAYS.toMillis(7);
+	@Override
+	public void removeSone(Sone sone) {
+		if (sones.remove(sone.getId()) != null) {
+			freenetInterface.unregisterUsk(sone);
+		}
+		pollingTiers.remove(sone.getId());
+		storedContents.remove(sone.getId());
+		incompleteSones.remove(sone.getId());
+		remoteSoneCache.removeSone(sone.getId());
+	}
+
+	/**
+	 * Schedules downloads for all Sones whose last edition could not be
+	 * parsed because one of its archives could not be fetched.
+	 */
+	void retryIncompleteSones() {
+		for (String soneId : incompleteSones) {
+			Sone sone = sones.get(soneId);
+			if (incompleteSones.remove(soneId) && (sone != null)) {
+				scheduleSskFetch(sone);
+			}
+		}
+	}
+
+	/**
+	 * Schedules downloads for all Sones whose downloads were skipped because
+	 * of earlier failures and whose backoff has ended.
+	 */
+	void retryFailedSones() {
+		for (String soneId : downloadFailures.dueRetries()) {
+			Sone sone = sones.get(soneId);
+			if (sone != null) {
+				scheduleSskFetch(sone);
+			}
+		}
+	}
+
+	/**
+	 * Registers the USKs of all Sones whose polling tier has changed again,
+	 * using their new polling tiers.
+	 */
+	void updatePollingTiers() {
+		for (Sone sone : sones.values()) {
+			if (uskPollingTiers.getTier(sone) != pollingTiers.get(sone.getId())) {
+				addSone(sone);
+			}
+		}
 	}
 
 	private void fetchSoneAsSsk(Sone sone) {
@@ -146,28 +230,186 @@ public class SoneDownloaderImpl extends AbstractService implements SoneDownloade
 	 */
 	@Override
 	public Sone fetchSone(Sone sone, FreenetURI soneUri, boolean fetchOnly) {
+		if (!fetchOnly && isBackingOff(sone)) {
+			return null;
+		}
 		logger.log(Level.FINE, String.format("Starting fetch for Sone “%s” from %s…", sone, soneUri));
 		FreenetURI requestUri = soneUri.setMetaString(new String[] { "sone.xml" });
 		sone.setStatus(SoneStatus.downloading);
 		try {
-			Fetched fetchResults = freenetInterface.fetchUri(requestUri);
+			Fetched fetchResults;
+			try {
+				fetchResults = freenetInterface.fetchUri(requestUri, soneParserLimits.getMaximumDocumentSize());
+			} catch (DocumentTooLargeException dtle1) {
+				logger.log(Level.WARNING, dtle1, () -> format("Sone “%s” is too large!", sone));
+				if (!fetchOnly) {
+					recordFailure(sone);
+				}
+				return null;
+			}
 			if (fetchResults == null) {
 				/* TODO - mark Sone as bad. */
 				return null;
 			}
 			logger.log(Level.FINEST, String.format("Got %d bytes back.", fetchResults.getFetchResult().size()));
-			Sone parsedSone = parseSone(sone, fetchResults.getFetchResult(), fetchResults.getFreenetUri());
-			if (parsedSone != null) {
-				if (!fetchOnly) {
-					parsedSone.setStatus((parsedSone.getTime() == 0) ? SoneStatus.unknown : SoneStatus.idle);
-					updatedSoneProcessor.updateSone(parsedSone);
-					addSone(parsedSone);
+			if (!fetchOnly) {
+				return storeDownloadedEdition(sone, parseDownloadedEdition(sone, fetchResults, archiveName -> loadArchive(sone, fetchResults.getFreenetUri(), archiveName)));
+			}
+			Bucket soneBucket = fetchResults.getFetchResult().asBucket();
+			try {
+				return parseSone(sone, fetchResults.getFetchResult(), fetchResults.getFreenetUri(), archiveName -> loadArchive(sone, fetchResults.getFreenetUri(), archiveName));
+			} catch (MissingArchiveException mae1) {
+				logger.log(Level.WARNING, mae1.getMessage());
+				return null;
+			} finally {
+				soneBucket.free();
+			}
+		} finally {
+			resetStatus(sone);
+		}
+	}
+
+	private boolean isBackingOff(Sone sone) {
+		if (downloadFailures.isBackingOff(sone.getId())) {
+			logger.log(Level.FINE, String.format("Skipping fetch for Sone “%s” after failures.", sone));
+			return true;
+		}
+		return false;
+	}
+
+	private void resetStatus(Sone sone) {
+		sone.setStatus(downloadFailures.isQuarantined(sone.getId()) ? SoneStatus.quarantined : (sone.getTime() == 0) ? SoneStatus.unknown : SoneStatus.idle);
+	}
+
+	/**
+	 * Parses a downloaded edition of a Sone, unless its content is the same
+	 * as the content of the last stored edition. This method does not modify
+	 * any state so that it can be run concurrently for different Sones.
+	 *
+	 * @param sone
+	 * 		The Sone that was downloaded
+	 * @param fetched
+	 * 		The downloaded edition
+	 * @param archiveLoader
+	 * 		The loader for the Sone’s archives
+	 * @return The parsed edition
+	 */
+	private DownloadedEdition parseDownloadedEdition(Sone sone, Fetched fetched, SoneArchiveLoader archiveLoader) {
+		SoneContentHash contentHash = calculateContentHash(sone, fetched.getFetchResult().asBucket());
+		if ((contentHash != null) && isUnchanged(sone, contentHash)) {
+			return new DownloadedEdition(fetched, contentHash, true, null, false);
+		}
+		try {
+			return new DownloadedEdition(fetched, contentHash, false, parseSone(sone, fetched.getFetchResult(), fetched.getFreenetUri(), archiveLoader), false);
+		} catch (MissingArchiveException mae1) {
+			logger.log(Level.WARNING, mae1.getMessage());
+			return new DownloadedEdition(fetched, contentHash, false, null, true);
+		}
+	}
+
+	/**
+	 * Stores a parsed edition of a Sone, records the failure or success of
+	 * the download, and releases the downloaded data. An edition that refers
+	 * to an archive that could not be fetched is not stored and not counted
+	 * as a failure; it is downloaded again later.
+	 *
+	 * @param sone
+	 * 		The Sone that was downloaded
+	 * @param downloadedEdition
+	 * 		The parsed edition
+	 * @return The stored Sone, or {@code null} if the edition could not be
+	 *         parsed
+	 */
+	@Nullable
+	private Sone storeDownloadedEdition(Sone sone, DownloadedEdition downloadedEdition) {
+		Bucket soneBucket = downloadedEdition.fetched.getFetchResult().asBucket();
+		try {
+			if (downloadedEdition.archiveMissing) {
+				incompleteSones.add(sone.getId());
+				return null;
+			}
+			if (downloadedEdition.unchanged) {
+				return updateUnchangedSone(sone, downloadedEdition.contentHash, downloadedEdition.fetched.getFreenetUri(), soneBucket);
+			}
+			Sone parsedSone = downloadedEdition.parsedSone;
+			if (parsedSone == null) {
+				recordFailure(sone);
+				return null;
+			}
+			downloadFailures.succeeded(sone.getId());
+			parsedSone.setStatus((parsedSone.getTime() == 0) ? SoneStatus.unknown : SoneStatus.idle);
+			if (updatedSoneProcessor.updateSone(parsedSone)) {
+				uskPollingTiers.soneUpdated(parsedSone);
+				rememberContentHash(parsedSone, downloadedEdition.contentHash);
+				if (!parsedSone.isLocal()) {
+					cacheSone(parsedSone, soneBucket);
 				}
 			}
+			addSone(parsedSone);
 			return parsedSone;
 		} finally {
-			sone.setStatus((sone.getTime() == 0) ? SoneStatus.unknown : SoneStatus.idle);
+			soneBucket.free();
+		}
+	}
+
+	private void recordFailure(Sone sone) {
+		if (downloadFailures.failed(sone.getId())) {
+			logger.log(Level.WARNING, String.format("Sone “%s” is quarantined.", sone));
+		}
+	}
+
+	@Nullable
+	private SoneContentHash calculateContentHash(Sone sone, Bucket soneBucket) {
+		try (InputStream soneInputStream = soneBucket.getInputStream()) {
+			return calculateSoneContentHash(soneInputStream);
+		} catch (IOException ioe1) {
+			logger.log(Level.FINE, ioe1, () -> format("Could not calculate content hash of %s!", sone));
+			return null;
+		}
+	}
+
+	private boolean isUnchanged(Sone sone, SoneContentHash contentHash) {
+		StoredContent storedContent = storedContents.get(sone.getId());
+		return (storedContent != null) && (storedContent.sone == sone) && storedContent.hash.equals(contentHash.getHash());
+	}
+
+	private void rememberContentHash(Sone sone, @Nullable SoneContentHash contentHash) {
+		if (contentHash != null) {
+			storedContents.put(sone.getId(), new StoredContent(sone, contentHash.getHash()));
+		} else {
+			storedContents.remove(sone.getId());
+		}
+	}
+
+	/**
+	 * Updates a Sone whose downloaded edition has the same content as the
+	 * last stored edition. Instead of parsing and storing the Sone again,
+	 * only the edition and the time of the stored Sone are updated.
+	 *
+	 * @param sone
+	 * 		The stored Sone
+	 * @param contentHash
+	 * 		The content hash of the downloaded edition
+	 * @param requestUri
+	 * 		The URI the edition was downloaded from
+	 * @param soneBucket
+	 * 		The bucket containing the Sone’s XML
+	 * @return The stored Sone
+	 */
+	private Sone updateUnchangedSone(Sone sone, SoneContentHash contentHash, FreenetURI requestUri, Bucket soneBucket) {
+		logger.fine(() -> format("Content of Sone %s at %s is unchanged.", sone, requestUri));
+		downloadFailures.succeeded(sone.getId());
+		if (requestUri.getEdition() > sone.getLatestEdition()) {
+			sone.setLatestEdition(requestUri.getEdition());
+		}
+		if (contentHash.getTime() > sone.getTime()) {
+			sone.setTime(contentHash.getTime());
+			uskPollingTiers.soneUpdated(sone);
+		}
+		if (!sone.isLocal()) {
+			cacheSone(sone, soneBucket);
 		}
+		return sone;
 	}
 
 	/**
@@ -179,26 +421,166 @@ public class SoneDownloaderImpl extends AbstractService implements SoneDownloade
 	 * 		The fetch result
 	 * @param requestUri
 	 * 		The requested URI
+	 * @param archiveLoader
+	 * 		The loader for the Sone’s archives
 	 * @return The parsed Sone, or {@code null} if the Sone could not be parsed
+	 * @throws MissingArchiveException
+	 * 		if an archive the Sone refers to is not available
 	 */
-	private Sone parseSone(Sone originalSone, FetchResult fetchResult, FreenetURI requestUri) {
+	private Sone parseSone(Sone originalSone, FetchResult fetchResult, FreenetURI requestUri, SoneArchiveLoader archiveLoader) throws MissingArchiveException {
 		logger.finest(() -> format("Parsing FetchResult (%d bytes, %s) for %s…", fetchResult.size(), fetchResult.getMimeType(), originalSone));
-		Bucket soneBucket = fetchResult.asBucket();
-		try (InputStream soneInputStream = soneBucket.getInputStream()) {
-			Sone parsedSone = soneParser.parseSone(originalSone, soneInputStream);
+		try (InputStream soneInputStream = fetchResult.asBucket().getInputStream()) {
+			Sone parsedSone = soneParser.parseSone(originalSone, soneInputStream, archiveLoader);
 			if (parsedSone != null) {
 				logger.finer(() -> format("Sone %s was successfully parsed.", parsedSone));
 				parsedSone.setLatestEdition(requestUri.getEdition());
 			}
 			return parsedSone;
+		} catch (MissingArchiveException mae1) {
+			throw mae1;
 		} catch (Exception e1) {
 			logger.log(Level.WARNING, e1, () -> format("Could not parse Sone from %s!", requestUri));
+		}
+		return null;
+	}
+
+	/**
+	 * Loads an archive of a Sone. Archives that have been loaded before are
+	 * loaded from the {@link RemoteSoneCache}; all other archives are fetched
+	 * from the same edition as the Sone’s XML, and stored in the cache if
+	 * their content matches their name.
+	 * <p>
+	 * This blocks while the archive is fetched, so it is only used by
+	 * {@link #fetchSone(Sone, FreenetURI, boolean)}. Scheduled downloads fetch
+	 * missing archives in the fetch stage of the {@link SoneDownloadPipeline}
+	 * and only load archives from the cache while parsing.
+	 *
+	 * @param sone
+	 * 		The Sone to load the archive for
+	 * @param requestUri
+	 * 		The URI the Sone’s XML was fetched from
+	 * @param archiveName
+	 * 		The name of the archive
+	 * @return The archive, or {@code null} if it could not be loaded
+	 */
+	@Nullable
+	private InputStream loadArchive(Sone sone, FreenetURI requestUri, String archiveName) throws IOException {
+		byte[] archive = remoteSoneCache.loadArchive(sone.getId(), archiveName);
+		if (archive != null) {
+			return new ByteArrayInputStream(archive);
+		}
+		FreenetURI archiveUri = (requestUri.isUSK() ? requestUri.sskForUSK() : requestUri).setMetaString(new String[] { archiveName });
+		Fetched fetched;
+		try {
+			fetched = freenetInterface.fetchUri(archiveUri, soneParserLimits.getMaximumDocumentSize());
+		} catch (DocumentTooLargeException dtle1) {
+			logger.log(Level.WARNING, dtle1, () -> format("Archive %s is too large!", archiveUri));
+			return null;
+		}
+		if (fetched == null) {
+			return null;
+		}
+		archive = cacheArchive(sone, archiveName, fetched);
+		return (archive != null) ? new ByteArrayInputStream(archive) : null;
+	}
+
+	/**
+	 * Stores a fetched archive of a Sone in the {@link RemoteSoneCache} if its
+	 * content matches its name, and releases the fetched data.
+	 *
+	 * @param sone
+	 * 		The Sone the archive belongs to
+	 * @param archiveName
+	 * 		The name of the archive
+	 * @param fetched
+	 * 		The fetched archive
+	 * @return The content of the archive, or {@code null} if its content does
+	 *         not match its name
+	 */
+	@Nullable
+	private byte[] cacheArchive(Sone sone, String archiveName, Fetched fetched) throws IOException {
+		byte[] archive;
+		Bucket archiveBucket = fetched.getFetchResult().asBucket();
+		try (InputStream archiveInputStream = archiveBucket.getInputStream()) {
+			archive = ByteStreams.toByteArray(archiveInputStream);
 		} finally {
-			soneBucket.free();
+			archiveBucket.free();
+		}
+		if (!archiveName.equals(archiveName(new ByteArrayInputStream(archive)))) {
+			logger.log(Level.WARNING, format("Content of archive %s does not match its name!", fetched.getFreenetUri()));
+			return null;
+		}
+		remoteSoneCache.storeArchive(sone.getId(), archiveName, archive);
+		return archive;
+	}
+
+	/**
+	 * Stores the given downloaded Sone in the {@link RemoteSoneCache}, and
+	 * removes the cached archives that the Sone does not refer to anymore.
+	 *
+	 * @param sone
+	 * 		The parsed Sone
+	 * @param soneBucket
+	 * 		The bucket containing the Sone’s XML
+	 */
+	private void cacheSone(Sone sone, Bucket soneBucket) {
+		try (InputStream soneInputStream = soneBucket.getInputStream()) {
+			remoteSoneCache.storeSone(sone.getId(), sone.getLatestEdition(), soneInputStream);
+		} catch (IOException ioe1) {
+			logger.log(Level.WARNING, ioe1, () -> format("Could not cache Sone %s!", sone));
+			return;
+		}
+		try (InputStream soneInputStream = soneBucket.getInputStream()) {
+			remoteSoneCache.retainArchives(sone.getId(), readArchiveNames(soneInputStream, maximumArchives(soneParserLimits)));
+		} catch (IOException ioe1) {
+			logger.log(Level.WARNING, ioe1, () -> format("Could not remove old archives of Sone %s!", sone));
+		}
+	}
+
+	@Nullable
+	@Override
+	public Sone loadCachedSone(Sone sone) {
+		try {
+			CachedSone cachedSone = remoteSoneCache.loadSone(sone.getId());
+			if (cachedSone == null) {
+				return null;
+			}
+			Sone parsedSone = soneParser.parseSone(sone, new ByteArrayInputStream(cachedSone.getSoneXml()), archiveName -> loadCachedArchive(sone, archiveName));
+			if (parsedSone != null) {
+				logger.fine(() -> format("Loaded cached Sone %s.", parsedSone));
+				parsedSone.setLatestEdition(cachedSone.getEdition());
+			}
+			return parsedSone;
+		} catch (Exception e1) {
+			logger.log(Level.WARNING, e1, () -> format("Could not load cached Sone %s!", sone));
 		}
 		return null;
 	}
 
+	@Nullable
+	private InputStream loadCachedArchive(Sone sone, String archiveName) throws IOException {
+		byte[] archive = remoteSoneCache.loadArchive(sone.getId(), archiveName);
+		return (archive != null) ? new ByteArrayInputStream(archive) : null;
+	}
+
+	@Override
+	public void scheduleUskFetch(Sone sone) {
+		soneDownloadScheduler.schedule(sone, downloadAction(sone, sone.getRequestUri()));
+	}
+
+	@Override
+	public void scheduleSskFetch(Sone sone) {
+		soneDownloadScheduler.schedule(sone, downloadAction(sone, sone.getRequestUri().sskForUSK()));
+	}
+
+	private Runnable downloadAction(Sone sone, FreenetURI soneUri) {
+		return () -> {
+			if (!isBackingOff(sone)) {
+				soneDownloadPipeline.download(sone, soneUri.setMetaString(new String[] { "sone.xml" }));
+			}
+		};
+	}
+
 	@Override
 	public Runnable fetchSoneAsUskAction(final Sone sone) {
 		return new Runnable() {
@@ -219,12 +601,156 @@ public class SoneDownloaderImpl extends AbstractService implements SoneDownloade
 		};
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	protected void serviceStart() {
+		soneDownloadPipeline.start();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void serviceRun() {
+		long lastPollingTierUpdate = currentTimeMillis();
+		while (!shouldStop()) {
+			sleep(MINUTES.toMillis(5));
+			if (shouldStop()) {
+				break;
+			}
+			retryFailedSones();
+			retryIncompleteSones();
+			if ((currentTimeMillis() - lastPollingTierUpdate) >= MINUTES.toMillis(30)) {
+				updatePollingTiers();
+				lastPollingTierUpdate = currentTimeMillis();
+			}
+		}
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	protected void serviceStop() {
-		for (Sone sone : sones) {
+		for (Sone sone : sones.values()) {
 			freenetInterface.unregisterUsk(sone);
 		}
+		soneDownloadScheduler.stop();
+		soneDownloadPipeline.stop();
+	}
+
+	/**
+	 * The stages of the scheduled downloads that are run by the
+	 * {@link SoneDownloadPipeline}.
+	 */
+	private class DownloadStages implements SoneDownloadStages<DownloadedEdition> {
+
+		@Override
+		public void fetching(Sone sone) {
+			logger.log(Level.FINE, String.format("Starting fetch for Sone “%s”…", sone));
+			sone.setStatus(SoneStatus.downloading);
+		}
+
+		@Override
+		public Collection<String> missingArchives(Sone sone, Fetched fetched) {
+			try (InputStream soneInputStream = fetched.getFetchResult().asBucket().getInputStream()) {
+				return readArchiveNames(soneInputStream, maximumArchives(soneParserLimits)).stream()
+						.filter(archiveName -> !remoteSoneCache.hasArchive(sone.getId(), archiveName))
+						.collect(toList());
+			} catch (IOException ioe1) {
+				logger.log(Level.WARNING, ioe1, () -> format("Could not read archives of Sone %s!", sone));
+				return emptyList();
+			}
+		}
+
+		@Override
+		public void archiveFetched(Sone sone, String archiveName, Fetched fetched) {
+			try {
+				cacheArchive(sone, archiveName, fetched);
+			} catch (IOException ioe1) {
+				logger.log(Level.WARNING, ioe1, () -> format("Could not cache archive %s of Sone %s!", archiveName, sone));
+			}
+		}
+
+		@Override
+		public DownloadedEdition parse(Sone sone, Fetched fetched) {
+			logger.log(Level.FINEST, String.format("Got %d bytes back.", fetched.getFetchResult().size()));
+			return parseDownloadedEdition(sone, fetched, archiveName -> loadCachedArchive(sone, archiveName));
+		}
+
+		@Override
+		public void tooLarge(Sone sone) {
+			recordFailure(sone);
+		}
+
+		@Override
+		public void store(Sone sone, @Nullable DownloadedEdition downloadedEdition) {
+			try {
+				if (downloadedEdition != null) {
+					storeDownloadedEdition(sone, downloadedEdition);
+				}
+			} finally {
+				resetStatus(sone);
+			}
+		}
+
+		@Override
+		public void discard(Sone sone, DownloadedEdition downloadedEdition) {
+			downloadedEdition.fetched.getFetchResult().asBucket().free();
+		}
+
+	}
+
+	/**
+	 * The content hash of the last stored edition of a Sone, together with
+	 * the stored Sone itself, so that a hash is only used as long as the
+	 * Sone has not been replaced by other means.
+	 */
+	private static class StoredContent {
+
+		private final Sone sone;
+		private final String hash;
+
+		private StoredContent(Sone sone, String hash) {
+			this.sone = sone;
+			this.hash = hash;
+		}
+
+	}
+
+	/**
+	 * A downloaded edition of a Sone, after it has been parsed.
+	 */
+	private static class DownloadedEdition {
+
+		private final Fetched fetched;
+		private final SoneContentHash contentHash;
+		private final boolean unchanged;
+		private final Sone parsedSone;
+		private final boolean archiveMissing;
+
+		/**
+		 * Creates a new downloaded edition.
+		 *
+		 * @param fetched
+		 * 		The downloaded edition
+		 * @param contentHash
+		 * 		The content hash of the edition, or {@code null} if it could
+		 * 		not be calculated
+		 * @param unchanged
+		 * 		{@code true} if the content of the edition is the same as the
+		 * 		content of the last stored edition and it was not parsed
+		 * @param parsedSone
+		 * 		The parsed Sone, or {@code null} if the edition was not parsed
+		 * 		or could not be parsed
+		 * @param archiveMissing
+		 * 		{@code true} if the edition could not be parsed because an
+		 * 		archive it refers to is not available
+		 */
+		private DownloadedEdition(Fetched fetched, @Nullable SoneContentHash contentHash, boolean unchanged, @Nullable Sone parsedSone, boolean archiveMissing) {
+			this.fetched = fetched;
+			this.contentHash = contentHash;
+			this.unchanged = unchanged;
+			this.parsedSone = parsedSone;
+			this.archiveMissing = archiveMissing;
+		}
+
 	}
 
 }
@@ -22,6 +22,16 @@ package net.pterodactylus.sone.core;
  */
 public class SoneException extends Exception {
 
+	/**
+	 * Creates a new Sone exception.
+	 *
+	 * @param message
+	 *            The message of the exception
+	 */
+	public SoneException(String message) {
+		super(message);
+	}
+
 	/**
 	 * Creates a new Sone exception.
 	 *
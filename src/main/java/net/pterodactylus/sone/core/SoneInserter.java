@@ -19,18 +19,27 @@ package net.pterodactylus.sone.core;
 
 import static java.lang.String.format;
 import static java.lang.System.currentTimeMillis;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static java.util.Comparator.comparing;
 import static java.util.concurrent.TimeUnit.*;
 import static java.util.logging.Logger.getLogger;
 import static java.util.stream.Collectors.toList;
+import static net.pterodactylus.sone.core.SoneArchivesKt.archiveName;
+import static net.pterodactylus.sone.core.SoneArchivesKt.splitIntoArchives;
 import static net.pterodactylus.sone.data.PostKt.newestPostFirst;
 import static net.pterodactylus.sone.data.ReplyKt.newestReplyFirst;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -43,11 +52,12 @@ import net.pterodactylus.sone.core.event.SoneInsertAbortedEvent;
 import net.pterodactylus.sone.core.event.SoneInsertedEvent;
 import net.pterodactylus.sone.core.event.SoneInsertingEvent;
 import net.pterodactylus.sone.data.AlbumKt;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.data.Sone.SoneStatus;
 import net.pterodactylus.sone.data.SoneKt;
 import net.pterodactylus.sone.main.SonePlugin;
-import net.pterodactylus.util.service.AbstractService;
 import net.pterodactylus.util.template.HtmlFilter;
 import net.pterodactylus.util.template.ReflectionAccessor;
 import net.pterodactylus.util.template.Template;
@@ -69,9 +79,12 @@ import freenet.support.api.RandomAccessBucket;
 import freenet.support.io.ArrayBucket;
 
 /**
- * A Sone inserter is responsible for inserting a Sone if it has changed.
+ * A Sone inserter is responsible for inserting a Sone if it has changed. It
+ * does not decide on its own when to insert the Sone; that is done by the
+ * {@link SoneInsertScheduler}, which coordinates the inserts of all local
+ * Sones.
  */
-public class SoneInserter extends AbstractService {
+public class SoneInserter {
 
 	/** The logger. */
 	private static final Logger logger = getLogger(SoneInserter.class.getName());
@@ -88,6 +101,9 @@ public class SoneInserter extends AbstractService {
 		templateContextFactory.addFilter("html", new HtmlFilter());
 	}
 
+	/** The parsed insert templates, by name. */
+	private static final Map<String, Template> templates = new ConcurrentHashMap<>();
+
 	/** The UTF-8 charset. */
 	private static final Charset utf8Charset = Charset.forName("UTF-8");
 
@@ -102,10 +118,11 @@ public class SoneInserter extends AbstractService {
 
 	private final SoneModificationDetector soneModificationDetector;
 	private final SoneUriCreator soneUriCreator;
-	private final long delay;
 	private final String soneId;
 	private final Histogram soneInsertDurationHistogram;
+	private final Histogram soneInsertDurationOfSoneHistogram;
 	private final Meter soneInsertErrorMeter;
+	private volatile boolean stopped;
 
 	/**
 	 * Creates a new Sone inserter.
@@ -138,21 +155,20 @@ public class SoneInserter extends AbstractService {
 				}
 				return sone.getFingerprint();
 			}
-		}, insertionDelay), 1000);
+		}, insertionDelay));
 	}
 
 	@VisibleForTesting
-	SoneInserter(Core core, EventBus eventBus, FreenetInterface freenetInterface, MetricRegistry metricRegistry, SoneUriCreator soneUriCreator, String soneId, SoneModificationDetector soneModificationDetector, long delay) {
-		super("Sone Inserter for “" + soneId + "”", false);
+	SoneInserter(Core core, EventBus eventBus, FreenetInterface freenetInterface, MetricRegistry metricRegistry, SoneUriCreator soneUriCreator, String soneId, SoneModificationDetector soneModificationDetector) {
 		this.core = core;
 		this.eventBus = eventBus;
 		this.freenetInterface = freenetInterface;
 		this.soneInsertDurationHistogram = metricRegistry.histogram("sone.insert.duration", () -> new Histogram(new ExponentiallyDecayingReservoir(3000, 0)));
+		this.soneInsertDurationOfSoneHistogram = metricRegistry.histogram("sone.insert." + soneId + ".duration", () -> new Histogram(new ExponentiallyDecayingReservoir(3000, 0)));
 		this.soneInsertErrorMeter = metricRegistry.meter("sone.insert.errors");
 		this.soneUriCreator = soneUriCreator;
 		this.soneId = soneId;
 		this.soneModificationDetector = soneModificationDetector;
-		this.delay = delay;
 	}
 
 	//
@@ -205,76 +221,124 @@ public class SoneInserter extends AbstractService {
 		return soneModificationDetector.isModified();
 	}
 
+	/**
+	 * Returns the ID of the Sone this inserter inserts.
+	 *
+	 * @return The ID of the Sone
+	 */
+	public String getSoneId() {
+		return soneId;
+	}
+
+	/**
+	 * Returns whether the Sone has been modified and the insertion delay has
+	 * passed since its last modification, so that it should be inserted now.
+	 *
+	 * @return {@code true} if the Sone should be inserted, {@code false}
+	 *         otherwise
+	 */
+	public boolean isEligibleForInsert() {
+		return soneModificationDetector.isEligibleForInsert();
+	}
+
+	/**
+	 * Returns the time of the last modification of the Sone that has not
+	 * been inserted yet.
+	 *
+	 * @return The time of the last modification (as per
+	 *         {@link System#nanoTime()}), or {@code null} if no modification
+	 *         is pending
+	 */
+	public Long getModificationTime() {
+		return soneModificationDetector.getModificationTime();
+	}
+
+	/**
+	 * Returns the time until the Sone will be eligible for an insert, if it
+	 * does not get modified again.
+	 *
+	 * @return The time until the Sone is eligible for an insert (in
+	 *         nanoseconds), or {@code null} if no modification is pending
+	 */
+	public Long getTimeUntilEligible() {
+		return soneModificationDetector.getTimeUntilEligible();
+	}
+
 	//
-	// SERVICE METHODS
+	// ACTIONS
 	//
 
 	/**
-	 * {@inheritDoc}
+	 * Inserts the Sone. This method should only be called if the Sone is
+	 * {@link #isEligibleForInsert() eligible for an insert}.
+	 *
+	 * @return {@code false} if the insert failed, {@code true} otherwise
 	 */
-	@Override
-	protected void serviceRun() {
-		while (!shouldStop()) {
-			try {
-				/* check every second. */
-				sleep(delay);
-
-				if (soneModificationDetector.isEligibleForInsert()) {
-					Sone sone = core.getSone(soneId);
-					if (sone == null) {
-						logger.log(Level.WARNING, format("Sone %s has disappeared, exiting inserter.", soneId));
-						return;
-					}
-					InsertInformation insertInformation = new InsertInformation(sone);
-					logger.log(Level.INFO, String.format("Inserting Sone “%s”…", sone.getName()));
-
-					boolean success = false;
-					try {
-						sone.setStatus(SoneStatus.inserting);
-						long insertTime = currentTimeMillis();
-						eventBus.post(new SoneInsertingEvent(sone));
-						Stopwatch stopwatch = Stopwatch.createStarted();
-						FreenetURI finalUri = freenetInterface.insertDirectory(soneUriCreator.getInsertUri(sone), insertInformation.generateManifestEntries(), "index.html");
-						stopwatch.stop();
-						soneInsertDurationHistogram.update(stopwatch.elapsed(MICROSECONDS));
-						eventBus.post(new SoneInsertedEvent(sone, stopwatch.elapsed(MILLISECONDS), insertInformation.getFingerprint()));
-						/* at this point we might already be stopped. */
-						if (shouldStop()) {
-							/* if so, bail out, don’t change anything. */
-							break;
-						}
-						sone.setTime(insertTime);
-						sone.setLatestEdition(finalUri.getEdition());
-						core.touchConfiguration();
-						success = true;
-						logger.log(Level.INFO, String.format("Inserted Sone “%s” at %s.", sone.getName(), finalUri));
-					} catch (SoneException se1) {
-						soneInsertErrorMeter.mark();
-						eventBus.post(new SoneInsertAbortedEvent(sone, se1));
-						logger.log(Level.WARNING, String.format("Could not insert Sone “%s”!", sone.getName()), se1);
-					} finally {
-						insertInformation.close();
-						sone.setStatus(SoneStatus.idle);
-					}
-
-					/*
-					 * reset modification counter if Sone has not been modified
-					 * while it was inserted.
-					 */
-					if (success) {
-						synchronized (sone) {
-							if (insertInformation.getFingerprint().equals(sone.getFingerprint())) {
-								logger.log(Level.FINE, String.format("Sone “%s” was not modified further, resetting counter…", sone));
-								soneModificationDetector.setFingerprint(insertInformation.getFingerprint());
-								core.touchConfiguration();
-							}
-						}
-					}
+	public boolean insert() {
+		if (stopped) {
+			return true;
+		}
+		Sone sone = core.getSone(soneId);
+		if (sone == null) {
+			logger.log(Level.WARNING, format("Sone %s has disappeared, not inserting.", soneId));
+			return true;
+		}
+		InsertInformation insertInformation = new InsertInformation(sone);
+		logger.log(Level.INFO, String.format("Inserting Sone “%s”…", sone.getName()));
+
+		boolean success = false;
+		try {
+			sone.setStatus(SoneStatus.inserting);
+			long insertTime = currentTimeMillis();
+			eventBus.post(new SoneInsertingEvent(sone));
+			Stopwatch stopwatch = Stopwatch.createStarted();
+			FreenetURI finalUri = freenetInterface.insertDirectory(soneUriCreator.getInsertUri(sone), insertInformation.generateManifestEntries(), "index.html");
+			stopwatch.stop();
+			soneInsertDurationHistogram.update(stopwatch.elapsed(MICROSECONDS));
+			soneInsertDurationOfSoneHistogram.update(stopwatch.elapsed(MICROSECONDS));
+			eventBus.post(new SoneInsertedEvent(sone, stopwatch.elapsed(MILLISECONDS), insertInformation.getFingerprint()));
+			/* at this point we might already be stopped. */
+			if (stopped) {
+				/* if so, bail out, don’t change anything. */
+				return true;
+			}
+			sone.setTime(insertTime);
+			sone.setLatestEdition(finalUri.getEdition());
+			core.touchConfiguration();
+			success = true;
+			logger.log(Level.INFO, String.format("Inserted Sone “%s” at %s.", sone.getName(), finalUri));
+		} catch (SoneException se1) {
+			soneInsertErrorMeter.mark();
+			eventBus.post(new SoneInsertAbortedEvent(sone, se1));
+			logger.log(Level.WARNING, String.format("Could not insert Sone “%s”!", sone.getName()), se1);
+		} finally {
+			insertInformation.close();
+			sone.setStatus(SoneStatus.idle);
+		}
+
+		/*
+		 * reset modification counter if Sone has not been modified
+		 * while it was inserted.
+		 */
+		if (success) {
+			synchronized (sone) {
+				if (insertInformation.getFingerprint().equals(sone.getFingerprint())) {
+					logger.log(Level.FINE, String.format("Sone “%s” was not modified further, resetting counter…", sone));
+					soneModificationDetector.setFingerprint(insertInformation.getFingerprint());
+					core.touchConfiguration();
 				}
-			} catch (Throwable t1) {
-				logger.log(Level.SEVERE, "SoneInserter threw an Exception!", t1);
 			}
 		}
+		return success;
+	}
+
+	/**
+	 * Stops this inserter. A Sone that is being inserted while the inserter
+	 * is stopped is not updated after the insert has finished, and no more
+	 * inserts are started.
+	 */
+	public void stop() {
+		stopped = true;
 	}
 
 	@Subscribe
@@ -291,7 +355,10 @@ public class SoneInserter extends AbstractService {
 	class InsertInformation implements Closeable {
 
 		/** All properties of the Sone, copied for thread safety. */
-		private final Map<String, Object> soneProperties = new HashMap<>();
+		private final Map<String, Object> soneProperties;
+		private final List<Post> posts;
+		private final List<PostReply> replies;
+		private final List<Archive> archives = new ArrayList<>();
 		private final String fingerprint;
 		private final ManifestCreator manifestCreator;
 
@@ -308,11 +375,23 @@ public class SoneInserter extends AbstractService {
 			soneProperties.put("name", sone.getName());
 			soneProperties.put("time", currentTimeMillis());
 			soneProperties.put("profile", sone.getProfile());
-			soneProperties.put("posts", Ordering.from(newestPostFirst()).sortedCopy(sone.getPosts()));
-			soneProperties.put("replies", Ordering.from(newestReplyFirst()).sortedCopy(sone.getReplies()));
+			if (core.getPreferences().getArchiveOldPosts()) {
+				ArchiveSplit<Post> splitPosts = splitIntoArchives(sone.getPosts(), comparing(Post::getTime).thenComparing(Post::getId));
+				ArchiveSplit<PostReply> splitReplies = splitIntoArchives(sone.getReplies(), comparing(PostReply::getTime).thenComparing(PostReply::getId));
+				posts = Ordering.from(newestPostFirst()).sortedCopy(splitPosts.getRecent());
+				replies = Ordering.from(newestReplyFirst()).sortedCopy(splitReplies.getRecent());
+				splitPosts.getArchives().forEach(archivedPosts -> archives.add(new Archive(archivedPosts, emptyList())));
+				splitReplies.getArchives().forEach(archivedReplies -> archives.add(new Archive(emptyList(), archivedReplies)));
+			} else {
+				posts = Ordering.from(newestPostFirst()).sortedCopy(sone.getPosts());
+				replies = Ordering.from(newestReplyFirst()).sortedCopy(sone.getReplies());
+			}
+			soneProperties.put("posts", posts);
+			soneProperties.put("replies", replies);
 			soneProperties.put("likedPostIds", new HashSet<>(sone.getLikedPostIds()));
 			soneProperties.put("likedReplyIds", new HashSet<>(sone.getLikedReplyIds()));
 			soneProperties.put("albums", SoneKt.getAllAlbums(sone).stream().filter(AlbumKt.notEmpty()::invoke).collect(toList()));
+			this.soneProperties = soneProperties;
 			manifestCreator = new ManifestCreator(core, soneProperties);
 		}
 
@@ -337,7 +416,22 @@ public class SoneInserter extends AbstractService {
 		public HashMap<String, Object> generateManifestEntries() {
 			HashMap<String, Object> manifestEntries = new HashMap<>();
 
-			/* first, create an index.html. */
+			/* archives have to exist before the sone.xml that refers to them. */
+			List<String> archiveNames = new ArrayList<>();
+			for (Archive archive : archives) {
+				ManifestElement archiveElement = manifestCreator.createArchiveElement(archive);
+				if (archiveElement == null) {
+					/* keep the posts and replies in the sone.xml instead. */
+					posts.addAll(archive.getPosts());
+					replies.addAll(archive.getReplies());
+					continue;
+				}
+				archiveNames.add(archiveElement.getName());
+				manifestEntries.put(archiveElement.getName(), archiveElement);
+			}
+			soneProperties.put("archives", archiveNames);
+
+			/* then, create an index.html. */
 			manifestEntries.put("index.html", manifestCreator.createManifestElement(
 					"index.html", "text/html; charset=utf-8",
 					"/templates/insert/index.html"));
@@ -357,6 +451,33 @@ public class SoneInserter extends AbstractService {
 
 	}
 
+	/**
+	 * Archived posts and replies of a Sone, which are inserted in a file of
+	 * their own, next to the {@code sone.xml} that refers to them.
+	 *
+	 * @see SoneArchivesKt#splitIntoArchives(java.util.Collection, java.util.Comparator)
+	 */
+	@VisibleForTesting
+	static class Archive {
+
+		private final List<Post> posts;
+		private final List<PostReply> replies;
+
+		Archive(List<Post> posts, List<PostReply> replies) {
+			this.posts = posts;
+			this.replies = replies;
+		}
+
+		public List<Post> getPosts() {
+			return posts;
+		}
+
+		public List<PostReply> getReplies() {
+			return replies;
+		}
+
+	}
+
 	/**
 	 * Creates manifest elements for an insert by rendering a template.
 	 */
@@ -373,12 +494,50 @@ public class SoneInserter extends AbstractService {
 		}
 
 		public ManifestElement createManifestElement(String name, String contentType, String templateName) {
-			Template template;
-			try (InputStream templateInputStream = getClass().getResourceAsStream(templateName);
-					InputStreamReader templateInputStreamReader = new InputStreamReader(templateInputStream, utf8Charset)) {
-				template = TemplateParser.parse(templateInputStreamReader);
-			} catch (IOException | TemplateException e1) {
-				logger.log(Level.SEVERE, String.format("Could not parse template “%s”!", templateName), e1);
+			RandomAccessBucket bucket = renderTemplate(templateName, emptyMap());
+			if (bucket == null) {
+				return null;
+			}
+			return new ManifestElement(name, bucket, contentType, bucket.size());
+		}
+
+		/**
+		 * Creates the manifest element for the given archive. The name of the
+		 * element is derived from the content of the archive.
+		 *
+		 * @param archive
+		 *            The archive to create a manifest element for
+		 * @return The manifest element, or {@code null} if the archive could
+		 *         not be created
+		 * @see SoneArchivesKt#archiveName(InputStream)
+		 */
+		public ManifestElement createArchiveElement(Archive archive) {
+			RandomAccessBucket bucket = renderTemplate("/templates/insert/archive.xml", singletonMap("archive", archive));
+			if (bucket == null) {
+				return null;
+			}
+			try (InputStream archiveInputStream = bucket.getInputStream()) {
+				return new ManifestElement(archiveName(archiveInputStream), bucket, "text/xml; charset=utf-8", bucket.size());
+			} catch (IOException ioe1) {
+				logger.log(Level.SEVERE, "Could not name archive!", ioe1);
+				return null;
+			}
+		}
+
+		/**
+		 * Renders the template with the given name into a new bucket.
+		 *
+		 * @param templateName
+		 *            The name of the template
+		 * @param additionalProperties
+		 *            Properties to set in the template context, in addition
+		 *            to the properties of the Sone
+		 * @return The bucket containing the rendered template, or
+		 *         {@code null} if the template could not be rendered
+		 */
+		private RandomAccessBucket renderTemplate(String templateName, Map<String, Object> additionalProperties) {
+			Template template = getTemplate(templateName);
+			if (template == null) {
 				return null;
 			}
 
@@ -387,15 +546,42 @@ public class SoneInserter extends AbstractService {
 			templateContext.set("currentSone", soneProperties);
 			templateContext.set("currentEdition", core.getUpdateChecker().getLatestEdition());
 			templateContext.set("version", SonePlugin.getPluginVersion());
-			try (StringWriter writer = new StringWriter()) {
+			additionalProperties.forEach(templateContext::set);
+			RandomAccessBucket bucket = new ArrayBucket();
+			buckets.add(bucket);
+			try (Writer writer = new BufferedWriter(new OutputStreamWriter(bucket.getOutputStream(), utf8Charset))) {
 				template.render(templateContext, writer);
-				RandomAccessBucket bucket = new ArrayBucket(writer.toString().getBytes(Charsets.UTF_8));
-				buckets.add(bucket);
-				return new ManifestElement(name, bucket, contentType, bucket.size());
 			} catch (IOException | TemplateException e1) {
 				logger.log(Level.SEVERE, String.format("Could not render template “%s”!", templateName), e1);
 				return null;
 			}
+			return bucket;
+		}
+
+		/**
+		 * Returns the parsed template with the given name. Templates are only
+		 * parsed once and are shared by all manifest creators; templates that
+		 * can not be parsed are not cached.
+		 *
+		 * @param templateName
+		 *            The name of the template
+		 * @return The parsed template, or {@code null} if the template could
+		 *         not be parsed
+		 */
+		private Template getTemplate(String templateName) {
+			Template template = templates.get(templateName);
+			if (template != null) {
+				return template;
+			}
+			try (InputStream templateInputStream = getClass().getResourceAsStream(templateName);
+					InputStreamReader templateInputStreamReader = new InputStreamReader(templateInputStream, utf8Charset)) {
+				template = TemplateParser.parse(templateInputStreamReader);
+			} catch (IOException | TemplateException e1) {
+				logger.log(Level.SEVERE, String.format("Could not parse template “%s”!", templateName), e1);
+				return null;
+			}
+			Template existingTemplate = templates.putIfAbsent(templateName, template);
+			return (existingTemplate != null) ? existingTemplate : template;
 		}
 
 		public void close() {
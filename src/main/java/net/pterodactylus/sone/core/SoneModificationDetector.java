@@ -2,6 +2,7 @@ package net.pterodactylus.sone.core;
 
 import static com.google.common.base.Ticker.systemTicker;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -37,7 +38,7 @@ class SoneModificationDetector {
 		lastCheckFingerprint = lastInsertFingerprint;
 	}
 
-	public boolean isEligibleForInsert() {
+	public synchronized boolean isEligibleForInsert() {
 		if (lockableFingerprintProvider.isLocked()) {
 			lastModificationTime = null;
 			lastCheckFingerprint = "";
@@ -57,16 +58,41 @@ class SoneModificationDetector {
 		return insertionDelayHasPassed();
 	}
 
-	public String getLastInsertFingerprint() {
+	public synchronized String getLastInsertFingerprint() {
 		return lastInsertFingerprint;
 	}
 
-	public void setFingerprint(String fingerprint) {
+	public synchronized void setFingerprint(String fingerprint) {
 		lastInsertFingerprint = fingerprint;
 		lastCheckFingerprint = lastInsertFingerprint;
 		lastModificationTime = null;
 	}
 
+	/**
+	 * Returns the time of the last detected modification that has not been
+	 * inserted yet.
+	 *
+	 * @return The time of the last modification (as per the ticker), or
+	 *         {@code null} if no modification is pending
+	 */
+	public synchronized Long getModificationTime() {
+		return lastModificationTime;
+	}
+
+	/**
+	 * Returns the time until a detected modification is eligible for an
+	 * insert, if no further modification is detected.
+	 *
+	 * @return The time until the Sone is eligible for an insert (in
+	 *         nanoseconds), or {@code null} if no modification is pending
+	 */
+	public synchronized Long getTimeUntilEligible() {
+		if (lastModificationTime == null) {
+			return null;
+		}
+		return Math.max(0, SECONDS.toNanos(insertionDelay.get()) - (ticker.read() - lastModificationTime));
+	}
+
 	private boolean insertionDelayHasPassed() {
 		return NANOSECONDS.toSeconds(ticker.read() - lastModificationTime) >= insertionDelay.get();
 	}
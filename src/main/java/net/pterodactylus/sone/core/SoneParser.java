@@ -2,6 +2,7 @@ package net.pterodactylus.sone.core;
 
 import static java.util.concurrent.TimeUnit.*;
 import static java.util.logging.Logger.*;
+import static javax.xml.stream.XMLStreamConstants.*;
 import static net.pterodactylus.sone.utils.NumberParsers.*;
 
 import java.io.*;
@@ -10,328 +11,702 @@ import java.util.logging.*;
 
 import javax.annotation.*;
 import javax.inject.*;
+import javax.xml.stream.*;
 
 import net.pterodactylus.sone.data.*;
 import net.pterodactylus.sone.data.Profile.*;
 import net.pterodactylus.sone.database.*;
-import net.pterodactylus.util.xml.*;
 
 import com.codahale.metrics.*;
 import com.google.common.base.*;
-import org.w3c.dom.*;
+import com.google.common.base.Optional;
 
 /**
  * Parses a {@link Sone} from an XML {@link InputStream}.
+ * <p>
+ * The XML is read as a stream of events, and posts, replies, albums, and
+ * images are created as soon as their elements have been read, without
+ * building a document of the complete XML first. Every parse uses its own
+ * reader, so Sones can be parsed concurrently. Posts and replies that have
+ * not changed since the Sone was last stored are not created again; the
+ * stored instances are used instead.
+ * <p>
+ * Sones that exceed any of the {@link SoneParserLimits} are rejected as soon
+ * as the limit is exceeded, and counted in the {@code sone.parse.rejected}
+ * metric.
  */
 public class SoneParser {
 
 	private static final Logger logger = getLogger(SoneParser.class.getName());
 	private static final int MAX_PROTOCOL_VERSION = 0;
+	private static final ThreadLocal<XMLInputFactory> xmlInputFactory = ThreadLocal.withInitial(SoneParser::createXmlInputFactory);
 	private final Database database;
+	private final SoneParserLimits limits;
 	private final Histogram soneParsingDurationHistogram;
+	private final Counter rejectedSonesCounter;
 
-	@Inject
 	public SoneParser(Database database, MetricRegistry metricRegistry) {
+		this(database, metricRegistry, new SoneParserLimits());
+	}
+
+	@Inject
+	public SoneParser(Database database, MetricRegistry metricRegistry, SoneParserLimits limits) {
 		this.database = database;
+		this.limits = limits;
 		this.soneParsingDurationHistogram = metricRegistry.histogram("sone.parse.duration", () -> new Histogram(new ExponentiallyDecayingReservoir(3000, 0)));
+		this.rejectedSonesCounter = metricRegistry.counter("sone.parse.rejected");
 	}
 
 	@Nullable
 	public Sone parseSone(Sone originalSone, InputStream soneInputStream) throws SoneException {
-		/* TODO - impose a size limit? */
+		return parseSone(originalSone, soneInputStream, archiveName -> null);
+	}
 
+	/**
+	 * Parses a Sone whose posts and replies may be split into archives.
+	 * Every archive the Sone refers to is loaded from the given loader; if
+	 * any of them is not available, a {@link MissingArchiveException} is
+	 * thrown, because the Sone itself may be valid.
+	 *
+	 * @param originalSone
+	 * 		The Sone to parse
+	 * @param soneInputStream
+	 * 		The input stream containing the Sone’s XML
+	 * @param archiveLoader
+	 * 		The loader for the Sone’s archives
+	 * @return The parsed Sone, or {@code null} if the Sone could not be
+	 *         parsed
+	 * @throws MissingArchiveException
+	 * 		if an archive the Sone refers to is not available
+	 */
+	@Nullable
+	public Sone parseSone(Sone originalSone, InputStream soneInputStream, SoneArchiveLoader archiveLoader) throws SoneException {
 		Stopwatch stopwatch = Stopwatch.createStarted();
-		Document document;
-		/* XML parsing is not thread-safe. */
-		synchronized (this) {
-			document = XML.transformToDocument(soneInputStream);
-		}
-		if (document == null) {
-			/* TODO - mark Sone as bad. */
-			logger.log(Level.WARNING, String.format("Could not parse XML for Sone %s!", originalSone));
-			return null;
-		}
-
 		SoneBuilder soneBuilder = database.newSoneBuilder().from(originalSone.getIdentity());
 		if (originalSone.isLocal()) {
 			soneBuilder = soneBuilder.local();
 		}
 		Sone sone = soneBuilder.build();
 
-		SimpleXML soneXml;
+		SizeLimitingInputStream sizeLimitingInputStream = new SizeLimitingInputStream(soneInputStream, limits.getMaximumDocumentSize());
 		try {
-			soneXml = SimpleXML.fromDocument(document);
-		} catch (NullPointerException npe1) {
-			/* for some reason, invalid XML can cause NPEs. */
-			logger.log(Level.WARNING, String.format("XML for Sone %s can not be parsed!", sone), npe1);
+			XMLStreamReader xmlStreamReader = xmlInputFactory.get().createXMLStreamReader(sizeLimitingInputStream);
+			try {
+				new SoneXmlReader(sone, database.getSone(originalSone.getId()), xmlStreamReader, archiveLoader).read();
+			} finally {
+				xmlStreamReader.close();
+			}
+		} catch (LimitExceeded le1) {
+			rejectedSonesCounter.inc();
+			logger.log(Level.WARNING, String.format("Downloaded Sone %s exceeds the limit for %s!", originalSone, le1.getMessage()));
+			return null;
+		} catch (XMLStreamException xmlse1) {
+			if (sizeLimitingInputStream.isLimitExceeded()) {
+				rejectedSonesCounter.inc();
+				logger.log(Level.WARNING, String.format("Downloaded Sone %s exceeds the limit for its size!", originalSone));
+				return null;
+			}
+			logger.log(Level.WARNING, String.format("Could not parse XML for Sone %s!", originalSone), xmlse1);
+			return null;
+		} catch (InvalidSoneXml isx1) {
+			logger.log(Level.WARNING, isx1.getMessage(), isx1.getCause());
 			return null;
 		}
 
-		Integer protocolVersion = null;
-		String soneProtocolVersion = soneXml.getValue("protocol-version", null);
-		if (soneProtocolVersion != null) {
-			protocolVersion = parseInt(soneProtocolVersion, null);
-		}
-		if (protocolVersion == null) {
-			logger.log(Level.INFO, "No protocol version found, assuming 0.");
-			protocolVersion = 0;
+		// record the duration
+		stopwatch.stop();
+		soneParsingDurationHistogram.update(stopwatch.elapsed(MICROSECONDS));
+		logger.fine(() -> "Parsed " + originalSone.getIdentity().getId() + "@" + originalSone.getLatestEdition() + " in " + stopwatch.elapsed(MICROSECONDS) + "μs.");
+
+		return sone;
+
+	}
+
+	static XMLInputFactory createXmlInputFactory() {
+		XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+		xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return xmlInputFactory;
+	}
+
+	/**
+	 * Reads a single Sone from an {@link XMLStreamReader}. Of every element
+	 * that should only exist once, only the first is used.
+	 */
+	private class SoneXmlReader {
+
+		private final Sone sone;
+		private final SoneArchiveLoader archiveLoader;
+		private final Set<String> readElements = new HashSet<>();
+		private final List<String> archiveNames = new ArrayList<>();
+		private XMLStreamReader xmlStreamReader;
+		private String soneTime;
+		private Profile profile;
+		private String avatarId;
+		private Set<Post> posts;
+		private Set<PostReply> replies;
+		private Set<String> likedPostIds;
+		private Set<String> likedReplyIds;
+		private final List<Album> topLevelAlbums = new ArrayList<>();
+		private final Map<String, Album> allAlbums = new HashMap<>();
+		private final Map<String, Image> allImages = new HashMap<>();
+		private final Map<String, Post> storedPosts = new HashMap<>();
+		private final Map<String, PostReply> storedReplies = new HashMap<>();
+
+		private SoneXmlReader(Sone sone, @Nullable Sone storedSone, XMLStreamReader xmlStreamReader, SoneArchiveLoader archiveLoader) {
+			this.sone = sone;
+			this.xmlStreamReader = xmlStreamReader;
+			this.archiveLoader = archiveLoader;
+			if (storedSone != null) {
+				for (Post post : storedSone.getPosts()) {
+					storedPosts.put(post.getId(), post);
+				}
+				for (PostReply reply : storedSone.getReplies()) {
+					storedReplies.put(reply.getId(), reply);
+				}
+			}
 		}
 
-		if (protocolVersion < 0) {
-			logger.log(Level.WARNING, String.format("Invalid protocol version: %d! Not parsing Sone.", protocolVersion));
-			return null;
+		private void read() throws XMLStreamException, InvalidSoneXml, MissingArchiveException {
+			xmlStreamReader.nextTag();
+			readChildren(this::readSoneElement);
+			for (String archiveName : archiveNames) {
+				readArchive(archiveName);
+			}
+
+			if (!readElements.contains("protocol-version")) {
+				logger.log(Level.INFO, "No protocol version found, assuming 0.");
+			}
+
+			if (soneTime == null) {
+				throw new InvalidSoneXml(String.format("Downloaded time for Sone %s was null!", sone));
+			}
+			try {
+				sone.setTime(Long.parseLong(soneTime));
+			} catch (NumberFormatException nfe1) {
+				throw new InvalidSoneXml(String.format("Downloaded Sone %s with invalid time: %s", sone, soneTime));
+			}
+
+			if (profile == null) {
+				throw new InvalidSoneXml(String.format("Downloaded Sone %s has no profile!", sone));
+			}
+			if (posts == null) {
+				/* TODO - mark Sone as bad. */
+				logger.log(Level.WARNING, String.format("Downloaded Sone %s has no posts!", sone));
+			}
+			if (replies == null) {
+				/* TODO - mark Sone as bad. */
+				logger.log(Level.WARNING, String.format("Downloaded Sone %s has no replies!", sone));
+			}
+			if (likedPostIds == null) {
+				/* TODO - mark Sone as bad. */
+				logger.log(Level.WARNING, String.format("Downloaded Sone %s has no post likes!", sone));
+			}
+			if (likedReplyIds == null) {
+				/* TODO - mark Sone as bad. */
+				logger.log(Level.WARNING, String.format("Downloaded Sone %s has no reply likes!", sone));
+			}
+
+			/* process avatar. */
+			if (avatarId != null) {
+				profile.setAvatar(allImages.get(avatarId));
+			}
+
+			/* okay, apparently everything was parsed correctly. Now import. */
+			sone.setProfile(profile);
+			sone.setPosts((posts != null) ? posts : new HashSet<>());
+			sone.setReplies((replies != null) ? replies : new HashSet<>());
+			sone.setLikePostIds((likedPostIds != null) ? likedPostIds : new HashSet<>());
+			sone.setLikeReplyIds((likedReplyIds != null) ? likedReplyIds : new HashSet<>());
+			for (Album album : topLevelAlbums) {
+				sone.getRootAlbum().addAlbum(album);
+			}
 		}
 
-		/* check for valid versions. */
-		if (protocolVersion > MAX_PROTOCOL_VERSION) {
-			logger.log(Level.WARNING, String.format("Unknown protocol version: %d! Not parsing Sone.", protocolVersion));
-			return null;
+		private void readSoneElement(String elementName) throws XMLStreamException, InvalidSoneXml {
+			if (!readElements.add(elementName)) {
+				skipElement();
+				return;
+			}
+			switch (elementName) {
+				case "protocol-version":
+					checkProtocolVersion(readText());
+					break;
+				case "time":
+					soneTime = readText();
+					break;
+				case "client":
+					readClient();
+					break;
+				case "profile":
+					readProfile();
+					break;
+				case "posts":
+					posts = new HashSet<>();
+					readChildren("post", this::readPost);
+					break;
+				case "replies":
+					replies = new HashSet<>();
+					readChildren("reply", this::readReply);
+					break;
+				case "post-likes":
+					likedPostIds = new HashSet<>();
+					readChildren("post-like", () -> {
+						checkLimit(likedPostIds.size(), limits.getMaximumLikes(), "liked posts");
+						likedPostIds.add(readText());
+					});
+					break;
+				case "reply-likes":
+					likedReplyIds = new HashSet<>();
+					readChildren("reply-like", () -> {
+						checkLimit(likedReplyIds.size(), limits.getMaximumLikes(), "liked replies");
+						likedReplyIds.add(readText());
+					});
+					break;
+				case "albums":
+					readChildren("album", this::readAlbum);
+					break;
+				case "archives":
+					readChildren("archive", () -> {
+						checkLimit(archiveNames.size(), SoneArchivesKt.maximumArchives(limits), "archives");
+						String archiveName = readText();
+						if (!SoneArchivesKt.isArchiveName(archiveName)) {
+							throw new InvalidSoneXml(String.format("Downloaded Sone %s refers to invalid archive: %s", sone, archiveName));
+						}
+						archiveNames.add(archiveName);
+					});
+					break;
+				default:
+					skipElement();
+			}
 		}
 
-		String soneTime = soneXml.getValue("time", null);
-		if (soneTime == null) {
-			/* TODO - mark Sone as bad. */
-			logger.log(Level.WARNING, String.format("Downloaded time for Sone %s was null!", sone));
-			return null;
+		/**
+		 * Reads the posts and replies of the archive with the given name. The
+		 * archive is read with a reader of its own, which replaces the reader
+		 * of the Sone’s XML while the archive is being read.
+		 */
+		private void readArchive(String archiveName) throws XMLStreamException, InvalidSoneXml, MissingArchiveException {
+			XMLStreamReader soneXmlStreamReader = xmlStreamReader;
+			try (InputStream archiveInputStream = archiveLoader.loadArchive(archiveName)) {
+				if (archiveInputStream == null) {
+					throw new MissingArchiveException(String.format("Archive %s of Sone %s is not available!", archiveName, sone));
+				}
+				xmlStreamReader = xmlInputFactory.get().createXMLStreamReader(new SizeLimitingInputStream(archiveInputStream, limits.getMaximumDocumentSize()));
+				try {
+					xmlStreamReader.nextTag();
+					Set<String> readArchiveElements = new HashSet<>();
+					readChildren((elementName) -> {
+						if (!readArchiveElements.add(elementName)) {
+							skipElement();
+						} else if (elementName.equals("posts")) {
+							posts = (posts != null) ? posts : new HashSet<>();
+							readChildren("post", this::readPost);
+						} else if (elementName.equals("replies")) {
+							replies = (replies != null) ? replies : new HashSet<>();
+							readChildren("reply", this::readReply);
+						} else {
+							skipElement();
+						}
+					});
+				} finally {
+					xmlStreamReader.close();
+				}
+			} catch (IOException ioe1) {
+				throw new InvalidSoneXml(String.format("Could not load archive %s of Sone %s!", archiveName, sone), ioe1);
+			} finally {
+				xmlStreamReader = soneXmlStreamReader;
+			}
 		}
-		try {
-			sone.setTime(Long.parseLong(soneTime));
-		} catch (NumberFormatException nfe1) {
-			/* TODO - mark Sone as bad. */
-			logger.log(Level.WARNING, String.format("Downloaded Sone %s with invalid time: %s", sone, soneTime));
-			return null;
+
+		private void checkProtocolVersion(String soneProtocolVersion) throws InvalidSoneXml {
+			Integer protocolVersion = parseInt(soneProtocolVersion, null);
+			if (protocolVersion == null) {
+				logger.log(Level.INFO, "No protocol version found, assuming 0.");
+				protocolVersion = 0;
+			}
+			if (protocolVersion < 0) {
+				throw new InvalidSoneXml(String.format("Invalid protocol version: %d! Not parsing Sone.", protocolVersion));
+			}
+
+			/* check for valid versions. */
+			if (protocolVersion > MAX_PROTOCOL_VERSION) {
+				throw new InvalidSoneXml(String.format("Unknown protocol version: %d! Not parsing Sone.", protocolVersion));
+			}
 		}
 
-		SimpleXML clientXml = soneXml.getNode("client");
-		if (clientXml != null) {
-			String clientName = clientXml.getValue("name", null);
-			String clientVersion = clientXml.getValue("version", null);
+		private void readClient() throws XMLStreamException, InvalidSoneXml {
+			Map<String, String> clientValues = readValues();
+			String clientName = clientValues.get("name");
+			String clientVersion = clientValues.get("version");
 			if ((clientName == null) || (clientVersion == null)) {
-				logger.log(Level.WARNING, String.format("Download Sone %s with client XML but missing name or version!", sone));
-				return null;
+				throw new InvalidSoneXml(String.format("Download Sone %s with client XML but missing name or version!", sone));
 			}
 			sone.setClient(new Client(clientName, clientVersion));
 		}
 
-		SimpleXML profileXml = soneXml.getNode("profile");
-		if (profileXml == null) {
-			/* TODO - mark Sone as bad. */
-			logger.log(Level.WARNING, String.format("Downloaded Sone %s has no profile!", sone));
-			return null;
+		private void readProfile() throws XMLStreamException, InvalidSoneXml {
+			profile = new Profile(sone);
+			Set<String> readProfileElements = new HashSet<>();
+			readChildren((elementName) -> {
+				if (!readProfileElements.add(elementName)) {
+					skipElement();
+					return;
+				}
+				switch (elementName) {
+					case "first-name":
+						profile.setFirstName(readText());
+						break;
+					case "middle-name":
+						profile.setMiddleName(readText());
+						break;
+					case "last-name":
+						profile.setLastName(readText());
+						break;
+					case "birth-day":
+						profile.setBirthDay(parseInt(readText(), null));
+						break;
+					case "birth-month":
+						profile.setBirthMonth(parseInt(readText(), null));
+						break;
+					case "birth-year":
+						profile.setBirthYear(parseInt(readText(), null));
+						break;
+					case "avatar":
+						/* avatar is processed after images are loaded. */
+						avatarId = readText();
+						break;
+					case "fields":
+						readChildren("field", this::readProfileField);
+						break;
+					default:
+						skipElement();
+				}
+			});
+		}
+
+		private void readProfileField() throws XMLStreamException, InvalidSoneXml {
+			Map<String, String> fieldValues = readValues();
+			String fieldName = fieldValues.get("field-name");
+			String fieldValue = fieldValues.getOrDefault("field-value", "");
+			if (fieldName == null) {
+				throw new InvalidSoneXml(String.format("Downloaded profile field for Sone %s with missing data! Name: %s, Value: %s", sone, fieldName, fieldValue));
+			}
+			try {
+				profile.addField(fieldName.trim()).setValue(fieldValue);
+			} catch (EmptyFieldName efn1) {
+				throw new InvalidSoneXml("Empty field name!", efn1);
+			} catch (DuplicateField df1) {
+				throw new InvalidSoneXml(String.format("Duplicate field: %s", fieldName), df1);
+			}
 		}
 
-		/* parse profile. */
-		String profileFirstName = profileXml.getValue("first-name", null);
-		String profileMiddleName = profileXml.getValue("middle-name", null);
-		String profileLastName = profileXml.getValue("last-name", null);
-		Integer profileBirthDay = parseInt(profileXml.getValue("birth-day", ""), null);
-		Integer profileBirthMonth = parseInt(profileXml.getValue("birth-month", ""), null);
-		Integer profileBirthYear = parseInt(profileXml.getValue("birth-year", ""), null);
-		Profile profile = new Profile(sone).setFirstName(profileFirstName).setMiddleName(profileMiddleName).setLastName(profileLastName);
-		profile.setBirthDay(profileBirthDay).setBirthMonth(profileBirthMonth).setBirthYear(profileBirthYear);
-		/* avatar is processed after images are loaded. */
-		String avatarId = profileXml.getValue("avatar", null);
-
-		/* parse profile fields. */
-		SimpleXML profileFieldsXml = profileXml.getNode("fields");
-		if (profileFieldsXml != null) {
-			for (SimpleXML fieldXml : profileFieldsXml.getNodes("field")) {
-				String fieldName = fieldXml.getValue("field-name", null);
-				String fieldValue = fieldXml.getValue("field-value", "");
-				if (fieldName == null) {
-					logger.log(Level.WARNING, String.format("Downloaded profile field for Sone %s with missing data! Name: %s, Value: %s", sone, fieldName, fieldValue));
-					return null;
+		private void readPost() throws XMLStreamException, InvalidSoneXml {
+			checkLimit(posts.size(), limits.getMaximumPosts(), "posts");
+			Map<String, String> postValues = readValues();
+			String postId = postValues.get("id");
+			String postRecipientId = postValues.get("recipient");
+			String postTime = postValues.get("time");
+			String postText = postValues.get("text");
+			if ((postId == null) || (postTime == null) || (postText == null)) {
+				throw new InvalidSoneXml(String.format("Downloaded post for Sone %s with missing data! ID: %s, Time: %s, Text: %s", sone, postId, postTime, postText));
+			}
+			try {
+				/* TODO - parse time correctly. */
+				long time = Long.parseLong(postTime);
+				Optional<String> recipientId = ((postRecipientId != null) && (postRecipientId.length() == 43)) ? Optional.of(postRecipientId) : Optional.absent();
+				Post storedPost = storedPosts.get(postId);
+				if ((storedPost != null) && (storedPost.getTime() == time) && storedPost.getText().equals(postText) && storedPost.getRecipientId().equals(recipientId)) {
+					posts.add(storedPost);
+					return;
 				}
-				try {
-					profile.addField(fieldName.trim()).setValue(fieldValue);
-				} catch (EmptyFieldName efn1) {
-					logger.log(Level.WARNING, "Empty field name!", efn1);
-					return null;
-				} catch (DuplicateField df1) {
-					logger.log(Level.WARNING, String.format("Duplicate field: %s", fieldName), df1);
-					return null;
+				PostBuilder postBuilder = database.newPostBuilder();
+				postBuilder.withId(postId).from(sone.getId()).withTime(time).withText(postText);
+				if (recipientId.isPresent()) {
+					postBuilder.to(recipientId.get());
 				}
+				posts.add(postBuilder.build());
+			} catch (NumberFormatException nfe1) {
+				throw new InvalidSoneXml(String.format("Downloaded post for Sone %s with invalid time: %s", sone, postTime));
 			}
 		}
 
-		/* parse posts. */
-		SimpleXML postsXml = soneXml.getNode("posts");
-		Set<Post> posts = new HashSet<>();
-		if (postsXml == null) {
-			/* TODO - mark Sone as bad. */
-			logger.log(Level.WARNING, String.format("Downloaded Sone %s has no posts!", sone));
-		} else {
-			for (SimpleXML postXml : postsXml.getNodes("post")) {
-				String postId = postXml.getValue("id", null);
-				String postRecipientId = postXml.getValue("recipient", null);
-				String postTime = postXml.getValue("time", null);
-				String postText = postXml.getValue("text", null);
-				if ((postId == null) || (postTime == null) || (postText == null)) {
-					/* TODO - mark Sone as bad. */
-					logger.log(Level.WARNING, String.format("Downloaded post for Sone %s with missing data! ID: %s, Time: %s, Text: %s", sone, postId, postTime, postText));
-					return null;
-				}
-				try {
-					PostBuilder postBuilder = database.newPostBuilder();
-					/* TODO - parse time correctly. */
-					postBuilder.withId(postId).from(sone.getId()).withTime(Long.parseLong(postTime)).withText(postText);
-					if ((postRecipientId != null) && (postRecipientId.length() == 43)) {
-						postBuilder.to(postRecipientId);
-					}
-					posts.add(postBuilder.build());
-				} catch (NumberFormatException nfe1) {
-					/* TODO - mark Sone as bad. */
-					logger.log(Level.WARNING, String.format("Downloaded post for Sone %s with invalid time: %s", sone, postTime));
-					return null;
+		private void readReply() throws XMLStreamException, InvalidSoneXml {
+			checkLimit(replies.size(), limits.getMaximumReplies(), "replies");
+			Map<String, String> replyValues = readValues();
+			String replyId = replyValues.get("id");
+			String replyPostId = replyValues.get("post-id");
+			String replyTime = replyValues.get("time");
+			String replyText = replyValues.get("text");
+			if ((replyId == null) || (replyPostId == null) || (replyTime == null) || (replyText == null)) {
+				throw new InvalidSoneXml(String.format("Downloaded reply for Sone %s with missing data! ID: %s, Post: %s, Time: %s, Text: %s", sone, replyId, replyPostId, replyTime, replyText));
+			}
+			try {
+				/* TODO - parse time correctly. */
+				long time = Long.parseLong(replyTime);
+				PostReply storedReply = storedReplies.get(replyId);
+				if ((storedReply != null) && (storedReply.getTime() == time) && storedReply.getText().equals(replyText) && storedReply.getPostId().equals(replyPostId)) {
+					replies.add(storedReply);
+					return;
 				}
+				PostReplyBuilder postReplyBuilder = database.newPostReplyBuilder();
+				postReplyBuilder.withId(replyId).from(sone.getId()).to(replyPostId).withTime(time).withText(replyText);
+				replies.add(postReplyBuilder.build());
+			} catch (NumberFormatException nfe1) {
+				throw new InvalidSoneXml(String.format("Downloaded reply for Sone %s with invalid time: %s", sone, replyTime));
 			}
 		}
 
-		/* parse replies. */
-		SimpleXML repliesXml = soneXml.getNode("replies");
-		Set<PostReply> replies = new HashSet<>();
-		if (repliesXml == null) {
-			/* TODO - mark Sone as bad. */
-			logger.log(Level.WARNING, String.format("Downloaded Sone %s has no replies!", sone));
-		} else {
-			for (SimpleXML replyXml : repliesXml.getNodes("reply")) {
-				String replyId = replyXml.getValue("id", null);
-				String replyPostId = replyXml.getValue("post-id", null);
-				String replyTime = replyXml.getValue("time", null);
-				String replyText = replyXml.getValue("text", null);
-				if ((replyId == null) || (replyPostId == null) || (replyTime == null) || (replyText == null)) {
-					/* TODO - mark Sone as bad. */
-					logger.log(Level.WARNING, String.format("Downloaded reply for Sone %s with missing data! ID: %s, Post: %s, Time: %s, Text: %s", sone, replyId, replyPostId, replyTime, replyText));
-					return null;
+		private void readAlbum() throws XMLStreamException, InvalidSoneXml {
+			checkLimit(allAlbums.size(), limits.getMaximumAlbums(), "albums");
+			Map<String, String> albumValues = new HashMap<>();
+			List<Map<String, String>> imageValues = new ArrayList<>();
+			Set<String> readAlbumElements = new HashSet<>();
+			readChildren((elementName) -> {
+				if (!readAlbumElements.add(elementName)) {
+					skipElement();
+				} else if (elementName.equals("images")) {
+					readChildren("image", () -> {
+						checkLimit(allImages.size() + imageValues.size(), limits.getMaximumImages(), "images");
+						imageValues.add(readValues());
+					});
+				} else {
+					albumValues.put(elementName, readText());
 				}
-				try {
-					PostReplyBuilder postReplyBuilder = database.newPostReplyBuilder();
-					/* TODO - parse time correctly. */
-					postReplyBuilder.withId(replyId).from(sone.getId()).to(replyPostId).withTime(Long.parseLong(replyTime)).withText(replyText);
-					replies.add(postReplyBuilder.build());
-				} catch (NumberFormatException nfe1) {
-					/* TODO - mark Sone as bad. */
-					logger.log(Level.WARNING, String.format("Downloaded reply for Sone %s with invalid time: %s", sone, replyTime));
-					return null;
+			});
+
+			String id = albumValues.get("id");
+			String parentId = albumValues.get("parent");
+			String title = albumValues.get("title");
+			String description = albumValues.getOrDefault("description", "");
+			if ((id == null) || (title == null)) {
+				throw new InvalidSoneXml(String.format("Downloaded Sone %s contains invalid album!", sone));
+			}
+			Album parent = null;
+			if (parentId != null) {
+				parent = allAlbums.get(parentId);
+				if (parent == null) {
+					throw new InvalidSoneXml(String.format("Downloaded Sone %s has album with invalid parent!", sone));
 				}
 			}
+			Album album = database.newAlbumBuilder()
+					.withId(id)
+					.by(sone)
+					.build()
+					.modify()
+					.setTitle(title)
+					.setDescription(description)
+					.update();
+			if (parent != null) {
+				parent.addAlbum(album);
+			} else {
+				topLevelAlbums.add(album);
+			}
+			allAlbums.put(album.getId(), album);
+			for (Map<String, String> image : imageValues) {
+				album.addImage(createImage(image));
+			}
 		}
 
-		/* parse liked post IDs. */
-		SimpleXML likePostIdsXml = soneXml.getNode("post-likes");
-		Set<String> likedPostIds = new HashSet<>();
-		if (likePostIdsXml == null) {
-			/* TODO - mark Sone as bad. */
-			logger.log(Level.WARNING, String.format("Downloaded Sone %s has no post likes!", sone));
-		} else {
-			for (SimpleXML likedPostIdXml : likePostIdsXml.getNodes("post-like")) {
-				String postId = likedPostIdXml.getValue();
-				likedPostIds.add(postId);
+		private Image createImage(Map<String, String> imageValues) throws InvalidSoneXml {
+			String imageId = imageValues.get("id");
+			String imageCreationTimeString = imageValues.get("creation-time");
+			String imageKey = imageValues.get("key");
+			String imageTitle = imageValues.get("title");
+			String imageDescription = imageValues.getOrDefault("description", "");
+			String imageWidthString = imageValues.get("width");
+			String imageHeightString = imageValues.get("height");
+			if ((imageId == null) || (imageCreationTimeString == null) || (imageKey == null) || (imageTitle == null) || (imageWidthString == null) || (imageHeightString == null)) {
+				throw new InvalidSoneXml(String.format("Downloaded Sone %s contains invalid images!", sone));
+			}
+			long creationTime = parseLong(imageCreationTimeString, 0L);
+			int imageWidth = parseInt(imageWidthString, 0);
+			int imageHeight = parseInt(imageHeightString, 0);
+			if ((imageWidth < 1) || (imageHeight < 1)) {
+				throw new InvalidSoneXml(String.format("Downloaded Sone %s contains image %s with invalid dimensions (%s, %s)!", sone, imageId, imageWidthString, imageHeightString));
 			}
+			Image image = database.newImageBuilder().withId(imageId).build().modify().setSone(sone).setKey(imageKey).setCreationTime(creationTime).update();
+			image = image.modify().setTitle(imageTitle).setDescription(imageDescription).update();
+			image = image.modify().setWidth(imageWidth).setHeight(imageHeight).update();
+			allImages.put(imageId, image);
+			return image;
 		}
 
-		/* parse liked reply IDs. */
-		SimpleXML likeReplyIdsXml = soneXml.getNode("reply-likes");
-		Set<String> likedReplyIds = new HashSet<>();
-		if (likeReplyIdsXml == null) {
-			/* TODO - mark Sone as bad. */
-			logger.log(Level.WARNING, String.format("Downloaded Sone %s has no reply likes!", sone));
-		} else {
-			for (SimpleXML likedReplyIdXml : likeReplyIdsXml.getNodes("reply-like")) {
-				String replyId = likedReplyIdXml.getValue();
-				likedReplyIds.add(replyId);
+		private void checkLimit(int currentCount, int maximumCount, String limitName) throws LimitExceeded {
+			if (currentCount >= maximumCount) {
+				throw new LimitExceeded(limitName);
 			}
 		}
 
-		/* parse albums. */
-		SimpleXML albumsXml = soneXml.getNode("albums");
-		Map<String, Image> allImages = new HashMap<>();
-		List<Album> topLevelAlbums = new ArrayList<>();
-		Map<String, Album> allAlbums = new HashMap<>();
-		if (albumsXml != null) {
-			for (SimpleXML albumXml : albumsXml.getNodes("album")) {
-				String id = albumXml.getValue("id", null);
-				String parentId = albumXml.getValue("parent", null);
-				String title = albumXml.getValue("title", null);
-				String description = albumXml.getValue("description", "");
-				if ((id == null) || (title == null)) {
-					logger.log(Level.WARNING, String.format("Downloaded Sone %s contains invalid album!", sone));
-					return null;
-				}
-				Album parent = null;
-				if (parentId != null) {
-					parent = allAlbums.get(parentId);
-					if (parent == null) {
-						logger.log(Level.WARNING, String.format("Downloaded Sone %s has album with invalid parent!", sone));
-						return null;
-					}
+		/**
+		 * Reads the children of the current element, which only contain
+		 * text, into a map from their names to their texts.
+		 */
+		private Map<String, String> readValues() throws XMLStreamException, InvalidSoneXml {
+			Map<String, String> values = new HashMap<>();
+			readChildren((elementName) -> {
+				if (values.containsKey(elementName)) {
+					skipElement();
+				} else {
+					values.put(elementName, readText());
 				}
-				Album album = database.newAlbumBuilder()
-						.withId(id)
-						.by(sone)
-						.build()
-						.modify()
-						.setTitle(title)
-						.setDescription(description)
-						.update();
-				if (parent != null) {
-					parent.addAlbum(album);
+			});
+			return values;
+		}
+
+		private void readChildren(String childName, ChildReader childReader) throws XMLStreamException, InvalidSoneXml {
+			readChildren((elementName) -> {
+				if (elementName.equals(childName)) {
+					childReader.read();
 				} else {
-					topLevelAlbums.add(album);
+					skipElement();
 				}
-				allAlbums.put(album.getId(), album);
-				SimpleXML imagesXml = albumXml.getNode("images");
-				if (imagesXml != null) {
-					for (SimpleXML imageXml : imagesXml.getNodes("image")) {
-						String imageId = imageXml.getValue("id", null);
-						String imageCreationTimeString = imageXml.getValue("creation-time", null);
-						String imageKey = imageXml.getValue("key", null);
-						String imageTitle = imageXml.getValue("title", null);
-						String imageDescription = imageXml.getValue("description", "");
-						String imageWidthString = imageXml.getValue("width", null);
-						String imageHeightString = imageXml.getValue("height", null);
-						if ((imageId == null) || (imageCreationTimeString == null) || (imageKey == null) || (imageTitle == null) || (imageWidthString == null) || (imageHeightString == null)) {
-							logger.log(Level.WARNING, String.format("Downloaded Sone %s contains invalid images!", sone));
-							return null;
-						}
-						long creationTime = parseLong(imageCreationTimeString, 0L);
-						int imageWidth = parseInt(imageWidthString, 0);
-						int imageHeight = parseInt(imageHeightString, 0);
-						if ((imageWidth < 1) || (imageHeight < 1)) {
-							logger.log(Level.WARNING, String.format("Downloaded Sone %s contains image %s with invalid dimensions (%s, %s)!", sone, imageId, imageWidthString, imageHeightString));
-							return null;
-						}
-						Image image = database.newImageBuilder().withId(imageId).build().modify().setSone(sone).setKey(imageKey).setCreationTime(creationTime).update();
-						image = image.modify().setTitle(imageTitle).setDescription(imageDescription).update();
-						image = image.modify().setWidth(imageWidth).setHeight(imageHeight).update();
-						album.addImage(image);
-						allImages.put(imageId, image);
+			});
+		}
+
+		/**
+		 * Hands every child element of the current element to the given
+		 * reader, which has to consume the complete child element. Returns
+		 * when the end of the current element has been reached.
+		 */
+		private void readChildren(ElementReader elementReader) throws XMLStreamException, InvalidSoneXml {
+			while (xmlStreamReader.hasNext()) {
+				int event = xmlStreamReader.next();
+				if (event == START_ELEMENT) {
+					elementReader.read(xmlStreamReader.getLocalName());
+				} else if (event == END_ELEMENT) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Reads the text of the current element, ignoring the text of any
+		 * elements nested in it.
+		 */
+		private String readText() throws XMLStreamException, LimitExceeded {
+			StringBuilder text = new StringBuilder();
+			while (xmlStreamReader.hasNext()) {
+				int event = xmlStreamReader.next();
+				if ((event == CHARACTERS) || (event == CDATA) || (event == SPACE)) {
+					if ((text.length() + xmlStreamReader.getTextLength()) > limits.getMaximumTextLength()) {
+						throw new LimitExceeded("text length");
 					}
+					text.append(xmlStreamReader.getText());
+				} else if (event == START_ELEMENT) {
+					skipElement();
+				} else if (event == END_ELEMENT) {
+					break;
 				}
 			}
+			return text.toString();
 		}
 
-		/* process avatar. */
-		if (avatarId != null) {
-			profile.setAvatar(allImages.get(avatarId));
+		private void skipElement() throws XMLStreamException {
+			int depth = 1;
+			while ((depth > 0) && xmlStreamReader.hasNext()) {
+				int event = xmlStreamReader.next();
+				if (event == START_ELEMENT) {
+					depth++;
+				} else if (event == END_ELEMENT) {
+					depth--;
+				}
+			}
 		}
 
-		/* okay, apparently everything was parsed correctly. Now import. */
-		sone.setProfile(profile);
-		sone.setPosts(posts);
-		sone.setReplies(replies);
-		sone.setLikePostIds(likedPostIds);
-		sone.setLikeReplyIds(likedReplyIds);
-		for (Album album : topLevelAlbums) {
-			sone.getRootAlbum().addAlbum(album);
+	}
+
+	private interface ElementReader {
+
+		void read(String elementName) throws XMLStreamException, InvalidSoneXml;
+
+	}
+
+	private interface ChildReader {
+
+		void read() throws XMLStreamException, InvalidSoneXml;
+
+	}
+
+	/**
+	 * Signals that the XML of a Sone was well-formed but did not describe a
+	 * valid Sone.
+	 */
+	private static class InvalidSoneXml extends Exception {
+
+		private InvalidSoneXml(String message) {
+			super(message);
 		}
 
-		// record the duration
-		stopwatch.stop();
-		soneParsingDurationHistogram.update(stopwatch.elapsed(MICROSECONDS));
-		logger.fine(() -> "Parsed " + originalSone.getIdentity().getId() + "@" + originalSone.getLatestEdition() + " in " + stopwatch.elapsed(MICROSECONDS) + "μs.");
+		private InvalidSoneXml(String message, Throwable cause) {
+			super(message, cause);
+		}
 
-		return sone;
+	}
+
+	/**
+	 * Signals that a Sone exceeds one of the {@link SoneParserLimits}.
+	 */
+	private static class LimitExceeded extends InvalidSoneXml {
+
+		private LimitExceeded(String limitName) {
+			super(limitName);
+		}
+
+	}
+
+	/**
+	 * Input stream that ends once more than a given number of bytes have
+	 * been read, and remembers that it did.
+	 */
+	private static class SizeLimitingInputStream extends FilterInputStream {
+
+		private long remainingBytes;
+		private boolean limitExceeded;
+
+		private SizeLimitingInputStream(InputStream inputStream, long maximumSize) {
+			super(inputStream);
+			this.remainingBytes = maximumSize;
+		}
+
+		public boolean isLimitExceeded() {
+			return limitExceeded;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] singleByte = new byte[1];
+			return (read(singleByte, 0, 1) == -1) ? -1 : (singleByte[0] & 0xff);
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (remainingBytes < 0) {
+				return -1;
+			}
+			int readBytes = super.read(buffer, offset, (int) Math.min(length, remainingBytes + 1));
+			if (readBytes > remainingBytes) {
+				limitExceeded = true;
+				remainingBytes = -1;
+				return -1;
+			}
+			if (readBytes > 0) {
+				remainingBytes -= readBytes;
+			}
+			return readBytes;
+		}
+
+		@Override
+		public long skip(long count) throws IOException {
+			int skipLength = (int) Math.min(count, 8192);
+			return Math.max(0, read(new byte[skipLength], 0, skipLength));
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
 
 	}
 
@@ -17,16 +17,48 @@
 
 package net.pterodactylus.sone.core;
 
+import static java.util.logging.Logger.getLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.util.service.AbstractService;
+import net.pterodactylus.util.thread.NamedThreadFactory;
 import freenet.keys.FreenetURI;
 
 /**
  * The Sone rescuer downloads older editions of a Sone and updates the currently
  * stored Sone with it.
+ * <p>
+ * Editions can either be fetched one at a time, or the rescuer can search for
+ * the newest edition that can be downloaded, fetching a window of editions at
+ * once. Successfully downloaded editions are kept until they are restored, so
+ * fetching an edition again does not download it again. A restored edition
+ * becomes the stored Sone and is modified from then on, so it is removed
+ * from the downloaded editions, and downloaded again if it is restored again.
  */
 public class SoneRescuer extends AbstractService {
 
+	/** The logger. */
+	private static final Logger logger = getLogger(SoneRescuer.class.getName());
+
+	/** The default number of editions that are fetched at once. */
+	public static final int DEFAULT_WINDOW_SIZE = 10;
+
+	/** The maximum number of editions that are fetched at once. */
+	private static final int MAXIMUM_WINDOW_SIZE = 50;
+
 	/** The core. */
 	private final Core core;
 
@@ -36,9 +68,21 @@ public class SoneRescuer extends AbstractService {
 	/** The Sone being rescued. */
 	private final Sone sone;
 
+	/** The executor for fetching editions. */
+	private final ExecutorService fetchExecutor;
+
+	/** The successfully downloaded editions. */
+	private final Map<Long, Sone> fetchedSones = new ConcurrentHashMap<>();
+
 	/** Whether the rescuer is currently fetching a Sone. */
 	private volatile boolean fetching;
 
+	/** Whether the rescuer is currently searching for a Sone. */
+	private volatile boolean searching;
+
+	/** The number of editions that are fetched at once. */
+	private volatile int windowSize = DEFAULT_WINDOW_SIZE;
+
 	/** The currently tried edition. */
 	private volatile long currentEdition;
 
@@ -60,6 +104,7 @@ public class SoneRescuer extends AbstractService {
 		this.core = core;
 		this.soneDownloader = soneDownloader;
 		this.sone = sone;
+		this.fetchExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("Sone Rescuer %2$d"));
 		currentEdition = sone.getRequestUri().getEdition();
 	}
 
@@ -77,6 +122,28 @@ public class SoneRescuer extends AbstractService {
 		return fetching;
 	}
 
+	/**
+	 * Returns whether the Sone rescuer is currently searching for the newest
+	 * edition that can be downloaded.
+	 *
+	 * @return {@code true} if the Sone rescuer is currently searching
+	 */
+	@SuppressWarnings("unused") // used in rescue.html
+	public boolean isSearching() {
+		return searching;
+	}
+
+	/**
+	 * Returns the number of editions that are fetched at once while
+	 * searching.
+	 *
+	 * @return The number of editions that are fetched at once
+	 */
+	@SuppressWarnings("unused") // used in rescue.html
+	public int getWindowSize() {
+		return windowSize;
+	}
+
 	/**
 	 * Returns the edition that is currently being downloaded.
 	 *
@@ -87,6 +154,17 @@ public class SoneRescuer extends AbstractService {
 		return currentEdition;
 	}
 
+	/**
+	 * Returns the oldest edition that is currently being downloaded while
+	 * searching.
+	 *
+	 * @return The oldest edition that is currently being downloaded
+	 */
+	@SuppressWarnings("unused") // used in rescue.html
+	public long getLastWindowEdition() {
+		return Math.max(0, currentEdition - windowSize + 1);
+	}
+
 	/**
 	 * Returns whether the Sone rescuer can download a next edition.
 	 *
@@ -144,6 +222,22 @@ public class SoneRescuer extends AbstractService {
 		notifySyncObject();
 	}
 
+	/**
+	 * Starts searching for the newest edition that can be downloaded,
+	 * starting at the current edition. The given number of editions is
+	 * fetched at once; the search stops at the first window that contains an
+	 * edition that could be downloaded, and the newest of those editions is
+	 * used.
+	 *
+	 * @param windowSize
+	 *            The number of editions to fetch at once
+	 */
+	public void startSearch(int windowSize) {
+		this.windowSize = Math.min(Math.max(windowSize, 1), MAXIMUM_WINDOW_SIZE);
+		searching = true;
+		notifySyncObject();
+	}
+
 	//
 	// SERVICE METHODS
 	//
@@ -154,22 +248,98 @@ public class SoneRescuer extends AbstractService {
 	@Override
 	protected void serviceRun() {
 		while (!shouldStop()) {
-			while (!shouldStop() && !fetching) {
+			while (!shouldStop() && !fetching && !searching) {
 				sleep();
 			}
 			if (fetching) {
 				core.lockSone(sone);
-				FreenetURI soneUri = sone.getRequestUri().setKeyType("SSK").setDocName("Sone-" + currentEdition).setMetaString(new String[] { "sone.xml" });
-				System.out.println("URI: " + soneUri);
-				Sone fetchedSone = soneDownloader.fetchSone(sone, soneUri, true);
-				System.out.println("Sone: " + fetchedSone);
+				Sone fetchedSone = fetchEdition(currentEdition);
 				lastFetchSuccessful = (fetchedSone != null);
 				if (lastFetchSuccessful) {
-					core.updateSone(fetchedSone, true);
+					restoreEdition(currentEdition, fetchedSone);
 				}
 				fetching = false;
+			} else if (searching) {
+				core.lockSone(sone);
+				searchWindow();
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void serviceStop() {
+		fetchExecutor.shutdownNow();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Fetches all editions of the current window concurrently. If any of them
+	 * could be downloaded, the newest of them is used and the search ends;
+	 * otherwise the search continues with the next older window.
+	 */
+	private void searchWindow() {
+		long lastEdition = getLastWindowEdition();
+		List<Future<Sone>> fetches = new ArrayList<>();
+		for (long edition = currentEdition; edition >= lastEdition; edition--) {
+			long windowEdition = edition;
+			fetches.add(fetchExecutor.submit(() -> fetchEdition(windowEdition)));
+		}
+		for (int index = 0; index < fetches.size(); index++) {
+			Sone fetchedSone = getFetchedSone(fetches.get(index));
+			if (fetchedSone != null) {
+				currentEdition -= index;
+				lastFetchSuccessful = true;
+				restoreEdition(currentEdition, fetchedSone);
+				searching = false;
+				return;
 			}
 		}
+		lastFetchSuccessful = false;
+		if (lastEdition == 0) {
+			currentEdition = 0;
+			searching = false;
+		} else {
+			currentEdition = lastEdition - 1;
+		}
+	}
+
+	private void restoreEdition(long edition, Sone fetchedSone) {
+		fetchedSones.remove(edition);
+		core.updateSone(fetchedSone, true);
+	}
+
+	@Nullable
+	private Sone fetchEdition(long edition) {
+		Sone fetchedSone = fetchedSones.get(edition);
+		if (fetchedSone != null) {
+			return fetchedSone;
+		}
+		FreenetURI soneUri = sone.getRequestUri().setKeyType("SSK").setDocName("Sone-" + edition).setMetaString(new String[] { "sone.xml" });
+		logger.log(Level.FINE, () -> String.format("Fetching edition %d of %s from %s…", edition, sone, soneUri));
+		fetchedSone = soneDownloader.fetchSone(sone, soneUri, true);
+		if (fetchedSone != null) {
+			fetchedSones.put(edition, fetchedSone);
+		}
+		return fetchedSone;
+	}
+
+	@Nullable
+	private Sone getFetchedSone(Future<Sone> fetch) {
+		try {
+			return fetch.get();
+		} catch (InterruptedException ie1) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException ee1) {
+			logger.log(Level.WARNING, "Could not fetch edition!", ee1.getCause());
+			return null;
+		}
 	}
 
 }
@@ -50,6 +50,37 @@ public interface Sone extends Identified, Fingerprintable, Comparable<Sone> {
 
 		/** The Sone is currently being downloaded. */
 		downloading,
+
+		/**
+		 * The last editions of the Sone could not be parsed, so it is only
+		 * downloaded rarely.
+		 */
+		quarantined,
+	}
+
+	/**
+	 * The parts of a {@link Sone} whose modifications are
+	 * {@link #getModifications(SonePart) counted} separately.
+	 */
+	public enum SonePart {
+
+		/** The profile of the Sone. */
+		profile,
+
+		/** The posts of the Sone. */
+		posts,
+
+		/** The replies of the Sone. */
+		replies,
+
+		/** The IDs of the posts the Sone likes. */
+		likedPosts,
+
+		/** The IDs of the replies the Sone likes. */
+		likedReplies,
+
+		/** The albums and images of the Sone. */
+		albums,
 	}
 
 	/**
@@ -397,4 +428,15 @@ public interface Sone extends Identified, Fingerprintable, Comparable<Sone> {
 	/* TODO - remove this method again, maybe add an option provider */
 	void setOptions(@Nonnull SoneOptions options);
 
+	/**
+	 * Returns the number of modifications of the given part of this Sone.
+	 * The number never decreases, so the part has not been modified as long
+	 * as the number does not change.
+	 *
+	 * @param part
+	 * 		The part of this Sone
+	 * @return The number of modifications of the part
+	 */
+	long getModifications(@Nonnull SonePart part);
+
 }
@@ -25,6 +25,7 @@ import com.google.common.collect.*;
 import com.google.common.hash.Hashing;
 import com.google.common.hash.*;
 import net.pterodactylus.sone.data.*;
+import net.pterodactylus.sone.data.Sone.SonePart;
 
 import static com.google.common.base.Preconditions.*;
 import static java.nio.charset.StandardCharsets.*;
@@ -100,6 +101,7 @@ public class AlbumImpl implements Album {
 		album.setParent(this);
 		if (!albums.contains(album)) {
 			albums.add(album);
+			modified();
 		}
 	}
 
@@ -110,6 +112,7 @@ public class AlbumImpl implements Album {
 		checkArgument(equals(album.getParent()), "album must belong to this album");
 		albums.remove(album);
 		album.removeParent();
+		modified();
 	}
 
 	@Override
@@ -123,6 +126,7 @@ public class AlbumImpl implements Album {
 		}
 		albums.remove(oldIndex);
 		albums.add(oldIndex - 1, album);
+		modified();
 		return albums.get(oldIndex);
 	}
 
@@ -137,6 +141,7 @@ public class AlbumImpl implements Album {
 		}
 		albums.remove(oldIndex);
 		albums.add(oldIndex + 1, album);
+		modified();
 		return albums.get(oldIndex);
 	}
 
@@ -164,6 +169,7 @@ public class AlbumImpl implements Album {
 		if (!imageIds.contains(image.getId())) {
 			imageIds.add(image.getId());
 			images.put(image.getId(), image);
+			modified();
 		}
 	}
 
@@ -174,6 +180,7 @@ public class AlbumImpl implements Album {
 		checkArgument(image.getSone().equals(sone), "image must belong to the same Sone as this album");
 		imageIds.remove(image.getId());
 		images.remove(image.getId());
+		modified();
 	}
 
 	@Override
@@ -188,6 +195,7 @@ public class AlbumImpl implements Album {
 		}
 		imageIds.remove(image.getId());
 		imageIds.add(oldIndex - 1, image.getId());
+		modified();
 		return images.get(imageIds.get(oldIndex));
 	}
 
@@ -203,6 +211,7 @@ public class AlbumImpl implements Album {
 		}
 		imageIds.remove(image.getId());
 		imageIds.add(oldIndex + 1, image.getId());
+		modified();
 		return images.get(imageIds.get(oldIndex));
 	}
 
@@ -275,11 +284,22 @@ public class AlbumImpl implements Album {
 				if (description != null) {
 					AlbumImpl.this.description = description;
 				}
+				modified();
 				return AlbumImpl.this;
 			}
 		};
 	}
 
+	/**
+	 * Notes the modification of this album in its Sone so that the Sone’s
+	 * fingerprint is calculated again.
+	 */
+	private void modified() {
+		if (sone instanceof SoneImpl) {
+			((SoneImpl) sone).modified(SonePart.albums);
+		}
+	}
+
 	//
 	// FINGERPRINTABLE METHODS
 	//
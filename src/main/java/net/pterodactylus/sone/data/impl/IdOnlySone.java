@@ -218,6 +218,11 @@ public class IdOnlySone implements Sone {
 	public void setOptions(SoneOptions options) {
 	}
 
+	@Override
+	public long getModifications(SonePart part) {
+		return 0;
+	}
+
 	@Override
 	public int compareTo(Sone o) {
 		return 0;
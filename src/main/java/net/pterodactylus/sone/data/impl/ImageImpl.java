@@ -21,6 +21,7 @@ import javax.annotation.*;
 
 import com.google.common.hash.*;
 import net.pterodactylus.sone.data.*;
+import net.pterodactylus.sone.data.Sone.SonePart;
 
 import static com.google.common.base.Preconditions.*;
 import static java.nio.charset.StandardCharsets.*;
@@ -227,6 +228,9 @@ public class ImageImpl implements Image {
 				if (height != null) {
 					ImageImpl.this.height = height;
 				}
+				if (ImageImpl.this.sone instanceof SoneImpl) {
+					((SoneImpl) ImageImpl.this.sone).modified(SonePart.albums);
+				}
 
 				return ImageImpl.this;
 			}
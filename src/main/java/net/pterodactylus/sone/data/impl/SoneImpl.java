@@ -32,6 +32,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -113,6 +115,15 @@ public class SoneImpl implements Sone {
 	/** Sone-specific options. */
 	private SoneOptions options = new DefaultSoneOptions();
 
+	/** The number of modifications of this Sone’s fingerprinted data. */
+	private final AtomicLong modifications = new AtomicLong();
+
+	/** The number of modifications of every part, by ordinal of the part. */
+	private final AtomicLongArray partModifications = new AtomicLongArray(SonePart.values().length);
+
+	/** The last calculated fingerprint. */
+	private volatile CachedFingerprint cachedFingerprint;
+
 	/**
 	 * Creates a new Sone.
 	 *
@@ -286,6 +297,7 @@ public class SoneImpl implements Sone {
 	 */
 	public void setProfile(@Nonnull Profile profile) {
 		this.profile = new Profile(profile);
+		modified(SonePart.profile);
 	}
 
 	/**
@@ -383,6 +395,7 @@ public class SoneImpl implements Sone {
 			this.posts.clear();
 			this.posts.addAll(posts);
 		}
+		modified(SonePart.posts);
 		return this;
 	}
 
@@ -396,6 +409,7 @@ public class SoneImpl implements Sone {
 	public void addPost(@Nonnull Post post) {
 		if (post.getSone().equals(this) && posts.add(post)) {
 			logger.log(Level.FINEST, String.format("Adding %s to “%s”.", post, getName()));
+			modified(SonePart.posts);
 		}
 	}
 
@@ -406,8 +420,8 @@ public class SoneImpl implements Sone {
 	 * 		The post to remove
 	 */
 	public void removePost(@Nonnull Post post) {
-		if (post.getSone().equals(this)) {
-			posts.remove(post);
+		if (post.getSone().equals(this) && posts.remove(post)) {
+			modified(SonePart.posts);
 		}
 	}
 
@@ -432,6 +446,7 @@ public class SoneImpl implements Sone {
 	public Sone setReplies(@Nonnull Collection<PostReply> replies) {
 		this.replies.clear();
 		this.replies.addAll(replies);
+		modified(SonePart.replies);
 		return this;
 	}
 
@@ -443,8 +458,8 @@ public class SoneImpl implements Sone {
 	 * 		The reply to add
 	 */
 	public void addReply(@Nonnull PostReply reply) {
-		if (reply.getSone().equals(this)) {
-			replies.add(reply);
+		if (reply.getSone().equals(this) && replies.add(reply)) {
+			modified(SonePart.replies);
 		}
 	}
 
@@ -455,8 +470,8 @@ public class SoneImpl implements Sone {
 	 * 		The reply to remove
 	 */
 	public void removeReply(@Nonnull PostReply reply) {
-		if (reply.getSone().equals(this)) {
-			replies.remove(reply);
+		if (reply.getSone().equals(this) && replies.remove(reply)) {
+			modified(SonePart.replies);
 		}
 	}
 
@@ -481,6 +496,7 @@ public class SoneImpl implements Sone {
 	public Sone setLikePostIds(@Nonnull Set<String> likedPostIds) {
 		this.likedPostIds.clear();
 		this.likedPostIds.addAll(likedPostIds);
+		modified(SonePart.likedPosts);
 		return this;
 	}
 
@@ -505,7 +521,9 @@ public class SoneImpl implements Sone {
 	 */
 	@Nonnull
 	public Sone addLikedPostId(@Nonnull String postId) {
-		likedPostIds.add(postId);
+		if (likedPostIds.add(postId)) {
+			modified(SonePart.likedPosts);
+		}
 		return this;
 	}
 
@@ -516,7 +534,9 @@ public class SoneImpl implements Sone {
 	 * 		The ID of the post
 	 */
 	public void removeLikedPostId(@Nonnull String postId) {
-		likedPostIds.remove(postId);
+		if (likedPostIds.remove(postId)) {
+			modified(SonePart.likedPosts);
+		}
 	}
 
 	/**
@@ -540,6 +560,7 @@ public class SoneImpl implements Sone {
 	public Sone setLikeReplyIds(@Nonnull Set<String> likedReplyIds) {
 		this.likedReplyIds.clear();
 		this.likedReplyIds.addAll(likedReplyIds);
+		modified(SonePart.likedReplies);
 		return this;
 	}
 
@@ -564,7 +585,9 @@ public class SoneImpl implements Sone {
 	 */
 	@Nonnull
 	public Sone addLikedReplyId(@Nonnull String replyId) {
-		likedReplyIds.add(replyId);
+		if (likedReplyIds.add(replyId)) {
+			modified(SonePart.likedReplies);
+		}
 		return this;
 	}
 
@@ -575,7 +598,9 @@ public class SoneImpl implements Sone {
 	 * 		The ID of the reply
 	 */
 	public void removeLikedReplyId(@Nonnull String replyId) {
-		likedReplyIds.remove(replyId);
+		if (likedReplyIds.remove(replyId)) {
+			modified(SonePart.likedReplies);
+		}
 	}
 
 	/**
@@ -609,13 +634,48 @@ public class SoneImpl implements Sone {
 		this.options = options;
 	}
 
+	/**
+	 * Notes that the given part of this Sone, which is part of its
+	 * fingerprint, has been modified. This method has to be called after
+	 * every such modification, including modifications of this Sone’s albums
+	 * and images.
+	 *
+	 * @param part
+	 * 		The modified part
+	 */
+	void modified(@Nonnull SonePart part) {
+		partModifications.incrementAndGet(part.ordinal());
+		modifications.incrementAndGet();
+	}
+
+	@Override
+	public long getModifications(@Nonnull SonePart part) {
+		return partModifications.get(part.ordinal());
+	}
+
 	//
 	// FINGERPRINTABLE METHODS
 	//
 
-	/** {@inheritDoc} */
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The fingerprint is only calculated again if this Sone has been
+	 * {@link #modified(SonePart) modified} since it was last calculated.
+	 */
 	@Override
-	public synchronized String getFingerprint() {
+	public String getFingerprint() {
+		long modification = modifications.get();
+		CachedFingerprint cachedFingerprint = this.cachedFingerprint;
+		if ((cachedFingerprint != null) && (cachedFingerprint.modification == modification)) {
+			return cachedFingerprint.fingerprint;
+		}
+		String fingerprint = calculateFingerprint();
+		this.cachedFingerprint = new CachedFingerprint(modification, fingerprint);
+		return fingerprint;
+	}
+
+	private synchronized String calculateFingerprint() {
 		Hasher hash = Hashing.sha256().newHasher();
 		hash.putString(profile.getFingerprint(), UTF_8);
 
@@ -696,4 +756,20 @@ public class SoneImpl implements Sone {
 		return getClass().getName() + "[identity=" + identity + ",posts(" + posts.size() + "),replies(" + replies.size() + "),albums(" + getRootAlbum().getAlbums().size() + ")]";
 	}
 
+	/**
+	 * A calculated fingerprint, together with the number of modifications of
+	 * the Sone at the time the calculation started.
+	 */
+	private static class CachedFingerprint {
+
+		private final long modification;
+		private final String fingerprint;
+
+		private CachedFingerprint(long modification, String fingerprint) {
+			this.modification = modification;
+			this.fingerprint = fingerprint;
+		}
+
+	}
+
 }
@@ -13,13 +13,14 @@ import java.util.logging.Logger;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import net.pterodactylus.sone.database.DatabaseException;
 import net.pterodactylus.util.config.Configuration;
 import net.pterodactylus.util.config.ConfigurationException;
 
 /**
  * Helper class for interacting with a {@link Configuration}.
  */
-public class ConfigurationLoader {
+public class ConfigurationLoader implements MemoryDatabaseStorage {
 
 	private static final Logger logger = Logger.getLogger(ConfigurationLoader.class.getName());
 	private final Configuration configuration;
@@ -28,44 +29,70 @@ public class ConfigurationLoader {
 		this.configuration = configuration;
 	}
 
+	@Override
 	public synchronized Set<String> loadFriends(String localSoneId) {
 		return loadIds("Sone/" + localSoneId + "/Friends");
 	}
 
+	@Override
 	public void saveFriends(String soneId, Collection<String> friends) {
 		saveIds("Sone/" + soneId + "/Friends", friends);
 	}
 
+	@Override
 	public synchronized Set<String> loadKnownPosts() {
 		return loadIds("KnownPosts");
 	}
 
+	@Override
 	public synchronized Set<String> loadKnownPostReplies() {
 		return loadIds("KnownReplies");
 	}
 
+	@Override
+	public synchronized void saveKnownPosts(Collection<String> knownPosts, Collection<String> changedPostIds) throws DatabaseException {
+		try {
+			storeIds("KnownPosts", knownPosts);
+		} catch (ConfigurationException ce1) {
+			throw new DatabaseException("Could not save database.", ce1);
+		}
+	}
+
+	@Override
+	public synchronized void saveKnownPostReplies(Collection<String> knownPostReplies, Collection<String> changedPostReplyIds) throws DatabaseException {
+		try {
+			storeIds("KnownReplies", knownPostReplies);
+		} catch (ConfigurationException ce1) {
+			throw new DatabaseException("Could not save database.", ce1);
+		}
+	}
+
+	@Override
 	public synchronized Set<String> loadBookmarkedPosts() {
 		return loadIds("Bookmarks/Post");
 	}
 
+	@Override
 	@Nullable
 	public synchronized Long getSoneFollowingTime(@Nonnull String soneId) {
 		return loadSoneFollowingTimes().get(soneId);
 	}
 
+	@Override
 	public synchronized void removeSoneFollowingTime(@Nonnull String soneId) {
 		Map<String, Long> soneFollowingTimes = loadSoneFollowingTimes();
 		soneFollowingTimes.remove(soneId);
 		storeSoneFollowingTimes(soneFollowingTimes);
 	}
 
+	@Override
 	public synchronized void setSoneFollowingTime(@Nonnull String soneId, long time) {
 		Map<String, Long> soneFollowingTimes = loadSoneFollowingTimes();
 		soneFollowingTimes.put(soneId, time);
 		storeSoneFollowingTimes(soneFollowingTimes);
 	}
 
-	private synchronized Map<String, Long> loadSoneFollowingTimes() {
+	public synchronized Map<String, Long> loadSoneFollowingTimes() {
 		Map<String, Long> soneFollowingTimes = new HashMap<>();
 		int soneCounter = 0;
 		while (true) {
@@ -107,6 +134,7 @@ public class ConfigurationLoader {
 		return ids;
 	}
 
+	@Override
 	public synchronized void saveBookmarkedPosts(
 			Set<String> bookmarkedPosts) {
 		saveIds("Bookmarks/Post", bookmarkedPosts);
@@ -114,18 +142,22 @@ public class ConfigurationLoader {
 
 	private void saveIds(String prefix, Collection<String> ids) {
 		try {
-			int idCounter = 0;
-			for (String id : ids) {
-				configuration
-						.getStringValue(prefix + "/" + idCounter++ + "/ID")
-						.setValue(id);
-			}
-			configuration
-					.getStringValue(prefix + "/" + idCounter + "/ID")
-					.setValue(null);
+			storeIds(prefix, ids);
 		} catch (ConfigurationException ce1) {
 			logger.log(WARNING, "Could not save bookmarked posts!", ce1);
 		}
 	}
 
+	private void storeIds(String prefix, Collection<String> ids) throws ConfigurationException {
+		int idCounter = 0;
+		for (String id : ids) {
+			configuration
+					.getStringValue(prefix + "/" + idCounter++ + "/ID")
+					.setValue(id);
+		}
+		configuration
+				.getStringValue(prefix + "/" + idCounter + "/ID")
+				.setValue(null);
+	}
+
 }
@@ -21,13 +21,13 @@ public class MemoryBookmarkDatabase implements BookmarkDatabase {
 
 	private final ReadWriteLock lock = new ReentrantReadWriteLock();
 	private final MemoryDatabase memoryDatabase;
-	private final ConfigurationLoader configurationLoader;
+	private final MemoryDatabaseStorage storage;
 	private final Set<String> bookmarkedPosts = new HashSet<>();
 
 	public MemoryBookmarkDatabase(MemoryDatabase memoryDatabase,
-			ConfigurationLoader configurationLoader) {
+			MemoryDatabaseStorage storage) {
 		this.memoryDatabase = memoryDatabase;
-		this.configurationLoader = configurationLoader;
+		this.storage = storage;
 	}
 
 	public void start() {
@@ -35,7 +35,7 @@ public class MemoryBookmarkDatabase implements BookmarkDatabase {
 	}
 
 	private void loadBookmarkedPosts() {
-		Set<String> bookmarkedPosts = configurationLoader.loadBookmarkedPosts();
+		Set<String> bookmarkedPosts = storage.loadBookmarkedPosts();
 		lock.writeLock().lock();
 		try {
 			this.bookmarkedPosts.clear();
@@ -52,7 +52,7 @@ public class MemoryBookmarkDatabase implements BookmarkDatabase {
 	private void saveBookmarkedPosts() {
 		lock.readLock().lock();
 		try {
-			configurationLoader.saveBookmarkedPosts(this.bookmarkedPosts);
+			storage.saveBookmarkedPosts(this.bookmarkedPosts);
 		} finally {
 			lock.readLock().unlock();
 		}
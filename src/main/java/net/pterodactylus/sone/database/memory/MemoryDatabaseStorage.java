@@ -0,0 +1,63 @@
+package net.pterodactylus.sone.database.memory;
+
+import java.util.Collection;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.pterodactylus.sone.database.DatabaseException;
+
+/**
+ * Persistent storage for the parts of a {@link MemoryDatabase} that can not be
+ * restored from the Sones themselves: known posts and replies, bookmarks,
+ * friends, and the times at which Sones were first followed.
+ */
+public interface MemoryDatabaseStorage {
+
+	Set<String> loadFriends(String localSoneId);
+
+	void saveFriends(String localSoneId, Collection<String> friends);
+
+	Set<String> loadKnownPosts();
+
+	/**
+	 * Saves the known posts.
+	 *
+	 * @param knownPosts
+	 *            The IDs of all known posts
+	 * @param changedPostIds
+	 *            The IDs of the posts that became known or unknown since the
+	 *            known posts were last saved
+	 * @throws DatabaseException
+	 *             if the known posts can not be saved
+	 */
+	void saveKnownPosts(Collection<String> knownPosts, Collection<String> changedPostIds) throws DatabaseException;
+
+	Set<String> loadKnownPostReplies();
+
+	/**
+	 * Saves the known replies.
+	 *
+	 * @param knownPostReplies
+	 *            The IDs of all known replies
+	 * @param changedPostReplyIds
+	 *            The IDs of the replies that became known or unknown since
+	 *            the known replies were last saved
+	 * @throws DatabaseException
+	 *             if the known replies can not be saved
+	 */
+	void saveKnownPostReplies(Collection<String> knownPostReplies, Collection<String> changedPostReplyIds) throws DatabaseException;
+
+	Set<String> loadBookmarkedPosts();
+
+	void saveBookmarkedPosts(Set<String> bookmarkedPosts);
+
+	@Nullable
+	Long getSoneFollowingTime(@Nonnull String soneId);
+
+	void setSoneFollowingTime(@Nonnull String soneId, long time);
+
+	void removeSoneFollowingTime(@Nonnull String soneId);
+
+}
@@ -16,11 +16,11 @@ import com.google.common.collect.Multimap;
 class MemoryFriendDatabase {
 
 	private final ReadWriteLock lock = new ReentrantReadWriteLock();
-	private final ConfigurationLoader configurationLoader;
+	private final MemoryDatabaseStorage storage;
 	private final Multimap<String, String> soneFriends = HashMultimap.create();
 
-	MemoryFriendDatabase(ConfigurationLoader configurationLoader) {
-		this.configurationLoader = configurationLoader;
+	MemoryFriendDatabase(MemoryDatabaseStorage storage) {
+		this.storage = storage;
 	}
 
 	Collection<String> getFriends(String localSoneId) {
@@ -48,9 +48,9 @@ class MemoryFriendDatabase {
 		lock.writeLock().lock();
 		try {
 			if (soneFriends.put(localSoneId, friendSoneId)) {
-				configurationLoader.saveFriends(localSoneId, soneFriends.get(localSoneId));
-				if (configurationLoader.getSoneFollowingTime(friendSoneId) == null) {
-					configurationLoader.setSoneFollowingTime(friendSoneId, System.currentTimeMillis());
+				storage.saveFriends(localSoneId, soneFriends.get(localSoneId));
+				if (storage.getSoneFollowingTime(friendSoneId) == null) {
+					storage.setSoneFollowingTime(friendSoneId, System.currentTimeMillis());
 				}
 			}
 		} finally {
@@ -63,13 +63,13 @@ class MemoryFriendDatabase {
 		lock.writeLock().lock();
 		try {
 			if (soneFriends.remove(localSoneId, friendSoneId)) {
-				configurationLoader.saveFriends(localSoneId, soneFriends.get(localSoneId));
+				storage.saveFriends(localSoneId, soneFriends.get(localSoneId));
 				boolean unfollowedSoneStillFollowed = false;
 				for (String soneId : soneFriends.keys()) {
 					unfollowedSoneStillFollowed |= getFriends(soneId).contains(friendSoneId);
 				}
 				if (!unfollowedSoneStillFollowed) {
-					configurationLoader.removeSoneFollowingTime(friendSoneId);
+					storage.removeSoneFollowingTime(friendSoneId);
 				}
 			}
 		} finally {
@@ -79,7 +79,7 @@ class MemoryFriendDatabase {
 
 	@Nullable
 	Long getFollowingTime(@Nonnull String soneId) {
-		return configurationLoader.getSoneFollowingTime(soneId);
+		return storage.getSoneFollowingTime(soneId);
 	}
 
 	private void loadFriends(String localSoneId) {
@@ -88,7 +88,7 @@ class MemoryFriendDatabase {
 			if (soneFriends.containsKey(localSoneId)) {
 				return;
 			}
-			soneFriends.putAll(localSoneId, configurationLoader.loadFriends(localSoneId));
+			soneFriends.putAll(localSoneId, storage.loadFriends(localSoneId));
 		} finally {
 			lock.writeLock().unlock();
 		}
@@ -17,10 +17,7 @@
 
 package net.pterodactylus.sone.fcp;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 
 import net.pterodactylus.sone.core.Core;
@@ -28,11 +25,8 @@ import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.freenet.fcp.FcpException;
 
-import com.google.common.collect.Collections2;
-
 import freenet.support.SimpleFieldSet;
 
-import static net.pterodactylus.sone.data.PostKt.newestPostFirst;
 import static net.pterodactylus.sone.data.PostKt.noFuturePost;
 
 /**
@@ -60,20 +54,13 @@ public class GetPostFeedCommand extends AbstractSoneCommand {
 		int startPost = getInt(parameters, "StartPost", 0);
 		int maxPosts = getInt(parameters, "MaxPosts", -1);
 
-		Collection<Post> allPosts = new HashSet<>();
-		allPosts.addAll(sone.getPosts());
-		for (String friendSoneId : sone.getFriends()) {
-			Sone friendSone = getCore().getSone(friendSoneId);
-			if (friendSone == null) {
-				continue;
-			}
-			allPosts.addAll(friendSone.getPosts());
+		List<Post> postFeed = getCore().getPostFeed(sone);
+		/* the feed is ordered by time, so posts from the future come first. */
+		int firstPastPost = 0;
+		while ((firstPastPost < postFeed.size()) && !noFuturePost().invoke(postFeed.get(firstPastPost))) {
+			firstPastPost++;
 		}
-		allPosts.addAll(getCore().getDirectedPosts(sone.getId()));
-		allPosts = Collections2.filter(allPosts, noFuturePost()::invoke);
-
-		List<Post> sortedPosts = new ArrayList<>(allPosts);
-		sortedPosts.sort(newestPostFirst());
+		List<Post> sortedPosts = postFeed.subList(firstPastPost, postFeed.size());
 
 		if (sortedPosts.size() < startPost) {
 			return new Response("PostFeed", encodePosts(Collections.<Post> emptyList(), "Posts.", false));
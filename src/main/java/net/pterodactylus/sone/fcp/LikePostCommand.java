@@ -47,7 +47,7 @@ public class LikePostCommand extends AbstractSoneCommand {
 		Post post = getPost(parameters, "Post");
 		Sone sone = getSone(parameters, "Sone", true);
 		sone.addLikedPostId(post.getId());
-		return new Response("PostLiked", new SimpleFieldSetBuilder().put("LikeCount", getCore().getLikes(post).size()).get());
+		return new Response("PostLiked", new SimpleFieldSetBuilder().put("LikeCount", getCore().getLikeCount(post)).get());
 	}
 
 }
@@ -47,7 +47,7 @@ public class LikeReplyCommand extends AbstractSoneCommand {
 		PostReply reply = getReply(parameters, "Reply");
 		Sone sone = getSone(parameters, "Sone", true);
 		sone.addLikedReplyId(reply.getId());
-		return new Response("ReplyLiked", new SimpleFieldSetBuilder().put("LikeCount", getCore().getLikes(reply).size()).get());
+		return new Response("ReplyLiked", new SimpleFieldSetBuilder().put("LikeCount", getCore().getLikeCount(reply)).get());
 	}
 
 }
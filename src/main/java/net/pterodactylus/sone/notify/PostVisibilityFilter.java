@@ -1,6 +1,7 @@
 package net.pterodactylus.sone.notify;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static net.pterodactylus.sone.data.SoneKt.isDistrustedBy;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -8,8 +9,6 @@ import javax.inject.Singleton;
 
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.Sone;
-import net.pterodactylus.sone.freenet.wot.OwnIdentity;
-import net.pterodactylus.sone.freenet.wot.Trust;
 import net.pterodactylus.util.notify.Notification;
 
 import com.google.common.base.Predicate;
@@ -58,22 +57,8 @@ public class PostVisibilityFilter {
 		}
 		Sone postSone = post.getSone();
 		if (sone != null) {
-			Trust trust = postSone.getIdentity().getTrust((OwnIdentity) sone.getIdentity());
-			if (trust != null) {
-				if ((trust.getExplicit() != null) && (trust.getExplicit() < 0)) {
-					return false;
-				}
-				if ((trust.getExplicit() == null) && (trust.getImplicit() != null) && (trust.getImplicit() < 0)) {
-					return false;
-				}
-			} else {
-				/*
-				 * a null trust means that the trust updater has not yet
-				 * received a trust value for this relation. if we return false,
-				 * the post feed will stay empty until the trust updater has
-				 * received trust values. to prevent this we simply assume that
-				 * posts are visible if there is no trust.
-				 */
+			if (isDistrustedBy(postSone, sone)) {
+				return false;
 			}
 			if ((!postSone.equals(sone)) && !sone.hasFriend(postSone.getId()) && !sone.getId().equals(post.getRecipientId().orNull())) {
 				return false;
@@ -95,6 +95,8 @@ public class SoneAccessor extends ReflectionAccessor {
 			return sone.getStatus() == SoneStatus.inserting;
 		} else if (member.equals("downloading")) {
 			return sone.getStatus() == SoneStatus.downloading;
+		} else if (member.equals("quarantined")) {
+			return sone.getStatus() == SoneStatus.quarantined;
 		} else if (member.equals("new")) {
 			return !sone.isKnown();
 		} else if (member.equals("locked")) {
@@ -0,0 +1,87 @@
+package net.pterodactylus.sone.core
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit.DAYS
+import java.util.concurrent.TimeUnit.MINUTES
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Keeps track of Sones whose downloaded editions could not be parsed.
+ *
+ * After every consecutive failure, a Sone is not downloaded again for an
+ * exponentially growing time, starting at five minutes and growing up to one
+ * day. After five consecutive failures the Sone is quarantined. A single
+ * successfully parsed edition releases the Sone again.
+ */
+@Singleton
+class DownloadFailures(private val ticker: () -> Long) {
+
+	@Inject
+	constructor() : this(System::currentTimeMillis)
+
+	private val failures = ConcurrentHashMap<String, Failure>()
+
+	/**
+	 * Records a failure for the given Sone.
+	 *
+	 * @param soneId The ID of the Sone that could not be parsed
+	 * @return `true` if the Sone is quarantined now
+	 */
+	fun failed(soneId: String): Boolean =
+			failures.compute(soneId) { _, failure ->
+				((failure?.count ?: 0) + 1).let { count ->
+					Failure(count, ticker() + backoff(count), false)
+				}
+			}!!.quarantined
+
+	fun succeeded(soneId: String) {
+		failures.remove(soneId)
+	}
+
+	/**
+	 * Returns whether downloads of the given Sone are currently skipped. If
+	 * they are, the Sone is remembered so that it is returned by
+	 * [dueRetries] once the backoff has ended.
+	 *
+	 * @param soneId The ID of the Sone to check
+	 * @return `true` if the Sone should not be downloaded now
+	 */
+	fun isBackingOff(soneId: String): Boolean {
+		var backingOff = false
+		failures.computeIfPresent(soneId) { _, failure ->
+			if (failure.nextAttempt > ticker()) {
+				backingOff = true
+				failure.copy(retryPending = true)
+			} else {
+				failure
+			}
+		}
+		return backingOff
+	}
+
+	fun isQuarantined(soneId: String) =
+			failures[soneId]?.quarantined ?: false
+
+	/**
+	 * Returns the IDs of all Sones whose download was skipped and whose
+	 * backoff has ended. Every Sone is returned only once.
+	 *
+	 * @return The IDs of the Sones to download again
+	 */
+	fun dueRetries(): Collection<String> =
+			failures.entries
+					.filter { (_, failure) -> failure.retryPending && failure.nextAttempt <= ticker() }
+					.filter { (soneId, failure) -> failures.replace(soneId, failure, failure.copy(retryPending = false)) }
+					.map { it.key }
+
+	private data class Failure(val count: Int, val nextAttempt: Long, val retryPending: Boolean) {
+		val quarantined get() = count >= quarantineThreshold
+	}
+
+}
+
+private fun backoff(count: Int) =
+		minOf(MINUTES.toMillis(5) shl minOf(count - 1, 20), DAYS.toMillis(1))
+
+private const val quarantineThreshold = 5
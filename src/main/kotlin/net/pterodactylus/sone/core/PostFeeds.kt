@@ -0,0 +1,197 @@
+package net.pterodactylus.sone.core
+
+import net.pterodactylus.sone.data.Post
+import net.pterodactylus.sone.data.Sone
+import net.pterodactylus.sone.data.isDistrustedBy
+import net.pterodactylus.sone.data.newestPostFirst
+import net.pterodactylus.sone.database.PostProvider
+import net.pterodactylus.sone.database.SoneProvider
+import java.util.TreeSet
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Maintains the post feed of every local Sone, i.e. the posts of the local
+ * Sone, of all the Sones it follows, and all posts directed at it, ordered
+ * by time, newest posts first.
+ *
+ * A feed is created when it is requested for the first time. After that it
+ * is only changed by the follow, unfollow, post, Sone, and trust changes
+ * reported to this class; requesting a feed does not look at any Sone.
+ * Posts of Sones that the local Sone distrusts are kept out of the feed.
+ * Posts from the future are not, as they are always at the head of the feed
+ * and can be skipped there.
+ */
+class PostFeeds(private val soneProvider: SoneProvider, private val postProvider: PostProvider) {
+
+	private val postFeeds = ConcurrentHashMap<String, PostFeed>()
+
+	/**
+	 * Returns the post feed of the given local Sone.
+	 *
+	 * @param localSone The local Sone to get the post feed for
+	 * @return The posts of the post feed, newest posts first
+	 */
+	fun getPostFeed(localSone: Sone): List<Post> =
+			postFeeds.computeIfAbsent(localSone.id) { PostFeed(localSone) }.posts
+
+	fun soneFollowed(localSone: Sone, soneId: String) =
+			postFeeds[localSone.id]?.addSone(soneId)
+
+	fun soneUnfollowed(localSone: Sone, soneId: String) =
+			postFeeds[localSone.id]?.removeSone(soneId)
+
+	fun postAdded(post: Post) =
+			postFeeds.values.forEach { it.add(post) }
+
+	fun postRemoved(post: Post) =
+			postFeeds.values.forEach { it.remove(post) }
+
+	/**
+	 * Applies the stored changes of a Sone to all feeds. Not all new posts
+	 * are reported as [added][postAdded] (known posts are not), and posts
+	 * that were replaced by a new instance are not reported at all.
+	 *
+	 * @param soneComparison The stored changes of the Sone
+	 */
+	fun soneChanged(soneComparison: SoneComparison) =
+			postFeeds.values.forEach { it.update(soneComparison) }
+
+	fun trustChanged(localSone: Sone, soneId: String) =
+			postFeeds[localSone.id]?.updateTrust(soneId)
+
+	private inner class PostFeed(private val localSone: Sone) {
+
+		private val visiblePosts = TreeSet<Post>(feedOrder)
+		private val postCounts = mutableMapOf<Post, PostCount>()
+		private val postsBySone = mutableMapOf<String?, MutableSet<Post>>()
+		private val distrustedSones = mutableMapOf<String?, Boolean>()
+		private val sonePosts = mutableMapOf<String, MutableSet<Post>>()
+		private val directedPosts = mutableSetOf<Post>()
+		private var snapshot: List<Post>? = null
+
+		init {
+			addSone(localSone.id)
+			localSone.friends.forEach(::addSone)
+			postProvider.getDirectedPosts(localSone.id).forEach(::addDirectedPost)
+		}
+
+		val posts: List<Post>
+			@Synchronized get() = snapshot ?: visiblePosts.toList().also { snapshot = it }
+
+		@Synchronized
+		fun addSone(soneId: String) {
+			if (soneId !in sonePosts) {
+				val postsOfSone = soneProvider.getSone(soneId)?.posts?.toMutableSet() ?: mutableSetOf()
+				sonePosts[soneId] = postsOfSone
+				postsOfSone.forEach(::retain)
+			}
+		}
+
+		@Synchronized
+		fun removeSone(soneId: String) {
+			if (soneId != localSone.id) {
+				sonePosts.remove(soneId)?.forEach(::release)
+			}
+		}
+
+		@Synchronized
+		fun add(post: Post) {
+			post.sone?.id?.let(sonePosts::get)?.let { postsOfSone ->
+				if (postsOfSone.add(post)) {
+					retain(post)
+				}
+			}
+			addDirectedPost(post)
+		}
+
+		@Synchronized
+		fun remove(post: Post) {
+			postCounts[post]?.soneId?.let(sonePosts::get)?.let { postsOfSone ->
+				if (postsOfSone.remove(post)) {
+					release(post)
+				}
+			}
+			if (directedPosts.remove(post)) {
+				release(post)
+			}
+		}
+
+		@Synchronized
+		fun update(soneComparison: SoneComparison) {
+			soneComparison.removedPosts.forEach(::remove)
+			soneComparison.replacedPosts.forEach { (oldPost, newPost) ->
+				if (oldPost in postCounts) {
+					remove(oldPost)
+					add(newPost)
+				}
+			}
+			soneComparison.newPosts.forEach(::add)
+		}
+
+		@Synchronized
+		fun updateTrust(soneId: String) {
+			val distrusted = isDistrusted(soneProvider.getSone(soneId))
+			if (distrustedSones.put(soneId, distrusted) != distrusted) {
+				postsBySone[soneId]?.forEach { post ->
+					if (distrusted) visiblePosts.remove(post) else visiblePosts.add(post)
+				}
+				snapshot = null
+			}
+		}
+
+		private fun addDirectedPost(post: Post) {
+			if ((post.recipientId.orNull() == localSone.id) && directedPosts.add(post)) {
+				retain(post)
+			}
+		}
+
+		private fun isDistrusted(sone: Sone?) =
+				sone?.isDistrustedBy(localSone) ?: false
+
+		/*
+		 * A post can be part of a feed more than once, e.g. when a followed
+		 * Sone directs a post at the local Sone, so posts are counted and only
+		 * removed from the feed once nothing refers to them anymore. Trust is
+		 * checked once per Sone and then only updated when it changes.
+		 */
+		private fun retain(post: Post) {
+			postCounts[post]?.let { postCount ->
+				postCount.count++
+				return
+			}
+			val sone = post.sone
+			postCounts[post] = PostCount(sone?.id)
+			postsBySone.getOrPut(sone?.id) { mutableSetOf() }.add(post)
+			if (!distrustedSones.getOrPut(sone?.id) { isDistrusted(sone) }) {
+				visiblePosts.add(post)
+				snapshot = null
+			}
+		}
+
+		private fun release(post: Post) {
+			val postCount = postCounts[post] ?: return
+			if (--postCount.count == 0) {
+				postCounts.remove(post)
+				postsBySone[postCount.soneId]?.let { postsOfSone ->
+					postsOfSone.remove(post)
+					if (postsOfSone.isEmpty()) {
+						postsBySone.remove(postCount.soneId)
+					}
+				}
+				if (visiblePosts.remove(post)) {
+					snapshot = null
+				}
+			}
+		}
+
+	}
+
+}
+
+/**
+ * Counts how often a post is part of a feed, and remembers the ID of its
+ * Sone, as the Sone may be gone when the post is removed.
+ */
+private class PostCount(val soneId: String?, var count: Int = 1)
+
+private val feedOrder: Comparator<Post> = newestPostFirst.thenBy { it.id }
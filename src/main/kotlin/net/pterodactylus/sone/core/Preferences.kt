@@ -112,6 +112,12 @@ class Preferences(private val eventBus: EventBus) {
 			}
 		}
 
+	private val _archiveOldPosts = DefaultOption(false)
+	val archiveOldPosts: Boolean get() = _archiveOldPosts.get()
+	var newArchiveOldPosts: Boolean?
+		get() = unsupported
+		set(value) = _archiveOldPosts.set(value)
+
 	@Throws(ConfigurationException::class)
 	fun saveTo(configuration: Configuration) {
 		configuration.getIntValue("Option/ConfigurationVersion").value = 0
@@ -124,6 +130,7 @@ class Preferences(private val eventBus: EventBus) {
 		configuration.getBooleanValue("Option/ActivateFcpInterface").value = _fcpInterfaceActive.real
 		configuration.getIntValue("Option/FcpFullAccessRequired").value = toInt(_fcpFullAccessRequired.real)
 		configuration.getBooleanValue("Option/StrictFiltering").value = _strictFiltering.real
+		configuration.getBooleanValue("Option/ArchiveOldPosts").value = _archiveOldPosts.real
 	}
 
 	private fun toInt(fullAccessRequired: FullAccessRequired?): Int? {
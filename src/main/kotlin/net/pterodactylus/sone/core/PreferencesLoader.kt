@@ -18,6 +18,7 @@ class PreferencesLoader(private val preferences: Preferences) {
 		loadFcpInterfaceActive(configuration)
 		loadFcpFullAccessRequired(configuration)
 		loadStrictFiltering(configuration)
+		loadArchiveOldPosts(configuration)
 	}
 
 	private fun loadInsertionDelay(configuration: Configuration) {
@@ -60,4 +61,8 @@ class PreferencesLoader(private val preferences: Preferences) {
 		preferences.newStrictFiltering = configuration.getBooleanValue("Option/StrictFiltering").getValue(null)
 	}
 
+	private fun loadArchiveOldPosts(configuration: Configuration) {
+		preferences.newArchiveOldPosts = configuration.getBooleanValue("Option/ArchiveOldPosts").getValue(null)
+	}
+
 }
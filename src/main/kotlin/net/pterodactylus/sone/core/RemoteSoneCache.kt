@@ -0,0 +1,172 @@
+package net.pterodactylus.sone.core
+
+import com.google.inject.*
+import java.io.*
+import java.nio.file.*
+import java.nio.file.StandardCopyOption.*
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Stores the last successfully processed `sone.xml` of remote Sones, so that
+ * they can be restored after a restart without having to be fetched from
+ * Freenet first.
+ */
+@ImplementedBy(FileRemoteSoneCache::class)
+interface RemoteSoneCache {
+
+	/**
+	 * Stores the `sone.xml` of the given edition of the Sone with the given
+	 * ID, replacing any previously stored document.
+	 *
+	 * @param soneId The ID of the Sone
+	 * @param edition The edition of the Sone
+	 * @param soneXml The `sone.xml` of the Sone
+	 */
+	@Throws(IOException::class)
+	fun storeSone(soneId: String, edition: Long, soneXml: InputStream)
+
+	/**
+	 * Returns the stored `sone.xml` of the Sone with the given ID.
+	 *
+	 * @param soneId The ID of the Sone
+	 * @return The stored Sone, or `null` if no Sone is stored
+	 */
+	@Throws(IOException::class)
+	fun loadSone(soneId: String): CachedSone?
+
+	/**
+	 * Stores an archive of the Sone with the given ID. Archives never
+	 * change, so an archive that is already stored is not stored again.
+	 *
+	 * @param soneId The ID of the Sone
+	 * @param archiveName The name of the archive
+	 * @param archive The content of the archive
+	 */
+	@Throws(IOException::class)
+	fun storeArchive(soneId: String, archiveName: String, archive: ByteArray)
+
+	/**
+	 * Returns a stored archive of the Sone with the given ID.
+	 *
+	 * @param soneId The ID of the Sone
+	 * @param archiveName The name of the archive
+	 * @return The content of the archive, or `null` if the archive is not
+	 * stored
+	 */
+	@Throws(IOException::class)
+	fun loadArchive(soneId: String, archiveName: String): ByteArray?
+
+	/**
+	 * Returns whether an archive of the Sone with the given ID is stored.
+	 *
+	 * @param soneId The ID of the Sone
+	 * @param archiveName The name of the archive
+	 * @return `true` if the archive is stored, `false` otherwise
+	 */
+	fun hasArchive(soneId: String, archiveName: String): Boolean
+
+	/**
+	 * Removes all stored archives of the Sone with the given ID except the
+	 * given archives.
+	 *
+	 * @param soneId The ID of the Sone
+	 * @param archiveNames The names of the archives to keep
+	 */
+	fun retainArchives(soneId: String, archiveNames: Collection<String>)
+
+	/**
+	 * Removes the stored `sone.xml` and all stored archives of the Sone with
+	 * the given ID.
+	 *
+	 * @param soneId The ID of the Sone
+	 */
+	fun removeSone(soneId: String)
+
+}
+
+/**
+ * A `sone.xml` as stored in a [RemoteSoneCache].
+ */
+class CachedSone(val edition: Long, val soneXml: ByteArray)
+
+/**
+ * [RemoteSoneCache] implementation that stores every Sone in a file of its
+ * own. Every file starts with the edition of the Sone, followed by the
+ * `sone.xml`, so the files are named `<sone id>.sone`. The archives of a Sone are stored in a directory named after
+ * the Sone.
+ */
+@Singleton
+class FileRemoteSoneCache(private val directory: File) : RemoteSoneCache {
+
+	@Inject
+	constructor() : this(File("sone-cache"))
+
+	override fun storeSone(soneId: String, edition: Long, soneXml: InputStream) {
+		directory.mkdirs()
+		val temporaryFile = File.createTempFile("$soneId-", ".tmp", directory)
+		try {
+			DataOutputStream(FileOutputStream(temporaryFile).buffered()).use { outputStream ->
+				outputStream.writeLong(edition)
+				soneXml.copyTo(outputStream)
+			}
+			Files.move(temporaryFile.toPath(), soneFile(soneId).toPath(), REPLACE_EXISTING, ATOMIC_MOVE)
+		} finally {
+			temporaryFile.delete()
+		}
+	}
+
+	override fun loadSone(soneId: String): CachedSone? =
+			soneFile(soneId).also { moveLegacySoneFile(soneId, it) }.takeIf(File::exists)?.let { soneFile ->
+				DataInputStream(FileInputStream(soneFile).buffered()).use { inputStream ->
+					CachedSone(inputStream.readLong(), inputStream.readBytes())
+				}
+			}
+
+	override fun storeArchive(soneId: String, archiveName: String, archive: ByteArray) {
+		val archiveFile = archiveFile(soneId, archiveName)
+		if (archiveFile.exists()) {
+			return
+		}
+		archiveFile.parentFile.mkdirs()
+		val temporaryFile = File.createTempFile("$archiveName-", ".tmp", archiveFile.parentFile)
+		try {
+			temporaryFile.writeBytes(archive)
+			Files.move(temporaryFile.toPath(), archiveFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE)
+		} finally {
+			temporaryFile.delete()
+		}
+	}
+
+	override fun loadArchive(soneId: String, archiveName: String): ByteArray? =
+			archiveFile(soneId, archiveName).takeIf(File::exists)?.readBytes()
+
+	override fun hasArchive(soneId: String, archiveName: String) =
+			archiveFile(soneId, archiveName).exists()
+
+	override fun retainArchives(soneId: String, archiveNames: Collection<String>) {
+		val retainedArchiveNames = archiveNames.toSet()
+		File(directory, soneId).listFiles()
+				?.filterNot { it.name in retainedArchiveNames || it.name.endsWith(".tmp") }
+				?.forEach { it.delete() }
+	}
+
+	override fun removeSone(soneId: String) {
+		soneFile(soneId).delete()
+		legacySoneFile(soneId).delete()
+		File(directory, soneId).deleteRecursively()
+	}
+
+	/* older versions named the files after the sone.xml they contain. */
+	private fun moveLegacySoneFile(soneId: String, soneFile: File) {
+		val legacySoneFile = legacySoneFile(soneId)
+		if (!soneFile.exists() && legacySoneFile.exists()) {
+			Files.move(legacySoneFile.toPath(), soneFile.toPath(), ATOMIC_MOVE)
+		}
+	}
+
+	private fun soneFile(soneId: String) = File(directory, "$soneId.sone")
+	private fun legacySoneFile(soneId: String) = File(directory, "$soneId.xml")
+	private fun archiveFile(soneId: String, archiveName: String) = File(File(directory, soneId), archiveName)
+
+}
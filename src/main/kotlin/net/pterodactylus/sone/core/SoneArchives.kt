@@ -0,0 +1,136 @@
+package net.pterodactylus.sone.core
+
+import java.io.IOException
+import java.io.InputStream
+import java.security.MessageDigest
+import javax.xml.stream.XMLStreamConstants.CDATA
+import javax.xml.stream.XMLStreamConstants.CHARACTERS
+import javax.xml.stream.XMLStreamConstants.END_ELEMENT
+import javax.xml.stream.XMLStreamConstants.START_ELEMENT
+import javax.xml.stream.XMLStreamException
+import javax.xml.stream.XMLStreamReader
+
+/**
+ * Loads the archives that a `sone.xml` refers to.
+ */
+interface SoneArchiveLoader {
+
+	/**
+	 * Returns the archive with the given name.
+	 *
+	 * @param name The name of the archive
+	 * @return The archive, or `null` if the archive is not available
+	 */
+	@Throws(IOException::class)
+	fun loadArchive(name: String): InputStream?
+
+}
+
+/**
+ * Posts or replies of a Sone, split into archives and the most recent items.
+ *
+ * @param archives The archived items, oldest archive first
+ * @param recent The items that are not archived
+ */
+class ArchiveSplit<T>(val archives: List<List<T>>, val recent: List<T>)
+
+/**
+ * Splits the given items into archives of [archiveSize] items each. The
+ * items are sorted oldest first, and only full archives are created, so
+ * that once an archive has been created it does not change again until one
+ * of its items is removed. At least [archiveSize] of the most recent items
+ * are never archived.
+ *
+ * @param items The items to split
+ * @param oldestFirst The order of the items, oldest first, which has to be
+ * stable for items with the same time
+ * @return The split items
+ */
+fun <T> splitIntoArchives(items: Collection<T>, oldestFirst: Comparator<in T>): ArchiveSplit<T> =
+		items.sortedWith(oldestFirst).let { sortedItems ->
+			val archivedItems = maxOf(0, (sortedItems.size - archiveSize) / archiveSize) * archiveSize
+			ArchiveSplit(sortedItems.take(archivedItems).chunked(archiveSize), sortedItems.drop(archivedItems))
+		}
+
+/**
+ * Returns the name of the archive with the given content. The name
+ * contains the SHA-256 hash of the content, so that archives with the same
+ * content always have the same name, and different archives never do.
+ *
+ * @param archive The content of the archive
+ * @return The name of the archive
+ */
+@Throws(IOException::class)
+fun archiveName(archive: InputStream): String {
+	val digest = MessageDigest.getInstance("SHA-256")
+	val buffer = ByteArray(8192)
+	generateSequence { archive.read(buffer).takeIf { it >= 0 } }
+			.forEach { digest.update(buffer, 0, it) }
+	return "archive-${digest.digest().joinToString("") { "%02x".format(it) }}.xml"
+}
+
+/**
+ * Returns whether the given name is a valid [archive name][archiveName].
+ */
+fun isArchiveName(name: String) =
+		archiveNamePattern.matches(name)
+
+/**
+ * Returns the names of the archives that the Sone document read from the
+ * given input stream refers to. Names that are not valid
+ * [archive names][isArchiveName] are skipped, and at most the given number
+ * of names is returned.
+ *
+ * @param inputStream The input stream to read the Sone document from
+ * @param maximumArchives The maximum number of archive names to return
+ * @return The names of the Sone’s archives, or an empty list if the document
+ *         can not be read
+ */
+fun readArchiveNames(inputStream: InputStream, maximumArchives: Int): List<String> =
+		try {
+			xmlInputFactory.get().createXMLStreamReader(inputStream).let { xmlStreamReader ->
+				try {
+					xmlStreamReader.readArchiveNames().filter(::isArchiveName).take(maximumArchives)
+				} finally {
+					xmlStreamReader.close()
+				}
+			}
+		} catch (e: XMLStreamException) {
+			emptyList()
+		}
+
+/**
+ * Returns the maximum number of archives a Sone may refer to with the given
+ * limits.
+ */
+fun maximumArchives(limits: SoneParserLimits) =
+		(limits.maximumPosts + limits.maximumReplies) / archiveSize
+
+private fun XMLStreamReader.readArchiveNames(): List<String> {
+	val archiveNames = mutableListOf<String>()
+	val archiveName = StringBuilder()
+	val elements = mutableListOf<String>()
+	while (hasNext()) {
+		when (next()) {
+			START_ELEMENT -> {
+				elements += localName
+				archiveName.setLength(0)
+			}
+			CHARACTERS, CDATA -> archiveName.append(text)
+			END_ELEMENT -> {
+				if (elements.drop(1) == listOf("archives", "archive")) {
+					archiveNames += archiveName.trim().toString()
+				}
+				elements.removeAt(elements.lastIndex)
+			}
+		}
+	}
+	return archiveNames
+}
+
+/** The number of posts or replies in a single archive. */
+const val archiveSize = 100
+
+private val archiveNamePattern = Regex("archive-[0-9a-f]{64}\\.xml")
+
+private val xmlInputFactory = ThreadLocal.withInitial(SoneParser::createXmlInputFactory)
@@ -2,11 +2,53 @@ package net.pterodactylus.sone.core
 
 import net.pterodactylus.sone.data.*
 
-class SoneComparison(private val oldSone: Sone, private val newSone: Sone) {
+/**
+ * Compares two versions of a Sone. All differences are calculated lazily
+ * and only once, so they can be evaluated before a lock is taken to apply
+ * them.
+ */
+class SoneComparison(val oldSone: Sone, val newSone: Sone) {
 
-	val newPosts: Collection<Post> get() = newSone.posts - oldSone.posts
-	val removedPosts: Collection<Post> get() = oldSone.posts - newSone.posts
-	val newPostReplies: Collection<PostReply> get() = newSone.replies - oldSone.replies
-	val removedPostReplies: Collection<PostReply> get() = oldSone.replies - newSone.replies
+	val newPosts: Collection<Post> by lazy { newSone.posts - oldSone.posts }
+	val removedPosts: Collection<Post> by lazy { oldSone.posts - newSone.posts }
+
+	/** Posts that exist in both Sones as different instances, as pairs of old and new instance. */
+	val replacedPosts: Collection<Pair<Post, Post>> by lazy { replacedElements(oldSone.posts, newSone.posts, Post::id) }
+
+	val newPostReplies: Collection<PostReply> by lazy { newSone.replies - oldSone.replies }
+	val removedPostReplies: Collection<PostReply> by lazy { oldSone.replies - newSone.replies }
+
+	/** Replies that exist in both Sones as different instances, as pairs of old and new instance. */
+	val replacedPostReplies: Collection<Pair<PostReply, PostReply>> by lazy { replacedElements(oldSone.replies, newSone.replies, PostReply::id) }
+
+	/** Albums of the new Sone that are new or are different instances than in the old Sone. */
+	val changedAlbums: Collection<Album> by lazy { changedElements(oldSone.allAlbums, newSone.allAlbums, Album::id) }
+	val removedAlbums: Collection<Album> by lazy { oldSone.allAlbums - newSone.allAlbums }
+
+	/** Images of the new Sone that are new or are different instances than in the old Sone. */
+	val changedImages: Collection<Image> by lazy { changedElements(oldSone.allImages, newSone.allImages, Image::id) }
+	val removedImages: Collection<Image> by lazy { oldSone.allImages - newSone.allImages }
+
+	val newLikedPostIds: Set<String> by lazy { newSone.likedPostIds - oldSone.likedPostIds }
+	val removedLikedPostIds: Set<String> by lazy { oldSone.likedPostIds - newSone.likedPostIds }
+	val newLikedPostReplyIds: Set<String> by lazy { newSone.likedReplyIds - oldSone.likedReplyIds }
+	val removedLikedPostReplyIds: Set<String> by lazy { oldSone.likedReplyIds - newSone.likedReplyIds }
 
 }
+
+/*
+ * Posts, replies, albums, and images are equal when their IDs are equal, so
+ * an element whose content has changed is neither new nor removed; it can
+ * only be found by comparing the instances.
+ */
+private fun <T> replacedElements(oldElements: Collection<T>, newElements: Collection<T>, id: (T) -> String): List<Pair<T, T>> =
+		oldElements.associateBy(id).let { oldElementsById ->
+			newElements.mapNotNull { newElement ->
+				oldElementsById[id(newElement)]?.takeIf { it !== newElement }?.let { oldElement -> oldElement to newElement }
+			}
+		}
+
+private fun <T> changedElements(oldElements: Collection<T>, newElements: Collection<T>, id: (T) -> String): List<T> =
+		oldElements.associateBy(id).let { oldElementsById ->
+			newElements.filter { newElement -> oldElementsById[id(newElement)] !== newElement }
+		}
@@ -0,0 +1,88 @@
+package net.pterodactylus.sone.core
+
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets.UTF_8
+import java.security.MessageDigest
+import javax.xml.stream.XMLStreamConstants.CDATA
+import javax.xml.stream.XMLStreamConstants.CHARACTERS
+import javax.xml.stream.XMLStreamConstants.END_ELEMENT
+import javax.xml.stream.XMLStreamConstants.START_ELEMENT
+import javax.xml.stream.XMLStreamException
+import javax.xml.stream.XMLStreamReader
+
+/**
+ * The hash of the content of a Sone document, and the time of the Sone.
+ *
+ * The time of the Sone (i.e. the `time` element directly below the root
+ * element) is not part of the hash, so two editions of a Sone that were
+ * inserted again without any changes have the same hash.
+ */
+data class SoneContentHash(val hash: String, val time: Long)
+
+/**
+ * Calculates the [SoneContentHash] of the Sone document read from the given
+ * input stream. Only the elements and their texts are hashed, so the hash
+ * does not depend on formatting or the encoding of the document.
+ *
+ * @param inputStream The input stream to read the Sone document from
+ * @return The content hash of the Sone, or `null` if the document can not be
+ *         read
+ */
+fun calculateSoneContentHash(inputStream: InputStream): SoneContentHash? =
+		try {
+			xmlInputFactory.get().createXMLStreamReader(inputStream).let { xmlStreamReader ->
+				try {
+					xmlStreamReader.hashContent()
+				} finally {
+					xmlStreamReader.close()
+				}
+			}
+		} catch (e: XMLStreamException) {
+			null
+		}
+
+private fun XMLStreamReader.hashContent(): SoneContentHash {
+	val messageDigest = MessageDigest.getInstance("SHA-256")
+	var depth = 0
+	var inSoneTime = false
+	val soneTime = StringBuilder()
+	while (hasNext()) {
+		when (next()) {
+			START_ELEMENT -> {
+				depth++
+				inSoneTime = (depth == 2) && (localName == "time")
+				if (!inSoneTime) {
+					messageDigest.update(START_ELEMENT, localName)
+				}
+			}
+			CHARACTERS, CDATA -> if (inSoneTime) {
+				soneTime.append(text)
+			} else if (!isWhiteSpace) {
+				messageDigest.update(CHARACTERS, text)
+			}
+			END_ELEMENT -> {
+				if (!inSoneTime) {
+					messageDigest.update(END_ELEMENT, localName)
+				}
+				inSoneTime = false
+				depth--
+			}
+		}
+	}
+	return SoneContentHash(messageDigest.digest().toHex(), soneTime.trim().toString().toLongOrNull() ?: 0)
+}
+
+/*
+ * Every token is prefixed with its type and its length so that different
+ * documents can not result in the same sequence of bytes.
+ */
+private fun MessageDigest.update(type: Int, value: String) {
+	val bytes = value.toByteArray(UTF_8)
+	update(ByteBuffer.allocate(8).putInt(type).putInt(bytes.size).array())
+	update(bytes)
+}
+
+private fun ByteArray.toHex() = joinToString("") { "%02x".format(it) }
+
+private val xmlInputFactory = ThreadLocal.withInitial(SoneParser::createXmlInputFactory)
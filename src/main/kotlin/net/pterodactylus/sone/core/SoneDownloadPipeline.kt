@@ -0,0 +1,285 @@
+package net.pterodactylus.sone.core
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir
+import com.codahale.metrics.Histogram
+import com.codahale.metrics.MetricRegistry
+import freenet.client.FetchException
+import freenet.client.FetchException.FetchExceptionMode.TOO_BIG
+import freenet.keys.FreenetURI
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.ClosedSendChannelException
+import kotlinx.coroutines.channels.SendChannel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import net.pterodactylus.sone.data.Sone
+import net.pterodactylus.sone.freenet.AsyncFreenetInterface
+import net.pterodactylus.util.thread.NamedThreadFactory
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit.NANOSECONDS
+import java.util.logging.Level.WARNING
+import java.util.logging.Logger
+import java.util.logging.Logger.getLogger
+
+/**
+ * The stages of a Sone download that do not wait for the network.
+ *
+ * @param T The type of a parsed download
+ */
+interface SoneDownloadStages<T : Any> {
+
+	/**
+	 * Called right before the given Sone is fetched.
+	 */
+	fun fetching(sone: Sone)
+
+	/**
+	 * Returns the names of the archives that a fetched edition of the given
+	 * Sone refers to but that are not available yet. The returned archives
+	 * are fetched from the same edition before the edition is parsed.
+	 */
+	fun missingArchives(sone: Sone, fetched: Fetched): Collection<String>
+
+	/**
+	 * Called when an archive of the given Sone has been fetched. This method
+	 * is called before the edition that refers to the archive is parsed, so
+	 * that the parser only needs archives that are already available.
+	 */
+	fun archiveFetched(sone: Sone, archiveName: String, fetched: Fetched)
+
+	/**
+	 * Parses a fetched edition of the given Sone. This method is called on
+	 * one of several parser threads. The parsed download takes over the data
+	 * of the fetched edition; if the edition could not be parsed, the
+	 * pipeline frees it.
+	 *
+	 * @return The parsed download, or `null` if it could not be parsed
+	 */
+	fun parse(sone: Sone, fetched: Fetched): T?
+
+	/**
+	 * Called when an edition of the given Sone could not be fetched because
+	 * it is larger than the maximum size. This method is called on the same
+	 * thread as [store], right before [store] is called for the download.
+	 */
+	fun tooLarge(sone: Sone)
+
+	/**
+	 * Stores a parsed download of the given Sone. This method is called for
+	 * every download, even if it could not be fetched or parsed, and it is
+	 * always called from the same single thread.
+	 *
+	 * @param parsed The parsed download, or `null` if the download failed
+	 */
+	fun store(sone: Sone, parsed: T?)
+
+	/**
+	 * Releases a parsed download of the given Sone that will not be stored
+	 * because the pipeline has been stopped.
+	 */
+	fun discard(sone: Sone, parsed: T)
+
+}
+
+/**
+ * Downloads Sones in three stages: fetching the Sone from Freenet, parsing
+ * the fetched XML, and storing the parsed Sone. The stages are connected by
+ * bounded channels; if a later stage can not keep up, the earlier stages are
+ * suspended, until finally [download] blocks.
+ *
+ * Fetches run on the [IO dispatcher][Dispatchers.IO] so that waiting for
+ * the network never occupies a parser thread. Archives that a fetched Sone
+ * refers to and that are [missing][SoneDownloadStages.missingArchives] are
+ * fetched in the fetch stage as well, from the same edition. Parsing runs on
+ * a fixed number of threads that defaults to the number of processors, and
+ * storing runs on a single thread so that updates of the core are never
+ * interleaved.
+ *
+ * Fetches whose decoded data exceeds the given maximum size are aborted by
+ * the node, without decoding the rest of the data, and are reported to
+ * [SoneDownloadStages.tooLarge].
+ *
+ * The time spent in every stage is recorded in the histograms
+ * `sone.download.fetch.duration`, `sone.download.parse.duration`, and
+ * `sone.download.store.duration`.
+ *
+ * When the pipeline is [stopped][stop], the data of all downloads that are
+ * still waiting between the stages is freed.
+ */
+class SoneDownloadPipeline<T : Any> @JvmOverloads constructor(
+		private val asyncFreenetInterface: AsyncFreenetInterface,
+		private val stages: SoneDownloadStages<T>,
+		metricRegistry: MetricRegistry,
+		private val maximumSize: Long,
+		private val fetchers: Int = 10,
+		private val parsers: Int = Runtime.getRuntime().availableProcessors()) {
+
+	private val parserDispatcher = Executors.newFixedThreadPool(parsers, NamedThreadFactory("Sone Parser %2\$d")).asCoroutineDispatcher()
+	private val storerDispatcher = Executors.newSingleThreadExecutor(NamedThreadFactory("Sone Storer %2\$d")).asCoroutineDispatcher()
+	private val scope = CoroutineScope(SupervisorJob())
+	private val downloads = Channel<Download>(fetchers)
+	private val fetchedDownloads = Channel<FetchedDownload>(parsers)
+	private val parsedDownloads = Channel<ParsedDownload<T>>(parsers)
+	private val fetchDurationHistogram = metricRegistry.histogram("sone.download.fetch.duration") { Histogram(ExponentiallyDecayingReservoir(3000, 0)) }
+	private val parseDurationHistogram = metricRegistry.histogram("sone.download.parse.duration") { Histogram(ExponentiallyDecayingReservoir(3000, 0)) }
+	private val storeDurationHistogram = metricRegistry.histogram("sone.download.store.duration") { Histogram(ExponentiallyDecayingReservoir(3000, 0)) }
+
+	fun start() {
+		repeat(fetchers) {
+			scope.launch(Dispatchers.IO) {
+				for (download in downloads) {
+					fetchedDownloads.sendOrRelease(fetch(download), ::releaseFetched)
+				}
+			}
+		}
+		repeat(parsers) {
+			scope.launch(parserDispatcher) {
+				for (fetchedDownload in fetchedDownloads) {
+					parsedDownloads.sendOrRelease(ParsedDownload(fetchedDownload.sone, fetchedDownload.fetched?.let { parse(fetchedDownload.sone, it) }, fetchedDownload.tooLarge), ::releaseParsed)
+				}
+			}
+		}
+		scope.launch(storerDispatcher) {
+			for (parsedDownload in parsedDownloads) {
+				store(parsedDownload)
+			}
+		}
+	}
+
+	/**
+	 * Hands the download of the given Sone to the pipeline. If the pipeline
+	 * is full, this method blocks until the fetch stage has room again.
+	 *
+	 * @param sone The Sone to download
+	 * @param soneUri The URI of the Sone’s XML
+	 */
+	fun download(sone: Sone, soneUri: FreenetURI) {
+		try {
+			runBlocking { downloads.send(Download(sone, soneUri)) }
+		} catch (closedSendChannelException: ClosedSendChannelException) {
+			/* the pipeline has been stopped, ignore. */
+		}
+	}
+
+	fun stop() {
+		downloads.close()
+		scope.cancel()
+		fetchedDownloads.close()
+		parsedDownloads.close()
+		generateSequence { fetchedDownloads.poll() }.forEach(::releaseFetched)
+		generateSequence { parsedDownloads.poll() }.forEach(::releaseParsed)
+		parserDispatcher.close()
+		storerDispatcher.close()
+	}
+
+	private suspend fun fetch(download: Download): FetchedDownload =
+			try {
+				stages.fetching(download.sone)
+				measure(fetchDurationHistogram) {
+					asyncFreenetInterface.fetchUri(download.soneUri, maximumSize)
+				}.also { fetched -> fetchArchives(download.sone, fetched) }
+						.let { fetched -> FetchedDownload(download.sone, fetched) }
+			} catch (cancellationException: CancellationException) {
+				throw cancellationException
+			} catch (fetchException: FetchException) {
+				if (fetchException.mode == TOO_BIG) {
+					logger.log(WARNING, "“${download.soneUri}” is larger than $maximumSize bytes!", fetchException)
+					FetchedDownload(download.sone, null, true)
+				} else {
+					logger.log(WARNING, "Could not fetch “${download.soneUri}”!", fetchException)
+					FetchedDownload(download.sone, null)
+				}
+			} catch (exception: Exception) {
+				logger.log(WARNING, "Could not fetch ${download.sone} from “${download.soneUri}”!", exception)
+				FetchedDownload(download.sone, null)
+			}
+
+	private suspend fun fetchArchives(sone: Sone, fetched: Fetched) {
+		val editionUri = fetched.freenetUri.let { if (it.isUSK) it.sskForUSK() else it }
+		for (archiveName in stages.missingArchives(sone, fetched)) {
+			val archiveUri = editionUri.setMetaString(arrayOf(archiveName))
+			try {
+				stages.archiveFetched(sone, archiveName, asyncFreenetInterface.fetchUri(archiveUri, maximumSize))
+			} catch (cancellationException: CancellationException) {
+				throw cancellationException
+			} catch (exception: Exception) {
+				logger.log(WARNING, "Could not fetch archive “$archiveUri” of $sone!", exception)
+			}
+		}
+	}
+
+	private fun parse(sone: Sone, fetched: Fetched): T? =
+			measure(parseDurationHistogram) {
+				try {
+					stages.parse(sone, fetched)
+				} catch (exception: Exception) {
+					logger.log(WARNING, "Could not parse $sone from ${fetched.freenetUri}!", exception)
+					null
+				}
+			}.also { parsed ->
+				if (parsed == null) {
+					fetched.fetchResult.asBucket().free()
+				}
+			}
+
+	private fun store(parsedDownload: ParsedDownload<T>) {
+		measure(storeDurationHistogram) {
+			try {
+				if (parsedDownload.tooLarge) {
+					stages.tooLarge(parsedDownload.sone)
+				}
+				stages.store(parsedDownload.sone, parsedDownload.parsed)
+			} catch (exception: Exception) {
+				logger.log(WARNING, "Could not store ${parsedDownload.sone}!", exception)
+			}
+		}
+	}
+
+	private fun releaseFetched(fetchedDownload: FetchedDownload) {
+		fetchedDownload.fetched?.fetchResult?.asBucket()?.free()
+	}
+
+	private fun releaseParsed(parsedDownload: ParsedDownload<T>) {
+		try {
+			parsedDownload.parsed?.let { stages.discard(parsedDownload.sone, it) }
+		} catch (exception: Exception) {
+			logger.log(WARNING, "Could not discard ${parsedDownload.sone}!", exception)
+		}
+	}
+
+	private data class Download(val sone: Sone, val soneUri: FreenetURI)
+	private data class FetchedDownload(val sone: Sone, val fetched: Fetched?, val tooLarge: Boolean = false)
+	private data class ParsedDownload<P>(val sone: Sone, val parsed: P?, val tooLarge: Boolean)
+
+}
+
+/**
+ * Sends the given element, or releases it if it can not be handed to the
+ * next stage because the pipeline has been stopped.
+ */
+private suspend fun <E> SendChannel<E>.sendOrRelease(element: E, release: (E) -> Unit) {
+	try {
+		send(element)
+	} catch (closedSendChannelException: ClosedSendChannelException) {
+		release(element)
+	} catch (cancellationException: CancellationException) {
+		release(element)
+		throw cancellationException
+	}
+}
+
+private inline fun <R> measure(histogram: Histogram, action: () -> R): R {
+	val start = System.nanoTime()
+	try {
+		return action()
+	} finally {
+		histogram.update(NANOSECONDS.toMillis(System.nanoTime() - start))
+	}
+}
+
+private val logger: Logger = getLogger(SoneDownloadPipeline::class.java.name)
@@ -0,0 +1,96 @@
+package net.pterodactylus.sone.core
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir
+import com.codahale.metrics.Gauge
+import com.codahale.metrics.Histogram
+import com.codahale.metrics.MetricRegistry
+import net.pterodactylus.sone.data.Sone
+import net.pterodactylus.sone.database.Database
+import net.pterodactylus.util.thread.NamedThreadFactory
+import java.lang.System.currentTimeMillis
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.PriorityBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit.DAYS
+import java.util.concurrent.TimeUnit.MILLISECONDS
+import java.util.concurrent.TimeUnit.NANOSECONDS
+import java.util.concurrent.atomic.AtomicLong
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Runs the downloads of Sones on a fixed number of threads.
+ *
+ * Sones that are followed by a local Sone are downloaded first, followed by
+ * Sones that have been active recently, followed by all other Sones. Only a
+ * single download per Sone is ever queued: scheduling a download for a Sone
+ * that already has a queued download replaces the queued download, so the
+ * size of the queue is bounded by the number of Sones.
+ *
+ * By default, downloads are run on a single thread; the downloads only hand
+ * the Sones to the [SoneDownloadPipeline] which blocks while it is full, so
+ * that the order of the downloads is kept until the pipeline has room again.
+ */
+@Singleton
+class SoneDownloadScheduler(private val database: Database, metricRegistry: MetricRegistry, threads: Int) {
+
+	@Inject
+	constructor(database: Database, metricRegistry: MetricRegistry) : this(database, metricRegistry, 1)
+
+	private val executor = ThreadPoolExecutor(threads, threads, 0, MILLISECONDS, PriorityBlockingQueue<Runnable>(), NamedThreadFactory("Sone Downloader %2\$d"))
+	private val queuedDownloads = ConcurrentHashMap<String, Download>()
+	private val sequence = AtomicLong()
+	private val waitTimeHistogram = metricRegistry.histogram("sone.download.wait") { Histogram(ExponentiallyDecayingReservoir(3000, 0)) }
+	private val supersededDownloadsCounter = metricRegistry.counter("sone.download.superseded")
+
+	init {
+		metricRegistry.gauge("sone.download.queue") { Gauge { executor.queue.size } }
+	}
+
+	/**
+	 * Schedules the given download of the given Sone. If a download of the
+	 * Sone is already queued, it is replaced by the given download.
+	 *
+	 * @param sone The Sone to download
+	 * @param download The action that downloads the Sone
+	 */
+	fun schedule(sone: Sone, download: Runnable) {
+		val queuedDownload = Download(sone.id, sone.downloadPriority, sequence.incrementAndGet(), download)
+		queuedDownloads.put(sone.id, queuedDownload)?.let { supersededDownload ->
+			if (executor.remove(supersededDownload)) {
+				supersededDownloadsCounter.inc()
+			}
+		}
+		executor.execute(queuedDownload)
+	}
+
+	fun stop() {
+		executor.shutdownNow()
+	}
+
+	private val Sone.downloadPriority
+		get() = when {
+			database.localSones.any { it.hasFriend(id) } -> 0
+			currentTimeMillis() - time < DAYS.toMillis(7) -> 1
+			else -> 2
+		}
+
+	private inner class Download(private val soneId: String, private val priority: Int, private val sequence: Long, private val download: Runnable) : Runnable, Comparable<Download> {
+
+		private val queueTime = System.nanoTime()
+
+		override fun run() {
+			if (!queuedDownloads.remove(soneId, this)) {
+				supersededDownloadsCounter.inc()
+				return
+			}
+			waitTimeHistogram.update(NANOSECONDS.toMillis(System.nanoTime() - queueTime))
+			download.run()
+		}
+
+		override fun compareTo(other: Download) =
+				compareValuesBy(this, other, Download::priority, Download::sequence)
+
+	}
+
+}
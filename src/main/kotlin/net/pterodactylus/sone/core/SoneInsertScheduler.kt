@@ -0,0 +1,209 @@
+package net.pterodactylus.sone.core
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir
+import com.codahale.metrics.Gauge
+import com.codahale.metrics.Histogram
+import com.codahale.metrics.MetricRegistry
+import net.pterodactylus.util.thread.NamedThreadFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.PriorityBlockingQueue
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit.HOURS
+import java.util.concurrent.TimeUnit.MILLISECONDS
+import java.util.concurrent.TimeUnit.MINUTES
+import java.util.concurrent.TimeUnit.NANOSECONDS
+import java.util.concurrent.atomic.AtomicLong
+import java.util.logging.Level.WARNING
+import java.util.logging.Logger
+import java.util.logging.Logger.getLogger
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Decides when the local Sones are inserted, and runs the inserts on a
+ * fixed number of threads.
+ *
+ * Instead of every [SoneInserter] polling its Sone on a thread of its own,
+ * a single scheduler thread checks all registered inserters whenever a Sone
+ * [has been modified][soneModified], and again when the earliest pending
+ * modification becomes eligible for an insert. Sones are checked at least
+ * once per check interval so that modifications that were not announced are
+ * still picked up.
+ *
+ * Eligible Sones are inserted in the order of their pending modifications,
+ * oldest modification first. Only a single insert per Sone is ever queued.
+ * By default only one insert is running at any time, so that inserts of
+ * several local Sones do not compete for the node’s bandwidth.
+ *
+ * After a failed insert, a Sone is not inserted again until the failure
+ * delay has passed; the delay doubles with every further failure, up to one
+ * hour, and is reset by a successful insert.
+ *
+ * The number of queued inserts is exported as the gauge `sone.insert.queue`;
+ * the time inserts spend in the queue is recorded in the histogram
+ * `sone.insert.wait`, and per Sone in `sone.insert.<sone id>.wait`.
+ */
+@Singleton
+class SoneInsertScheduler(private val metricRegistry: MetricRegistry, inserts: Int, private val checkInterval: Long, private val failureDelay: Long) {
+
+	@Inject
+	constructor(metricRegistry: MetricRegistry) : this(metricRegistry, 1, MINUTES.toMillis(1), MINUTES.toMillis(1))
+
+	private val executor = ThreadPoolExecutor(inserts, inserts, 0, MILLISECONDS, PriorityBlockingQueue<Runnable>(), NamedThreadFactory("Sone Inserter %2\$d"))
+	private val checker = Executors.newSingleThreadScheduledExecutor(NamedThreadFactory("Sone Insert Scheduler %2\$d"))
+	private val soneInserters = ConcurrentHashMap<String, SoneInserter>()
+	private val queuedInserts = ConcurrentHashMap.newKeySet<String>()
+	private val failures = ConcurrentHashMap<String, Failure>()
+	private val sequence = AtomicLong()
+	private val waitTimeHistogram = metricRegistry.histogram("sone.insert.wait") { Histogram(ExponentiallyDecayingReservoir(3000, 0)) }
+	/* synchronize on this. */
+	private var nextCheck: ScheduledFuture<*>? = null
+
+	init {
+		metricRegistry.gauge("sone.insert.queue") { Gauge { executor.queue.size } }
+	}
+
+	/**
+	 * Registers the given inserter. Its Sone will be inserted whenever it
+	 * is eligible for an insert, until the inserter is [unregistered][unregister].
+	 *
+	 * @param soneInserter The inserter to register
+	 */
+	fun register(soneInserter: SoneInserter) {
+		soneInserters[soneInserter.soneId] = soneInserter
+		soneModified()
+	}
+
+	/**
+	 * Unregisters and stops the given inserter, and removes the metrics of
+	 * its Sone.
+	 *
+	 * @param soneInserter The inserter to unregister
+	 */
+	fun unregister(soneInserter: SoneInserter) {
+		soneInserters.remove(soneInserter.soneId, soneInserter)
+		soneInserter.stop()
+		failures.remove(soneInserter.soneId)
+		metricRegistry.removeMatching { name, _ -> name.startsWith("sone.insert.${soneInserter.soneId}.") }
+	}
+
+	/**
+	 * Notifies the scheduler that a local Sone may have been modified, so
+	 * that all Sones are checked right away.
+	 */
+	fun soneModified() {
+		scheduleCheck(0)
+	}
+
+	/**
+	 * Stops the scheduler. Queued inserts are discarded; inserts that are
+	 * already running are not interrupted.
+	 */
+	fun stop() {
+		synchronized(this) {
+			checker.shutdownNow()
+		}
+		executor.shutdown()
+		executor.queue.clear()
+	}
+
+	private fun scheduleCheck(delay: Long) {
+		synchronized(this) {
+			if (checker.isShutdown) {
+				return
+			}
+			nextCheck?.let { check ->
+				if (!check.isDone && (check.getDelay(MILLISECONDS) <= delay)) {
+					return
+				}
+				check.cancel(false)
+			}
+			nextCheck = checker.schedule(Runnable { checkSones() }, delay, MILLISECONDS)
+		}
+	}
+
+	private fun checkSones() {
+		synchronized(this) {
+			nextCheck = null
+		}
+		var nextCheckDelay = checkInterval
+		for (soneInserter in soneInserters.values) {
+			if (soneInserter.soneId in queuedInserts) {
+				continue
+			}
+			val timeUntilRetry = failures[soneInserter.soneId]?.timeUntilRetry ?: 0L
+			if (timeUntilRetry > 0) {
+				nextCheckDelay = minOf(nextCheckDelay, timeUntilRetry)
+				continue
+			}
+			try {
+				if (soneInserter.isEligibleForInsert) {
+					queueInsert(soneInserter)
+				} else {
+					soneInserter.timeUntilEligible?.let { timeUntilEligible ->
+						nextCheckDelay = minOf(nextCheckDelay, NANOSECONDS.toMillis(timeUntilEligible) + 1)
+					}
+				}
+			} catch (exception: Exception) {
+				logger.log(WARNING, "Could not check Sone ${soneInserter.soneId}!", exception)
+			}
+		}
+		scheduleCheck(nextCheckDelay)
+	}
+
+	private fun queueInsert(soneInserter: SoneInserter) {
+		if (executor.isShutdown) {
+			return
+		}
+		queuedInserts += soneInserter.soneId
+		executor.execute(Insert(soneInserter, soneInserter.modificationTime ?: Long.MAX_VALUE, sequence.incrementAndGet()))
+	}
+
+	private inner class Insert(private val soneInserter: SoneInserter, private val modificationTime: Long, private val sequence: Long) : Runnable, Comparable<Insert> {
+
+		private val queueTime = System.nanoTime()
+
+		override fun run() {
+			val waitTime = NANOSECONDS.toMillis(System.nanoTime() - queueTime)
+			waitTimeHistogram.update(waitTime)
+			metricRegistry.histogram("sone.insert.${soneInserter.soneId}.wait") { Histogram(ExponentiallyDecayingReservoir(3000, 0)) }.update(waitTime)
+			try {
+				if (soneInserter.insert()) {
+					failures.remove(soneInserter.soneId)
+				} else {
+					insertFailed(soneInserter.soneId)
+				}
+			} catch (exception: Exception) {
+				logger.log(WARNING, "Could not insert Sone ${soneInserter.soneId}!", exception)
+				insertFailed(soneInserter.soneId)
+			} finally {
+				queuedInserts -= soneInserter.soneId
+				soneModified()
+			}
+		}
+
+		override fun compareTo(other: Insert) =
+				compareValuesBy(this, other, Insert::modificationTime, Insert::sequence)
+
+	}
+
+	private fun insertFailed(soneId: String) {
+		failures.compute(soneId) { _, failure ->
+			val count = (failure?.count ?: 0) + 1
+			val delay = minOf(failureDelay shl minOf(count - 1, 16), HOURS.toMillis(1))
+			Failure(count, System.nanoTime() + MILLISECONDS.toNanos(delay))
+		}
+	}
+
+	private class Failure(val count: Int, private val retryTime: Long) {
+
+		val timeUntilRetry
+			get() = maxOf(0L, NANOSECONDS.toMillis(retryTime - System.nanoTime()) + 1)
+
+	}
+
+}
+
+private val logger: Logger = getLogger(SoneInsertScheduler::class.java.name)
@@ -0,0 +1,38 @@
+package net.pterodactylus.sone.core
+
+import net.pterodactylus.util.config.Configuration
+import javax.inject.Inject
+
+/**
+ * Limits for Sones that are parsed by the [SoneParser]. A Sone that exceeds
+ * any of these limits is rejected as soon as the limit is exceeded.
+ *
+ * The limits can be changed in the configuration, below `Option/SoneLimits/`.
+ */
+data class SoneParserLimits(
+		val maximumDocumentSize: Int = 16 * 1024 * 1024,
+		val maximumPosts: Int = 20_000,
+		val maximumReplies: Int = 100_000,
+		val maximumLikes: Int = 100_000,
+		val maximumAlbums: Int = 5_000,
+		val maximumImages: Int = 20_000,
+		val maximumTextLength: Int = 1024 * 1024
+) {
+
+	@Inject
+	constructor(configuration: Configuration) : this(
+			configuration.getLimit("DocumentSize") ?: defaultLimits.maximumDocumentSize,
+			configuration.getLimit("Posts") ?: defaultLimits.maximumPosts,
+			configuration.getLimit("Replies") ?: defaultLimits.maximumReplies,
+			configuration.getLimit("Likes") ?: defaultLimits.maximumLikes,
+			configuration.getLimit("Albums") ?: defaultLimits.maximumAlbums,
+			configuration.getLimit("Images") ?: defaultLimits.maximumImages,
+			configuration.getLimit("TextLength") ?: defaultLimits.maximumTextLength
+	)
+
+}
+
+private fun Configuration.getLimit(name: String): Int? =
+		getIntValue("Option/SoneLimits/$name").getValue(null)?.takeIf { it > 0 }
+
+private val defaultLimits = SoneParserLimits()
@@ -17,7 +17,13 @@ import javax.inject.Inject
 @ImplementedBy(DefaultUpdateSoneProcessor::class)
 interface UpdatedSoneProcessor {
 
-	fun updateSone(sone: Sone)
+	/**
+	 * Processes the given downloaded Sone.
+	 *
+	 * @param sone The downloaded Sone
+	 * @return `true` if the Sone was stored, `false` if it was discarded
+	 */
+	fun updateSone(sone: Sone): Boolean
 
 }
 
@@ -26,14 +32,15 @@ abstract class BasicUpdateSoneProcessor(private val database: Database, private
 
 	private val logger = Logging.getLogger(UpdatedSoneProcessor::javaClass.name)!!
 
-	override fun updateSone(sone: Sone) {
-		val storedSone = database.getSone(sone.id) ?: return
+	override fun updateSone(sone: Sone): Boolean {
+		val storedSone = database.getSone(sone.id) ?: return false
 		if (!soneCanBeUpdated(storedSone, sone)) {
 			logger.fine("Downloaded Sone $sone can not update stored Sone $storedSone.")
-			return
+			return false
 		}
 
-		SoneComparison(storedSone, sone).apply {
+		val soneComparison = SoneComparison(storedSone, sone)
+		soneComparison.apply {
 			newPosts
 					.onEach { post -> if (post.time <= sone.followingTime) post.isKnown = true }
 					.mapNotNull { post -> post.isKnown.ifFalse { NewPostFoundEvent(post) } }
@@ -49,10 +56,12 @@ abstract class BasicUpdateSoneProcessor(private val database: Database, private
 					.map { PostReplyRemovedEvent(it) }
 					.forEach(eventBus::post)
 		}
-		database.storeSone(sone)
+		database.storeSoneChanges(soneComparison)
+		eventBus.post(SoneChangesStoredEvent(soneComparison))
 		sone.options = storedSone.options
 		sone.isKnown = storedSone.isKnown
 		sone.status = if (sone.time != 0L) SoneStatus.idle else SoneStatus.unknown
+		return true
 	}
 
 	protected abstract fun soneCanBeUpdated(storedSone: Sone, newSone: Sone): Boolean
@@ -0,0 +1,99 @@
+package net.pterodactylus.sone.core
+
+import com.google.common.eventbus.Subscribe
+import freenet.node.RequestStarter.INTERACTIVE_PRIORITY_CLASS
+import freenet.node.RequestStarter.PREFETCH_PRIORITY_CLASS
+import freenet.node.RequestStarter.UPDATE_PRIORITY_CLASS
+import net.pterodactylus.sone.core.event.MentionOfLocalSoneFoundEvent
+import net.pterodactylus.sone.data.Sone
+import net.pterodactylus.sone.database.Database
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit.DAYS
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * How intensely the USK of a Sone is polled for new editions.
+ */
+enum class PollingTier(val active: Boolean, val normalPriority: Short, val progressPriority: Short) {
+
+	/** Polled actively, with the highest priority. */
+	frequent(true, INTERACTIVE_PRIORITY_CLASS, INTERACTIVE_PRIORITY_CLASS),
+
+	/** Polled actively, with the priority of regular updates. */
+	regular(true, UPDATE_PRIORITY_CLASS, INTERACTIVE_PRIORITY_CLASS),
+
+	/** Polled actively, with the lowest priority. */
+	occasional(true, PREFETCH_PRIORITY_CLASS, UPDATE_PRIORITY_CLASS),
+
+	/** Not polled at all, new editions are only picked up on the side. */
+	passive(false, PREFETCH_PRIORITY_CLASS, PREFETCH_PRIORITY_CLASS)
+
+}
+
+/**
+ * Decides which [PollingTier] is used for a Sone.
+ *
+ * Sones that are followed by a local Sone or that have recently mentioned a
+ * local Sone are always polled [frequently][PollingTier.frequent]. All other
+ * Sones are polled according to how often they have been updated in the
+ * past; Sones that have not been updated for a long time are not polled
+ * actively anymore.
+ */
+@Singleton
+class UskPollingTiers(private val database: Database, private val ticker: () -> Long) {
+
+	@Inject
+	constructor(database: Database) : this(database, System::currentTimeMillis)
+
+	private val updateIntervals = ConcurrentHashMap<String, UpdateInterval>()
+	private val mentions = ConcurrentHashMap<String, Long>()
+
+	fun getTier(sone: Sone): PollingTier {
+		val now = ticker()
+		if (database.localSones.any { it.hasFriend(sone.id) } || (mentions[sone.id]?.let { now - it < mentionDuration } == true)) {
+			return PollingTier.frequent
+		}
+		if (now - sone.time > dormantDuration) {
+			return PollingTier.passive
+		}
+		val updateInterval = updateIntervals[sone.id]?.interval ?: return if (now - sone.time < DAYS.toMillis(7)) PollingTier.regular else PollingTier.passive
+		return when {
+			updateInterval <= DAYS.toMillis(1) -> PollingTier.regular
+			updateInterval <= DAYS.toMillis(7) -> PollingTier.occasional
+			else -> PollingTier.passive
+		}
+	}
+
+	/**
+	 * Records the time of a downloaded Sone, updating its measured update
+	 * interval.
+	 *
+	 * @param sone The downloaded Sone
+	 */
+	fun soneUpdated(sone: Sone) {
+		if (sone.time == 0L) {
+			return
+		}
+		updateIntervals.compute(sone.id) { _, updateInterval ->
+			when {
+				updateInterval == null -> UpdateInterval(sone.time, null)
+				sone.time <= updateInterval.lastTime -> updateInterval
+				else -> UpdateInterval(sone.time, (sone.time - updateInterval.lastTime).let { interval ->
+					updateInterval.interval?.let { (it * 3 + interval) / 4 } ?: interval
+				})
+			}
+		}
+	}
+
+	@Subscribe
+	fun mentionOfLocalSoneFound(mentionOfLocalSoneFoundEvent: MentionOfLocalSoneFoundEvent) {
+		mentionOfLocalSoneFoundEvent.post.sone?.id?.let { mentions[it] = ticker() }
+	}
+
+	private data class UpdateInterval(val lastTime: Long, val interval: Long?)
+
+}
+
+private val mentionDuration = DAYS.toMillis(30)
+private val dormantDuration = DAYS.toMillis(90)
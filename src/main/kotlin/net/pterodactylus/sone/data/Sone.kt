@@ -17,6 +17,7 @@
 
 package net.pterodactylus.sone.data
 
+import net.pterodactylus.sone.freenet.wot.*
 import net.pterodactylus.sone.template.*
 import java.util.Comparator.*
 
@@ -59,3 +60,15 @@ val Sone.allAlbums: List<Album>
 val Sone.allImages: Collection<Image>
 	get() =
 		rootAlbum.allImages
+
+/**
+ * Returns whether the given local Sone has assigned negative trust to this
+ * Sone, either explicitly or, if there is no explicit trust, implicitly. A
+ * Sone without any trust value is not distrusted, as trust values may not
+ * have been received yet.
+ */
+fun Sone.isDistrustedBy(localSone: Sone): Boolean =
+		(localSone.identity as? OwnIdentity)
+				?.let { identity.getTrust(it) }
+				?.let { trust -> trust.explicit?.let { it < 0 } ?: trust.implicit?.let { it < 0 } }
+				?: false
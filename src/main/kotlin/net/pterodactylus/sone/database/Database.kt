@@ -23,7 +23,14 @@ import com.google.common.util.concurrent.Service
  * Database for Sone data. This interface combines the various provider,
  * store, and builder factory interfaces into a single interface.
  */
-interface Database : Service, SoneDatabase, FriendDatabase, PostDatabase, PostReplyDatabase, AlbumDatabase, ImageDatabase, BookmarkDatabase {
+interface Database : Service, SoneDatabase, FriendDatabase, PostDatabase, PostReplyDatabase, AlbumDatabase, ImageDatabase, BookmarkDatabase, LikeProvider {
+
+	/**
+	 * A number that is increased whenever a Sone, post, reply, album, or
+	 * image is stored or removed. It can be used to invalidate data that was
+	 * derived from the database.
+	 */
+	val version: Long
 
 	@Throws(DatabaseException::class)
 	fun save()
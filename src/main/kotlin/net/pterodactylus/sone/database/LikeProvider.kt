@@ -0,0 +1,58 @@
+/*
+ * Sone - LikeProvider.kt - Copyright © 2020 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.database
+
+/**
+ * Interface for objects that know which Sones like which posts and
+ * replies.
+ */
+interface LikeProvider {
+
+	/**
+	 * Returns the IDs of all Sones that like the post with the given ID.
+	 *
+	 * @param postId The ID of the post
+	 * @return The IDs of the Sones liking the post
+	 */
+	fun getPostLikes(postId: String): Set<String>
+
+	/**
+	 * Returns the number of Sones that like the post with the given ID.
+	 *
+	 * @param postId The ID of the post
+	 * @return The number of Sones liking the post
+	 */
+	fun getPostLikeCount(postId: String): Int
+
+	/**
+	 * Returns the IDs of all Sones that like the reply with the given ID.
+	 *
+	 * @param replyId The ID of the reply
+	 * @return The IDs of the Sones liking the reply
+	 */
+	fun getPostReplyLikes(replyId: String): Set<String>
+
+	/**
+	 * Returns the number of Sones that like the reply with the given ID.
+	 *
+	 * @param replyId The ID of the reply
+	 * @return The number of Sones liking the reply
+	 */
+	fun getPostReplyLikeCount(replyId: String): Int
+
+}
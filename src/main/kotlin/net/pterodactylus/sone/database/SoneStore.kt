@@ -1,5 +1,6 @@
 package net.pterodactylus.sone.database
 
+import net.pterodactylus.sone.core.SoneComparison
 import net.pterodactylus.sone.data.Sone
 
 /**
@@ -8,6 +9,17 @@ import net.pterodactylus.sone.data.Sone
 interface SoneStore {
 
 	fun storeSone(sone: Sone)
+
+	/**
+	 * Replaces the [old Sone][SoneComparison.oldSone] of the given comparison
+	 * with its [new Sone][SoneComparison.newSone], only updating the posts and
+	 * replies that have been added or removed. If the stored Sone is not the
+	 * old Sone of the comparison, the new Sone is stored as with
+	 * [storeSone].
+	 *
+	 * @param soneComparison The comparison of the stored and the new Sone
+	 */
+	fun storeSoneChanges(soneComparison: SoneComparison)
 	fun removeSone(sone: Sone)
 
 }
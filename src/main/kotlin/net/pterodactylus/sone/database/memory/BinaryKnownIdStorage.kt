@@ -0,0 +1,54 @@
+/*
+ * Sone - BinaryKnownIdStorage.kt - Copyright © 2020 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.database.memory
+
+import net.pterodactylus.sone.database.DatabaseException
+import java.io.File
+import java.io.IOException
+
+/**
+ * [MemoryDatabaseStorage] that stores the known posts and replies in
+ * [KnownIdJournal]s of their own. Everything else is delegated to another
+ * storage, which is also used to load the known posts and replies as long as
+ * no checkpoint has been written for them.
+ */
+class BinaryKnownIdStorage(private val storage: MemoryDatabaseStorage, knownPostsFile: File, knownPostRepliesFile: File) : MemoryDatabaseStorage by storage {
+
+	private val knownPostsJournal = KnownIdJournal(knownPostsFile)
+	private val knownPostRepliesJournal = KnownIdJournal(knownPostRepliesFile)
+
+	override fun loadKnownPosts(): Set<String> =
+			knownPostsJournal.load() ?: storage.loadKnownPosts()
+
+	override fun saveKnownPosts(knownPosts: Collection<String>, changedPostIds: Collection<String>) =
+			failOnIOException { knownPostsJournal.save(knownPosts, changedPostIds) }
+
+	override fun loadKnownPostReplies(): Set<String> =
+			knownPostRepliesJournal.load() ?: storage.loadKnownPostReplies()
+
+	override fun saveKnownPostReplies(knownPostReplies: Collection<String>, changedPostReplyIds: Collection<String>) =
+			failOnIOException { knownPostRepliesJournal.save(knownPostReplies, changedPostReplyIds) }
+
+	private fun failOnIOException(action: () -> Unit) =
+			try {
+				action()
+			} catch (ioe1: IOException) {
+				throw DatabaseException("Could not save database.", ioe1)
+			}
+
+}
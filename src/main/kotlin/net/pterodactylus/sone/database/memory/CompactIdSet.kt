@@ -0,0 +1,254 @@
+/*
+ * Sone - CompactIdSet.kt - Copyright © 2020 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.database.memory
+
+import java.io.DataInput
+import java.io.DataOutput
+import java.io.IOException
+import java.util.UUID
+
+/**
+ * Set of IDs that stores every ID in the canonical form of a [UUID] as two
+ * `long`s in an open-addressing hash table, instead of as a [String] in a
+ * [HashSet]. IDs in any other form are kept in a regular set.
+ *
+ * Iterating over this set creates a snapshot of its IDs, so the set can be
+ * modified while it is iterated. This set is not thread-safe.
+ */
+class CompactIdSet private constructor(private var table: LongArray, private var uuidCount: Int, private val otherIds: MutableSet<String>) : AbstractMutableSet<String>() {
+
+	constructor() : this(LongArray(2 * INITIAL_CAPACITY), 0, mutableSetOf())
+
+	private val capacity get() = table.size / 2
+	private val mask get() = capacity - 1
+
+	override val size get() = uuidCount + otherIds.size
+
+	override fun contains(element: String) =
+			if (element.isStorableUuid()) {
+				!isEmptySlot(findSlot(element.uuidHigh(), element.uuidLow()))
+			} else {
+				element in otherIds
+			}
+
+	override fun add(element: String) =
+			if (element.isStorableUuid()) {
+				addUuid(element.uuidHigh(), element.uuidLow())
+			} else {
+				otherIds.add(element)
+			}
+
+	override fun addAll(elements: Collection<String>): Boolean {
+		if (elements === this) {
+			return false
+		}
+		if (elements !is CompactIdSet) {
+			return super.addAll(elements)
+		}
+		var changed = otherIds.addAll(elements.otherIds)
+		elements.uuids().forEach { (high, low) -> changed = addUuid(high, low) || changed }
+		return changed
+	}
+
+	override fun remove(element: String): Boolean {
+		if (!element.isStorableUuid()) {
+			return otherIds.remove(element)
+		}
+		val slot = findSlot(element.uuidHigh(), element.uuidLow())
+		if (isEmptySlot(slot)) {
+			return false
+		}
+		removeSlot(slot)
+		return true
+	}
+
+	override fun clear() {
+		table = LongArray(2 * INITIAL_CAPACITY)
+		uuidCount = 0
+		otherIds.clear()
+	}
+
+	override fun iterator(): MutableIterator<String> {
+		val ids = uuids().map { (high, low) -> UUID(high, low).toString() }.toList() + otherIds
+		return object : MutableIterator<String> {
+			private var index = 0
+			override fun hasNext() = index < ids.size
+			override fun next() = if (hasNext()) ids[index++] else throw NoSuchElementException()
+			override fun remove() {
+				check(index > 0)
+				this@CompactIdSet.remove(ids[index - 1])
+			}
+		}
+	}
+
+	/**
+	 * Writes the IDs of this set in binary form to the given output. The IDs
+	 * can be read again using [readFrom].
+	 *
+	 * @param output The output to write the IDs to
+	 */
+	@Throws(IOException::class)
+	fun writeTo(output: DataOutput) {
+		output.writeInt(uuidCount)
+		uuids().forEach { (high, low) ->
+			output.writeLong(high)
+			output.writeLong(low)
+		}
+		output.writeInt(otherIds.size)
+		otherIds.forEach(output::writeUTF)
+	}
+
+	private fun uuids() =
+			(0 until capacity).asSequence()
+					.filterNot(this::isEmptySlot)
+					.map { slot -> table[2 * slot] to table[2 * slot + 1] }
+
+	private fun isEmptySlot(slot: Int) =
+			(table[2 * slot] == 0L) && (table[2 * slot + 1] == 0L)
+
+	private fun homeSlot(high: Long, low: Long) =
+			(((high xor low) * HASH_MULTIPLIER) ushr (64 - Integer.numberOfTrailingZeros(capacity))).toInt()
+
+	private fun findSlot(high: Long, low: Long): Int {
+		var slot = homeSlot(high, low)
+		while (!isEmptySlot(slot) && ((table[2 * slot] != high) || (table[2 * slot + 1] != low))) {
+			slot = (slot + 1) and mask
+		}
+		return slot
+	}
+
+	private fun addUuid(high: Long, low: Long): Boolean {
+		if ((uuidCount + 1) * 3 > capacity * 2) {
+			resize(capacity * 2)
+		}
+		return insert(high, low)
+	}
+
+	private fun insert(high: Long, low: Long): Boolean {
+		val slot = findSlot(high, low)
+		if (!isEmptySlot(slot)) {
+			return false
+		}
+		table[2 * slot] = high
+		table[2 * slot + 1] = low
+		uuidCount++
+		return true
+	}
+
+	/*
+	 * Removes the entry in the given slot, and moves entries of the same
+	 * cluster that can not be found anymore once the slot is empty back
+	 * into the gap.
+	 */
+	private fun removeSlot(removedSlot: Int) {
+		var emptySlot = removedSlot
+		var slot = (emptySlot + 1) and mask
+		while (!isEmptySlot(slot)) {
+			val homeSlot = homeSlot(table[2 * slot], table[2 * slot + 1])
+			if (((slot - homeSlot) and mask) >= ((slot - emptySlot) and mask)) {
+				table[2 * emptySlot] = table[2 * slot]
+				table[2 * emptySlot + 1] = table[2 * slot + 1]
+				emptySlot = slot
+			}
+			slot = (slot + 1) and mask
+		}
+		table[2 * emptySlot] = 0
+		table[2 * emptySlot + 1] = 0
+		uuidCount--
+	}
+
+	private fun resize(newCapacity: Int) {
+		val oldUuids = uuids().toList()
+		table = LongArray(2 * newCapacity)
+		uuidCount = 0
+		oldUuids.forEach { (high, low) -> insert(high, low) }
+	}
+
+	companion object {
+
+		/**
+		 * Reads a set of IDs that was written using [writeTo].
+		 *
+		 * @param input The input to read the IDs from
+		 * @return The read IDs
+		 */
+		@JvmStatic
+		@Throws(IOException::class)
+		fun readFrom(input: DataInput): CompactIdSet {
+			val uuidCount = input.readInt()
+			var capacity = INITIAL_CAPACITY
+			while (uuidCount * 3 > capacity * 2) {
+				capacity *= 2
+			}
+			val compactIdSet = CompactIdSet(LongArray(2 * capacity), 0, mutableSetOf())
+			repeat(uuidCount) {
+				compactIdSet.insert(input.readLong(), input.readLong())
+			}
+			repeat(input.readInt()) {
+				compactIdSet.otherIds.add(input.readUTF())
+			}
+			return compactIdSet
+		}
+
+	}
+
+}
+
+private const val INITIAL_CAPACITY = 16
+private const val HASH_MULTIPLIER = -7046029254386353131L
+
+/*
+ * Only the canonical form is stored as a UUID so that the original string
+ * can be restored from the UUID. The nil UUID is used to mark empty slots.
+ */
+private fun String.isStorableUuid(): Boolean {
+	if (length != 36) {
+		return false
+	}
+	for (index in 0 until 36) {
+		if ((index == 8) || (index == 13) || (index == 18) || (index == 23)) {
+			if (this[index] != '-') {
+				return false
+			}
+		} else if (hexValue(this[index]) < 0) {
+			return false
+		}
+	}
+	return (uuidHigh() != 0L) || (uuidLow() != 0L)
+}
+
+private fun String.uuidHigh() =
+		parseHex(14, 18, parseHex(9, 13, parseHex(0, 8, 0)))
+
+private fun String.uuidLow() =
+		parseHex(24, 36, parseHex(19, 23, 0))
+
+private fun String.parseHex(start: Int, end: Int, initialValue: Long): Long {
+	var value = initialValue
+	for (index in start until end) {
+		value = (value shl 4) or hexValue(this[index]).toLong()
+	}
+	return value
+}
+
+private fun hexValue(character: Char) =
+		when (character) {
+			in '0'..'9' -> character - '0'
+			in 'a'..'f' -> character - 'a' + 10
+			else -> -1
+		}
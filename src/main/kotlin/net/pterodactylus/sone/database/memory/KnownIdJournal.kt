@@ -0,0 +1,160 @@
+/*
+ * Sone - KnownIdJournal.kt - Copyright © 2020 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.database.memory
+
+import com.google.common.io.CountingInputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption.ATOMIC_MOVE
+import java.nio.file.StandardCopyOption.REPLACE_EXISTING
+
+/**
+ * Persists a set of IDs as a checkpoint, which contains the complete set in
+ * the binary form of a [CompactIdSet], and a journal of the IDs that were
+ * added or removed since the checkpoint was written. Saving a change only
+ * appends to the journal; once the journal contains more than
+ * [maximumJournalLength] entries, a new checkpoint is written instead and
+ * the journal is started anew.
+ *
+ * Checkpoint and journal both start with a generation number. A journal
+ * whose generation does not match the checkpoint’s belongs to an older
+ * checkpoint and is ignored.
+ */
+class KnownIdJournal(private val checkpointFile: File, private val maximumJournalLength: Int = 10_000) {
+
+	private val journalFile = File(checkpointFile.path + ".journal")
+	private var generation: Long? = null
+	private var journalLength = 0
+
+	/**
+	 * Loads the IDs from the checkpoint and applies all changes from the
+	 * journal.
+	 *
+	 * @return The loaded IDs, or `null` if no checkpoint has been written yet
+	 */
+	@Synchronized
+	@Throws(IOException::class)
+	fun load(): CompactIdSet? {
+		if (!checkpointFile.exists()) {
+			return null
+		}
+		val ids = DataInputStream(checkpointFile.inputStream().buffered()).use { inputStream ->
+			generation = inputStream.readLong()
+			CompactIdSet.readFrom(inputStream)
+		}
+		journalLength = 0
+		if (journalFile.exists()) {
+			applyJournal(ids)
+		}
+		return ids
+	}
+
+	/**
+	 * Saves the changes of the given IDs.
+	 *
+	 * @param ids All current IDs
+	 * @param changedIds The IDs that were added to or removed from the IDs
+	 * since the last time they were saved
+	 */
+	@Synchronized
+	@Throws(IOException::class)
+	fun save(ids: Collection<String>, changedIds: Collection<String>) {
+		if ((generation == null) || (journalLength + changedIds.size > maximumJournalLength)) {
+			writeCheckpoint(ids)
+		} else if (changedIds.isNotEmpty()) {
+			appendToJournal(changedIds.map { it to (it in ids) })
+		}
+	}
+
+	private fun applyJournal(ids: CompactIdSet) {
+		var validLength = 0L
+		val countingInputStream = CountingInputStream(journalFile.inputStream().buffered())
+		DataInputStream(countingInputStream).use { inputStream ->
+			try {
+				if (inputStream.readLong() != generation) {
+					return@use
+				}
+				validLength = countingInputStream.count
+				entries@ while (true) {
+					val added = when (inputStream.readByte().toInt()) {
+						ADDED -> true
+						REMOVED -> false
+						else -> break@entries
+					}
+					val id = inputStream.readUTF()
+					if (added) ids.add(id) else ids.remove(id)
+					validLength = countingInputStream.count
+					journalLength++
+				}
+			} catch (eofe1: EOFException) {
+				/* journal ends with an incomplete entry. */
+			}
+		}
+		if (validLength == 0L) {
+			journalFile.delete()
+		} else {
+			RandomAccessFile(journalFile, "rw").use { it.setLength(validLength) }
+		}
+	}
+
+	private fun appendToJournal(changes: List<Pair<String, Boolean>>) {
+		val newJournal = !journalFile.exists() || (journalFile.length() == 0L)
+		DataOutputStream(FileOutputStream(journalFile, true).buffered()).use { outputStream ->
+			if (newJournal) {
+				outputStream.writeLong(generation!!)
+			}
+			changes.forEach { (id, added) ->
+				outputStream.writeByte(if (added) ADDED else REMOVED)
+				outputStream.writeUTF(id)
+			}
+		}
+		journalLength += changes.size
+	}
+
+	private fun writeCheckpoint(ids: Collection<String>) {
+		val newGeneration = (generation ?: 0L) + 1
+		val compactIds = ids as? CompactIdSet ?: CompactIdSet().apply { addAll(ids) }
+		val temporaryFile = File(checkpointFile.path + ".tmp")
+		try {
+			FileOutputStream(temporaryFile).use { fileOutputStream ->
+				DataOutputStream(fileOutputStream.buffered()).let { outputStream ->
+					outputStream.writeLong(newGeneration)
+					compactIds.writeTo(outputStream)
+					outputStream.flush()
+				}
+				fileOutputStream.fd.sync()
+			}
+			Files.move(temporaryFile.toPath(), checkpointFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE)
+		} finally {
+			temporaryFile.delete()
+		}
+		generation = newGeneration
+		journalFile.delete()
+		journalLength = 0
+	}
+
+}
+
+private const val REMOVED = 0
+private const val ADDED = 1
@@ -25,6 +25,7 @@ import com.google.common.util.concurrent.AbstractService
 import com.google.common.util.concurrent.RateLimiter
 import com.google.inject.Inject
 import com.google.inject.Singleton
+import net.pterodactylus.sone.core.SoneComparison
 import net.pterodactylus.sone.data.Album
 import net.pterodactylus.sone.data.Image
 import net.pterodactylus.sone.data.Post
@@ -34,7 +35,6 @@ import net.pterodactylus.sone.data.allAlbums
 import net.pterodactylus.sone.data.allImages
 import net.pterodactylus.sone.data.impl.AlbumBuilderImpl
 import net.pterodactylus.sone.data.impl.ImageBuilderImpl
-import net.pterodactylus.sone.data.newestReplyFirst
 import net.pterodactylus.sone.database.AlbumBuilder
 import net.pterodactylus.sone.database.Database
 import net.pterodactylus.sone.database.DatabaseException
@@ -45,7 +45,11 @@ import net.pterodactylus.sone.database.PostReplyBuilder
 import net.pterodactylus.sone.utils.ifTrue
 import net.pterodactylus.sone.utils.unit
 import net.pterodactylus.util.config.Configuration
-import net.pterodactylus.util.config.ConfigurationException
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.Lock
+import java.util.concurrent.locks.ReentrantLock
 import java.util.concurrent.locks.ReentrantReadWriteLock
 import kotlin.concurrent.withLock
 
@@ -53,36 +57,52 @@ import kotlin.concurrent.withLock
  * Memory-based [PostDatabase] implementation.
  */
 @Singleton
-class MemoryDatabase @Inject constructor(private val configuration: Configuration) : AbstractService(), Database {
+class MemoryDatabase(private val storage: MemoryDatabaseStorage) : AbstractService(), Database {
+
+	@Inject
+	constructor(configuration: Configuration) : this(BinaryKnownIdStorage(ConfigurationLoader(configuration), File("sone-known-posts.dat"), File("sone-known-replies.dat")))
 
 	private val lock = ReentrantReadWriteLock()
 	private val readLock by lazy { lock.readLock()!! }
 	private val writeLock by lazy { lock.writeLock()!! }
-	private val configurationLoader = ConfigurationLoader(configuration)
-	private val allSones = mutableMapOf<String, Sone>()
-	private val allPosts = mutableMapOf<String, Post>()
+	private val allSones: MutableMap<String, Sone> = ConcurrentHashMap()
+	private val allLocalSones: MutableMap<String, Sone> = ConcurrentHashMap()
+	private val allPosts: MutableMap<String, Post> = ConcurrentHashMap()
 	private val sonePosts: Multimap<String, Post> = HashMultimap.create<String, Post>()
-	private val knownPosts = mutableSetOf<String>()
-	private val allPostReplies = mutableMapOf<String, PostReply>()
-	private val sonePostReplies: Multimap<String, PostReply> = TreeMultimap.create<String, PostReply>(Comparator { leftString, rightString -> leftString.compareTo(rightString) }, newestReplyFirst)
-	private val knownPostReplies = mutableSetOf<String>()
-	private val allAlbums = mutableMapOf<String, Album>()
+	private val recipientPosts: Multimap<String, Post> = HashMultimap.create<String, Post>()
+	private val knownPosts = CompactIdSet()
+	private val changedKnownPostIds = mutableSetOf<String>()
+	private val allPostReplies: MutableMap<String, PostReply> = ConcurrentHashMap()
+	private val sonePostReplies: Multimap<String, PostReply> = TreeMultimap.create<String, PostReply>(Comparator { leftString, rightString -> leftString.compareTo(rightString) }, newestPostReplyFirst)
+	private val postReplies: Multimap<String, PostReply> = TreeMultimap.create<String, PostReply>(Comparator { leftString, rightString -> leftString.compareTo(rightString) }, oldestReplyFirst)
+	private val knownPostReplies = CompactIdSet()
+	private val changedKnownPostReplyIds = mutableSetOf<String>()
+	private val allAlbums: MutableMap<String, Album> = ConcurrentHashMap()
 	private val soneAlbums: Multimap<String, Album> = HashMultimap.create<String, Album>()
-	private val allImages = mutableMapOf<String, Image>()
+	private val allImages: MutableMap<String, Image> = ConcurrentHashMap()
 	private val soneImages: Multimap<String, Image> = HashMultimap.create<String, Image>()
-	private val memoryBookmarkDatabase = MemoryBookmarkDatabase(this, configurationLoader)
-	private val memoryFriendDatabase = MemoryFriendDatabase(configurationLoader)
+	private val postLikes: Multimap<String, String> = HashMultimap.create<String, String>()
+	private val soneLikedPostIds = mutableMapOf<String, Set<String>>()
+	private val postReplyLikes: Multimap<String, String> = HashMultimap.create<String, String>()
+	private val soneLikedPostReplyIds = mutableMapOf<String, Set<String>>()
+	private val memoryBookmarkDatabase = MemoryBookmarkDatabase(this, storage)
+	private val memoryFriendDatabase = MemoryFriendDatabase(storage)
+	private val modificationCounter = AtomicLong()
 	private val saveRateLimiter: RateLimiter = RateLimiter.create(1.0)
 	private val saveKnownPostsRateLimiter: RateLimiter = RateLimiter.create(1.0)
 	private val saveKnownPostRepliesRateLimiter: RateLimiter = RateLimiter.create(1.0)
+	private val knownPostsFileLock = ReentrantLock()
+	private val knownPostRepliesFileLock = ReentrantLock()
 
 	override val soneLoader get() = this::getSone
 
-	override val sones get() = readLock.withLock { allSones.values.toSet() }
+	override val version get() = modificationCounter.get()
+
+	override val sones get() = allSones.values.toSet()
 
-	override val localSones get() = readLock.withLock { allSones.values.filter(Sone::isLocal) }
+	override val localSones get() = allLocalSones.values.toList()
 
-	override val remoteSones get() = readLock.withLock { allSones.values.filterNot(Sone::isLocal) }
+	override val remoteSones get() = allSones.values.filterNot(Sone::isLocal)
 
 	override val bookmarkedPosts get() = memoryBookmarkDatabase.bookmarkedPosts
 
@@ -103,7 +123,8 @@ class MemoryDatabase @Inject constructor(private val configuration: Configuratio
 	override fun doStop() {
 		try {
 			memoryBookmarkDatabase.stop()
-			save()
+			writeKnownPosts()
+			writeKnownPostReplies()
 			notifyStopped()
 		} catch (de1: DatabaseException) {
 			notifyFailed(de1)
@@ -113,52 +134,228 @@ class MemoryDatabase @Inject constructor(private val configuration: Configuratio
 	override fun newSoneBuilder() = MemorySoneBuilder(this)
 
 	override fun storeSone(sone: Sone) {
-		writeLock.withLock {
-			removeSone(sone)
+		modify {
+			val storedPosts = sonePosts[sone.id].toList()
+			val storedPostReplies = sonePostReplies[sone.id].toList()
+			storedPosts.forEach { post -> unindexPost(sone.id, post) }
+			storedPostReplies.forEach { postReply -> unindexPostReply(sone.id, postReply) }
+
+			storeSoneInstance(sone)
+			sone.posts.forEach { post -> indexPost(sone.id, post) }
+			sone.replies.forEach { postReply -> indexPostReply(sone.id, postReply) }
+			allPosts.removeOutdated(storedPosts.map(Post::id), sone.posts.map(Post::id))
+			allPostReplies.removeOutdated(storedPostReplies.map(PostReply::id), sone.replies.map(PostReply::id))
+			reindexAlbumsAndImages(sone)
+			updateLikes(sone)
+		}
+	}
 
-			allSones[sone.id] = sone
-			sonePosts.putAll(sone.id, sone.posts)
-			for (post in sone.posts) {
-				allPosts[post.id] = post
+	/*
+	 * All differences are calculated before the write lock is taken; while
+	 * it is held, only the changed elements are indexed.
+	 */
+	override fun storeSoneChanges(soneComparison: SoneComparison) {
+		val sone = soneComparison.newSone
+		val oldSone = soneComparison.oldSone
+		val newPosts = soneComparison.newPosts
+		val removedPosts = soneComparison.removedPosts
+		val replacedPosts = soneComparison.replacedPosts
+		val newPostReplies = soneComparison.newPostReplies
+		val removedPostReplies = soneComparison.removedPostReplies
+		val replacedPostReplies = soneComparison.replacedPostReplies
+		val changedAlbums = soneComparison.changedAlbums
+		val removedAlbums = soneComparison.removedAlbums
+		val changedImages = soneComparison.changedImages
+		val removedImages = soneComparison.removedImages
+		val likeChanges = if (!sone.isLocal && !oldSone.isLocal) {
+			LikeChanges(soneComparison.newLikedPostIds, soneComparison.removedLikedPostIds, sone.likedPostIds.toSet(),
+					soneComparison.newLikedPostReplyIds, soneComparison.removedLikedPostReplyIds, sone.likedReplyIds.toSet())
+		} else null
+		modify {
+			if (allSones[sone.id] !== oldSone) {
+				storeSone(sone)
+				return
 			}
-			sonePostReplies.putAll(sone.id, sone.replies)
-			for (postReply in sone.replies) {
-				allPostReplies[postReply.id] = postReply
+			storeSoneInstance(sone)
+			removedPosts.forEach { post -> unindexPost(sone.id, post) }
+			newPosts.forEach { post -> indexPost(sone.id, post) }
+			replacedPosts.forEach { (storedPost, post) ->
+				unindexPost(sone.id, storedPost)
+				indexPost(sone.id, post)
+			}
+			removedPosts.forEach { post -> allPosts.remove(post.id) }
+			removedPostReplies.forEach { postReply -> unindexPostReply(sone.id, postReply) }
+			newPostReplies.forEach { postReply -> indexPostReply(sone.id, postReply) }
+			replacedPostReplies.forEach { (storedPostReply, postReply) ->
+				unindexPostReply(sone.id, storedPostReply)
+				indexPostReply(sone.id, postReply)
 			}
-			sone.allAlbums.let { albums ->
-				soneAlbums.putAll(sone.id, albums)
-				albums.forEach { album -> allAlbums[album.id] = album }
+			removedPostReplies.forEach { postReply -> allPostReplies.remove(postReply.id) }
+			changedAlbums.forEach { album ->
+				allAlbums[album.id] = album
+				soneAlbums.remove(sone.id, album)
+				soneAlbums.put(sone.id, album)
+			}
+			removedAlbums.forEach { album ->
+				soneAlbums.remove(sone.id, album)
+				allAlbums.remove(album.id)
+			}
+			changedImages.forEach { image ->
+				allImages[image.id] = image
+				soneImages.remove(sone.id, image)
+				soneImages.put(sone.id, image)
+			}
+			removedImages.forEach { image ->
+				soneImages.remove(sone.id, image)
+				allImages.remove(image.id)
 			}
-			sone.rootAlbum.allImages.let { images ->
-				soneImages.putAll(sone.id, images)
-				images.forEach { image -> allImages[image.id] = image }
+			when {
+				likeChanges != null -> likeChanges.applyTo(sone.id)
+				sone.isLocal != oldSone.isLocal -> updateLikes(sone)
 			}
 		}
 	}
 
 	override fun removeSone(sone: Sone) {
-		writeLock.withLock {
+		modify {
 			allSones.remove(sone.id)
-			val removedPosts = sonePosts.removeAll(sone.id)
-			for (removedPost in removedPosts) {
-				allPosts.remove(removedPost.id)
+			allLocalSones.remove(sone.id)
+			sonePosts[sone.id].toList().forEach { post ->
+				unindexPost(sone.id, post)
+				allPosts.remove(post.id)
 			}
-			val removedPostReplies = sonePostReplies.removeAll(sone.id)
-			for (removedPostReply in removedPostReplies) {
-				allPostReplies.remove(removedPostReply.id)
+			sonePostReplies[sone.id].toList().forEach { postReply ->
+				unindexPostReply(sone.id, postReply)
+				allPostReplies.remove(postReply.id)
 			}
-			val removedAlbums = soneAlbums.removeAll(sone.id)
-			for (removedAlbum in removedAlbums) {
-				allAlbums.remove(removedAlbum.id)
+			soneAlbums.removeAll(sone.id).forEach { album -> allAlbums.remove(album.id) }
+			soneImages.removeAll(sone.id).forEach { image -> allImages.remove(image.id) }
+			updateLikes(sone.id, emptySet(), emptySet())
+		}
+	}
+
+	/*
+	 * Writers still exclude each other and the readers of the secondary
+	 * indexes, but lookups by ID only read from concurrent maps and never
+	 * block. To keep lookups from missing an element while it is being
+	 * replaced, elements are only removed from these maps after their
+	 * replacements have been stored. The version is increased once a
+	 * modification is complete.
+	 */
+	private inline fun <R> modify(modification: () -> R): R =
+			writeLock.withLock {
+				modification().also { modificationCounter.incrementAndGet() }
 			}
-			val removedImages = soneImages.removeAll(sone.id)
-			for (removedImage in removedImages) {
-				allImages.remove(removedImage.id)
+
+	private fun storeSoneInstance(sone: Sone) {
+		allSones[sone.id] = sone
+		if (sone.isLocal) {
+			allLocalSones[sone.id] = sone
+		} else {
+			allLocalSones.remove(sone.id)
+		}
+	}
+
+	private fun indexPost(soneId: String, post: Post) {
+		allPosts[post.id] = post
+		sonePosts.put(soneId, post)
+		post.recipientId.orNull()?.let { recipientPosts.put(it, post) }
+	}
+
+	private fun unindexPost(soneId: String, post: Post) {
+		sonePosts.remove(soneId, post)
+		post.recipientId.orNull()?.let { recipientPosts.remove(it, post) }
+	}
+
+	private fun indexPostReply(soneId: String, postReply: PostReply) {
+		allPostReplies[postReply.id] = postReply
+		sonePostReplies.put(soneId, postReply)
+		postReplies.put(postReply.postId, postReply)
+	}
+
+	private fun unindexPostReply(soneId: String, postReply: PostReply) {
+		sonePostReplies.remove(soneId, postReply)
+		postReplies.remove(postReply.postId, postReply)
+	}
+
+	private fun reindexAlbumsAndImages(sone: Sone) {
+		val storedAlbums = soneAlbums.removeAll(sone.id)
+		val storedImages = soneImages.removeAll(sone.id)
+		sone.allAlbums.let { albums ->
+			soneAlbums.putAll(sone.id, albums)
+			albums.forEach { album -> allAlbums[album.id] = album }
+			allAlbums.removeOutdated(storedAlbums.map(Album::id), albums.map(Album::id))
+		}
+		sone.rootAlbum.allImages.let { images ->
+			soneImages.putAll(sone.id, images)
+			images.forEach { image -> allImages[image.id] = image }
+			allImages.removeOutdated(storedImages.map(Image::id), images.map(Image::id))
+		}
+	}
+
+	private fun updateLikes(sone: Sone) =
+			if (sone.isLocal) {
+				updateLikes(sone.id, emptySet(), emptySet())
+			} else {
+				updateLikes(sone.id, sone.likedPostIds, sone.likedReplyIds)
 			}
+
+	/*
+	 * Likes of remote Sones are indexed when the Sone is stored. Local Sones
+	 * change their likes in place, so they are checked directly.
+	 */
+	private fun updateLikes(soneId: String, likedPostIds: Set<String>, likedPostReplyIds: Set<String>) {
+		updateLikes(soneId, likedPostIds, soneLikedPostIds, postLikes)
+		updateLikes(soneId, likedPostReplyIds, soneLikedPostReplyIds, postReplyLikes)
+	}
+
+	private fun updateLikes(soneId: String, likedIds: Set<String>, soneLikedIds: MutableMap<String, Set<String>>, likes: Multimap<String, String>) {
+		val oldLikedIds = soneLikedIds[soneId] ?: emptySet()
+		(oldLikedIds - likedIds).forEach { likes.remove(it, soneId) }
+		(likedIds - oldLikedIds).forEach { likes.put(it, soneId) }
+		if (likedIds.isEmpty()) {
+			soneLikedIds.remove(soneId)
+		} else {
+			soneLikedIds[soneId] = likedIds.toSet()
+		}
+	}
+
+	private fun LikeChanges.applyTo(soneId: String) {
+		applyLikeChanges(soneId, newLikedPostIds, removedLikedPostIds, likedPostIds, soneLikedPostIds, postLikes)
+		applyLikeChanges(soneId, newLikedPostReplyIds, removedLikedPostReplyIds, likedPostReplyIds, soneLikedPostReplyIds, postReplyLikes)
+	}
+
+	private fun applyLikeChanges(soneId: String, newLikedIds: Set<String>, removedLikedIds: Set<String>, likedIds: Set<String>, soneLikedIds: MutableMap<String, Set<String>>, likes: Multimap<String, String>) {
+		removedLikedIds.forEach { likes.remove(it, soneId) }
+		newLikedIds.forEach { likes.put(it, soneId) }
+		if (likedIds.isEmpty()) {
+			soneLikedIds.remove(soneId)
+		} else {
+			soneLikedIds[soneId] = likedIds
 		}
 	}
 
-	override fun getSone(soneId: String) = readLock.withLock { allSones[soneId] }
+	override fun getPostLikes(postId: String) =
+			readLock.withLock {
+				postLikes[postId].toSet() + allLocalSones.values.filter { it.isLikedPostId(postId) }.map(Sone::id)
+			}
+
+	override fun getPostLikeCount(postId: String) =
+			readLock.withLock {
+				postLikes[postId].size + allLocalSones.values.count { it.isLikedPostId(postId) }
+			}
+
+	override fun getPostReplyLikes(replyId: String) =
+			readLock.withLock {
+				postReplyLikes[replyId].toSet() + allLocalSones.values.filter { it.isLikedReplyId(replyId) }.map(Sone::id)
+			}
+
+	override fun getPostReplyLikeCount(replyId: String) =
+			readLock.withLock {
+				postReplyLikes[replyId].size + allLocalSones.values.count { it.isLikedReplyId(replyId) }
+			}
+
+	override fun getSone(soneId: String) = allSones[soneId]
 
 	override fun getFriends(localSone: Sone): Collection<String> =
 			if (!localSone.isLocal) {
@@ -192,87 +389,80 @@ class MemoryDatabase @Inject constructor(private val configuration: Configuratio
 			memoryFriendDatabase.getFollowingTime(friendSoneId)
 
 	override fun getPost(postId: String) =
-			readLock.withLock { allPosts[postId] }
+			allPosts[postId]
 
 	override fun getPosts(soneId: String): Collection<Post> =
 			sonePosts[soneId].toSet()
 
 	override fun getDirectedPosts(recipientId: String) =
-			readLock.withLock {
-				allPosts.values.filter {
-					it.recipientId.orNull() == recipientId
-				}
-			}
+			readLock.withLock { recipientPosts[recipientId].toList() }
 
 	override fun newPostBuilder(): PostBuilder = MemoryPostBuilder(this, this)
 
 	override fun storePost(post: Post) {
 		checkNotNull(post, "post must not be null")
-		writeLock.withLock {
-			allPosts[post.id] = post
-			sonePosts[post.sone.id].add(post)
+		modify {
+			indexPost(post.sone.id, post)
 		}
 	}
 
 	override fun removePost(post: Post) {
 		checkNotNull(post, "post must not be null")
-		writeLock.withLock {
+		modify {
+			unindexPost(post.sone.id, post)
 			allPosts.remove(post.id)
-			sonePosts[post.sone.id].remove(post)
 			post.sone.removePost(post)
 		}
 	}
 
-	override fun getPostReply(id: String) = readLock.withLock { allPostReplies[id] }
+	override fun getPostReply(id: String) = allPostReplies[id]
 
 	override fun getReplies(postId: String) =
-			readLock.withLock {
-				allPostReplies.values
-						.filter { it.postId == postId }
-						.sortedWith(newestReplyFirst.reversed())
-			}
+			readLock.withLock { postReplies[postId].toList() }
 
 	override fun newPostReplyBuilder(): PostReplyBuilder =
 			MemoryPostReplyBuilder(this, this)
 
 	override fun storePostReply(postReply: PostReply) =
-			writeLock.withLock {
+			modify {
 				allPostReplies[postReply.id] = postReply
-			}
+				postReplies.put(postReply.postId, postReply)
+			}.unit
 
 	override fun removePostReply(postReply: PostReply) =
-			writeLock.withLock {
+			modify {
 				allPostReplies.remove(postReply.id)
+				postReplies.remove(postReply.postId, postReply)
 			}.unit
 
-	override fun getAlbum(albumId: String) = readLock.withLock { allAlbums[albumId] }
+	override fun getAlbum(albumId: String) = allAlbums[albumId]
 
 	override fun newAlbumBuilder(): AlbumBuilder = AlbumBuilderImpl()
 
 	override fun storeAlbum(album: Album) =
-			writeLock.withLock {
+			modify {
 				allAlbums[album.id] = album
 				soneAlbums.put(album.sone.id, album)
 			}.unit
 
 	override fun removeAlbum(album: Album) =
-			writeLock.withLock {
+			modify {
 				allAlbums.remove(album.id)
 				soneAlbums.remove(album.sone.id, album)
 			}.unit
 
-	override fun getImage(imageId: String) = readLock.withLock { allImages[imageId] }
+	override fun getImage(imageId: String) = allImages[imageId]
 
 	override fun newImageBuilder(): ImageBuilder = ImageBuilderImpl()
 
 	override fun storeImage(image: Image): Unit =
-			writeLock.withLock {
+			modify {
 				allImages[image.id] = image
 				soneImages.put(image.sone.id, image)
 			}
 
 	override fun removeImage(image: Image): Unit =
-			writeLock.withLock {
+			modify {
 				allImages.remove(image.id)
 				soneImages.remove(image.sone.id, image)
 			}
@@ -288,25 +478,29 @@ class MemoryDatabase @Inject constructor(private val configuration: Configuratio
 
 	protected fun isPostKnown(post: Post) = readLock.withLock { post.id in knownPosts }
 
-	fun setPostKnown(post: Post, known: Boolean): Unit =
-			writeLock.withLock {
-				if (known)
-					knownPosts.add(post.id)
-				else
-					knownPosts.remove(post.id)
-				saveKnownPosts()
+	fun setPostKnown(post: Post, known: Boolean) {
+		writeLock.withLock {
+			val changed = if (known) knownPosts.add(post.id) else knownPosts.remove(post.id)
+			if (changed) {
+				changedKnownPostIds += post.id
 			}
+		}
+		saveKnownPosts()
+	}
 
 	protected fun isPostReplyKnown(postReply: PostReply) = readLock.withLock { postReply.id in knownPostReplies }
 
-	override fun setPostReplyKnown(postReply: PostReply): Unit =
-			writeLock.withLock {
-				knownPostReplies.add(postReply.id)
-				saveKnownPostReplies()
+	override fun setPostReplyKnown(postReply: PostReply) {
+		writeLock.withLock {
+			if (knownPostReplies.add(postReply.id)) {
+				changedKnownPostReplyIds += postReply.id
 			}
+		}
+		saveKnownPostReplies()
+	}
 
 	private fun loadKnownPosts() =
-			configurationLoader.loadKnownPosts()
+			storage.loadKnownPosts()
 					.let {
 						writeLock.withLock {
 							knownPosts.clear()
@@ -315,21 +509,23 @@ class MemoryDatabase @Inject constructor(private val configuration: Configuratio
 					}
 
 	private fun saveKnownPosts() =
-			saveKnownPostsRateLimiter.tryAcquire().ifTrue {
-				try {
-					readLock.withLock {
-						knownPosts.forEachIndexed { index, knownPostId ->
-							configuration.getStringValue("KnownPosts/$index/ID").value = knownPostId
-						}
-						configuration.getStringValue("KnownPosts/${knownPosts.size}/ID").value = null
-					}
-				} catch (ce1: ConfigurationException) {
-					throw DatabaseException("Could not save database.", ce1)
-				}
+			saveKnownPostsRateLimiter.tryAcquire().ifTrue { writeKnownPosts() }
+
+	/*
+	 * The storage gets the IDs that changed since the last save, so that it
+	 * only has to write those. The changed IDs are taken under the write
+	 * lock, but the storage writes its files outside of it, so that writing
+	 * the files never blocks the database; it only reads the known IDs
+	 * through a view that takes the read lock. A separate lock keeps saves
+	 * in order. The changed IDs are restored if they could not be saved.
+	 */
+	private fun writeKnownPosts() =
+			knownPostsFileLock.withLock {
+				writeChangedIds(knownPosts, changedKnownPostIds, storage::saveKnownPosts)
 			}
 
 	private fun loadKnownPostReplies(): Unit =
-			configurationLoader.loadKnownPostReplies().let { knownPostReplies ->
+			storage.loadKnownPostReplies().let { knownPostReplies ->
 				writeLock.withLock {
 					this.knownPostReplies.clear()
 					this.knownPostReplies.addAll(knownPostReplies)
@@ -337,17 +533,68 @@ class MemoryDatabase @Inject constructor(private val configuration: Configuratio
 			}
 
 	private fun saveKnownPostReplies() =
-			saveKnownPostRepliesRateLimiter.tryAcquire().ifTrue {
-				try {
-					readLock.withLock {
-						knownPostReplies.forEachIndexed { index, knownPostReply ->
-							configuration.getStringValue("KnownReplies/$index/ID").value = knownPostReply
-						}
-						configuration.getStringValue("KnownReplies/${knownPostReplies.size}/ID").value = null
-					}
-				} catch (ce1: ConfigurationException) {
-					throw DatabaseException("Could not save database.", ce1)
-				}
+			saveKnownPostRepliesRateLimiter.tryAcquire().ifTrue { writeKnownPostReplies() }
+
+	private fun writeKnownPostReplies() =
+			knownPostRepliesFileLock.withLock {
+				writeChangedIds(knownPostReplies, changedKnownPostReplyIds, storage::saveKnownPostReplies)
 			}
 
+	private fun writeChangedIds(ids: Set<String>, changedIds: MutableSet<String>, save: (Collection<String>, Collection<String>) -> Unit) {
+		val savedIds = writeLock.withLock { changedIds.toList().also { changedIds.clear() } }
+		try {
+			save(ReadLockedSet(ids, readLock), savedIds)
+		} catch (exception: Exception) {
+			writeLock.withLock { changedIds += savedIds }
+			throw exception
+		}
+	}
+
 }
+
+/**
+ * Read-only view of a set that takes the given lock for every read. The
+ * elements are copied while the lock is held before they are iterated.
+ */
+private class ReadLockedSet(private val ids: Set<String>, private val lock: Lock) : AbstractSet<String>() {
+
+	override val size get() = lock.withLock { ids.size }
+
+	override fun contains(element: String) = lock.withLock { element in ids }
+
+	override fun iterator() = lock.withLock { ids.toList() }.iterator()
+
+}
+
+/**
+ * Removes the entries with the given stored IDs that were not stored again.
+ */
+private fun <T> MutableMap<String, T>.removeOutdated(storedIds: Collection<String>, currentIds: Collection<String>) =
+		(storedIds - currentIds.toSet()).forEach { remove(it) }
+
+/**
+ * Orders replies by ascending time, using the ID to keep replies with the
+ * same time apart.
+ */
+private val oldestReplyFirst: Comparator<PostReply> =
+		compareBy<PostReply>({ it.time }, { it.id })
+
+/**
+ * Orders replies by descending time, using the ID to keep replies with the
+ * same time apart.
+ */
+private val newestPostReplyFirst: Comparator<PostReply> =
+		compareByDescending<PostReply> { it.time }.thenBy { it.id }
+
+/**
+ * The changes of the likes of a remote Sone, with the complete sets of liked
+ * IDs to store.
+ */
+private class LikeChanges(
+		val newLikedPostIds: Set<String>,
+		val removedLikedPostIds: Set<String>,
+		val likedPostIds: Set<String>,
+		val newLikedPostReplyIds: Set<String>,
+		val removedLikedPostReplyIds: Set<String>,
+		val likedPostReplyIds: Set<String>
+)
@@ -4,15 +4,31 @@ import freenet.client.*
 import freenet.keys.*
 import kotlinx.coroutines.*
 import net.pterodactylus.sone.core.*
+import javax.inject.*
 
-class AsyncFreenetInterface(private val freenetClient: FreenetClient) {
+/**
+ * Fetches URIs from Freenet without blocking the calling coroutine. The
+ * blocking fetches are performed on the [IO dispatcher][Dispatchers.IO] so
+ * that waiting for the network does not occupy any CPU-bound threads.
+ */
+class AsyncFreenetInterface @Inject constructor(private val freenetClient: FreenetClient) {
 
-	suspend fun fetchUri(freenetUri: FreenetURI): Fetched {
+	suspend fun fetchUri(freenetUri: FreenetURI): Fetched =
+			fetchUri(freenetUri) { freenetClient.fetch(it) }
+
+	/**
+	 * Fetches the given URI, letting the node abort the fetch as soon as the
+	 * decoded data exceeds the given size.
+	 */
+	suspend fun fetchUri(freenetUri: FreenetURI, maximumSize: Long): Fetched =
+			fetchUri(freenetUri) { freenetClient.fetch(it, maximumSize) }
+
+	private suspend fun fetchUri(freenetUri: FreenetURI, fetch: (FreenetURI) -> FetchResult): Fetched {
 		var currentUri = freenetUri
 		var result: FetchResult? = null
 		while (result == null) {
 			try {
-				result = withContext(Dispatchers.Default) { freenetClient.fetch(currentUri) }
+				result = withContext(Dispatchers.IO) { fetch(currentUri) }
 			} catch (fetchException: FetchException) {
 				if (fetchException.mode == FetchException.FetchExceptionMode.PERMANENT_REDIRECT) {
 					currentUri = fetchException.newURI
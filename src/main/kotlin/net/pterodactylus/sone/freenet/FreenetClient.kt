@@ -2,6 +2,7 @@ package net.pterodactylus.sone.freenet
 
 import freenet.client.*
 import freenet.keys.*
+import javax.inject.*
 
 /**
  * Facade for Freenet’s [freenet.client.HighLevelSimpleClient] to allow testing.
@@ -10,11 +11,20 @@ interface FreenetClient {
 
 	fun fetch(freenetKey: FreenetURI): FetchResult
 
+	/**
+	 * Fetches the given key, aborting the fetch as soon as the decoded data
+	 * exceeds the given size.
+	 */
+	fun fetch(freenetKey: FreenetURI, maximumSize: Long): FetchResult
+
 }
 
-class DefaultFreenetClient(private val highLevelSimpleClient: HighLevelSimpleClient) : FreenetClient {
+class DefaultFreenetClient @Inject constructor(private val highLevelSimpleClient: HighLevelSimpleClient) : FreenetClient {
 
 	override fun fetch(freenetKey: FreenetURI): FetchResult =
 			highLevelSimpleClient.fetch(freenetKey)
 
+	override fun fetch(freenetKey: FreenetURI, maximumSize: Long): FetchResult =
+			highLevelSimpleClient.fetch(freenetKey, maximumSize)
+
 }
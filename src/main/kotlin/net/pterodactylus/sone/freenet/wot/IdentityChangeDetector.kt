@@ -21,7 +21,8 @@ package net.pterodactylus.sone.freenet.wot
  * Detects changes between two lists of [Identity]s. The detector can find
  * added and removed identities, and for identities that exist in both list
  * their contexts and properties are checked for added, removed, or (in case of
- * properties) changed values.
+ * properties) changed values. Changes in the trust of an identity are
+ * reported separately, as they do not change the identity itself.
  */
 class IdentityChangeDetector(oldIdentities: Collection<Identity>) {
 
@@ -30,12 +31,14 @@ class IdentityChangeDetector(oldIdentities: Collection<Identity>) {
 	var onRemovedIdentity: IdentityProcessor? = null
 	var onChangedIdentity: IdentityProcessor? = null
 	var onUnchangedIdentity: IdentityProcessor? = null
+	var onChangedTrust: IdentityProcessor? = null
 
 	fun detectChanges(newIdentities: Collection<Identity>) {
 		onRemovedIdentity.notify(oldIdentities.values.filter { it !in newIdentities })
 		onNewIdentity.notify(newIdentities.filter { it !in oldIdentities.values })
 		onChangedIdentity.notify(newIdentities.filter { it.id in oldIdentities }.filter { identityHasChanged(oldIdentities[it.id]!!, it) })
 		onUnchangedIdentity.notify(newIdentities.filter { it.id in oldIdentities }.filterNot { identityHasChanged(oldIdentities[it.id]!!, it) })
+		onChangedTrust.notify(newIdentities.filter { it.id in oldIdentities }.filter { oldIdentities[it.id]!!.trust != it.trust })
 	}
 
 	private fun identityHasChanged(oldIdentity: Identity, newIdentity: Identity?) =
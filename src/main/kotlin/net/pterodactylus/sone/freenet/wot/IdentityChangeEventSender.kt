@@ -57,6 +57,7 @@ class IdentityChangeEventSender(private val eventBus: EventBus, private val oldI
 				identityChangeDetector.onNewIdentity = { eventBus.post(IdentityAddedEvent(ownIdentity, it)) }
 				identityChangeDetector.onRemovedIdentity = { eventBus.post(IdentityRemovedEvent(ownIdentity, it)) }
 				identityChangeDetector.onChangedIdentity = { eventBus.post(IdentityUpdatedEvent(ownIdentity, it)) }
+				identityChangeDetector.onChangedTrust = { eventBus.post(IdentityTrustChangedEvent(ownIdentity, it)) }
 				identityChangeDetector.detectChanges(newIdentities[ownIdentity]!!)
 			}
 
@@ -5,6 +5,7 @@ import freenet.client.*
 import freenet.clients.http.*
 import freenet.node.*
 import freenet.pluginmanager.*
+import net.pterodactylus.sone.freenet.*
 import net.pterodactylus.sone.freenet.plugin.*
 import javax.inject.Provider
 import javax.inject.Singleton
@@ -19,6 +20,7 @@ class FreenetModule(private val pluginRespirator: PluginRespirator) : Module {
 		bind(PluginConnector::class.java).to(FredPluginConnector::class.java).`in`(Singleton::class.java)
 		bind(Node::class.java).toProvider(Provider { pluginRespirator.node })
 		bind(HighLevelSimpleClient::class.java).toProvider(Provider<HighLevelSimpleClient> { pluginRespirator.hlSimpleClient!! })
+		bind(FreenetClient::class.java).to(DefaultFreenetClient::class.java).`in`(Singleton::class.java)
 		bind(ToadletContainer::class.java).toProvider(Provider<ToadletContainer> { pluginRespirator.toadletContainer })
 		bind(PageMaker::class.java).toProvider(Provider<PageMaker> { pluginRespirator.pageMaker })
 	}
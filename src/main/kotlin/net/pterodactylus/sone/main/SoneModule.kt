@@ -59,6 +59,10 @@ open class SoneModule(private val sonePlugin: SonePlugin, private val eventBus:
 		bind(PluginYear::class.java).toInstance(PluginYear(sonePlugin.year))
 		bind(PluginHomepage::class.java).toInstance(PluginHomepage(sonePlugin.homepage))
 		bind(Database::class.java).to(MemoryDatabase::class.java).`in`(Singleton::class.java)
+		bind(PostProvider::class.java).to(Database::class.java)
+		bind(PostBuilderFactory::class.java).to(Database::class.java)
+		bind(PostReplyProvider::class.java).to(Database::class.java)
+		bind(PostReplyBuilderFactory::class.java).to(Database::class.java)
 		bind(Translation::class.java).toInstance(BaseL10nTranslation(sonePlugin.l10n().base))
 		loaders?.let { bind(Loaders::class.java).toInstance(it) }
 		bind(MetricRegistry::class.java).`in`(Singleton::class.java)
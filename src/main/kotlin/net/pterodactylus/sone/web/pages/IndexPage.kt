@@ -20,14 +20,10 @@ class IndexPage @Inject constructor(webInterface: WebInterface, loaders: Loaders
 		LoggedInPage("Page.Index.Title", webInterface, loaders, templateRenderer) {
 
 	override fun handleRequest(soneRequest: SoneRequest, currentSone: Sone, templateContext: TemplateContext) {
-		(currentSone.posts +
-				currentSone.friends
-						.mapNotNull(soneRequest.core::getSone)
-						.flatMap { it.posts } +
-				soneRequest.core.getDirectedPosts(currentSone.id)
-				).distinct()
-				.filter { postVisibilityFilter.isVisible(currentSone).apply(it) }
-				.sortedByDescending { it.time }
+		/* the feed only contains visible posts, except for posts from the future at its head. */
+		val isVisible = postVisibilityFilter.isVisible(currentSone)
+		soneRequest.core.getPostFeed(currentSone)
+				.dropWhile { !isVisible.apply(it) }
 				.let { posts ->
 					posts.paginate(soneRequest.core.preferences.postsPerPage)
 							.turnTo(soneRequest.parameters["page"]?.toIntOrNull() ?: 0)
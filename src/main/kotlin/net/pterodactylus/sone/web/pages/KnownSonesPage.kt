@@ -26,6 +26,7 @@ class KnownSonesPage @Inject constructor(webInterface: WebInterface, loaders: Lo
 					.filterNot { soneRequest.parameters["filter"] == "not-new" && !it.isKnown }
 					.filterNot { soneRequest.parameters["filter"] == "own" && !it.isLocal }
 					.filterNot { soneRequest.parameters["filter"] == "not-own" && it.isLocal }
+					.filterNot { soneRequest.parameters["filter"] == "quarantined" && it.status != Sone.SoneStatus.quarantined }
 					.sortedWith(
 							when (soneRequest.parameters["sort"]) {
 								"images" -> imageCountComparator
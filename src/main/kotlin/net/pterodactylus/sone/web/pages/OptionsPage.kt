@@ -41,10 +41,12 @@ class OptionsPage @Inject constructor(webInterface: WebInterface, loaders: Loade
 			val fullAccessRequired = "require-full-access" in soneRequest.parameters
 			val fcpInterfaceActive = "fcp-interface-active" in soneRequest.parameters
 			val strictFiltering = "strict-filtering" in soneRequest.parameters
+			val archiveOldPosts = "archive-old-posts" in soneRequest.parameters
 
 			soneRequest.core.preferences.newRequireFullAccess = fullAccessRequired
 			soneRequest.core.preferences.newFcpInterfaceActive = fcpInterfaceActive
 			soneRequest.core.preferences.newStrictFiltering = strictFiltering
+			soneRequest.core.preferences.newArchiveOldPosts = archiveOldPosts
 
 			val postsPerPage = soneRequest.parameters["posts-per-page"]?.toIntOrNull()
 			val charactersPerPost = soneRequest.parameters["characters-per-post"]?.toIntOrNull()
@@ -85,6 +87,7 @@ class OptionsPage @Inject constructor(webInterface: WebInterface, loaders: Loade
 			templateContext["post-cut-off-length"] = preferences.postCutOffLength
 			templateContext["posts-per-page"] = preferences.postsPerPage
 			templateContext["strict-filtering"] = preferences.strictFiltering
+			templateContext["archive-old-posts"] = preferences.archiveOldPosts
 		}
 	}
 
@@ -1,5 +1,6 @@
 package net.pterodactylus.sone.web.pages
 
+import net.pterodactylus.sone.core.*
 import net.pterodactylus.sone.data.*
 import net.pterodactylus.sone.main.*
 import net.pterodactylus.sone.utils.*
@@ -29,6 +30,9 @@ class RescuePage @Inject constructor(webInterface: WebInterface, loaders: Loader
 			if (soneRequest.parameters["fetch", 8] == "true") {
 				soneRescuer.startNextFetch()
 			}
+			if (soneRequest.parameters["search", 8] == "true") {
+				soneRescuer.startSearch(soneRequest.parameters["window", 3]?.toIntOrNull() ?: SoneRescuer.DEFAULT_WINDOW_SIZE)
+			}
 			throw RedirectException("rescue.html")
 		}
 	}
@@ -150,6 +150,7 @@ function updateSoneStatus(soneId, name, status, modified, locked, lastUpdated, l
 		toggleClass("idle", status === "idle").
 		toggleClass("inserting", status === "inserting").
 		toggleClass("downloading", status === "downloading").
+		toggleClass("quarantined", status === "quarantined").
 		toggleClass("modified", modified);
 	updateSone.find(".lock").toggleClass("hidden", locked);
 	updateSone.find(".unlock").toggleClass("hidden", !locked);
@@ -1,33 +1,55 @@
 package net.pterodactylus.sone.core;
 
 import static freenet.keys.InsertableClientSSK.createRandom;
+import static freenet.client.FetchException.FetchExceptionMode.TOO_BIG;
+import static freenet.node.RequestStarter.INTERACTIVE_PRIORITY_CLASS;
 import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
 import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static net.pterodactylus.sone.core.SoneArchivesKt.archiveName;
 import static net.pterodactylus.sone.data.Sone.SoneStatus.downloading;
 import static net.pterodactylus.sone.data.Sone.SoneStatus.idle;
+import static net.pterodactylus.sone.data.Sone.SoneStatus.quarantined;
 import static net.pterodactylus.sone.data.Sone.SoneStatus.unknown;
 import static net.pterodactylus.sone.web.AllPagesTestKt.getBaseInjector;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentCaptor.forClass;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.data.Sone.SoneStatus;
+import net.pterodactylus.sone.database.Database;
+import net.pterodactylus.sone.freenet.AsyncFreenetInterface;
+import net.pterodactylus.sone.freenet.FreenetClient;
 import net.pterodactylus.sone.freenet.wot.Identity;
 import net.pterodactylus.sone.test.GuiceKt;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.ByteStreams;
+
 import freenet.client.ClientMetadata;
+import freenet.client.FetchException;
 import freenet.client.FetchResult;
 import freenet.client.async.USKCallback;
 import freenet.crypt.DummyRandomSource;
@@ -45,9 +67,15 @@ import org.mockito.ArgumentCaptor;
 public class SoneDownloaderTest {
 
 	private final FreenetInterface freenetInterface = mock(FreenetInterface.class);
+	private final FreenetClient freenetClient = mock(FreenetClient.class);
 	private final SoneParser soneParser = mock(SoneParser.class);
 	private final UpdatedSoneProcessor updatedSoneProcessor = mock(UpdatedSoneProcessor.class);
-	private final SoneDownloaderImpl soneDownloader = new SoneDownloaderImpl(updatedSoneProcessor, freenetInterface, soneParser);
+	private final RemoteSoneCache remoteSoneCache = mock(RemoteSoneCache.class);
+	private final SoneDownloadScheduler soneDownloadScheduler = mock(SoneDownloadScheduler.class);
+	private final Database database = mock(Database.class);
+	private final SoneParserLimits soneParserLimits = new SoneParserLimits();
+	private long now = currentTimeMillis();
+	private final SoneDownloaderImpl soneDownloader = new SoneDownloaderImpl(updatedSoneProcessor, freenetInterface, soneParser, remoteSoneCache, soneDownloadScheduler, new UskPollingTiers(database), new DownloadFailures(() -> now), soneParserLimits, new AsyncFreenetInterface(freenetClient), new MetricRegistry());
 	private final InsertableClientSSK clientSSK = createRandom(new DummyRandomSource(), "WoT");
 	private final FreenetURI requestUri = clientSSK.getURI().setKeyType("USK").setDocName("Sone");
 	private final FreenetURI finalRequestUri = requestUri.setMetaString(new String[] { "sone.xml" });
@@ -63,6 +91,7 @@ public class SoneDownloaderTest {
 		when(sone.getIdentity()).thenReturn(identity);
 		when(sone.getRequestUri()).thenReturn(requestUri);
 		when(sone.getTime()).thenReturn(currentTimeMillis() - DAYS.toMillis(1));
+		when(parsedSone.getId()).thenReturn("identity");
 	}
 
 	private void setupSoneAsUnknown() {
@@ -86,6 +115,62 @@ public class SoneDownloaderTest {
 		verify(freenetInterface).unregisterUsk(sone);
 	}
 
+	@Test
+	public void removingASoneDeregistersItsKeyAndRemovesItFromTheCache() {
+		soneDownloader.addSone(sone);
+		soneDownloader.removeSone(sone);
+		verify(freenetInterface).unregisterUsk(sone);
+		verify(remoteSoneCache).removeSone(sone.getId());
+	}
+
+	@Test
+	public void addingADormantSoneWillRegisterItsKeyPassively() {
+		when(sone.getTime()).thenReturn(currentTimeMillis() - DAYS.toMillis(100));
+		soneDownloader.addSone(sone);
+		verify(freenetInterface).registerPassiveUsk(eq(sone.getRequestUri()), any(USKCallback.class));
+	}
+
+	@Test
+	public void soneWhosePollingTierChangedIsRegisteredAgain() {
+		when(sone.getTime()).thenReturn(currentTimeMillis() - DAYS.toMillis(100));
+		soneDownloader.addSone(sone);
+		Sone localSone = mock(Sone.class);
+		when(localSone.hasFriend("identity")).thenReturn(true);
+		when(database.getLocalSones()).thenReturn(singletonList(localSone));
+		soneDownloader.updatePollingTiers();
+		verify(freenetInterface).unregisterUsk(sone);
+		ArgumentCaptor<USKCallback> uskCallback = forClass(USKCallback.class);
+		verify(freenetInterface).registerActiveUsk(eq(sone.getRequestUri()), uskCallback.capture());
+		assertThat(uskCallback.getValue().getPollingPriorityNormal(), is(INTERACTIVE_PRIORITY_CLASS));
+	}
+
+	@Test
+	public void soneWhosePollingTierIsUnchangedIsNotRegisteredAgain() {
+		soneDownloader.addSone(sone);
+		soneDownloader.updatePollingTiers();
+		verify(freenetInterface, never()).unregisterUsk(sone);
+	}
+
+	@Test
+	public void newEditionOfSoneIsScheduledForDownload() {
+		when(sone.getLatestEdition()).thenReturn(12L);
+		soneDownloader.addSone(sone);
+		ArgumentCaptor<USKCallback> uskCallback = forClass(USKCallback.class);
+		verify(freenetInterface).registerActiveUsk(eq(sone.getRequestUri()), uskCallback.capture());
+		uskCallback.getValue().onFoundEdition(13L, null, null, false, (short) 0, null, false, false);
+		verify(sone).setLatestEdition(13L);
+		verify(soneDownloadScheduler).schedule(eq(sone), any(Runnable.class));
+	}
+
+	@Test
+	public void oldEditionOfSoneIsNotScheduledForDownload() {
+		when(sone.getLatestEdition()).thenReturn(12L);
+		soneDownloader.addSone(sone);
+		ArgumentCaptor<USKCallback> uskCallback = forClass(USKCallback.class);
+		verify(freenetInterface).registerActiveUsk(eq(sone.getRequestUri()), uskCallback.capture());
+		uskCallback.getValue().onFoundEdition(12L, null, null, false, (short) 0, null, false, false);
+		verify(soneDownloadScheduler, never()).schedule(any(Sone.class), any(Runnable.class));
+	}
 
 	@Test
 	public void stoppingTheSoneDownloaderUnregistersTheSone() {
@@ -95,10 +180,10 @@ public class SoneDownloaderTest {
 	}
 
 	@Test
-	public void notBeingAbleToFetchAnUnknownSoneDoesNotUpdateCore() {
+	public void notBeingAbleToFetchAnUnknownSoneDoesNotUpdateCore() throws SoneException {
 		setupSoneAsUnknown();
 		soneDownloader.fetchSoneAsSskAction(sone).run();
-		verify(freenetInterface).fetchUri(finalRequestUri.sskForUSK());
+		verify(freenetInterface).fetchUri(finalRequestUri.sskForUSK(), soneParserLimits.getMaximumDocumentSize());
 		verifyThatSoneStatusWasChangedToDownloadingAndBackTo(unknown);
 		verify(updatedSoneProcessor, never()).updateSone(any(Sone.class));
 	}
@@ -111,16 +196,16 @@ public class SoneDownloaderTest {
 	}
 
 	@Test
-	public void notBeingAbleToFetchAKnownSoneDoesNotUpdateCore() {
+	public void notBeingAbleToFetchAKnownSoneDoesNotUpdateCore() throws SoneException {
 		soneDownloader.fetchSoneAsSskAction(sone).run();
-		verify(freenetInterface).fetchUri(finalRequestUri.sskForUSK());
+		verify(freenetInterface).fetchUri(finalRequestUri.sskForUSK(), soneParserLimits.getMaximumDocumentSize());
 		verifyThatSoneStatusWasChangedToDownloadingAndBackTo(idle);
 		verify(updatedSoneProcessor, never()).updateSone(any(Sone.class));
 	}
 
 	@Test(expected = NullPointerException.class)
-	public void exceptionWhileFetchingSoneDoesNotProcessUpdatedSone() {
-		when(freenetInterface.fetchUri(any(FreenetURI.class))).thenThrow(NullPointerException.class);
+	public void exceptionWhileFetchingSoneDoesNotProcessUpdatedSone() throws SoneException {
+		when(freenetInterface.fetchUri(any(FreenetURI.class), anyLong())).thenThrow(NullPointerException.class);
 		try {
 			soneDownloader.fetchSoneAsSskAction(sone).run();
 		} finally {
@@ -144,22 +229,306 @@ public class SoneDownloaderTest {
 		verifyThatSoneStatusWasChangedToDownloadingAndBackTo(idle);
 	}
 
+	@Test
+	public void storedSoneIsCached() throws IOException, SoneException {
+		setupParsedSone();
+		when(parsedSone.getId()).thenReturn("identity");
+		when(parsedSone.getLatestEdition()).thenReturn(12L);
+		when(updatedSoneProcessor.updateSone(parsedSone)).thenReturn(true);
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		verify(remoteSoneCache).storeSone(eq("identity"), eq(12L), any(InputStream.class));
+	}
+
+	@Test
+	public void discardedSoneIsNotCached() throws IOException, SoneException {
+		setupParsedSone();
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		verify(remoteSoneCache, never()).storeSone(anyString(), anyLong(), any(InputStream.class));
+	}
+
+	@Test
+	public void cachedSoneIsParsed() throws IOException, SoneException {
+		when(remoteSoneCache.loadSone("identity")).thenReturn(new CachedSone(12L, "<sone/>".getBytes(UTF_8)));
+		when(soneParser.parseSone(eq(sone), any(InputStream.class), any(SoneArchiveLoader.class))).thenReturn(parsedSone);
+		assertThat(soneDownloader.loadCachedSone(sone), is(parsedSone));
+		verify(parsedSone).setLatestEdition(12L);
+	}
+
+	@Test
+	public void missingCachedSoneIsNotLoaded() {
+		assertThat(soneDownloader.loadCachedSone(sone), nullValue());
+	}
+
+	@Test
+	public void unchangedSoneIsNotParsedAgainButEditionAndTimeAreUpdated() throws IOException, SoneException {
+		setupStoredSone();
+		when(freenetInterface.fetchUri(eq(finalRequestUri), anyLong())).thenReturn(
+				createFetched(12, "<sone><time>1000</time><posts><post><time>500</time></post></posts></sone>"),
+				createFetched(13, "<sone>\n\t<time>2000</time>\n\t<posts><post><time>500</time></post></posts>\n</sone>"));
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		assertThat(soneDownloader.fetchSone(parsedSone, sone.getRequestUri(), false), is(parsedSone));
+		verify(soneParser, times(1)).parseSone(any(Sone.class), any(InputStream.class), any(SoneArchiveLoader.class));
+		verify(updatedSoneProcessor, times(1)).updateSone(parsedSone);
+		verify(parsedSone).setLatestEdition(13L);
+		verify(parsedSone).setTime(2000L);
+	}
+
+	@Test
+	public void changedSoneIsParsedAgain() throws IOException, SoneException {
+		setupStoredSone();
+		when(soneParser.parseSone(eq(parsedSone), any(InputStream.class), any(SoneArchiveLoader.class))).thenReturn(parsedSone);
+		when(freenetInterface.fetchUri(eq(finalRequestUri), anyLong())).thenReturn(
+				createFetched(12, "<sone><time>1000</time><posts><post><time>500</time></post></posts></sone>"),
+				createFetched(13, "<sone><time>2000</time><posts><post><time>600</time></post></posts></sone>"));
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		soneDownloader.fetchSone(parsedSone, sone.getRequestUri(), false);
+		verify(soneParser, times(2)).parseSone(any(Sone.class), any(InputStream.class), any(SoneArchiveLoader.class));
+		verify(updatedSoneProcessor, times(2)).updateSone(parsedSone);
+	}
+
+	@Test
+	public void soneThatCouldNotBeParsedIsNotDownloadedAgainDuringBackoff() throws IOException, SoneException {
+		when(freenetInterface.fetchUri(eq(finalRequestUri), anyLong())).thenReturn(createFetched(12, "<sone/>"));
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		verify(freenetInterface, times(1)).fetchUri(finalRequestUri, soneParserLimits.getMaximumDocumentSize());
+	}
+
+	@Test
+	public void soneThatIsTooLargeIsNotDownloadedAgainDuringBackoff() throws SoneException {
+		when(freenetInterface.fetchUri(eq(finalRequestUri), anyLong())).thenThrow(new DocumentTooLargeException("too large", null));
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		verify(freenetInterface, times(1)).fetchUri(finalRequestUri, soneParserLimits.getMaximumDocumentSize());
+	}
+
+	@Test
+	public void scheduledDownloadOfSoneThatIsTooLargeBacksOff() throws IOException {
+		when(freenetClient.fetch(any(FreenetURI.class), anyLong())).thenAnswer(invocation -> {
+			throw new FetchException(TOO_BIG);
+		});
+		soneDownloader.serviceStart();
+		try {
+			soneDownloader.scheduleSskFetch(sone);
+			ArgumentCaptor<Runnable> download = forClass(Runnable.class);
+			verify(soneDownloadScheduler).schedule(eq(sone), download.capture());
+			download.getValue().run();
+			verify(sone, timeout(5000)).setStatus(idle);
+			download.getValue().run();
+			verify(freenetClient, times(1)).fetch(any(FreenetURI.class), anyLong());
+		} finally {
+			soneDownloader.serviceStop();
+		}
+	}
+
+	@Test
+	public void soneThatCouldNotBeParsedIsDownloadedAgainAfterBackoff() throws IOException, SoneException {
+		when(freenetInterface.fetchUri(eq(finalRequestUri), anyLong())).thenReturn(createFetched(12, "<sone/>"));
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		now += MINUTES.toMillis(6);
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		verify(freenetInterface, times(2)).fetchUri(finalRequestUri, soneParserLimits.getMaximumDocumentSize());
+	}
+
+	@Test
+	public void soneIsQuarantinedAfterRepeatedFailures() throws IOException, SoneException {
+		when(freenetInterface.fetchUri(eq(finalRequestUri), anyLong())).thenReturn(createFetched(12, "<sone/>"));
+		failToParseSone(5);
+		ArgumentCaptor<SoneStatus> soneStatuses = forClass(SoneStatus.class);
+		verify(sone, times(10)).setStatus(soneStatuses.capture());
+		assertThat(soneStatuses.getAllValues().get(7), is(idle));
+		assertThat(soneStatuses.getAllValues().get(9), is(quarantined));
+	}
+
+	@Test
+	public void successfullyParsedSoneIsReleasedFromQuarantine() throws IOException, SoneException {
+		when(freenetInterface.fetchUri(eq(finalRequestUri), anyLong())).thenReturn(createFetched(12, "<sone/>"));
+		failToParseSone(5);
+		when(soneParser.parseSone(eq(sone), any(InputStream.class), any(SoneArchiveLoader.class))).thenReturn(parsedSone);
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		ArgumentCaptor<SoneStatus> soneStatuses = forClass(SoneStatus.class);
+		verify(sone, times(12)).setStatus(soneStatuses.capture());
+		assertThat(soneStatuses.getAllValues().get(11), is(idle));
+	}
+
+	@Test
+	public void soneWithMissingArchiveIsNotCountedAsFailureAndIsDownloadedAgain() throws IOException, SoneException {
+		when(freenetInterface.fetchUri(eq(finalRequestUri), anyLong())).thenReturn(createFetched(12, "<sone/>"));
+		when(soneParser.parseSone(eq(sone), any(InputStream.class), any(SoneArchiveLoader.class))).thenThrow(new MissingArchiveException("missing"));
+		soneDownloader.addSone(sone);
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		verify(freenetInterface, times(2)).fetchUri(finalRequestUri, soneParserLimits.getMaximumDocumentSize());
+		verify(updatedSoneProcessor, never()).updateSone(any(Sone.class));
+		soneDownloader.retryIncompleteSones();
+		soneDownloader.retryIncompleteSones();
+		verify(soneDownloadScheduler, times(1)).schedule(eq(sone), any(Runnable.class));
+	}
+
+	@Test
+	public void skippedDownloadIsRetriedAfterBackoff() throws IOException, SoneException {
+		when(freenetInterface.fetchUri(eq(finalRequestUri), anyLong())).thenReturn(createFetched(12, "<sone/>"));
+		soneDownloader.addSone(sone);
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		soneDownloader.retryFailedSones();
+		verify(soneDownloadScheduler, never()).schedule(eq(sone), any(Runnable.class));
+		now += MINUTES.toMillis(6);
+		soneDownloader.retryFailedSones();
+		soneDownloader.retryFailedSones();
+		verify(soneDownloadScheduler, times(1)).schedule(eq(sone), any(Runnable.class));
+	}
+
+	@Test
+	public void scheduledDownloadIsFetchedParsedAndStoredByThePipeline() throws IOException, SoneException {
+		Bucket bucket = mock(Bucket.class);
+		when(bucket.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream("<sone/>".getBytes(UTF_8)));
+		when(freenetClient.fetch(eq(requestUri.sskForUSK().setMetaString(new String[] { "sone.xml" })), eq((long) soneParserLimits.getMaximumDocumentSize()))).thenReturn(new FetchResult(new ClientMetadata("application/xml"), bucket));
+		when(soneParser.parseSone(eq(sone), any(InputStream.class), any(SoneArchiveLoader.class))).thenReturn(parsedSone);
+		when(updatedSoneProcessor.updateSone(parsedSone)).thenReturn(true);
+		soneDownloader.serviceStart();
+		try {
+			soneDownloader.scheduleSskFetch(sone);
+			ArgumentCaptor<Runnable> download = forClass(Runnable.class);
+			verify(soneDownloadScheduler).schedule(eq(sone), download.capture());
+			download.getValue().run();
+			verify(updatedSoneProcessor, timeout(5000)).updateSone(parsedSone);
+			verify(bucket, timeout(5000)).free();
+			verify(sone, timeout(5000)).setStatus(idle);
+		} finally {
+			soneDownloader.serviceStop();
+		}
+	}
+
+	@Test
+	public void scheduledDownloadFetchesMissingArchivesBeforeTheSoneIsParsed() throws IOException, SoneException {
+		byte[] archive = "<archive/>".getBytes(UTF_8);
+		String archiveName = archiveName(new ByteArrayInputStream(archive));
+		FreenetURI soneXmlUri = requestUri.sskForUSK().setMetaString(new String[] { "sone.xml" });
+		FreenetURI archiveUri = soneXmlUri.setMetaString(new String[] { archiveName });
+		when(freenetClient.fetch(eq(soneXmlUri), anyLong())).thenAnswer(invocation -> createFetched(soneXmlUri, "<sone><archives><archive>" + archiveName + "</archive></archives></sone>").getFetchResult());
+		when(freenetClient.fetch(eq(archiveUri), anyLong())).thenAnswer(invocation -> createFetched(archiveUri, "<archive/>").getFetchResult());
+		Map<String, byte[]> cachedArchives = new ConcurrentHashMap<>();
+		doAnswer(invocation -> cachedArchives.put(invocation.getArgument(1), invocation.getArgument(2))).when(remoteSoneCache).storeArchive(eq("identity"), anyString(), any(byte[].class));
+		when(remoteSoneCache.loadArchive(eq("identity"), anyString())).thenAnswer(invocation -> cachedArchives.get(invocation.<String>getArgument(1)));
+		Map<String, byte[]> parsedArchives = new ConcurrentHashMap<>();
+		when(soneParser.parseSone(eq(sone), any(InputStream.class), any(SoneArchiveLoader.class))).thenAnswer(invocation -> {
+			try (InputStream archiveInputStream = invocation.<SoneArchiveLoader>getArgument(2).loadArchive(archiveName)) {
+				parsedArchives.put(archiveName, ByteStreams.toByteArray(archiveInputStream));
+			}
+			return parsedSone;
+		});
+		soneDownloader.serviceStart();
+		try {
+			soneDownloader.scheduleSskFetch(sone);
+			ArgumentCaptor<Runnable> download = forClass(Runnable.class);
+			verify(soneDownloadScheduler).schedule(eq(sone), download.capture());
+			download.getValue().run();
+			verify(updatedSoneProcessor, timeout(5000)).updateSone(parsedSone);
+			assertThat(parsedArchives.get(archiveName), is(archive));
+			verify(freenetInterface, never()).fetchUri(any(FreenetURI.class), anyLong());
+		} finally {
+			soneDownloader.serviceStop();
+		}
+	}
+
+	@Test
+	public void scheduledDownloadIsSkippedWhileBackingOff() throws IOException, SoneException {
+		when(freenetInterface.fetchUri(eq(finalRequestUri), anyLong())).thenReturn(createFetched(12, "<sone/>"));
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+		soneDownloader.scheduleSskFetch(sone);
+		ArgumentCaptor<Runnable> download = forClass(Runnable.class);
+		verify(soneDownloadScheduler).schedule(eq(sone), download.capture());
+		download.getValue().run();
+		verify(freenetClient, never()).fetch(any(FreenetURI.class), anyLong());
+	}
+
+	private void failToParseSone(int times) {
+		for (int attempt = 0; attempt < times; attempt++) {
+			soneDownloader.fetchSone(sone, sone.getRequestUri(), false);
+			now += DAYS.toMillis(1);
+		}
+	}
+
+	private void setupStoredSone() throws SoneException {
+		when(soneParser.parseSone(eq(sone), any(InputStream.class), any(SoneArchiveLoader.class))).thenReturn(parsedSone);
+		when(parsedSone.getId()).thenReturn("identity");
+		when(parsedSone.getRequestUri()).thenReturn(requestUri);
+		when(parsedSone.getLatestEdition()).thenReturn(12L);
+		when(parsedSone.getTime()).thenReturn(1000L);
+		when(updatedSoneProcessor.updateSone(parsedSone)).thenReturn(true);
+	}
+
+	@Test
+	public void archiveOfSoneIsFetchedFromTheSameEditionAndCached() throws IOException, SoneException {
+		when(freenetInterface.fetchUri(eq(finalRequestUri), anyLong())).thenReturn(createFetched(12, "<sone/>"));
+		String archiveName = archiveName(new ByteArrayInputStream("<archive/>".getBytes(UTF_8)));
+		FreenetURI archiveUri = requestUri.setSuggestedEdition(12).sskForUSK().setMetaString(new String[] { archiveName });
+		when(freenetInterface.fetchUri(eq(archiveUri), anyLong())).thenReturn(createFetched(archiveUri, "<archive/>"));
+		InputStream archive = loadArchiveWhileParsing(archiveName);
+		assertThat(new String(ByteStreams.toByteArray(archive), UTF_8), is("<archive/>"));
+		verify(remoteSoneCache).storeArchive(eq("identity"), eq(archiveName), any(byte[].class));
+	}
+
+	@Test
+	public void archiveWhoseContentDoesNotMatchItsNameIsNotLoaded() throws IOException, SoneException {
+		when(freenetInterface.fetchUri(eq(finalRequestUri), anyLong())).thenReturn(createFetched(12, "<sone/>"));
+		String archiveName = archiveName(new ByteArrayInputStream("<archive/>".getBytes(UTF_8)));
+		FreenetURI archiveUri = requestUri.setSuggestedEdition(12).sskForUSK().setMetaString(new String[] { archiveName });
+		when(freenetInterface.fetchUri(eq(archiveUri), anyLong())).thenReturn(createFetched(archiveUri, "<other-archive/>"));
+		assertThat(loadArchiveWhileParsing(archiveName), nullValue());
+		verify(remoteSoneCache, never()).storeArchive(anyString(), anyString(), any(byte[].class));
+	}
+
+	@Test
+	public void cachedArchiveOfSoneIsNotFetched() throws IOException, SoneException {
+		when(freenetInterface.fetchUri(eq(finalRequestUri), anyLong())).thenReturn(createFetched(12, "<sone/>"));
+		when(remoteSoneCache.loadArchive("identity", "archive.xml")).thenReturn("<archive/>".getBytes(UTF_8));
+		InputStream archive = loadArchiveWhileParsing("archive.xml");
+		assertThat(new String(ByteStreams.toByteArray(archive), UTF_8), is("<archive/>"));
+		verify(freenetInterface, never()).fetchUri(eq(requestUri.setSuggestedEdition(12).sskForUSK().setMetaString(new String[] { "archive.xml" })), anyLong());
+	}
+
+	private InputStream loadArchiveWhileParsing(String archiveName) throws IOException, SoneException {
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), true);
+		ArgumentCaptor<SoneArchiveLoader> archiveLoader = forClass(SoneArchiveLoader.class);
+		verify(soneParser).parseSone(eq(sone), any(InputStream.class), archiveLoader.capture());
+		return archiveLoader.getValue().loadArchive(archiveName);
+	}
+
+	private Fetched createFetched(FreenetURI uri, String content) throws IOException {
+		Bucket bucket = mock(Bucket.class);
+		when(bucket.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(content.getBytes(UTF_8)));
+		return new Fetched(uri, new FetchResult(new ClientMetadata("application/xml"), bucket));
+	}
+
+	private Fetched createFetched(long edition, String soneXml) throws IOException {
+		Bucket bucket = mock(Bucket.class);
+		when(bucket.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(soneXml.getBytes(UTF_8)));
+		FetchResult fetchResult = new FetchResult(new ClientMetadata("application/xml"), bucket);
+		return new Fetched(finalRequestUri.setSuggestedEdition(edition), fetchResult);
+	}
+
 	private void setupParsedSone() throws IOException, SoneException {
-		InputStream inputStream = mock(InputStream.class);
+		InputStream inputStream = new ByteArrayInputStream("<sone/>".getBytes(UTF_8));
 		ClientMetadata clientMetadata = new ClientMetadata("application/xml");
 		Bucket bucket = mock(Bucket.class);
 		when(bucket.getInputStream()).thenReturn(inputStream);
 		FetchResult fetchResult = new FetchResult(clientMetadata, bucket);
 		Fetched fetched = new Fetched(finalRequestUri, fetchResult);
-		when(freenetInterface.fetchUri(eq(finalRequestUri))).thenReturn(fetched);
-		when(soneParser.parseSone(sone, inputStream)).thenReturn(parsedSone);
+		when(freenetInterface.fetchUri(eq(finalRequestUri), anyLong())).thenReturn(fetched);
+		when(soneParser.parseSone(eq(sone), eq(inputStream), any(SoneArchiveLoader.class))).thenReturn(parsedSone);
 	}
 
 	@Test
 	public void soneDownloaderCanBeCreatedByDependencyInjection() {
 		assertThat(getBaseInjector().createChildInjector(
 				GuiceKt.supply(UpdatedSoneProcessor.class).byInstance(mock(UpdatedSoneProcessor.class)),
-				GuiceKt.supply(SoneParser.class).byInstance(mock(SoneParser.class))
+				GuiceKt.supply(SoneParser.class).byInstance(mock(SoneParser.class)),
+				GuiceKt.supply(SoneDownloadScheduler.class).byInstance(mock(SoneDownloadScheduler.class)),
+				GuiceKt.supply(UskPollingTiers.class).byInstance(mock(UskPollingTiers.class)),
+				GuiceKt.supply(FreenetClient.class).byInstance(mock(FreenetClient.class)),
+				GuiceKt.supply(SoneParserLimits.class).byInstance(new SoneParserLimits())
 		).getInstance(SoneDownloader.class), notNullValue());
 	}
 
@@ -3,6 +3,7 @@ package net.pterodactylus.sone.core;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -98,6 +99,25 @@ public class SoneModificationDetectorTest {
 		assertThat(soneModificationDetector.isEligibleForInsert(), is(true));
 	}
 
+	@Test
+	public void unmodifiedSoneHasNoTimeUntilEligible() {
+		assertThat(soneModificationDetector.isEligibleForInsert(), is(false));
+		assertThat(soneModificationDetector.getModificationTime(), nullValue());
+		assertThat(soneModificationDetector.getTimeUntilEligible(), nullValue());
+	}
+
+	@Test
+	public void timeUntilEligibleCountsDownFromModification() {
+		passTime(10);
+		modifySone();
+		soneModificationDetector.isEligibleForInsert();
+		assertThat(soneModificationDetector.getModificationTime(), is(SECONDS.toNanos(10)));
+		passTime(40);
+		assertThat(soneModificationDetector.getTimeUntilEligible(), is(SECONDS.toNanos(30)));
+		passTime(100);
+		assertThat(soneModificationDetector.getTimeUntilEligible(), is(0L));
+	}
+
 	@Test
 	public void modifiedSoneIsNotEligibleAfter30Seconds() {
 		modifySone();
@@ -7,6 +7,8 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -29,6 +31,7 @@ public class SoneRescuerTest {
 	private final Core core = mock(Core.class);
 	private final SoneDownloader soneDownloader = mock(SoneDownloader.class);
 	private final Sone sone = mock(Sone.class);
+	private final FreenetURI sskKey = mock(FreenetURI.class);
 	private SoneRescuer soneRescuer;
 
 	@Before
@@ -36,6 +39,7 @@ public class SoneRescuerTest {
 		FreenetURI soneUri = mock(FreenetURI.class);
 		when(soneUri.getEdition()).thenReturn(CURRENT_EDITION);
 		when(sone.getRequestUri()).thenReturn(soneUri);
+		when(soneUri.setKeyType(eq("SSK"))).thenReturn(sskKey);
 	}
 
 	@Before
@@ -121,13 +125,86 @@ public class SoneRescuerTest {
 		}).when(soneDownloader).fetchSone(eq(sone), eq(keyWithMetaStrings), eq(true));
 	}
 
+	@Test
+	public void restoredEditionIsFetchedAgainWhenItIsRestoredAgain() throws InterruptedException {
+		Sone firstFetchedSone = mock(Sone.class);
+		Sone secondFetchedSone = mock(Sone.class);
+		when(soneDownloader.fetchSone(eq(sone), eq(setupFreenetUri()), eq(true))).thenReturn(firstFetchedSone, secondFetchedSone);
+		soneRescuer.start();
+		try {
+			soneRescuer.startNextFetch();
+			verify(core, timeout(5000)).updateSone(eq(firstFetchedSone), eq(true));
+			waitForFetchToFinish();
+			soneRescuer.startNextFetch();
+			verify(core, timeout(5000)).updateSone(eq(secondFetchedSone), eq(true));
+		} finally {
+			soneRescuer.stop();
+		}
+	}
+
+	private void waitForFetchToFinish() throws InterruptedException {
+		for (int attempt = 0; (attempt < 500) && soneRescuer.isFetching(); attempt++) {
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void searchUsesNewestEditionOfWindowThatCouldBeFetched() {
+		Sone fetchedSone = mock(Sone.class);
+		when(soneDownloader.fetchSone(eq(sone), eq(setupFreenetUri(11)), eq(true))).thenReturn(fetchedSone);
+		when(soneDownloader.fetchSone(eq(sone), eq(setupFreenetUri(10)), eq(true))).thenReturn(mock(Sone.class));
+		setupFreenetUri(12);
+		stopRescuerOnUpdate();
+		soneRescuer.startSearch(3);
+		soneRescuer.serviceRun();
+		verify(core).lockSone(eq(sone));
+		verify(core).updateSone(eq(fetchedSone), eq(true));
+		assertThat(soneRescuer.getCurrentEdition(), is(11L));
+		assertThat(soneRescuer.isLastFetchSuccessful(), is(true));
+		assertThat(soneRescuer.isSearching(), is(false));
+	}
+
+	@Test
+	public void searchEndsAtFirstEditionIfNoEditionCouldBeFetched() {
+		soneRescuer.setEdition(2);
+		setupFreenetUri(2);
+		setupFreenetUri(1);
+		doAnswer(invocation -> {
+			soneRescuer.stop();
+			return null;
+		}).when(soneDownloader).fetchSone(eq(sone), eq(setupFreenetUri(0)), eq(true));
+		soneRescuer.startSearch(5);
+		soneRescuer.serviceRun();
+		verify(soneDownloader, times(3)).fetchSone(eq(sone), any(FreenetURI.class), eq(true));
+		verify(core, never()).updateSone(any(Sone.class), eq(true));
+		assertThat(soneRescuer.getCurrentEdition(), is(0L));
+		assertThat(soneRescuer.hasNextEdition(), is(false));
+		assertThat(soneRescuer.isLastFetchSuccessful(), is(false));
+		assertThat(soneRescuer.isSearching(), is(false));
+	}
+
+	@Test
+	public void windowSizeIsLimited() {
+		soneRescuer.startSearch(1000);
+		assertThat(soneRescuer.getWindowSize(), is(50));
+	}
+
+	private void stopRescuerOnUpdate() {
+		doAnswer(invocation -> {
+			soneRescuer.stop();
+			return null;
+		}).when(core).updateSone(any(Sone.class), eq(true));
+	}
+
 	private FreenetURI setupFreenetUri() {
-		FreenetURI sskKey = mock(FreenetURI.class);
+		return setupFreenetUri(CURRENT_EDITION);
+	}
+
+	private FreenetURI setupFreenetUri(long edition) {
 		FreenetURI keyWithDocName = mock(FreenetURI.class);
 		FreenetURI keyWithMetaStrings = mock(FreenetURI.class);
 		when(keyWithDocName.setMetaString(eq(new String[] { "sone.xml" }))).thenReturn(keyWithMetaStrings);
-		when(sskKey.setDocName(eq("Sone-" + CURRENT_EDITION))).thenReturn(keyWithDocName);
-		when(sone.getRequestUri().setKeyType(eq("SSK"))).thenReturn(sskKey);
+		when(sskKey.setDocName(eq("Sone-" + edition))).thenReturn(keyWithDocName);
 		return keyWithMetaStrings;
 	}
 
@@ -0,0 +1,110 @@
+package net.pterodactylus.sone.data.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import net.pterodactylus.sone.data.Album;
+import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.Sone.SonePart;
+import net.pterodactylus.sone.database.Database;
+import net.pterodactylus.sone.freenet.wot.Identity;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link SoneImpl}.
+ */
+public class SoneImplTest {
+
+	private final Identity identity = mock(Identity.class);
+	private final SoneImpl sone = createSone();
+
+	private SoneImpl createSone() {
+		when(identity.getId()).thenReturn("sone-id");
+		return new SoneImpl(mock(Database.class), identity, true);
+	}
+
+	@Test
+	public void fingerprintIsNotCalculatedAgainIfSoneIsNotModified() {
+		String fingerprint = sone.getFingerprint();
+		assertThat(sone.getFingerprint(), sameInstance(fingerprint));
+	}
+
+	@Test
+	public void fingerprintChangesWhenAPostIsAdded() {
+		String fingerprint = sone.getFingerprint();
+		Post post = mock(Post.class);
+		when(post.getId()).thenReturn("post-id");
+		when(post.getSone()).thenReturn(sone);
+		sone.addPost(post);
+		assertThat(sone.getFingerprint(), not(equalTo(fingerprint)));
+	}
+
+	@Test
+	public void fingerprintChangesWhenAPostIsLiked() {
+		String fingerprint = sone.getFingerprint();
+		sone.addLikedPostId("post-id");
+		assertThat(sone.getFingerprint(), not(equalTo(fingerprint)));
+	}
+
+	@Test
+	public void fingerprintDoesNotChangeWhenLikingAPostAgain() {
+		sone.addLikedPostId("post-id");
+		String fingerprint = sone.getFingerprint();
+		sone.addLikedPostId("post-id");
+		assertThat(sone.getFingerprint(), sameInstance(fingerprint));
+	}
+
+	@Test
+	public void likingAPostOnlyModifiesTheLikedPosts() {
+		sone.addLikedPostId("post-id");
+		assertThat(sone.getModifications(SonePart.likedPosts), equalTo(1L));
+		assertThat(sone.getModifications(SonePart.posts), equalTo(0L));
+		assertThat(sone.getModifications(SonePart.likedReplies), equalTo(0L));
+	}
+
+	@Test
+	public void modifyingAnAlbumModifiesTheAlbums() {
+		Album album = createAlbum();
+		long modifications = sone.getModifications(SonePart.albums);
+		album.modify().setTitle("New Title").update();
+		assertThat(sone.getModifications(SonePart.albums), equalTo(modifications + 1));
+	}
+
+	@Test
+	public void fingerprintChangesWhenAnAlbumIsModified() {
+		Album album = createAlbum();
+		createImage(album);
+		String fingerprint = sone.getFingerprint();
+		album.modify().setTitle("New Title").update();
+		assertThat(sone.getFingerprint(), not(equalTo(fingerprint)));
+	}
+
+	@Test
+	public void fingerprintChangesWhenAnImageIsModified() {
+		Image image = createImage(createAlbum());
+		String fingerprint = sone.getFingerprint();
+		image.modify().setTitle("New Title").update();
+		assertThat(sone.getFingerprint(), not(equalTo(fingerprint)));
+	}
+
+	private Album createAlbum() {
+		Album album = new AlbumImpl(sone);
+		album.modify().setTitle("Title").setDescription("").update();
+		sone.getRootAlbum().addAlbum(album);
+		return album;
+	}
+
+	private Image createImage(Album album) {
+		Image image = new ImageImpl();
+		image.modify().setSone(sone).setKey("KSK@image").setTitle("Title").setDescription("").update();
+		album.addImage(image);
+		return image;
+	}
+
+}
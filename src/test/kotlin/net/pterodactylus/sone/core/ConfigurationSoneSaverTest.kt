@@ -0,0 +1,164 @@
+package net.pterodactylus.sone.core
+
+import com.google.common.base.Optional
+import net.pterodactylus.sone.data.*
+import net.pterodactylus.sone.data.Sone.SonePart
+import net.pterodactylus.sone.test.*
+import net.pterodactylus.util.config.*
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+import org.mockito.ArgumentMatchers.*
+import org.mockito.Mockito.times
+import org.mockito.Mockito.verify
+
+/**
+ * Unit test for [ConfigurationSoneSaver].
+ */
+class ConfigurationSoneSaverTest {
+
+	private val values = mutableMapOf<String, Any?>()
+	private val writtenKeys = mutableListOf<String>()
+	private val configuration = mock<Configuration>().apply {
+		whenever(getStringValue(anyString())).thenAnswer { RecordingValue<String>(it[0]) }
+		whenever(getIntValue(anyString())).thenAnswer { RecordingValue<Int>(it[0]) }
+		whenever(getLongValue(anyString())).thenAnswer { RecordingValue<Long>(it[0]) }
+		whenever(getBooleanValue(anyString())).thenAnswer { RecordingValue<Boolean>(it[0]) }
+	}
+	private val sone = mock<Sone>().apply {
+		whenever(id).thenReturn("1")
+		whenever(profile).thenReturn(Profile(this))
+		whenever(rootAlbum).thenReturn(mock())
+		whenever(options).thenReturn(SoneOptions.DefaultSoneOptions())
+	}
+	private val configurationSoneSaver = ConfigurationSoneSaver(configuration, "1")
+
+	@Test
+	fun `first save writes all posts`() {
+		setPosts(1..3)
+		configurationSoneSaver.save(sone, null)
+		assertThat(savedIds("Posts"), containsInAnyOrder("post-1", "post-2", "post-3"))
+		assertThat(values["Sone/1/Posts/0/Text"] as String, startsWith("text "))
+	}
+
+	@Test
+	fun `saving an unchanged sone writes nothing`() {
+		setPosts(1..3)
+		configurationSoneSaver.save(sone, "insert-fingerprint")
+		writtenKeys.clear()
+		configurationSoneSaver.save(sone, "insert-fingerprint")
+		assertThat(writtenKeys, emptyIterable())
+	}
+
+	@Test
+	fun `posts are not looked at while they are not modified`() {
+		setPosts(1..3)
+		configurationSoneSaver.save(sone, null)
+		configurationSoneSaver.save(sone, null)
+		verify(sone, times(1)).posts
+	}
+
+	@Test
+	fun `added post is written after the existing posts`() {
+		setPosts(1..3)
+		configurationSoneSaver.save(sone, null)
+		writtenKeys.clear()
+		setPosts(1..4, 1)
+		configurationSoneSaver.save(sone, null)
+		assertThat(writtenKeys, contains("Sone/1/Posts/3/ID", "Sone/1/Posts/3/Recipient", "Sone/1/Posts/3/Time", "Sone/1/Posts/3/Text", "Sone/1/Posts/4/ID"))
+		assertThat(savedIds("Posts"), containsInAnyOrder("post-1", "post-2", "post-3", "post-4"))
+	}
+
+	@Test
+	fun `removed post is replaced by the last post`() {
+		setPosts(1..5)
+		configurationSoneSaver.save(sone, null)
+		writtenKeys.clear()
+		val firstSavedPost = values["Sone/1/Posts/0/ID"] as String
+		setPosts((1..5).filterNot { "post-$it" == firstSavedPost }, 1)
+		configurationSoneSaver.save(sone, null)
+		assertThat(savedIds("Posts"), hasSize<Any>(4))
+		assertThat(savedIds("Posts"), not(hasItem(firstSavedPost)))
+		assertThat(writtenKeys.filter { it.startsWith("Sone/1/Posts/") }.size, lessThanOrEqualTo(5))
+	}
+
+	@Test
+	fun `removing the first and the last post keeps all other posts`() {
+		setPosts(1..5)
+		configurationSoneSaver.save(sone, null)
+		val firstSavedPost = values["Sone/1/Posts/0/ID"] as String
+		val lastSavedPost = values["Sone/1/Posts/4/ID"] as String
+		setPosts((1..5).filterNot { "post-$it" == firstSavedPost || "post-$it" == lastSavedPost }, 1)
+		configurationSoneSaver.save(sone, null)
+		assertThat(savedIds("Posts"), containsInAnyOrder(*(1..5).map { "post-$it" }.filterNot { it == firstSavedPost || it == lastSavedPost }.toTypedArray()))
+	}
+
+	@Test
+	fun `liking a post only writes the new like`() {
+		configurationSoneSaver.save(sone, null)
+		writtenKeys.clear()
+		whenever(sone.likedPostIds).thenReturn(setOf("post-1"))
+		whenever(sone.getModifications(SonePart.likedPosts)).thenReturn(1L)
+		configurationSoneSaver.save(sone, null)
+		assertThat(writtenKeys, contains("Sone/1/Likes/Post/0/ID", "Sone/1/Likes/Post/1/ID"))
+		assertThat(savedIds("Likes/Post"), contains("post-1"))
+	}
+
+	@Test
+	fun `liking a post does not look at the posts`() {
+		setPosts(1..3)
+		configurationSoneSaver.save(sone, null)
+		whenever(sone.likedPostIds).thenReturn(setOf("post-1"))
+		whenever(sone.getModifications(SonePart.likedPosts)).thenReturn(1L)
+		configurationSoneSaver.save(sone, null)
+		verify(sone, times(1)).posts
+		verify(sone, times(1)).replies
+		verify(sone, times(1)).likedReplyIds
+	}
+
+	@Test
+	fun `changed profile only writes the changed value`() {
+		configurationSoneSaver.save(sone, null)
+		writtenKeys.clear()
+		sone.profile.firstName = "First"
+		whenever(sone.getModifications(SonePart.profile)).thenReturn(1L)
+		configurationSoneSaver.save(sone, null)
+		assertThat(writtenKeys, contains("Sone/1/Profile/FirstName"))
+		assertThat(values["Sone/1/Profile/FirstName"], equalTo<Any>("First"))
+	}
+
+	private fun setPosts(indexes: Iterable<Int>, modifications: Long = 0) {
+		whenever(sone.posts).thenReturn(indexes.map(::createPost))
+		whenever(sone.getModifications(SonePart.posts)).thenReturn(modifications)
+	}
+
+	private fun createPost(index: Int) = mock<Post>().apply {
+		whenever(id).thenReturn("post-$index")
+		whenever(time).thenReturn(index * 1000L)
+		whenever(text).thenReturn("text $index")
+		whenever(recipientId).thenReturn(Optional.absent())
+	}
+
+	private fun savedIds(listName: String) =
+			generateSequence(0) { it + 1 }
+					.map { values["Sone/1/$listName/$it/ID"] as String? }
+					.takeWhile { it != null }
+					.filterNotNull()
+					.toList()
+
+	private inner class RecordingValue<T>(private val key: String) : Value<T> {
+
+		@Suppress("UNCHECKED_CAST")
+		override fun getValue() = values[key] as T
+
+		@Suppress("UNCHECKED_CAST")
+		override fun getValue(defaultValue: T?) = (values[key] as T?) ?: defaultValue
+
+		override fun setValue(newValue: T?) {
+			values[key] = newValue
+			writtenKeys += key
+		}
+
+	}
+
+}
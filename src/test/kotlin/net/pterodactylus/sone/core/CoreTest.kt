@@ -53,7 +53,8 @@ class CoreTest {
 		val database = mock<Database>()
 		val metricRegistry = MetricRegistry()
 		val soneUriCreator = SoneUriCreator()
-		val core = Core(configuration, freenetInterface, identityManager, soneDownloader, imageInserter, updateChecker, webOfTrustUpdater, eventBus, database, metricRegistry, soneUriCreator)
+		val soneInsertScheduler = mock<SoneInsertScheduler>()
+		val core = Core(configuration, freenetInterface, identityManager, soneDownloader, imageInserter, updateChecker, webOfTrustUpdater, eventBus, database, metricRegistry, soneUriCreator, soneInsertScheduler)
 		val ownIdentity = mock<OwnIdentity>()
 		val identity = mock<Identity>()
 		whenever(identity.id).thenReturn("sone-id")
@@ -76,7 +77,7 @@ class CoreTest {
 		inOrder.verify(eventBus).post(argThat(isPostRemoved(post1)))
 		inOrder.verify(eventBus).post(argThat(isPostRemoved(post2)))
 		inOrder.verify(eventBus).post(argThat(isSoneRemoved(sone)))
-		inOrder.verify(database).removeSone(sone)
+		inOrder.verify(database).removeSone(sone)		verify(soneDownloader).removeSone(sone)
 	}
 
 	private fun isPostRemoved(post: Post): Matcher<Any> {
@@ -171,7 +172,8 @@ class CoreTest {
 		val database = mock<Database>()
 		val metricRegistry = MetricRegistry()
 		val soneUriCreator = SoneUriCreator()
-		return Core(configuration, freenetInterface, identityManager, soneDownloader, imageInserter, updateChecker, webOfTrustUpdater, eventBus, database, metricRegistry, soneUriCreator)
+		val soneInsertScheduler = mock<SoneInsertScheduler>()
+		return Core(configuration, freenetInterface, identityManager, soneDownloader, imageInserter, updateChecker, webOfTrustUpdater, eventBus, database, metricRegistry, soneUriCreator, soneInsertScheduler)
 	}
 
 }
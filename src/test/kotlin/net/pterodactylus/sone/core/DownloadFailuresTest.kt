@@ -0,0 +1,80 @@
+package net.pterodactylus.sone.core
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.emptyIterable
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+import java.util.concurrent.TimeUnit.DAYS
+import java.util.concurrent.TimeUnit.MINUTES
+
+/**
+ * Unit test for [DownloadFailures].
+ */
+class DownloadFailuresTest {
+
+	private var now = 0L
+	private val downloadFailures = DownloadFailures { now }
+
+	@Test
+	fun `sone without failures is not backing off`() {
+		assertThat(downloadFailures.isBackingOff("sone"), equalTo(false))
+	}
+
+	@Test
+	fun `sone is backing off after failure`() {
+		downloadFailures.failed("sone")
+		assertThat(downloadFailures.isBackingOff("sone"), equalTo(true))
+	}
+
+	@Test
+	fun `backoff doubles with every failure`() {
+		downloadFailures.failed("sone")
+		downloadFailures.failed("sone")
+		now += MINUTES.toMillis(9)
+		assertThat(downloadFailures.isBackingOff("sone"), equalTo(true))
+		now += MINUTES.toMillis(2)
+		assertThat(downloadFailures.isBackingOff("sone"), equalTo(false))
+	}
+
+	@Test
+	fun `backoff is limited to one day`() {
+		repeat(30) { downloadFailures.failed("sone") }
+		now += DAYS.toMillis(1)
+		assertThat(downloadFailures.isBackingOff("sone"), equalTo(false))
+	}
+
+	@Test
+	fun `sone is quarantined after five failures`() {
+		repeat(4) { assertThat(downloadFailures.failed("sone"), equalTo(false)) }
+		assertThat(downloadFailures.isQuarantined("sone"), equalTo(false))
+		assertThat(downloadFailures.failed("sone"), equalTo(true))
+		assertThat(downloadFailures.isQuarantined("sone"), equalTo(true))
+	}
+
+	@Test
+	fun `success releases sone from quarantine`() {
+		repeat(5) { downloadFailures.failed("sone") }
+		downloadFailures.succeeded("sone")
+		assertThat(downloadFailures.isQuarantined("sone"), equalTo(false))
+		assertThat(downloadFailures.isBackingOff("sone"), equalTo(false))
+	}
+
+	@Test
+	fun `sone that was not skipped is not retried`() {
+		downloadFailures.failed("sone")
+		now += MINUTES.toMillis(10)
+		assertThat(downloadFailures.dueRetries(), emptyIterable<String>())
+	}
+
+	@Test
+	fun `skipped sone is retried once after backoff`() {
+		downloadFailures.failed("sone")
+		downloadFailures.isBackingOff("sone")
+		assertThat(downloadFailures.dueRetries(), emptyIterable<String>())
+		now += MINUTES.toMillis(10)
+		assertThat(downloadFailures.dueRetries(), contains("sone"))
+		assertThat(downloadFailures.dueRetries(), emptyIterable<String>())
+	}
+
+}
@@ -0,0 +1,99 @@
+package net.pterodactylus.sone.core
+
+import net.pterodactylus.sone.test.*
+import net.pterodactylus.sone.web.*
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+import org.junit.rules.*
+import java.io.*
+import kotlin.text.Charsets.UTF_8
+
+/**
+ * Unit test for [FileRemoteSoneCache].
+ */
+class FileRemoteSoneCacheTest {
+
+	@Rule
+	@JvmField
+	val tempFolder = TemporaryFolder()
+	private val remoteSoneCache by lazy { FileRemoteSoneCache(tempFolder.newFolder()) }
+
+	@Test
+	fun `unknown sone is not loaded`() {
+		assertThat(remoteSoneCache.loadSone("sone-id"), nullValue())
+	}
+
+	@Test
+	fun `stored sone can be loaded`() {
+		remoteSoneCache.storeSone("sone-id", 12, "<sone/>".byteInputStream(UTF_8))
+		val cachedSone = remoteSoneCache.loadSone("sone-id")!!
+		assertThat(cachedSone.edition, equalTo(12L))
+		assertThat(cachedSone.soneXml.toString(UTF_8), equalTo("<sone/>"))
+	}
+
+	@Test
+	fun `storing a sone again replaces the stored sone`() {
+		remoteSoneCache.storeSone("sone-id", 12, "<sone/>".byteInputStream(UTF_8))
+		remoteSoneCache.storeSone("sone-id", 13, "<sone></sone>".byteInputStream(UTF_8))
+		val cachedSone = remoteSoneCache.loadSone("sone-id")!!
+		assertThat(cachedSone.edition, equalTo(13L))
+		assertThat(cachedSone.soneXml.toString(UTF_8), equalTo("<sone></sone>"))
+	}
+
+	@Test
+	fun `unknown archive is not loaded`() {
+		assertThat(remoteSoneCache.loadArchive("sone-id", "archive.xml"), nullValue())
+	}
+
+	@Test
+	fun `stored archive can be loaded`() {
+		remoteSoneCache.storeSone("sone-id", 12, "<sone/>".byteInputStream(UTF_8))
+		remoteSoneCache.storeArchive("sone-id", "archive.xml", "<archive/>".toByteArray(UTF_8))
+		assertThat(remoteSoneCache.loadArchive("sone-id", "archive.xml")!!.toString(UTF_8), equalTo("<archive/>"))
+		assertThat(remoteSoneCache.loadSone("sone-id")!!.soneXml.toString(UTF_8), equalTo("<sone/>"))
+	}
+
+	@Test
+	fun `stored archive is known to be stored`() {
+		assertThat(remoteSoneCache.hasArchive("sone-id", "archive.xml"), equalTo(false))
+		remoteSoneCache.storeArchive("sone-id", "archive.xml", "<archive/>".toByteArray(UTF_8))
+		assertThat(remoteSoneCache.hasArchive("sone-id", "archive.xml"), equalTo(true))
+	}
+
+	@Test
+	fun `archives that are not retained are removed`() {
+		remoteSoneCache.storeArchive("sone-id", "archive-1.xml", "<archive/>".toByteArray(UTF_8))
+		remoteSoneCache.storeArchive("sone-id", "archive-2.xml", "<archive/>".toByteArray(UTF_8))
+		remoteSoneCache.retainArchives("sone-id", listOf("archive-2.xml"))
+		assertThat(remoteSoneCache.hasArchive("sone-id", "archive-1.xml"), equalTo(false))
+		assertThat(remoteSoneCache.hasArchive("sone-id", "archive-2.xml"), equalTo(true))
+	}
+
+	@Test
+	fun `removed sone and its archives are not loaded anymore`() {
+		remoteSoneCache.storeSone("sone-id", 12, "<sone/>".byteInputStream(UTF_8))
+		remoteSoneCache.storeArchive("sone-id", "archive.xml", "<archive/>".toByteArray(UTF_8))
+		remoteSoneCache.removeSone("sone-id")
+		assertThat(remoteSoneCache.loadSone("sone-id"), nullValue())
+		assertThat(remoteSoneCache.hasArchive("sone-id", "archive.xml"), equalTo(false))
+	}
+
+	@Test
+	fun `sone stored by an older version is loaded`() {
+		val directory = tempFolder.newFolder()
+		DataOutputStream(File(directory, "sone-id.xml").outputStream()).use { outputStream ->
+			outputStream.writeLong(12)
+			outputStream.write("<sone/>".toByteArray(UTF_8))
+		}
+		val cachedSone = FileRemoteSoneCache(directory).loadSone("sone-id")!!
+		assertThat(cachedSone.edition, equalTo(12L))
+		assertThat(cachedSone.soneXml.toString(UTF_8), equalTo("<sone/>"))
+	}
+
+	@Test
+	fun `file remote sone cache can be created by dependency injection`() {
+		assertThat(baseInjector.getInstance<RemoteSoneCache>(), notNullValue())
+	}
+
+}
@@ -121,6 +121,30 @@ class FreenetInterfaceTest {
 		assertThat(fetched.freenetUri, equalTo(newFreenetUri))
 	}
 
+	@Test
+	fun `can fetch uri with maximum size`() {
+		val freenetUri = FreenetURI("KSK@GPLv3.txt")
+		val fetchResult = createFetchResult()
+		whenever(highLevelSimpleClient.fetch(freenetUri, 1024)).thenReturn(fetchResult)
+		val fetched = freenetInterface.fetchUri(freenetUri, 1024)
+		assertThat(fetched!!.fetchResult, equalTo(fetchResult))
+	}
+
+	@Test
+	fun `fetch throws document too large exception if data is too big`() {
+		val freenetUri = FreenetURI("KSK@GPLv3.txt")
+		whenever(highLevelSimpleClient.fetch(freenetUri, 1024)).thenThrow(FetchException(TOO_BIG))
+		expectionException.expect(DocumentTooLargeException::class.java)
+		freenetInterface.fetchUri(freenetUri, 1024)
+	}
+
+	@Test
+	fun `fetch with maximum size returns null on other fetch exceptions`() {
+		val freenetUri = FreenetURI("KSK@GPLv3.txt")
+		whenever(highLevelSimpleClient.fetch(freenetUri, 1024)).thenThrow(FetchException(ALL_DATA_NOT_FOUND))
+		assertThat(freenetInterface.fetchUri(freenetUri, 1024), nullValue())
+	}
+
 	@Test
 	fun `fetch returns null on fetch exceptions`() {
 		val freenetUri = FreenetURI("KSK@GPLv2.txt")
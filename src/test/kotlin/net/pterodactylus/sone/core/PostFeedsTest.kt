@@ -0,0 +1,200 @@
+package net.pterodactylus.sone.core
+
+import net.pterodactylus.sone.data.Post
+import net.pterodactylus.sone.data.Sone
+import net.pterodactylus.sone.database.PostProvider
+import net.pterodactylus.sone.database.SoneProvider
+import net.pterodactylus.sone.freenet.wot.Identity
+import net.pterodactylus.sone.freenet.wot.OwnIdentity
+import net.pterodactylus.sone.freenet.wot.Trust
+import net.pterodactylus.sone.test.get
+import net.pterodactylus.sone.test.mock
+import net.pterodactylus.sone.test.whenever
+import net.pterodactylus.sone.utils.asOptional
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.emptyIterable
+import org.hamcrest.Matchers.sameInstance
+import org.junit.Before
+import org.junit.Test
+import org.mockito.ArgumentMatchers.anyString
+import org.mockito.Mockito.times
+import org.mockito.Mockito.verify
+
+/**
+ * Unit test for [PostFeeds].
+ */
+class PostFeedsTest {
+
+	private val soneProvider = mock<SoneProvider>()
+	private val postProvider = mock<PostProvider>()
+	private val postFeeds = PostFeeds(soneProvider, postProvider)
+	private val localSone = createSone("local")
+	private val friendSone = createSone("friend")
+	private val otherSone = createSone("other")
+	private val sones = mutableMapOf("local" to localSone, "friend" to friendSone, "other" to otherSone)
+	private val directedPosts = mutableListOf<Post>()
+
+	@Before
+	fun setupProviders() {
+		whenever(soneProvider.getSone(anyString())).then { sones[it[0]] }
+		whenever(postProvider.getDirectedPosts("local")).then { directedPosts.toList() }
+		whenever(localSone.friends).thenReturn(listOf("friend"))
+	}
+
+	@Test
+	fun `feed contains posts of local sone, followed sones, and directed posts, newest first`() {
+		val localPost = createPost("local-post", localSone, 3000)
+		val friendPost = createPost("friend-post", friendSone, 2000)
+		val directedPost = createPost("directed-post", otherSone, 1000, "local")
+		whenever(localSone.posts).thenReturn(listOf(localPost))
+		whenever(friendSone.posts).thenReturn(listOf(friendPost))
+		whenever(otherSone.posts).thenReturn(listOf(directedPost, createPost("other-post", otherSone, 4000)))
+		directedPosts += directedPost
+		assertThat(postFeeds.getPostFeed(localSone), contains(localPost, friendPost, directedPost))
+	}
+
+	@Test
+	fun `unchanged feed is returned without being copied again`() {
+		whenever(localSone.posts).thenReturn(listOf(createPost("local-post", localSone, 3000)))
+		val postFeed = postFeeds.getPostFeed(localSone)
+		assertThat(postFeeds.getPostFeed(localSone), sameInstance(postFeed))
+	}
+
+	@Test
+	fun `added post of local sone is included in feed`() {
+		val firstPost = createPost("local-post1", localSone, 3000)
+		val secondPost = createPost("local-post2", localSone, 4000)
+		whenever(localSone.posts).thenReturn(listOf(firstPost))
+		postFeeds.getPostFeed(localSone)
+		postFeeds.postAdded(secondPost)
+		assertThat(postFeeds.getPostFeed(localSone), contains(secondPost, firstPost))
+	}
+
+	@Test
+	fun `added post of sone that is not followed is not included in feed`() {
+		postFeeds.getPostFeed(localSone)
+		postFeeds.postAdded(createPost("other-post", otherSone, 4000))
+		assertThat(postFeeds.getPostFeed(localSone), emptyIterable<Post>())
+	}
+
+	@Test
+	fun `removed post is removed from feed`() {
+		val firstPost = createPost("local-post1", localSone, 3000)
+		val secondPost = createPost("local-post2", localSone, 4000)
+		whenever(localSone.posts).thenReturn(listOf(firstPost, secondPost))
+		postFeeds.getPostFeed(localSone)
+		postFeeds.postRemoved(secondPost)
+		assertThat(postFeeds.getPostFeed(localSone), contains(firstPost))
+	}
+
+	@Test
+	fun `feed is not looked at again when it is requested`() {
+		postFeeds.getPostFeed(localSone)
+		postFeeds.getPostFeed(localSone)
+		verify(localSone, times(1)).friends
+		verify(postProvider, times(1)).getDirectedPosts("local")
+	}
+
+	@Test
+	fun `posts of a followed sone are added to feed`() {
+		val otherPost = createPost("other-post", otherSone, 2000)
+		whenever(otherSone.posts).thenReturn(listOf(otherPost))
+		postFeeds.getPostFeed(localSone)
+		postFeeds.soneFollowed(localSone, "other")
+		assertThat(postFeeds.getPostFeed(localSone), contains(otherPost))
+	}
+
+	@Test
+	fun `posts of an unfollowed sone are removed from feed`() {
+		whenever(friendSone.posts).thenReturn(listOf(createPost("friend-post", friendSone, 2000)))
+		postFeeds.getPostFeed(localSone)
+		postFeeds.soneUnfollowed(localSone, "friend")
+		assertThat(postFeeds.getPostFeed(localSone), emptyIterable<Post>())
+	}
+
+	@Test
+	fun `directed post of an unfollowed sone stays in feed`() {
+		val directedPost = createPost("friend-post", friendSone, 2000, "local")
+		whenever(friendSone.posts).thenReturn(listOf(directedPost))
+		directedPosts += directedPost
+		assertThat(postFeeds.getPostFeed(localSone), contains(directedPost))
+		postFeeds.soneUnfollowed(localSone, "friend")
+		assertThat(postFeeds.getPostFeed(localSone), contains(directedPost))
+	}
+
+	@Test
+	fun `added post directed at local sone is included in feed`() {
+		postFeeds.getPostFeed(localSone)
+		val directedPost = createPost("other-post", otherSone, 4000, "local")
+		postFeeds.postAdded(directedPost)
+		assertThat(postFeeds.getPostFeed(localSone), contains(directedPost))
+	}
+
+	@Test
+	fun `stored changes of a followed sone are applied to feed`() {
+		val removedPost = createPost("friend-post1", friendSone, 2000)
+		val replacedPost = createPost("friend-post2", friendSone, 2500)
+		whenever(friendSone.posts).thenReturn(listOf(removedPost, replacedPost))
+		postFeeds.getPostFeed(localSone)
+		val newFriendSone = createSone("friend")
+		val newPost = createPost("friend-post3", newFriendSone, 3000)
+		val newReplacedPost = createPost("friend-post2", newFriendSone, 2500)
+		whenever(newFriendSone.posts).thenReturn(listOf(newReplacedPost, newPost))
+		sones["friend"] = newFriendSone
+		postFeeds.soneChanged(SoneComparison(friendSone, newFriendSone))
+		assertThat(postFeeds.getPostFeed(localSone), contains(newPost, newReplacedPost))
+		assertThat(postFeeds.getPostFeed(localSone)[1], sameInstance(newReplacedPost))
+	}
+
+	@Test
+	fun `stored changes of a sone that is not followed are not applied to feed`() {
+		postFeeds.getPostFeed(localSone)
+		val newOtherSone = createSone("other")
+		whenever(newOtherSone.posts).thenReturn(listOf(createPost("other-post", newOtherSone, 3000)))
+		postFeeds.soneChanged(SoneComparison(otherSone, newOtherSone))
+		assertThat(postFeeds.getPostFeed(localSone), emptyIterable<Post>())
+	}
+
+	@Test
+	fun `posts of a distrusted sone are not included in feed`() {
+		val localIdentity = mock<OwnIdentity>()
+		whenever(localSone.identity).thenReturn(localIdentity)
+		val friendIdentity = mock<Identity>()
+		whenever(friendSone.identity).thenReturn(friendIdentity)
+		whenever(friendIdentity.getTrust(localIdentity)).thenReturn(Trust(-1, null, null))
+		val localPost = createPost("local-post", localSone, 3000)
+		whenever(localSone.posts).thenReturn(listOf(localPost))
+		whenever(friendSone.posts).thenReturn(listOf(createPost("friend-post", friendSone, 2000)))
+		assertThat(postFeeds.getPostFeed(localSone), contains(localPost))
+	}
+
+	@Test
+	fun `changed trust is applied to feed`() {
+		val localIdentity = mock<OwnIdentity>()
+		whenever(localSone.identity).thenReturn(localIdentity)
+		val friendIdentity = mock<Identity>()
+		whenever(friendSone.identity).thenReturn(friendIdentity)
+		val friendPost = createPost("friend-post", friendSone, 2000)
+		whenever(friendSone.posts).thenReturn(listOf(friendPost))
+		assertThat(postFeeds.getPostFeed(localSone), contains(friendPost))
+		whenever(friendIdentity.getTrust(localIdentity)).thenReturn(Trust(null, -1, null))
+		postFeeds.trustChanged(localSone, "friend")
+		assertThat(postFeeds.getPostFeed(localSone), emptyIterable<Post>())
+		whenever(friendIdentity.getTrust(localIdentity)).thenReturn(Trust(1, -1, null))
+		postFeeds.trustChanged(localSone, "friend")
+		assertThat(postFeeds.getPostFeed(localSone), contains(friendPost))
+	}
+
+}
+
+private fun createSone(id: String) = mock<Sone>().apply {
+	whenever(this.id).thenReturn(id)
+}
+
+private fun createPost(id: String, sone: Sone, time: Long, recipientId: String? = null) = mock<Post>().apply {
+	whenever(this.id).thenReturn(id)
+	whenever(this.sone).thenReturn(sone)
+	whenever(this.time).thenReturn(time)
+	whenever(this.recipientId).thenReturn(recipientId.asOptional())
+}
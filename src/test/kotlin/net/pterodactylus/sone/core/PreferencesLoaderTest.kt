@@ -29,6 +29,7 @@ class PreferencesLoaderTest {
 		setupBooleanValue("ActivateFcpInterface", true)
 		setupIntValue("FcpFullAccessRequired", 1)
 		setupBooleanValue("StrictFiltering", true)
+		setupBooleanValue("ArchiveOldPosts", true)
 	}
 
 	private fun setupIntValue(optionName: String, value: Int) {
@@ -51,6 +52,7 @@ class PreferencesLoaderTest {
 		assertThat(preferences.fcpInterfaceActive, equalTo(true))
 		assertThat(preferences.fcpFullAccessRequired, equalTo(FullAccessRequired.WRITING))
 		assertThat(preferences.strictFiltering, equalTo(true))
+		assertThat(preferences.archiveOldPosts, equalTo(true))
 	}
 
 	@Test
@@ -351,6 +351,23 @@ class PreferencesTest {
 		verifySavedOption(equalTo(false)) { it.getBooleanValue("Option/StrictFiltering").value }
 	}
 
+	@Test
+	fun `default archiving of old posts is false`() {
+		assertThat(preferences.archiveOldPosts, equalTo(false))
+	}
+
+	@Test
+	fun `archiving of old posts can be set`() {
+		preferences.newArchiveOldPosts = true
+		assertThat(preferences.archiveOldPosts, equalTo(true))
+	}
+
+	@Test
+	fun `activated archiving of old posts is saved as true`() {
+		preferences.newArchiveOldPosts = true
+		verifySavedOption(equalTo(true)) { it.getBooleanValue("Option/ArchiveOldPosts").value }
+	}
+
 	private fun <T> verifySavedOption(matcher: Matcher<T>, getter: (Configuration) -> T) {
 		val configuration = Configuration(MapConfigurationBackend())
 		preferences.saveTo(configuration)
@@ -0,0 +1,77 @@
+package net.pterodactylus.sone.core
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.emptyIterable
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.hasSize
+import org.hamcrest.Matchers.not
+import org.junit.Test
+
+/**
+ * Unit test for the functions in `SoneArchives.kt`.
+ */
+class SoneArchivesTest {
+
+	@Test
+	fun `few items are not archived`() {
+		val split = splitIntoArchives((1..199).toList(), naturalOrder())
+		assertThat(split.archives, emptyIterable<List<Int>>())
+		assertThat(split.recent, hasSize(199))
+	}
+
+	@Test
+	fun `only full archives are created and recent items are kept`() {
+		val split = splitIntoArchives((1..250).toList().shuffled(), naturalOrder())
+		assertThat(split.archives, hasSize(1))
+		assertThat(split.archives[0], equalTo((1..100).toList()))
+		assertThat(split.recent, equalTo((101..250).toList()))
+	}
+
+	@Test
+	fun `archives do not change when new items are added`() {
+		val archives = splitIntoArchives((1..300).toList(), naturalOrder()).archives
+		assertThat(splitIntoArchives((1..399).toList(), naturalOrder()).archives, equalTo(archives))
+	}
+
+	@Test
+	fun `archive name is derived from the content`() {
+		val archiveName = archiveName("<archive/>".byteInputStream())
+		assertThat(archiveName, equalTo(archiveName("<archive/>".byteInputStream())))
+		assertThat(isArchiveName(archiveName), equalTo(true))
+		assertThat(archiveName("<archive></archive>".byteInputStream()), not(equalTo(archiveName)))
+	}
+
+	@Test
+	fun `other names are not archive names`() {
+		assertThat(isArchiveName("sone.xml"), equalTo(false))
+		assertThat(isArchiveName("../archive-0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef.xml"), equalTo(false))
+	}
+
+	@Test
+	fun `archive names are read from a sone`() {
+		val soneXml = "<sone><time>1</time><archives><archive>$archive1</archive><archive>invalid</archive><archive> $archive2 </archive></archives><posts/></sone>"
+		assertThat(readArchiveNames(soneXml.byteInputStream(), 10), contains(archive1, archive2))
+	}
+
+	@Test
+	fun `only the maximum number of archive names is read`() {
+		val soneXml = "<sone><archives><archive>$archive1</archive><archive>$archive2</archive></archives></sone>"
+		assertThat(readArchiveNames(soneXml.byteInputStream(), 1), contains(archive1))
+	}
+
+	@Test
+	fun `archive elements outside of the archives are ignored`() {
+		val soneXml = "<sone><posts><archive>$archive1</archive></posts></sone>"
+		assertThat(readArchiveNames(soneXml.byteInputStream(), 10), emptyIterable<String>())
+	}
+
+	@Test
+	fun `no archive names are read from invalid xml`() {
+		assertThat(readArchiveNames("<sone><archives>".byteInputStream(), 10), emptyIterable<String>())
+	}
+
+}
+
+private val archive1 = archiveName("<archive>1</archive>".byteInputStream())
+private val archive2 = archiveName("<archive>2</archive>".byteInputStream())
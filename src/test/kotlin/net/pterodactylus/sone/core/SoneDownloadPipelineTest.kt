@@ -0,0 +1,242 @@
+package net.pterodactylus.sone.core
+
+import com.codahale.metrics.MetricRegistry
+import freenet.client.ClientMetadata
+import freenet.client.FetchException
+import freenet.client.FetchException.FetchExceptionMode.ALL_DATA_NOT_FOUND
+import freenet.client.FetchException.FetchExceptionMode.TOO_BIG
+import freenet.client.FetchResult
+import freenet.keys.FreenetURI
+import freenet.support.api.Bucket
+import freenet.support.io.NullBucket
+import net.pterodactylus.sone.data.Sone
+import net.pterodactylus.sone.freenet.AsyncFreenetInterface
+import net.pterodactylus.sone.freenet.FreenetClient
+import net.pterodactylus.sone.test.mock
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.greaterThanOrEqualTo
+import org.hamcrest.Matchers.nullValue
+import org.junit.After
+import org.junit.Test
+import org.mockito.Mockito.verify
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit.MILLISECONDS
+import java.util.concurrent.TimeUnit.SECONDS
+
+/**
+ * Unit test for [SoneDownloadPipeline].
+ */
+class SoneDownloadPipelineTest {
+
+	private val sone = mock<Sone>()
+	private val soneUri = FreenetURI("KSK@sone.xml")
+	private var fetchResult = FetchResult(ClientMetadata(), NullBucket())
+	private var fetchException: Exception? = null
+	private var archiveFetchException: Exception? = null
+	private var fetchedMaximumSize: Long? = null
+	private val fetchedUris = CopyOnWriteArrayList<FreenetURI>()
+	private val freenetClient = object : FreenetClient {
+		override fun fetch(freenetKey: FreenetURI) =
+				throw UnsupportedOperationException()
+
+		override fun fetch(freenetKey: FreenetURI, maximumSize: Long): FetchResult {
+			fetchedMaximumSize = maximumSize
+			fetchedUris += freenetKey
+			if ("archive-" in freenetKey.toString()) {
+				archiveFetchException?.let { throw it }
+			}
+			return fetchException?.let { throw it } ?: fetchResult
+		}
+	}
+	private val metricRegistry = MetricRegistry()
+	private val stages = RecordingStages()
+	private val pipeline = SoneDownloadPipeline(AsyncFreenetInterface(freenetClient), stages, metricRegistry, 1024, 2, 2)
+
+	@After
+	fun stopPipeline() {
+		pipeline.stop()
+	}
+
+	@Test
+	fun `downloaded sone is fetched, parsed, and stored`() {
+		pipeline.start()
+		pipeline.download(sone, soneUri)
+		assertThat(stages.stored.poll(5, SECONDS), equalTo<Any>("parsed"))
+		assertThat(stages.calls, contains("fetching", "parse", "store"))
+		assertThat(stages.fetched, contains(Fetched(soneUri, fetchResult)))
+	}
+
+	@Test
+	fun `sone is fetched with the maximum size`() {
+		pipeline.start()
+		pipeline.download(sone, soneUri)
+		stages.stored.poll(5, SECONDS)
+		assertThat(fetchedMaximumSize, equalTo(1024L))
+	}
+
+	@Test
+	fun `sone that can not be fetched is stored without being parsed`() {
+		fetchException = FetchException(ALL_DATA_NOT_FOUND)
+		pipeline.start()
+		pipeline.download(sone, soneUri)
+		assertThat(stages.stored.poll(5, SECONDS), equalTo<Any>(Unit))
+		assertThat(stages.calls, contains("fetching", "store"))
+	}
+
+	@Test
+	fun `sone that is too large is reported before it is stored`() {
+		fetchException = FetchException(TOO_BIG)
+		pipeline.start()
+		pipeline.download(sone, soneUri)
+		assertThat(stages.stored.poll(5, SECONDS), equalTo<Any>(Unit))
+		assertThat(stages.calls, contains("fetching", "tooLarge", "store"))
+	}
+
+	@Test
+	fun `sone whose fetch throws an unexpected exception is stored without being parsed`() {
+		fetchException = RuntimeException()
+		pipeline.start()
+		pipeline.download(sone, soneUri)
+		assertThat(stages.stored.poll(5, SECONDS), equalTo<Any>(Unit))
+		assertThat(stages.calls, contains("fetching", "store"))
+	}
+
+	@Test
+	fun `fetchers keep running after unexpected exceptions`() {
+		fetchException = RuntimeException()
+		pipeline.start()
+		repeat(3) {
+			pipeline.download(sone, soneUri)
+			stages.stored.poll(5, SECONDS)
+		}
+		fetchException = null
+		pipeline.download(sone, soneUri)
+		assertThat(stages.stored.poll(5, SECONDS), equalTo<Any>("parsed"))
+	}
+
+	@Test
+	fun `missing archives are fetched from the same edition before the sone is parsed`() {
+		val uskUri = FreenetURI("USK@nwa8lHa271k2QvJ8aa0Ov7IHAV-DFOCFgmDt3X6BpCI,DuQSUZiI~agF8c-6tjsFFGuZ8eICrzWCILB60nT8KKo,AQACAAE/Sone/12/sone.xml")
+		stages.missingArchives = listOf("archive-1.xml", "archive-2.xml")
+		pipeline.start()
+		pipeline.download(sone, uskUri)
+		stages.stored.poll(5, SECONDS)
+		assertThat(fetchedUris, contains(uskUri, uskUri.sskForUSK().setMetaString(arrayOf("archive-1.xml")), uskUri.sskForUSK().setMetaString(arrayOf("archive-2.xml"))))
+		assertThat(stages.calls, contains("fetching", "archive archive-1.xml", "archive archive-2.xml", "parse", "store"))
+	}
+
+	@Test
+	fun `archive that can not be fetched does not prevent parsing the sone`() {
+		stages.missingArchives = listOf("archive-1.xml")
+		archiveFetchException = FetchException(ALL_DATA_NOT_FOUND)
+		pipeline.start()
+		pipeline.download(sone, soneUri)
+		assertThat(stages.stored.poll(5, SECONDS), equalTo<Any>("parsed"))
+	}
+
+	@Test
+	fun `fetched data is freed if the sone can not be parsed`() {
+		val bucket = mock<Bucket>()
+		fetchResult = FetchResult(ClientMetadata(), bucket)
+		stages.parseException = RuntimeException()
+		pipeline.start()
+		pipeline.download(sone, soneUri)
+		assertThat(stages.stored.poll(5, SECONDS), equalTo<Any>(Unit))
+		verify(bucket).free()
+	}
+
+	@Test
+	fun `parsed downloads that were not stored yet are discarded when the pipeline is stopped`() {
+		val storing = CountDownLatch(1)
+		val blockingStore = CountDownLatch(1)
+		stages.storeAction = {
+			storing.countDown()
+			blockingStore.await()
+		}
+		pipeline.start()
+		repeat(3) { pipeline.download(sone, soneUri) }
+		storing.await(5, SECONDS)
+		waitForParses(3)
+		pipeline.stop()
+		blockingStore.countDown()
+		assertThat(stages.discarded, contains("parsed", "parsed"))
+	}
+
+	@Test
+	fun `duration of every stage is recorded`() {
+		pipeline.start()
+		pipeline.download(sone, soneUri)
+		pipeline.download(sone, soneUri)
+		stages.stored.poll(5, SECONDS)
+		stages.stored.poll(5, SECONDS)
+		assertThat(metricRegistry.histogram("sone.download.fetch.duration").count, equalTo(2L))
+		assertThat(metricRegistry.histogram("sone.download.parse.duration").count, equalTo(2L))
+		assertThat(metricRegistry.histogram("sone.download.store.duration").count, greaterThanOrEqualTo(1L))
+	}
+
+	@Test
+	fun `download after stop is ignored`() {
+		pipeline.start()
+		pipeline.stop()
+		pipeline.download(sone, soneUri)
+		assertThat(stages.stored.poll(100, MILLISECONDS), nullValue())
+	}
+
+	private fun waitForParses(parses: Int) {
+		repeat(500) {
+			if (stages.calls.count { it == "parse" } == parses) {
+				return
+			}
+			Thread.sleep(10)
+		}
+	}
+
+	private class RecordingStages : SoneDownloadStages<String> {
+
+		val calls = CopyOnWriteArrayList<String>()
+		val fetched = CopyOnWriteArrayList<Fetched>()
+		val stored = ArrayBlockingQueue<Any>(10)
+		val discarded = CopyOnWriteArrayList<String>()
+		var missingArchives = emptyList<String>()
+		var parseException: Exception? = null
+		var storeAction: () -> Unit = {}
+
+		override fun fetching(sone: Sone) {
+			calls += "fetching"
+		}
+
+		override fun missingArchives(sone: Sone, fetched: Fetched) =
+				missingArchives
+
+		override fun archiveFetched(sone: Sone, archiveName: String, fetched: Fetched) {
+			calls += "archive $archiveName"
+		}
+
+		override fun parse(sone: Sone, fetched: Fetched): String? {
+			calls += "parse"
+			this.fetched += fetched
+			parseException?.let { throw it }
+			return "parsed"
+		}
+
+		override fun tooLarge(sone: Sone) {
+			calls += "tooLarge"
+		}
+
+		override fun store(sone: Sone, parsed: String?) {
+			calls += "store"
+			storeAction()
+			stored += parsed ?: Unit
+		}
+
+		override fun discard(sone: Sone, parsed: String) {
+			discarded += parsed
+		}
+
+	}
+
+}
@@ -0,0 +1,77 @@
+package net.pterodactylus.sone.core
+
+import com.codahale.metrics.MetricRegistry
+import net.pterodactylus.sone.data.Sone
+import net.pterodactylus.sone.database.Database
+import net.pterodactylus.sone.test.mock
+import net.pterodactylus.sone.test.whenever
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.equalTo
+import org.junit.After
+import org.junit.Test
+import java.lang.System.currentTimeMillis
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit.SECONDS
+
+/**
+ * Unit test for [SoneDownloadScheduler].
+ */
+class SoneDownloadSchedulerTest {
+
+	private val database = mock<Database>()
+	private val metricRegistry = MetricRegistry()
+	private val scheduler = SoneDownloadScheduler(database, metricRegistry, 1)
+	private val downloads = CopyOnWriteArrayList<String>()
+	private val blocker = CountDownLatch(1)
+	private val finished = CountDownLatch(1)
+
+	@After
+	fun stopScheduler() {
+		scheduler.stop()
+	}
+
+	@Test
+	fun `friends are downloaded before recently active sones before other sones`() {
+		val localSone = createSone("local", 0)
+		whenever(localSone.hasFriend("friend")).thenReturn(true)
+		whenever(database.localSones).thenReturn(listOf(localSone))
+		blockScheduler()
+		scheduler.schedule(createSone("other", 0), recordDownload("other"))
+		scheduler.schedule(createSone("active", currentTimeMillis()), recordDownload("active"))
+		scheduler.schedule(createSone("friend", 0), recordDownload("friend"))
+		finishScheduler()
+		assertThat(downloads, contains("friend", "active", "other"))
+	}
+
+	@Test
+	fun `queued download of a sone is replaced by a newer download`() {
+		val sone = createSone("sone", 0)
+		blockScheduler()
+		scheduler.schedule(sone, recordDownload("first"))
+		scheduler.schedule(sone, recordDownload("second"))
+		assertThat(metricRegistry.gauges["sone.download.queue"]!!.value, equalTo<Any>(1))
+		finishScheduler()
+		assertThat(downloads, contains("second"))
+		assertThat(metricRegistry.counter("sone.download.superseded").count, equalTo(1L))
+		assertThat(metricRegistry.histogram("sone.download.wait").count, equalTo(3L))
+	}
+
+	private fun blockScheduler() =
+			scheduler.schedule(createSone("blocker", 0), Runnable { blocker.await() })
+
+	private fun finishScheduler() {
+		scheduler.schedule(createSone("finisher", 0), Runnable { finished.countDown() })
+		blocker.countDown()
+		finished.await(5, SECONDS)
+	}
+
+	private fun recordDownload(name: String) = Runnable { downloads += name }
+
+}
+
+private fun createSone(id: String, time: Long) = mock<Sone>().apply {
+	whenever(this.id).thenReturn(id)
+	whenever(this.time).thenReturn(time)
+}
@@ -0,0 +1,132 @@
+package net.pterodactylus.sone.core
+
+import com.codahale.metrics.MetricRegistry
+import net.pterodactylus.sone.test.mock
+import net.pterodactylus.sone.test.whenever
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.hasItem
+import org.hamcrest.Matchers.not
+import org.junit.After
+import org.junit.Test
+import org.mockito.Mockito.after
+import org.mockito.Mockito.doAnswer
+import org.mockito.Mockito.never
+import org.mockito.Mockito.times
+import org.mockito.Mockito.timeout
+import org.mockito.Mockito.verify
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit.SECONDS
+
+/**
+ * Unit test for [SoneInsertScheduler].
+ */
+class SoneInsertSchedulerTest {
+
+	private val metricRegistry = MetricRegistry()
+	private val scheduler = SoneInsertScheduler(metricRegistry, 1, SECONDS.toMillis(60), 500)
+	private val inserts = CopyOnWriteArrayList<String>()
+
+	@After
+	fun stopScheduler() {
+		scheduler.stop()
+	}
+
+	@Test
+	fun `eligible sone is inserted once it is registered`() {
+		val soneInserter = createSoneInserter("sone", 1)
+		scheduler.register(soneInserter)
+		verify(soneInserter, timeout(5000)).insert()
+	}
+
+	@Test
+	fun `sone that is not eligible is not inserted`() {
+		val soneInserter = createSoneInserter("sone", 1, false)
+		scheduler.register(soneInserter)
+		scheduler.soneModified()
+		verify(soneInserter, timeout(5000).atLeastOnce()).isEligibleForInsert
+		verify(soneInserter, after(200).never()).insert()
+	}
+
+	@Test
+	fun `sone with the oldest modification is inserted first`() {
+		val insertStarted = CountDownLatch(1)
+		val blockingInsert = CountDownLatch(1)
+		val blockingSoneInserter = createSoneInserter("blocking", 0)
+		doAnswer {
+			insertStarted.countDown()
+			blockingInsert.await()
+			true
+		}.whenever(blockingSoneInserter).insert()
+		scheduler.register(blockingSoneInserter)
+		insertStarted.await(5, SECONDS)
+		val newerSoneInserter = createSoneInserter("newer", 2)
+		val olderSoneInserter = createSoneInserter("older", 1)
+		scheduler.register(newerSoneInserter)
+		scheduler.register(olderSoneInserter)
+		waitForQueuedInserts(2)
+		blockingInsert.countDown()
+		verify(newerSoneInserter, timeout(5000)).insert()
+		assertThat(inserts, contains("older", "newer"))
+	}
+
+	@Test
+	fun `sone is not inserted again before the failure delay has passed`() {
+		val soneInserter = createSoneInserter("sone", 1)
+		whenever(soneInserter.isEligibleForInsert).thenReturn(true)
+		doAnswer { inserts.add("sone"); false }.whenever(soneInserter).insert()
+		scheduler.register(soneInserter)
+		verify(soneInserter, timeout(5000)).insert()
+		verify(soneInserter, after(300).times(1)).insert()
+		verify(soneInserter, timeout(5000).times(2)).insert()
+	}
+
+	@Test
+	fun `sone is inserted again right away after a successful insert`() {
+		val soneInserter = createSoneInserter("sone", 1)
+		whenever(soneInserter.isEligibleForInsert).thenReturn(true)
+		scheduler.register(soneInserter)
+		verify(soneInserter, timeout(400).atLeast(2)).insert()
+	}
+
+	@Test
+	fun `wait time of inserts is recorded for all sones and per sone`() {
+		val soneInserter = createSoneInserter("sone", 1)
+		scheduler.register(soneInserter)
+		verify(soneInserter, timeout(5000)).insert()
+		assertThat(metricRegistry.histogram("sone.insert.wait").count, equalTo(1L))
+		assertThat(metricRegistry.histogram("sone.insert.sone.wait").count, equalTo(1L))
+	}
+
+	@Test
+	fun `unregistered sone inserter is stopped and its metrics are removed`() {
+		val soneInserter = createSoneInserter("sone", 1)
+		scheduler.register(soneInserter)
+		verify(soneInserter, timeout(5000)).insert()
+		scheduler.unregister(soneInserter)
+		verify(soneInserter).stop()
+		assertThat(metricRegistry.names, not(hasItem("sone.insert.sone.wait")))
+		assertThat(metricRegistry.names, hasItem("sone.insert.wait"))
+	}
+
+	private fun createSoneInserter(soneId: String, modificationTime: Long, eligible: Boolean = true) = mock<SoneInserter>().apply {
+		whenever(this.soneId).thenReturn(soneId)
+		whenever(isEligibleForInsert).thenReturn(eligible, false)
+		whenever(this.modificationTime).thenReturn(modificationTime)
+		whenever(timeUntilEligible).thenReturn(null)
+		doAnswer { inserts.add(soneId) }.whenever(this).insert()
+	}
+
+	private fun waitForQueuedInserts(queuedInserts: Int) {
+		val queueGauge = metricRegistry.gauges["sone.insert.queue"]!!
+		repeat(500) {
+			if (queueGauge.value == queuedInserts) {
+				return
+			}
+			Thread.sleep(10)
+		}
+	}
+
+}
@@ -6,6 +6,7 @@ import com.google.common.base.Optional
 import com.google.common.eventbus.*
 import com.google.common.util.concurrent.MoreExecutors.*
 import freenet.keys.*
+import freenet.support.api.ManifestElement
 import net.pterodactylus.sone.core.SoneInserter.*
 import net.pterodactylus.sone.core.event.*
 import net.pterodactylus.sone.data.*
@@ -19,12 +20,10 @@ import org.mockito.*
 import org.mockito.ArgumentMatchers.any
 import org.mockito.ArgumentMatchers.anyString
 import org.mockito.ArgumentMatchers.eq
-import org.mockito.Mockito.doAnswer
 import org.mockito.Mockito.never
 import org.mockito.Mockito.times
 import org.mockito.Mockito.verify
 import org.mockito.hamcrest.MockitoHamcrest.*
-import org.mockito.stubbing.*
 import java.lang.System.*
 import java.util.*
 import kotlin.test.Test
@@ -37,6 +36,7 @@ class SoneInserterTest {
 	private val metricRegistry = MetricRegistry()
 	private val core = mock<Core>()
 	private val eventBus = mock<EventBus>()
+	private val preferences = Preferences(eventBus)
 	private val freenetInterface = mock<FreenetInterface>()
 	private val soneUriCreator = object : SoneUriCreator() {
 		override fun getInsertUri(sone: Sone): FreenetURI = expectedInsertUri
@@ -46,6 +46,7 @@ class SoneInserterTest {
 	fun setupCore() {
 		val updateChecker = mock<UpdateChecker>()
 		whenever(core.updateChecker).thenReturn(updateChecker)
+		whenever(core.preferences).thenReturn(preferences)
 		whenever(core.getSone(anyString())).thenReturn(null)
 	}
 
@@ -71,14 +72,14 @@ class SoneInserterTest {
 	fun `isModified is true if modification detector says so`() {
 		val soneModificationDetector = mock<SoneModificationDetector>()
 		whenever(soneModificationDetector.isModified).thenReturn(true)
-		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector, 1)
+		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector)
 		assertThat(soneInserter.isModified, equalTo(true))
 	}
 
 	@Test
 	fun `isModified is false if modification detector says so`() {
 		val soneModificationDetector = mock<SoneModificationDetector>()
-		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector, 1)
+		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector)
 		assertThat(soneInserter.isModified, equalTo(false))
 	}
 
@@ -90,25 +91,22 @@ class SoneInserterTest {
 	}
 
 	@Test
-	fun `sone inserter stops when it should`() {
+	fun `stopped sone inserter does not insert sone`() {
+		createSone(insertUri)
 		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId")
 		soneInserter.stop()
-		soneInserter.serviceRun()
+		soneInserter.insert()
+		verify(freenetInterface, never()).insertDirectory(any(), any<HashMap<String, Any>>(), anyString())
 	}
 
 	@Test
-	fun `sone inserter inserts a sone if it is eligible`() {
+	fun `sone inserter inserts sone`() {
 		val finalUri = mock<FreenetURI>()
 		val sone = createSone(insertUri)
 		val soneModificationDetector = mock<SoneModificationDetector>()
-		whenever(soneModificationDetector.isEligibleForInsert).thenReturn(true)
 		whenever(freenetInterface.insertDirectory(eq(expectedInsertUri), any<HashMap<String, Any>>(), eq("index.html"))).thenReturn(finalUri)
-		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector, 1)
-		doAnswer {
-			soneInserter.stop()
-			null
-		}.whenever(core).touchConfiguration()
-		soneInserter.serviceRun()
+		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector)
+		assertThat(soneInserter.insert(), equalTo(true))
 		val soneEvents = ArgumentCaptor.forClass(SoneEvent::class.java)
 		verify(freenetInterface).insertDirectory(eq(expectedInsertUri), any<HashMap<String, Any>>(), eq("index.html"))
 		verify(eventBus, times(2)).post(soneEvents.capture())
@@ -123,13 +121,12 @@ class SoneInserterTest {
 		val finalUri = mock<FreenetURI>()
 		val sone = createSone(insertUri)
 		val soneModificationDetector = mock<SoneModificationDetector>()
-		whenever(soneModificationDetector.isEligibleForInsert).thenReturn(true)
-		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector, 1)
+		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector)
 		whenever(freenetInterface.insertDirectory(eq(expectedInsertUri), any<HashMap<String, Any>>(), eq("index.html"))).thenAnswer {
 			soneInserter.stop()
 			finalUri
 		}
-		soneInserter.serviceRun()
+		soneInserter.insert()
 		val soneEvents = ArgumentCaptor.forClass(SoneEvent::class.java)
 		verify(freenetInterface).insertDirectory(eq(expectedInsertUri), any<HashMap<String, Any>>(), eq("index.html"))
 		verify(eventBus, times(2)).post(soneEvents.capture())
@@ -140,37 +137,14 @@ class SoneInserterTest {
 		verify(core, never()).touchConfiguration()
 	}
 
-	@Test
-	fun `sone inserter does not insert sone if it is not eligible`() {
-		createSone(insertUri)
-		val soneModificationDetector = mock<SoneModificationDetector>()
-		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector, 1)
-		Thread(Runnable {
-			try {
-				Thread.sleep(500)
-			} catch (ie1: InterruptedException) {
-				throw RuntimeException(ie1)
-			}
-
-			soneInserter.stop()
-		}).start()
-		soneInserter.serviceRun()
-		verify(freenetInterface, never()).insertDirectory(eq(expectedInsertUri), any<HashMap<String, Any>>(), eq("index.html"))
-		verify(eventBus, never()).post(argThat(org.hamcrest.Matchers.any(SoneEvent::class.java)))
-	}
-
 	@Test
 	fun `sone inserter posts aborted event if an exception occurs`() {
 		val sone = createSone(insertUri)
 		val soneModificationDetector = mock<SoneModificationDetector>()
-		whenever(soneModificationDetector.isEligibleForInsert).thenReturn(true)
-		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector, 1)
+		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector)
 		val soneException = SoneException(Exception())
-		whenever(freenetInterface.insertDirectory(eq(expectedInsertUri), any<HashMap<String, Any>>(), eq("index.html"))).thenAnswer {
-			soneInserter.stop()
-			throw soneException
-		}
-		soneInserter.serviceRun()
+		whenever(freenetInterface.insertDirectory(eq(expectedInsertUri), any<HashMap<String, Any>>(), eq("index.html"))).thenThrow(soneException)
+		assertThat(soneInserter.insert(), equalTo(false))
 		val soneEvents = ArgumentCaptor.forClass(SoneEvent::class.java)
 		verify(freenetInterface).insertDirectory(eq(expectedInsertUri), any<HashMap<String, Any>>(), eq("index.html"))
 		verify(eventBus, times(2)).post(soneEvents.capture())
@@ -182,24 +156,13 @@ class SoneInserterTest {
 	}
 
 	@Test
-	fun `sone inserter exits if sone is unknown`() {
+	fun `sone inserter does not insert if sone is unknown`() {
 		val soneModificationDetector = mock<SoneModificationDetector>()
-		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector, 1)
-		whenever(soneModificationDetector.isEligibleForInsert).thenReturn(true)
+		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector)
 		whenever(core.getSone("SoneId")).thenReturn(null)
-		soneInserter.serviceRun()
-	}
-
-	@Test
-	fun `sone inserter catches exception and continues`() {
-		val soneModificationDetector = mock<SoneModificationDetector>()
-		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector, 1)
-		val stopInserterAndThrowException = Answer<Optional<Sone>> {
-			soneInserter.stop()
-			throw NullPointerException()
-		}
-		whenever(soneModificationDetector.isEligibleForInsert).thenAnswer(stopInserterAndThrowException)
-		soneInserter.serviceRun()
+		soneInserter.insert()
+		verify(freenetInterface, never()).insertDirectory(any(), any<HashMap<String, Any>>(), anyString())
+		verify(eventBus, never()).post(argThat(org.hamcrest.Matchers.any(SoneEvent::class.java)))
 	}
 
 	@Test
@@ -218,6 +181,19 @@ class SoneInserterTest {
 		assertThat(templateContent, containsString("Sone ID: SoneId\n"))
 	}
 
+	@Test
+	fun `cached template is rendered with the current properties`() {
+		val firstElement = ManifestCreator(core, hashMapOf<String, Any>("id" to "FirstSone"))
+				.createManifestElement("test.txt", "plain/text; charset=utf-8", "sone-inserter-manifest.txt")
+		val secondElement = ManifestCreator(core, hashMapOf<String, Any>("id" to "SecondSone"))
+				.createManifestElement("test.txt", "plain/text; charset=utf-8", "sone-inserter-manifest.txt")
+		val firstContent = String(firstElement!!.data.inputStream.readBytes(), Charsets.UTF_8)
+		val secondContent = String(secondElement!!.data.inputStream.readBytes(), Charsets.UTF_8)
+		assertThat(firstContent, containsString("Sone ID: FirstSone\n"))
+		assertThat(secondContent, containsString("Sone ID: SecondSone\n"))
+		assertThat(secondElement.size, equalTo(secondContent.toByteArray(Charsets.UTF_8).size.toLong()))
+	}
+
 	@Test
 	fun `invalid template returns a null manifest element`() {
 		val soneProperties = HashMap<String, Any>()
@@ -239,34 +215,64 @@ class SoneInserterTest {
 				nullValue())
 	}
 
+	@Test
+	fun `old posts are inserted in archives that are referenced by the sone xml`() {
+		preferences.newArchiveOldPosts = true
+		val sone = createSone(insertUri)
+		whenever(sone.profile).thenReturn(Profile(sone))
+		whenever(sone.posts).thenReturn((1..250).map(::createPost))
+		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId")
+		soneInserter.InsertInformation(sone).use { insertInformation ->
+			val manifestEntries = insertInformation.generateManifestEntries()
+			val archiveName = manifestEntries.keys.single { it.startsWith("archive-") }
+			val archive = String((manifestEntries[archiveName] as ManifestElement).data.inputStream.readBytes(), Charsets.UTF_8)
+			val soneXml = String((manifestEntries["sone.xml"] as ManifestElement).data.inputStream.readBytes(), Charsets.UTF_8)
+			assertThat(archive, containsString("<id>post-1</id>"))
+			assertThat(archive, not(containsString("<id>post-101</id>")))
+			assertThat(soneXml, containsString("<archive>$archiveName</archive>"))
+			assertThat(soneXml, containsString("<id>post-101</id>"))
+			assertThat(soneXml, not(containsString("<id>post-1</id>")))
+		}
+	}
+
+	@Test
+	fun `old posts are not archived unless archiving is enabled`() {
+		val sone = createSone(insertUri)
+		whenever(sone.profile).thenReturn(Profile(sone))
+		whenever(sone.posts).thenReturn((1..250).map(::createPost))
+		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId")
+		soneInserter.InsertInformation(sone).use { insertInformation ->
+			assertThat(insertInformation.generateManifestEntries().keys, containsInAnyOrder("index.html", "sone.xml"))
+		}
+	}
+
+	private fun createPost(index: Int) = mock<Post>().apply {
+		whenever(id).thenReturn("post-$index")
+		whenever(time).thenReturn(index * 1000L)
+		whenever(text).thenReturn("text $index")
+		whenever(recipientId).thenReturn(Optional.absent())
+	}
+
 	@Test
 	fun `successful insert updates metrics`() {
 		val finalUri = mock<FreenetURI>()
 		createSone(insertUri)
 		val soneModificationDetector = mock<SoneModificationDetector>()
-		whenever(soneModificationDetector.isEligibleForInsert).thenReturn(true)
 		whenever(freenetInterface.insertDirectory(eq(expectedInsertUri), any<HashMap<String, Any>>(), eq("index.html"))).thenReturn(finalUri)
-		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector, 1)
-		doAnswer {
-			soneInserter.stop()
-			null
-		}.whenever(core).touchConfiguration()
-		soneInserter.serviceRun()
+		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector)
+		soneInserter.insert()
 		val histogram = metricRegistry.histogram("sone.insert.duration")
 		assertThat(histogram.count, equalTo(1L))
+		assertThat(metricRegistry.histogram("sone.insert.SoneId.duration").count, equalTo(1L))
 	}
 
 	@Test
 	fun `unsuccessful insert does not update histogram but records error`() {
 		createSone(insertUri)
 		val soneModificationDetector = mock<SoneModificationDetector>()
-		whenever(soneModificationDetector.isEligibleForInsert).thenReturn(true)
-		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector, 1)
-		whenever(freenetInterface.insertDirectory(eq(expectedInsertUri), any<HashMap<String, Any>>(), eq("index.html"))).thenAnswer {
-			soneInserter.stop()
-			throw SoneException(Exception())
-		}
-		soneInserter.serviceRun()
+		val soneInserter = SoneInserter(core, eventBus, freenetInterface, metricRegistry, soneUriCreator, "SoneId", soneModificationDetector)
+		whenever(freenetInterface.insertDirectory(eq(expectedInsertUri), any<HashMap<String, Any>>(), eq("index.html"))).thenThrow(SoneException(Exception()))
+		soneInserter.insert()
 		val histogram = metricRegistry.histogram("sone.insert.duration")
 		assertThat(histogram.count, equalTo(0L))
 		val meter = metricRegistry.meter("sone.insert.errors")
@@ -14,6 +14,8 @@ import org.hamcrest.MatcherAssert.*
 import org.hamcrest.Matchers.*
 import org.mockito.Mockito.*
 import java.lang.System.*
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
 import java.util.concurrent.TimeUnit.*
 import kotlin.test.*
 
@@ -261,6 +263,31 @@ class SoneParserTest {
 		assertThat(postReply.text, equalTo("reply-text"))
 	}
 
+	@Test
+	fun `unchanged post of stored sone is reused`() {
+		val storedSone = soneParser.parseSone(sone, javaClass.getResourceAsStream("sone-parser-with-valid-post-time.xml"))!!
+		database.storeSone(storedSone)
+		val posts = soneParser.parseSone(sone, javaClass.getResourceAsStream("sone-parser-with-valid-post-time.xml"))!!.posts
+		assertThat(posts[0], sameInstance(storedSone.posts[0]))
+	}
+
+	@Test
+	fun `changed post of stored sone is not reused`() {
+		val storedSone = soneParser.parseSone(sone, javaClass.getResourceAsStream("sone-parser-with-valid-post-time.xml"))!!
+		database.storeSone(storedSone)
+		val posts = soneParser.parseSone(sone, javaClass.getResourceAsStream("sone-parser-with-recipient.xml"))!!.posts
+		assertThat(posts[0], not(sameInstance(storedSone.posts[0])))
+		assertThat(posts[0].recipientId, equalTo(of("1234567890123456789012345678901234567890123")))
+	}
+
+	@Test
+	fun `unchanged post reply of stored sone is reused`() {
+		val storedSone = soneParser.parseSone(sone, javaClass.getResourceAsStream("sone-parser-with-valid-post-reply-time.xml"))!!
+		database.storeSone(storedSone)
+		val postReplies = soneParser.parseSone(sone, javaClass.getResourceAsStream("sone-parser-with-valid-post-reply-time.xml"))!!.replies
+		assertThat(postReplies.first(), sameInstance(storedSone.replies.first()))
+	}
+
 	@Test
 	fun `parsing a sone succeeds without liked post ids`() {
 		val inputStream = javaClass.getResourceAsStream("sone-parser-without-liked-post-ids.xml")
@@ -399,6 +426,53 @@ class SoneParserTest {
 		assertThat(sone.profile.avatar, equalTo("image-id"))
 	}
 
+	@Test
+	fun `sones can be parsed concurrently`() {
+		val executor = Executors.newFixedThreadPool(4)
+		try {
+			val parsedSones = (0 until 16).map {
+				executor.submit(Callable { soneParser.parseSone(sone, javaClass.getResourceAsStream("sone-parser-with-image.xml")) })
+			}.map { it.get() }
+			parsedSones.forEach { parsedSone ->
+				assertThat(parsedSone!!.rootAlbum.albums[0].images[0].id, equalTo("image-id"))
+			}
+		} finally {
+			executor.shutdown()
+		}
+	}
+
+	@Test
+	fun `sone with more posts than allowed is rejected`() {
+		val soneParser = SoneParser(database, metricRegistry, SoneParserLimits(maximumPosts = 0))
+		val inputStream = javaClass.getResourceAsStream("sone-parser-with-valid-post-time.xml")
+		assertThat(soneParser.parseSone(sone, inputStream), nullValue())
+		assertThat(metricRegistry.counter("sone.parse.rejected").count, equalTo(1L))
+	}
+
+	@Test
+	fun `sone with text longer than allowed is rejected`() {
+		val soneParser = SoneParser(database, metricRegistry, SoneParserLimits(maximumTextLength = 3))
+		val inputStream = javaClass.getResourceAsStream("sone-parser-with-valid-post-time.xml")
+		assertThat(soneParser.parseSone(sone, inputStream), nullValue())
+		assertThat(metricRegistry.counter("sone.parse.rejected").count, equalTo(1L))
+	}
+
+	@Test
+	fun `sone that is larger than allowed is rejected`() {
+		val soneParser = SoneParser(database, metricRegistry, SoneParserLimits(maximumDocumentSize = 100))
+		val inputStream = javaClass.getResourceAsStream("sone-parser-with-valid-post-time.xml")
+		assertThat(soneParser.parseSone(sone, inputStream), nullValue())
+		assertThat(metricRegistry.counter("sone.parse.rejected").count, equalTo(1L))
+	}
+
+	@Test
+	fun `sone within the limits is parsed`() {
+		val soneParser = SoneParser(database, metricRegistry, SoneParserLimits(maximumPosts = 1, maximumTextLength = 36, maximumDocumentSize = 400))
+		val inputStream = javaClass.getResourceAsStream("sone-parser-with-valid-post-time.xml")
+		assertThat(soneParser.parseSone(sone, inputStream)!!.posts, hasSize(1))
+		assertThat(metricRegistry.counter("sone.parse.rejected").count, equalTo(0L))
+	}
+
 	@Test
 	fun `unsuccessful parsing does not add a histogram entry`() {
 		val inputStream = javaClass.getResourceAsStream("sone-parser-with-invalid-image-height.xml")
@@ -415,4 +489,35 @@ class SoneParserTest {
 		assertThat(histogram.count, equalTo(1L))
 	}
 
+	@Test
+	fun `posts and replies of archives are parsed`() {
+		val inputStream = javaClass.getResourceAsStream("sone-parser-with-archive.xml")
+		val parsedSone = soneParser.parseSone(sone, inputStream, archiveLoader("sone-parser-archive.xml"))!!
+		assertThat(parsedSone.posts.map { it.id }, containsInAnyOrder("3de12680-afef-11e9-a124-e713cf8912fe", "5ccba7f4-aff0-11e9-b176-a7b9db60ce98"))
+		assertThat(parsedSone.replies.map { it.id }, contains("8f3a4e5c-aff0-11e9-9f38-4fe2ae4f7e5a"))
+		assertThat(parsedSone.replies.single().text, equalTo("archived reply"))
+	}
+
+	@Test
+	fun `sone with unavailable archive is reported as missing an archive`() {
+		val inputStream = javaClass.getResourceAsStream("sone-parser-with-archive.xml")
+		assertFailsWith<MissingArchiveException> { soneParser.parseSone(sone, inputStream, archiveLoader(null)) }
+	}
+
+	@Test
+	fun `sone with invalid archive name is not parsed`() {
+		val inputStream = javaClass.getResourceAsStream("sone-parser-with-invalid-archive-name.xml")
+		assertThat(soneParser.parseSone(sone, inputStream, archiveLoader("sone-parser-archive.xml")), nullValue())
+	}
+
+	@Test
+	fun `sone with archives can not be parsed without archive loader`() {
+		val inputStream = javaClass.getResourceAsStream("sone-parser-with-archive.xml")
+		assertFailsWith<MissingArchiveException> { soneParser.parseSone(sone, inputStream) }
+	}
+
+	private fun archiveLoader(archiveResource: String?) = object : SoneArchiveLoader {
+		override fun loadArchive(name: String) = archiveResource?.let(javaClass::getResourceAsStream)
+	}
+
 }
@@ -5,6 +5,7 @@ import net.pterodactylus.sone.core.event.NewPostFoundEvent
 import net.pterodactylus.sone.core.event.NewPostReplyFoundEvent
 import net.pterodactylus.sone.core.event.PostRemovedEvent
 import net.pterodactylus.sone.core.event.PostReplyRemovedEvent
+import net.pterodactylus.sone.core.event.SoneChangesStoredEvent
 import net.pterodactylus.sone.data.Post
 import net.pterodactylus.sone.data.PostReply
 import net.pterodactylus.sone.data.Sone
@@ -18,12 +19,14 @@ import net.pterodactylus.sone.web.baseInjector
 import org.hamcrest.MatcherAssert.assertThat
 import org.hamcrest.Matchers.contains
 import org.hamcrest.Matchers.containsInAnyOrder
+import org.hamcrest.Matchers.equalTo
 import org.hamcrest.Matchers.not
 import org.hamcrest.Matchers.notNullValue
 import org.junit.Before
 import org.junit.Test
 import org.mockito.Mockito.any
 import org.mockito.Mockito.atLeastOnce
+import org.mockito.Mockito.inOrder
 import org.mockito.Mockito.never
 import org.mockito.Mockito.times
 import org.mockito.Mockito.verify
@@ -83,8 +86,8 @@ class UpdatedSoneProcessorTest {
 	@Test
 	fun `updated Sone processor emits correct events when new Sone is newer`() {
 		updatedSoneProcessor.updateSone(newSone)
-		verify(eventBus, times(4)).post(events.capture())
-		assertThat(events.allValues, containsInAnyOrder(
+		verify(eventBus, times(5)).post(events.capture())
+		assertThat(events.allValues.filterNot { it is SoneChangesStoredEvent }, containsInAnyOrder(
 				NewPostFoundEvent(posts[2]),
 				PostRemovedEvent(posts[0]),
 				NewPostReplyFoundEvent(postReplies[2]),
@@ -142,9 +145,34 @@ class UpdatedSoneProcessorTest {
 	}
 
 	@Test
-	fun `updated sone processor stores sone in database`() {
+	fun `updated sone processor stores sone changes in database`() {
 		updatedSoneProcessor.updateSone(newSone)
-		verify(database).storeSone(newSone)
+		val soneComparison = argumentCaptor<SoneComparison>()
+		verify(database).storeSoneChanges(soneComparison.capture())
+		assertThat(soneComparison.value.oldSone, equalTo(storedSone))
+		assertThat(soneComparison.value.newSone, equalTo(newSone))
+	}
+
+	@Test
+	fun `updated sone processor emits event for stored sone changes after storing them`() {
+		updatedSoneProcessor.updateSone(newSone)
+		val inOrder = inOrder(database, eventBus)
+		inOrder.verify(database).storeSoneChanges(any())
+		inOrder.verify(eventBus, atLeastOnce()).post(events.capture())
+		val soneChangesStoredEvent = events.allValues.filterIsInstance<SoneChangesStoredEvent>().single()
+		assertThat(soneChangesStoredEvent.soneComparison.oldSone, equalTo(storedSone))
+		assertThat(soneChangesStoredEvent.soneComparison.newSone, equalTo(newSone))
+	}
+
+	@Test
+	fun `updated sone processor reports that the sone was stored`() {
+		assertThat(updatedSoneProcessor.updateSone(newSone), equalTo(true))
+	}
+
+	@Test
+	fun `updated sone processor reports that an older sone was not stored`() {
+		whenever(newSone.time).thenReturn(500L)
+		assertThat(updatedSoneProcessor.updateSone(newSone), equalTo(false))
 	}
 
 	@Test
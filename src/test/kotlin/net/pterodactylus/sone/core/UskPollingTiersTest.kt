@@ -0,0 +1,99 @@
+package net.pterodactylus.sone.core
+
+import net.pterodactylus.sone.core.event.MentionOfLocalSoneFoundEvent
+import net.pterodactylus.sone.data.Post
+import net.pterodactylus.sone.data.Sone
+import net.pterodactylus.sone.database.Database
+import net.pterodactylus.sone.test.mock
+import net.pterodactylus.sone.test.whenever
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+import java.util.concurrent.TimeUnit.DAYS
+import java.util.concurrent.TimeUnit.HOURS
+
+/**
+ * Unit test for [UskPollingTiers].
+ */
+class UskPollingTiersTest {
+
+	private val database = mock<Database>()
+	private var now = DAYS.toMillis(1000)
+	private val uskPollingTiers = UskPollingTiers(database) { now }
+	private val sone = mock<Sone>().apply { whenever(id).thenReturn("sone") }
+
+	@Test
+	fun `sone followed by local sone is polled frequently`() {
+		val localSone = mock<Sone>()
+		whenever(localSone.hasFriend("sone")).thenReturn(true)
+		whenever(database.localSones).thenReturn(listOf(localSone))
+		setSoneTime(now - DAYS.toMillis(200))
+		assertThat(uskPollingTiers.getTier(sone), equalTo(PollingTier.frequent))
+	}
+
+	@Test
+	fun `sone that mentioned a local sone is polled frequently`() {
+		setSoneTime(now - DAYS.toMillis(200))
+		uskPollingTiers.mentionOfLocalSoneFound(MentionOfLocalSoneFoundEvent(mock<Post>().apply { whenever(this.sone).thenReturn(this@UskPollingTiersTest.sone) }))
+		assertThat(uskPollingTiers.getTier(sone), equalTo(PollingTier.frequent))
+	}
+
+	@Test
+	fun `mention of a local sone expires`() {
+		setSoneTime(now - DAYS.toMillis(200))
+		uskPollingTiers.mentionOfLocalSoneFound(MentionOfLocalSoneFoundEvent(mock<Post>().apply { whenever(this.sone).thenReturn(this@UskPollingTiersTest.sone) }))
+		now += DAYS.toMillis(31)
+		assertThat(uskPollingTiers.getTier(sone), equalTo(PollingTier.passive))
+	}
+
+	@Test
+	fun `recently active sone without measured interval is polled regularly`() {
+		setSoneTime(now - DAYS.toMillis(2))
+		assertThat(uskPollingTiers.getTier(sone), equalTo(PollingTier.regular))
+	}
+
+	@Test
+	fun `inactive sone without measured interval is polled passively`() {
+		setSoneTime(now - DAYS.toMillis(8))
+		assertThat(uskPollingTiers.getTier(sone), equalTo(PollingTier.passive))
+	}
+
+	@Test
+	fun `sone that is updated daily is polled regularly`() {
+		recordUpdates(HOURS.toMillis(20), 5)
+		now += DAYS.toMillis(3)
+		assertThat(uskPollingTiers.getTier(sone), equalTo(PollingTier.regular))
+	}
+
+	@Test
+	fun `sone that is updated weekly is polled occasionally`() {
+		recordUpdates(DAYS.toMillis(5), 5)
+		assertThat(uskPollingTiers.getTier(sone), equalTo(PollingTier.occasional))
+	}
+
+	@Test
+	fun `sone that is updated monthly is polled passively`() {
+		recordUpdates(DAYS.toMillis(30), 3)
+		assertThat(uskPollingTiers.getTier(sone), equalTo(PollingTier.passive))
+	}
+
+	@Test
+	fun `sone that has not been updated for a long time is polled passively`() {
+		recordUpdates(HOURS.toMillis(20), 5)
+		now += DAYS.toMillis(100)
+		assertThat(uskPollingTiers.getTier(sone), equalTo(PollingTier.passive))
+	}
+
+	private fun recordUpdates(interval: Long, count: Int) {
+		repeat(count) {
+			now += interval
+			setSoneTime(now)
+			uskPollingTiers.soneUpdated(sone)
+		}
+	}
+
+	private fun setSoneTime(time: Long) {
+		whenever(sone.time).thenReturn(time)
+	}
+
+}
@@ -0,0 +1,56 @@
+package net.pterodactylus.sone.database.memory
+
+import net.pterodactylus.sone.test.*
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.containsInAnyOrder
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.mockito.ArgumentMatchers.anyCollection
+import org.mockito.Mockito.never
+import org.mockito.Mockito.verify
+import java.io.File
+import java.util.UUID.randomUUID
+
+/**
+ * Unit test for [BinaryKnownIdStorage].
+ */
+class BinaryKnownIdStorageTest {
+
+	@Rule
+	@JvmField
+	val tempFolder = TemporaryFolder()
+	private val storage = mock<MemoryDatabaseStorage>()
+	private val binaryKnownIdStorage by lazy {
+		BinaryKnownIdStorage(storage, File(tempFolder.root, "posts.dat"), File(tempFolder.root, "replies.dat"))
+	}
+	private val knownId = randomUUID().toString()
+
+	@Test
+	fun `known posts are loaded from other storage if file does not exist`() {
+		whenever(storage.loadKnownPosts()).thenReturn(setOf("post-id"))
+		assertThat(binaryKnownIdStorage.loadKnownPosts(), containsInAnyOrder("post-id"))
+	}
+
+	@Test
+	fun `saved known posts are loaded from file`() {
+		binaryKnownIdStorage.saveKnownPosts(listOf(knownId, "post-id"), listOf(knownId, "post-id"))
+		assertThat(binaryKnownIdStorage.loadKnownPosts(), containsInAnyOrder(knownId, "post-id"))
+		verify(storage, never()).loadKnownPosts()
+		verify(storage, never()).saveKnownPosts(anyCollection(), anyCollection())
+	}
+
+	@Test
+	fun `saved known post replies are loaded from file`() {
+		binaryKnownIdStorage.saveKnownPostReplies(CompactIdSet().apply { add(knownId) }, listOf(knownId))
+		assertThat(binaryKnownIdStorage.loadKnownPostReplies(), containsInAnyOrder(knownId))
+		verify(storage, never()).loadKnownPostReplies()
+	}
+
+	@Test
+	fun `bookmarks are delegated to other storage`() {
+		binaryKnownIdStorage.saveBookmarkedPosts(setOf("post-id"))
+		verify(storage).saveBookmarkedPosts(setOf("post-id"))
+	}
+
+}
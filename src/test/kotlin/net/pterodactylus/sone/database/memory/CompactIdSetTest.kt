@@ -0,0 +1,91 @@
+package net.pterodactylus.sone.database.memory
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.containsInAnyOrder
+import org.hamcrest.Matchers.emptyIterable
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.util.UUID.randomUUID
+
+/**
+ * Unit test for [CompactIdSet].
+ */
+class CompactIdSetTest {
+
+	private val compactIdSet = CompactIdSet()
+	private val firstId = randomUUID().toString()
+	private val secondId = randomUUID().toString()
+
+	@Test
+	fun `new set is empty`() {
+		assertThat(compactIdSet, emptyIterable<String>())
+		assertThat(compactIdSet.size, equalTo(0))
+	}
+
+	@Test
+	fun `added uuid is contained in set`() {
+		assertThat(compactIdSet.add(firstId), equalTo(true))
+		assertThat(firstId in compactIdSet, equalTo(true))
+		assertThat(secondId in compactIdSet, equalTo(false))
+	}
+
+	@Test
+	fun `adding uuid twice only adds it once`() {
+		compactIdSet.add(firstId)
+		assertThat(compactIdSet.add(firstId), equalTo(false))
+		assertThat(compactIdSet.size, equalTo(1))
+	}
+
+	@Test
+	fun `ids that are not canonical uuids are contained in set`() {
+		compactIdSet.add("post-id")
+		compactIdSet.add(firstId.toUpperCase())
+		compactIdSet.add("00000000-0000-0000-0000-000000000000")
+		assertThat(compactIdSet, containsInAnyOrder("post-id", firstId.toUpperCase(), "00000000-0000-0000-0000-000000000000"))
+		assertThat(firstId in compactIdSet, equalTo(false))
+	}
+
+	@Test
+	fun `removed uuid is not contained in set`() {
+		compactIdSet.add(firstId)
+		compactIdSet.add(secondId)
+		assertThat(compactIdSet.remove(firstId), equalTo(true))
+		assertThat(compactIdSet.remove(firstId), equalTo(false))
+		assertThat(compactIdSet, containsInAnyOrder(secondId))
+	}
+
+	@Test
+	fun `set can hold many uuids while some are removed`() {
+		val ids = (0 until 10000).map { randomUUID().toString() }
+		compactIdSet.addAll(ids)
+		ids.filterIndexed { index, _ -> index % 3 == 0 }.forEach { compactIdSet.remove(it) }
+		assertThat(compactIdSet.size, equalTo(ids.size - (ids.size + 2) / 3))
+		ids.forEachIndexed { index, id ->
+			assertThat(id in compactIdSet, equalTo(index % 3 != 0))
+		}
+	}
+
+	@Test
+	fun `set can be restored from its binary form`() {
+		compactIdSet.addAll(listOf(firstId, secondId, "post-id"))
+		val binaryForm = ByteArrayOutputStream().also { compactIdSet.writeTo(DataOutputStream(it)) }.toByteArray()
+		val restoredSet = CompactIdSet.readFrom(DataInputStream(ByteArrayInputStream(binaryForm)))
+		assertThat(restoredSet, containsInAnyOrder(firstId, secondId, "post-id"))
+	}
+
+	@Test
+	fun `set can be modified while iterating`() {
+		compactIdSet.addAll(listOf(firstId, secondId))
+		val iterator = compactIdSet.iterator()
+		iterator.next()
+		iterator.remove()
+		iterator.next()
+		iterator.remove()
+		assertThat(compactIdSet, emptyIterable<String>())
+	}
+
+}
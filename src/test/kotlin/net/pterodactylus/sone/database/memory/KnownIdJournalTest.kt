@@ -0,0 +1,105 @@
+package net.pterodactylus.sone.database.memory
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.containsInAnyOrder
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.greaterThan
+import org.hamcrest.Matchers.nullValue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.RandomAccessFile
+import java.util.UUID.randomUUID
+
+/**
+ * Unit test for [KnownIdJournal].
+ */
+class KnownIdJournalTest {
+
+	@Rule
+	@JvmField
+	val tempFolder = TemporaryFolder()
+	private val checkpointFile by lazy { File(tempFolder.root, "known.dat") }
+	private val journalFile by lazy { File(tempFolder.root, "known.dat.journal") }
+	private val firstId = randomUUID().toString()
+	private val secondId = randomUUID().toString()
+
+	@Test
+	fun `journal without checkpoint is not loaded`() {
+		assertThat(KnownIdJournal(checkpointFile).load(), nullValue())
+	}
+
+	@Test
+	fun `first save writes a checkpoint`() {
+		KnownIdJournal(checkpointFile).save(listOf(firstId), listOf(firstId))
+		assertThat(checkpointFile.exists(), equalTo(true))
+		assertThat(journalFile.exists(), equalTo(false))
+		assertThat(KnownIdJournal(checkpointFile).load(), containsInAnyOrder(firstId))
+	}
+
+	@Test
+	fun `changes after checkpoint are appended to the journal`() {
+		KnownIdJournal(checkpointFile).apply {
+			save(listOf(firstId), listOf(firstId))
+			val checkpointSize = checkpointFile.length()
+			save(listOf(firstId, secondId), listOf(secondId))
+			save(listOf(secondId, "post-id"), listOf(firstId, "post-id"))
+			assertThat(checkpointFile.length(), equalTo(checkpointSize))
+			assertThat(journalFile.length(), greaterThan(0L))
+		}
+		assertThat(KnownIdJournal(checkpointFile).load(), containsInAnyOrder(secondId, "post-id"))
+	}
+
+	@Test
+	fun `journal is continued after loading`() {
+		KnownIdJournal(checkpointFile).save(listOf(firstId), listOf(firstId))
+		KnownIdJournal(checkpointFile).apply {
+			load()
+			save(listOf(firstId, secondId), listOf(secondId))
+		}
+		assertThat(KnownIdJournal(checkpointFile).load(), containsInAnyOrder(firstId, secondId))
+	}
+
+	@Test
+	fun `new checkpoint is written once journal is full`() {
+		KnownIdJournal(checkpointFile, 1).apply {
+			save(listOf(firstId), listOf(firstId))
+			save(listOf(firstId, secondId), listOf(secondId))
+			assertThat(journalFile.exists(), equalTo(true))
+			save(listOf(secondId), listOf(firstId))
+			assertThat(journalFile.exists(), equalTo(false))
+		}
+		assertThat(KnownIdJournal(checkpointFile).load(), containsInAnyOrder(secondId))
+	}
+
+	@Test
+	fun `incomplete journal entry is ignored`() {
+		KnownIdJournal(checkpointFile).apply {
+			save(listOf(firstId), listOf(firstId))
+			save(listOf(firstId, secondId), listOf(secondId))
+		}
+		RandomAccessFile(journalFile, "rw").use { file -> file.setLength(file.length() - 1) }
+		KnownIdJournal(checkpointFile).apply {
+			assertThat(load(), containsInAnyOrder(firstId))
+			save(listOf(firstId, "post-id"), listOf("post-id"))
+		}
+		assertThat(KnownIdJournal(checkpointFile).load(), containsInAnyOrder(firstId, "post-id"))
+	}
+
+	@Test
+	fun `journal of an older checkpoint is ignored`() {
+		KnownIdJournal(checkpointFile).apply {
+			save(listOf(firstId), listOf(firstId))
+			save(listOf(firstId, secondId), listOf(secondId))
+		}
+		val oldJournal = journalFile.readBytes()
+		KnownIdJournal(checkpointFile, 0).apply {
+			load()
+			save(listOf(firstId), listOf(secondId))
+		}
+		journalFile.writeBytes(oldJournal)
+		assertThat(KnownIdJournal(checkpointFile).load(), containsInAnyOrder(firstId))
+	}
+
+}
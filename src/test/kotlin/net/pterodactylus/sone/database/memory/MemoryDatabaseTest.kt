@@ -19,14 +19,18 @@ package net.pterodactylus.sone.database.memory
 
 import com.google.common.base.*
 import com.google.common.base.Optional.*
+import net.pterodactylus.sone.core.*
 import net.pterodactylus.sone.data.*
 import net.pterodactylus.sone.data.impl.*
+import net.pterodactylus.sone.database.DatabaseException
 import net.pterodactylus.sone.test.*
 import net.pterodactylus.sone.test.Matchers.*
 import net.pterodactylus.util.config.*
 import org.hamcrest.MatcherAssert.*
 import org.hamcrest.Matchers.*
+import org.mockito.ArgumentMatchers.anyCollection
 import org.mockito.ArgumentMatchers.anyString
+import org.mockito.ArgumentMatchers.argThat
 import org.mockito.Mockito.*
 import org.mockito.invocation.*
 import java.util.Arrays.*
@@ -39,7 +43,7 @@ import kotlin.test.*
 class MemoryDatabaseTest {
 
 	private val configuration = deepMock<Configuration>()
-	private val memoryDatabase = MemoryDatabase(configuration)
+	private val memoryDatabase = MemoryDatabase(ConfigurationLoader(configuration))
 	private val sone = mock<Sone>()
 
 	@BeforeTest
@@ -174,6 +178,122 @@ class MemoryDatabaseTest {
 		assertThat(memoryDatabase.sones, empty())
 	}
 
+	@Test
+	fun `version is increased when a sone is stored or removed`() {
+		val initialVersion = memoryDatabase.version
+		storeSone()
+		val storedVersion = memoryDatabase.version
+		assertThat(storedVersion, greaterThan(initialVersion))
+		memoryDatabase.removeSone(sone)
+		assertThat(memoryDatabase.version, greaterThan(storedVersion))
+	}
+
+	@Test
+	fun `elements of a sone that is stored again are kept`() {
+		storeSone()
+		val post = memoryDatabase.getPost("post1")
+		memoryDatabase.storeSone(sone)
+		assertThat(memoryDatabase.getSone(SONE_ID), sameInstance(sone))
+		assertThat(memoryDatabase.getPost("post1"), sameInstance(post))
+		assertThat(memoryDatabase.getPosts(SONE_ID), hasSize(2))
+		assertThat(memoryDatabase.getAlbum("album1"), isAlbum("album1", "root", "album1", "album-description1"))
+		assertThat(memoryDatabase.getImage("image1"), isImage("image1", 1000L, "KSK@image1", "image1", "image-description1", 16, 9))
+	}
+
+	@Test
+	fun `stored sone changes replace only changed elements`() {
+		storeSone()
+		val newSone = mock<Sone>()
+		whenever(newSone.id).thenReturn(SONE_ID)
+		whenever(newSone.rootAlbum).thenReturn(AlbumImpl(newSone))
+		val keptPost = memoryDatabase.getPost("post1")!!
+		val newPost = TestPostBuilder().withId("post3")
+				.from(SONE_ID)
+				.withTime(3000L)
+				.withText("post3")
+				.build()
+		whenever(newSone.posts).thenReturn(listOf(keptPost, newPost))
+		whenever(newSone.replies).thenReturn(setOf(memoryDatabase.getPostReply("reply1")!!))
+		memoryDatabase.storeSoneChanges(SoneComparison(sone, newSone))
+		assertThat(memoryDatabase.getSone(SONE_ID), sameInstance(newSone))
+		assertThat(memoryDatabase.getPost("post1"), sameInstance(keptPost))
+		assertThat(memoryDatabase.getPost("post2"), nullValue())
+		assertThat(memoryDatabase.getPost("post3"), isPost("post3", 3000L, "post3", null))
+		assertThat(memoryDatabase.getPosts(SONE_ID), containsInAnyOrder(keptPost, newPost))
+		assertThat(memoryDatabase.getDirectedPosts(RECIPIENT_ID), emptyIterable<Any>())
+		assertThat(memoryDatabase.getPostReply("reply2"), nullValue())
+		assertThat(memoryDatabase.getReplies("post1"), contains(isPostReply("reply1", "post1", 3000L, "reply1")))
+		assertThat(memoryDatabase.getAlbum("album1"), nullValue())
+		assertThat(memoryDatabase.getImage("image1"), nullValue())
+	}
+
+	@Test
+	fun `stored sone changes keep unchanged albums and images`() {
+		storeSone()
+		val album = memoryDatabase.getAlbum("album1")
+		val image = memoryDatabase.getImage("image1")
+		val newSone = mock<Sone>()
+		whenever(newSone.id).thenReturn(SONE_ID)
+		whenever(newSone.rootAlbum).thenReturn(sone.rootAlbum)
+		memoryDatabase.storeSoneChanges(SoneComparison(sone, newSone))
+		assertThat(memoryDatabase.getAlbum("album1"), sameInstance(album))
+		assertThat(memoryDatabase.getImage("image1"), sameInstance(image))
+		assertThat(memoryDatabase.getAlbum("album3"), isAlbum("album3", "album1", "album3", "album-description3"))
+	}
+
+	@Test
+	fun `stored sone changes replace elements whose content has changed`() {
+		val postId = randomUUID().toString()
+		whenever(sone.posts).thenReturn(listOf(MemoryPost(memoryDatabase, memoryDatabase, postId, SONE_ID, null, 1000L, "old post")))
+		whenever(sone.replies).thenReturn(setOf(MemoryPostReply(memoryDatabase, memoryDatabase, "reply1", SONE_ID, 2000L, "old reply", postId)))
+		whenever(sone.rootAlbum).thenReturn(AlbumImpl(sone))
+		memoryDatabase.storeSone(sone)
+		val newSone = mock<Sone>()
+		whenever(newSone.id).thenReturn(SONE_ID)
+		whenever(newSone.rootAlbum).thenReturn(AlbumImpl(newSone))
+		val newPost = MemoryPost(memoryDatabase, memoryDatabase, postId, SONE_ID, RECIPIENT_ID, 1000L, "new post")
+		val newReply = MemoryPostReply(memoryDatabase, memoryDatabase, "reply1", SONE_ID, 3000L, "new reply", postId)
+		whenever(newSone.posts).thenReturn(listOf(newPost))
+		whenever(newSone.replies).thenReturn(setOf(newReply))
+		memoryDatabase.storeSoneChanges(SoneComparison(sone, newSone))
+		assertThat(memoryDatabase.getPost(postId), sameInstance<Post>(newPost))
+		assertThat(memoryDatabase.getPosts(SONE_ID).single(), sameInstance<Post>(newPost))
+		assertThat(memoryDatabase.getDirectedPosts(RECIPIENT_ID).single(), sameInstance<Post>(newPost))
+		assertThat(memoryDatabase.getPostReply("reply1"), sameInstance<PostReply>(newReply))
+		assertThat(memoryDatabase.getReplies(postId).single(), sameInstance<PostReply>(newReply))
+	}
+
+	@Test
+	fun `removing one of two replies with the same time keeps the other reply indexed`() {
+		val post = MemoryPost(memoryDatabase, memoryDatabase, randomUUID().toString(), SONE_ID, null, 1000L, "post")
+		val firstReply = MemoryPostReply(memoryDatabase, memoryDatabase, "reply1", SONE_ID, 2000L, "first reply", post.id)
+		val secondReply = MemoryPostReply(memoryDatabase, memoryDatabase, "reply2", SONE_ID, 2000L, "second reply", post.id)
+		whenever(sone.posts).thenReturn(listOf<Post>(post))
+		whenever(sone.replies).thenReturn(setOf<PostReply>(firstReply, secondReply))
+		whenever(sone.rootAlbum).thenReturn(AlbumImpl(sone))
+		memoryDatabase.storeSone(sone)
+		val newSone = mock<Sone>()
+		whenever(newSone.id).thenReturn(SONE_ID)
+		whenever(newSone.rootAlbum).thenReturn(AlbumImpl(newSone))
+		whenever(newSone.posts).thenReturn(listOf<Post>(post))
+		whenever(newSone.replies).thenReturn(setOf<PostReply>(firstReply))
+		memoryDatabase.storeSoneChanges(SoneComparison(sone, newSone))
+		assertThat(memoryDatabase.getReplies(post.id).single(), sameInstance<PostReply>(firstReply))
+		memoryDatabase.removeSone(newSone)
+		assertThat(memoryDatabase.getPostReply("reply1"), nullValue())
+		assertThat(memoryDatabase.getReplies(post.id), emptyIterable<Any>())
+	}
+
+	@Test
+	fun `sone changes for a sone that is not stored store the complete sone`() {
+		storeSone()
+		memoryDatabase.removeSone(sone)
+		memoryDatabase.storeSoneChanges(SoneComparison(mock(), sone))
+		assertThat(memoryDatabase.getPost("post1"), isPost("post1", 1000L, "post1", null))
+		assertThat(memoryDatabase.getPostReply("reply1"), isPostReply("reply1", "post1", 3000L, "reply1"))
+		assertThat(memoryDatabase.getAlbum("album1"), isAlbum("album1", "root", "album1", "album-description1"))
+	}
+
 	@Test
 	fun `post recipients are detected correctly`() {
 		val postWithRecipient = createPost(of(RECIPIENT_ID))
@@ -183,6 +303,27 @@ class MemoryDatabaseTest {
 		assertThat(memoryDatabase.getDirectedPosts(RECIPIENT_ID), contains(postWithRecipient))
 	}
 
+	@Test
+	fun `directed posts of a stored sone are returned`() {
+		storeSone()
+		assertThat(memoryDatabase.getDirectedPosts(RECIPIENT_ID), contains(isPost("post2", 2000L, "post2", RECIPIENT_ID)))
+	}
+
+	@Test
+	fun `directed posts of a removed sone are not returned`() {
+		storeSone()
+		memoryDatabase.removeSone(sone)
+		assertThat(memoryDatabase.getDirectedPosts(RECIPIENT_ID), emptyIterable<Any>())
+	}
+
+	@Test
+	fun `removed directed post is not returned`() {
+		val postWithRecipient = createPost(of(RECIPIENT_ID))
+		memoryDatabase.storePost(postWithRecipient)
+		memoryDatabase.removePost(postWithRecipient)
+		assertThat(memoryDatabase.getDirectedPosts(RECIPIENT_ID), emptyIterable<Any>())
+	}
+
 	private fun createPost(recipient: Optional<String>): Post {
 		val postWithRecipient = mock<Post>()
 		whenever(postWithRecipient.id).thenReturn(randomUUID().toString())
@@ -207,6 +348,40 @@ class MemoryDatabaseTest {
 		assertThat(memoryDatabase.getReplies(secondPost.id), contains(secondPostFirstReply, secondPostSecondReply))
 	}
 
+	@Test
+	fun `replies of a stored sone are returned ordered by time`() {
+		storeSone()
+		assertThat(memoryDatabase.getReplies("post1"), contains(isPostReply("reply1", "post1", 3000L, "reply1"), isPostReply("reply3", "post1", 5000L, "reply3")))
+	}
+
+	@Test
+	fun `replies of a removed sone are not returned`() {
+		storeSone()
+		memoryDatabase.removeSone(sone)
+		assertThat(memoryDatabase.getReplies("post1"), emptyIterable<Any>())
+	}
+
+	@Test
+	fun `replies with the same time are all returned`() {
+		val post = createPost(absent())
+		val firstReply = createPostReply(post, 1000L)
+		val secondReply = createPostReply(post, 1000L)
+		memoryDatabase.storePostReply(firstReply)
+		memoryDatabase.storePostReply(secondReply)
+		assertThat(memoryDatabase.getReplies(post.id), containsInAnyOrder(firstReply, secondReply))
+	}
+
+	@Test
+	fun `removed reply is not returned`() {
+		val post = createPost(absent())
+		val firstReply = createPostReply(post, 1000L)
+		val secondReply = createPostReply(post, 2000L)
+		memoryDatabase.storePostReply(firstReply)
+		memoryDatabase.storePostReply(secondReply)
+		memoryDatabase.removePostReply(firstReply)
+		assertThat(memoryDatabase.getReplies(post.id), contains(secondReply))
+	}
+
 	private fun createPostReply(post: Post, time: Long): PostReply {
 		val postReply = mock<PostReply>()
 		whenever(postReply.id).thenReturn(randomUUID().toString())
@@ -217,6 +392,67 @@ class MemoryDatabaseTest {
 		return postReply
 	}
 
+	@Test
+	fun `likes of stored remote sone are returned`() {
+		whenever(sone.likedPostIds).thenReturn(setOf("post1"))
+		whenever(sone.likedReplyIds).thenReturn(setOf("reply1"))
+		storeSone()
+		assertThat(memoryDatabase.getPostLikes("post1"), contains(SONE_ID))
+		assertThat(memoryDatabase.getPostLikeCount("post1"), equalTo(1))
+		assertThat(memoryDatabase.getPostReplyLikes("reply1"), contains(SONE_ID))
+		assertThat(memoryDatabase.getPostReplyLikeCount("reply1"), equalTo(1))
+	}
+
+	@Test
+	fun `likes are updated when a sone is stored again`() {
+		whenever(sone.likedPostIds).thenReturn(setOf("post1"))
+		storeSone()
+		whenever(sone.likedPostIds).thenReturn(setOf("post2"))
+		memoryDatabase.storeSone(sone)
+		assertThat(memoryDatabase.getPostLikes("post1"), emptyIterable<Any>())
+		assertThat(memoryDatabase.getPostLikes("post2"), contains(SONE_ID))
+	}
+
+	@Test
+	fun `likes are updated by stored sone changes`() {
+		whenever(sone.likedPostIds).thenReturn(setOf("post1"))
+		whenever(sone.likedReplyIds).thenReturn(setOf("reply1"))
+		storeSone()
+		val newSone = mock<Sone>()
+		whenever(newSone.id).thenReturn(SONE_ID)
+		whenever(newSone.rootAlbum).thenReturn(sone.rootAlbum)
+		whenever(newSone.likedPostIds).thenReturn(setOf("post2"))
+		whenever(newSone.likedReplyIds).thenReturn(setOf("reply1"))
+		memoryDatabase.storeSoneChanges(SoneComparison(sone, newSone))
+		assertThat(memoryDatabase.getPostLikes("post1"), emptyIterable<Any>())
+		assertThat(memoryDatabase.getPostLikes("post2"), contains(SONE_ID))
+		assertThat(memoryDatabase.getPostReplyLikes("reply1"), contains(SONE_ID))
+		memoryDatabase.removeSone(newSone)
+		assertThat(memoryDatabase.getPostLikeCount("post2"), equalTo(0))
+	}
+
+	@Test
+	fun `likes of removed sone are not returned`() {
+		whenever(sone.likedPostIds).thenReturn(setOf("post1"))
+		whenever(sone.likedReplyIds).thenReturn(setOf("reply1"))
+		storeSone()
+		memoryDatabase.removeSone(sone)
+		assertThat(memoryDatabase.getPostLikeCount("post1"), equalTo(0))
+		assertThat(memoryDatabase.getPostReplyLikeCount("reply1"), equalTo(0))
+	}
+
+	@Test
+	fun `changed likes of local sone are returned`() {
+		whenever(sone.isLocal).thenReturn(true)
+		storeSone()
+		whenever(sone.isLikedPostId("post1")).thenReturn(true)
+		whenever(sone.isLikedReplyId("reply1")).thenReturn(true)
+		assertThat(memoryDatabase.getPostLikes("post1"), contains(SONE_ID))
+		assertThat(memoryDatabase.getPostLikeCount("post1"), equalTo(1))
+		assertThat(memoryDatabase.getPostReplyLikes("reply1"), contains(SONE_ID))
+		assertThat(memoryDatabase.getPostReplyLikeCount("reply1"), equalTo(1))
+	}
+
 	@Test
 	fun `test basic album functionality`() {
 		val newAlbum = AlbumImpl(mock())
@@ -410,6 +646,64 @@ class MemoryDatabaseTest {
 		assertThat(configuration.getStringValue("KnownReplies/1/ID").value, equalTo<Any>(null))
 	}
 
+	@Test
+	fun `only changed known posts are passed to storage`() {
+		val storage = mock<MemoryDatabaseStorage>()
+		val memoryDatabase = MemoryDatabase(storage)
+		val post = mock<Post>()
+		whenever(post.id).thenReturn("post-id")
+		memoryDatabase.setPostKnown(post, true)
+		val changedPostIds = argumentCaptor<Collection<String>>()
+		verify(storage).saveKnownPosts(anyCollection(), changedPostIds.capture())
+		assertThat(changedPostIds.value, contains("post-id"))
+	}
+
+	@Test
+	fun `database is not locked while known posts are saved`() {
+		val storage = mock<MemoryDatabaseStorage>()
+		val memoryDatabase = MemoryDatabase(storage)
+		val post = mock<Post>()
+		whenever(post.id).thenReturn("post-id")
+		var postFromOtherThread: Post? = mock()
+		doAnswer {
+			val otherThread = Thread { postFromOtherThread = memoryDatabase.getPost("post-id") }
+			otherThread.start()
+			otherThread.join(5000)
+		}.whenever(storage).saveKnownPosts(anyCollection(), anyCollection())
+		memoryDatabase.setPostKnown(post, true)
+		assertThat(postFromOtherThread, nullValue())
+	}
+
+	@Test
+	fun `changed known posts are saved again after saving them failed`() {
+		val storage = mock<MemoryDatabaseStorage>()
+		val memoryDatabase = MemoryDatabase(storage)
+		memoryDatabase.startAsync().awaitRunning()
+		doThrow(DatabaseException::class.java).doNothing().whenever(storage).saveKnownPosts(anyCollection(), anyCollection())
+		val post = mock<Post>()
+		whenever(post.id).thenReturn("post-id")
+		assertFailsWith<DatabaseException> { memoryDatabase.setPostKnown(post, true) }
+		memoryDatabase.stopAsync().awaitTerminated()
+		verify(storage, times(2)).saveKnownPosts(anyCollection(), argThat<Collection<String>> { "post-id" in it })
+	}
+
+	@Test
+	@Dirty("the rate limiter should be mocked")
+	fun `changed known post replies are saved when database is stopped`() {
+		val storage = mock<MemoryDatabaseStorage>()
+		val memoryDatabase = MemoryDatabase(storage)
+		memoryDatabase.startAsync().awaitRunning()
+		val firstPostReply = mock<PostReply>()
+		whenever(firstPostReply.id).thenReturn("post-reply-1")
+		val secondPostReply = mock<PostReply>()
+		whenever(secondPostReply.id).thenReturn("post-reply-2")
+		memoryDatabase.setPostReplyKnown(firstPostReply)
+		memoryDatabase.setPostReplyKnown(secondPostReply)
+		verify(storage, never()).saveKnownPostReplies(anyCollection(), argThat<Collection<String>> { "post-reply-2" in it })
+		memoryDatabase.stopAsync().awaitTerminated()
+		verify(storage).saveKnownPostReplies(anyCollection(), argThat<Collection<String>> { "post-reply-2" in it })
+	}
+
 	@Test
 	@Dirty("the rate limiter should be mocked")
 	fun `saving the database twice in a row only saves it once`() {
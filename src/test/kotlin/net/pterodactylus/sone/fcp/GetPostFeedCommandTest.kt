@@ -2,6 +2,7 @@ package net.pterodactylus.sone.fcp
 
 import freenet.support.SimpleFieldSet
 import net.pterodactylus.sone.core.Core
+import net.pterodactylus.sone.core.PostFeeds
 import net.pterodactylus.sone.test.whenever
 import org.hamcrest.MatcherAssert.assertThat
 import org.hamcrest.Matchers.containsInAnyOrder
@@ -73,6 +74,7 @@ class GetPostFeedCommandTest : SoneCommandTest() {
 		whenever(localSone.friends).thenReturn(setOf("Friend1", "Friend2"))
 		whenever(core.getDirectedPosts("ValidSoneId")).thenReturn(setOf(directedPost))
 		whenever(core.getLikes(directedPost)).thenReturn(setOf(sone2, sone4))
+		whenever(core.getPostFeed(localSone)).then { PostFeeds(core, core).getPostFeed(localSone) }
 	}
 
 	private fun verifyFirstPost(replyParameters: SimpleFieldSet) {
@@ -66,7 +66,7 @@ class LikePostCommandTest : SoneCommandTest() {
 
 	@Test
 	fun `request with valid parameters adds post to liked posts for sone`() {
-		whenever(core.getLikes(post)).thenReturn(setOf(mock(), mock(), mock()))
+		whenever(core.getLikeCount(post)).thenReturn(3)
 		parameters += "Post" to "PostId"
 		parameters += "Sone" to "LocalSoneId"
 		val replyParameters = command.execute(parameters).replyParameters
@@ -66,7 +66,7 @@ class LikeReplyCommandTest : SoneCommandTest() {
 
 	@Test
 	fun `request with local sone adds reply id to sone`() {
-		whenever(core.getLikes(reply)).thenReturn(setOf(mock(), mock(), mock()))
+		whenever(core.getLikeCount(reply)).thenReturn(3)
 		parameters += "Reply" to "ReplyId"
 		parameters += "Sone" to "LocalSoneId"
 		val replyParameters = command.execute(parameters).replyParameters
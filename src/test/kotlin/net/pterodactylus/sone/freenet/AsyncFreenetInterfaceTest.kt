@@ -34,6 +34,7 @@ class AsyncFreenetInterfaceTest {
 		val result = FetchResult(ClientMetadata(), NullBucket())
 		val freenetClient = object : FreenetClient {
 			override fun fetch(freenetKey: FreenetURI) = result
+			override fun fetch(freenetKey: FreenetURI, maximumSize: Long) = throw UnsupportedOperationException()
 		}
 		val freenetInterface = AsyncFreenetInterface(freenetClient)
 		val fetched = async { freenetInterface.fetchUri(FreenetURI("KSK@GPL.txt")) }
@@ -52,6 +53,7 @@ class AsyncFreenetInterfaceTest {
 					if (redirected.compareAndSet(false, true))
 						throw FetchException(FetchException.FetchExceptionMode.PERMANENT_REDIRECT, FreenetURI("KSK@GPLv3.txt"))
 					else result
+			override fun fetch(freenetKey: FreenetURI, maximumSize: Long) = throw UnsupportedOperationException()
 		}
 		val freenetInterface = AsyncFreenetInterface(freenetClient)
 		val fetched = async { freenetInterface.fetchUri(FreenetURI("KSK@GPL.txt")) }
@@ -66,6 +68,7 @@ class AsyncFreenetInterfaceTest {
 		val freenetClient = object : FreenetClient {
 			override fun fetch(freenetKey: FreenetURI) =
 					throw FetchException(FetchException.FetchExceptionMode.ALL_DATA_NOT_FOUND)
+			override fun fetch(freenetKey: FreenetURI, maximumSize: Long) = throw UnsupportedOperationException()
 		}
 		val freenetInterface = AsyncFreenetInterface(freenetClient)
 		val fetched = supervisorScope { async { freenetInterface.fetchUri(FreenetURI("KSK@GPL.txt")) } }
@@ -77,4 +80,20 @@ class AsyncFreenetInterfaceTest {
 		}
 	}
 
+	@Test
+	fun `maximum size is handed to the client`() = runBlocking {
+		val result = FetchResult(ClientMetadata(), NullBucket())
+		val freenetClient = object : FreenetClient {
+			override fun fetch(freenetKey: FreenetURI) = throw UnsupportedOperationException()
+			override fun fetch(freenetKey: FreenetURI, maximumSize: Long) =
+					if (maximumSize == 1024L) result else throw UnsupportedOperationException()
+		}
+		val freenetInterface = AsyncFreenetInterface(freenetClient)
+		val fetched = async { freenetInterface.fetchUri(FreenetURI("KSK@GPL.txt"), 1024) }
+
+		withTimeout(1000) {
+			assertThat(fetched.await(), equalTo(Fetched(FreenetURI("KSK@GPL.txt"), result)))
+		}
+	}
+
 }
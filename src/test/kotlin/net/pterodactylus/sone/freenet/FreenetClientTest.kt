@@ -20,4 +20,11 @@ class FreenetClientTest {
 		assertThat(freenetClient.fetch(FreenetURI("KSK@GPL.txt")), equalTo(fetchResult))
 	}
 
+	@Test
+	fun `fetch method with maximum size calls method on hlsc`() {
+		val fetchResult = FetchResult(ClientMetadata(), NullBucket())
+		whenever(highLevelSimpleClient.fetch(FreenetURI("KSK@GPL.txt"), 1024)).thenReturn(fetchResult)
+		assertThat(freenetClient.fetch(FreenetURI("KSK@GPL.txt"), 1024), equalTo(fetchResult))
+	}
+
 }
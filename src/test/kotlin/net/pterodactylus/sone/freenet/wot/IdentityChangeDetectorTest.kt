@@ -31,6 +31,7 @@ class IdentityChangeDetectorTest {
 	private val removedIdentities = mutableListOf<Identity>()
 	private val changedIdentities = mutableListOf<Identity>()
 	private val unchangedIdentities = mutableListOf<Identity>()
+	private val changedTrusts = mutableListOf<Identity>()
 
 	@Before
 	fun setup() {
@@ -38,6 +39,7 @@ class IdentityChangeDetectorTest {
 		identityChangeDetector.onRemovedIdentity = { identity -> removedIdentities.add(identity) }
 		identityChangeDetector.onChangedIdentity = { identity -> changedIdentities.add(identity) }
 		identityChangeDetector.onUnchangedIdentity = { identity -> unchangedIdentities.add(identity) }
+		identityChangeDetector.onChangedTrust = { identity -> changedTrusts.add(identity) }
 	}
 
 	@Test
@@ -47,6 +49,7 @@ class IdentityChangeDetectorTest {
 		assertThat(removedIdentities, empty())
 		assertThat(changedIdentities, empty())
 		assertThat(unchangedIdentities, containsInAnyOrder(createIdentity1(), createIdentity2(), createIdentity3()))
+		assertThat(changedTrusts, empty())
 	}
 
 	@Test
@@ -122,6 +125,16 @@ class IdentityChangeDetectorTest {
 		assertThat(unchangedIdentities, containsInAnyOrder(createIdentity1(), createIdentity2()))
 	}
 
+	@Test
+	fun `detect that the trust in an identity was changed`() {
+		val identity2 = createIdentity2()
+		identity2.setTrust(createOwnIdentity("Own1", setOf()), Trust(-10, null, null))
+		identityChangeDetector.detectChanges(listOf(createIdentity1(), identity2, createIdentity3()))
+		assertThat(changedIdentities, empty())
+		assertThat(unchangedIdentities, containsInAnyOrder(createIdentity1(), identity2, createIdentity3()))
+		assertThat(changedTrusts, containsInAnyOrder(identity2))
+	}
+
 	@Test
 	fun `no removed identities are detected without an identity processor`() {
 		identityChangeDetector.onRemovedIdentity = null
@@ -58,6 +58,13 @@ class IdentityChangeEventSenderTest {
 		verify(eventBus).post(eq(IdentityUpdatedEvent(ownIdentities[1], identities[1])))
 	}
 
+	@Test
+	fun changedTrustIsReportedCorrectly() {
+		val identity = createIdentity("I2", setOf()).setTrust(ownIdentities[1], Trust(-10, null, null))
+		identityChangeEventSender.detectChanges(mapOf(ownIdentities[0] to listOf(identities[0], identities[1]), ownIdentities[1] to listOf(identities[0], identity)))
+		verify(eventBus).post(eq(IdentityTrustChangedEvent(ownIdentities[1], identity)))
+	}
+
 	private fun createNewIdentities() = mapOf(
 			ownIdentities[1] to listOf(identities[3], identities[2]),
 			ownIdentities[2] to listOf(identities[1], identities[2])
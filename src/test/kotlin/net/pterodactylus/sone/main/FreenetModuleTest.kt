@@ -5,6 +5,7 @@ import freenet.client.*
 import freenet.clients.http.*
 import freenet.node.*
 import freenet.pluginmanager.*
+import net.pterodactylus.sone.freenet.*
 import net.pterodactylus.sone.freenet.plugin.*
 import net.pterodactylus.sone.test.*
 import org.hamcrest.MatcherAssert.*
@@ -113,4 +114,14 @@ class FreenetModuleTest {
 		injector.verifySingletonInstance<PluginConnector>()
 	}
 
+	@Test
+	fun `freenet client is returned correctly`() {
+		assertThat(injector.getInstance<FreenetClient>(), instanceOf(DefaultFreenetClient::class.java))
+	}
+
+	@Test
+	fun `freenet client is returned as singleton`() {
+		injector.verifySingletonInstance<FreenetClient>()
+	}
+
 }
@@ -147,6 +147,11 @@ class SoneModuleTest {
 		assertThat(injector.getInstance<Database>(), instanceOf(MemoryDatabase::class.java))
 	}
 
+	@Test
+	fun `post provider is bound to database`() {
+		assertThat(injector.getInstance<PostProvider>(), sameInstance<PostProvider>(injector.getInstance<Database>()))
+	}
+
 	@Test
 	fun `translation is bound correctly`() {
 		assertThat(injector.getInstance<Translation>(), notNullValue())
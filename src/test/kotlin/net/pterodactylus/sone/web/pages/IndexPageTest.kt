@@ -2,6 +2,7 @@ package net.pterodactylus.sone.web.pages
 
 import com.google.common.base.*
 import com.google.common.base.Optional.*
+import net.pterodactylus.sone.core.*
 import net.pterodactylus.sone.data.*
 import net.pterodactylus.sone.notify.*
 import net.pterodactylus.sone.test.*
@@ -53,6 +54,11 @@ class IndexPageTest : WebPageTest({ webInterface, loaders, templateRenderer -> I
 		whenever(core.getDirectedPosts("current")).thenReturn(emptyList())
 	}
 
+	@Before
+	fun setupPostFeed() {
+		whenever(core.getPostFeed(currentSone)).then { PostFeeds(core, core).getPostFeed(currentSone) }
+	}
+
 	private fun createPost(time: Long, directed: Boolean = false) = mock<Post>().apply {
 		whenever(this.time).thenReturn(time)
 		whenever(recipient).thenReturn(fromNullable(if (directed) currentSone else null))
@@ -171,6 +171,16 @@ class KnownSonesPageTest : WebPageTest(::KnownSonesPage) {
 		}
 	}
 
+	@Test
+	fun `known sones can be filtered by quarantined sones`() {
+		whenever(sones[1].status).thenReturn(Sone.SoneStatus.quarantined)
+		addHttpRequestParameter("filter", "quarantined")
+		verifyNoRedirect {
+			verifySonesAreInOrder(1)
+			verifyStoredFields("activity", "desc", "quarantined")
+		}
+	}
+
 	@Test
 	fun `known sones can be filtered by new sones`() {
 		addHttpRequestParameter("filter", "new")
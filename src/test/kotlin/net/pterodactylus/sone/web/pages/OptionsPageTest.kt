@@ -319,6 +319,16 @@ class OptionsPageTest : WebPageTest(::OptionsPage) {
 		verifyThatPreferencesCanBeSet("strict-filtering", null, false) { core.preferences.strictFiltering }
 	}
 
+	@Test
+	fun `archiving of old posts can be set to true`() {
+		verifyThatPreferencesCanBeSet("archive-old-posts", "checked", true) { core.preferences.archiveOldPosts }
+	}
+
+	@Test
+	fun `archiving of old posts can be set to false`() {
+		verifyThatPreferencesCanBeSet("archive-old-posts", null, false) { core.preferences.archiveOldPosts }
+	}
+
 	@Test
 	fun `page can be created by dependency injection`() {
 		assertThat(baseInjector.getInstance<OptionsPage>(), notNullValue())
@@ -85,6 +85,27 @@ class RescuePageTest : WebPageTest(::RescuePage) {
 		}
 	}
 
+	@Test
+	fun `post request with search and window starts search with window`() {
+		setMethod(POST)
+		addHttpRequestPart("search", "true")
+		addHttpRequestPart("window", "20")
+		verifyRedirect("rescue.html") {
+			verify(soneRescuer).startSearch(20)
+			verify(soneRescuer, never()).startNextFetch()
+		}
+	}
+
+	@Test
+	fun `post request with search and invalid window starts search with default window`() {
+		setMethod(POST)
+		addHttpRequestPart("search", "true")
+		addHttpRequestPart("window", "abc")
+		verifyRedirect("rescue.html") {
+			verify(soneRescuer).startSearch(SoneRescuer.DEFAULT_WINDOW_SIZE)
+		}
+	}
+
 	@Test
 	fun `page can be created by dependency injection`() {
 		assertThat(baseInjector.getInstance<RescuePage>(), notNullValue())